@@ -0,0 +1,75 @@
+/*
+ * Copyright 2020 momosecurity.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.immomo.momosec.bench;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 基准测试语料，位于 src/jmh/resources/corpus
+ * 空行与 "# " 开头的行被忽略，行内的 \n 转义为换行
+ */
+public class Corpus {
+
+    public static final String SQL_JOIN = "sql-join.tsv";
+    public static final String SQL_STATEMENT = "sql-statement.txt";
+    public static final String REGEX = "regex.txt";
+    public static final String LITERAL = "literal.txt";
+    public static final String IP = "ip.txt";
+
+    public static String[] lines(String name) {
+        List<String> lines = new ArrayList<>();
+        InputStream in = Corpus.class.getResourceAsStream("/corpus/" + name);
+        if (in == null) {
+            throw new IllegalArgumentException("corpus not found: " + name);
+        }
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (line.isEmpty() || line.startsWith("# ")) {
+                    continue;
+                }
+                lines.add(line.replace("\\n", "\n"));
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return lines.toArray(new String[0]);
+    }
+
+    /**
+     * 以 tab 分隔的多列语料，缺失或为空的列为 null
+     */
+    public static String[][] columns(String name, int count) {
+        String[] lines = lines(name);
+        String[][] rows = new String[lines.length][];
+        for (int i = 0; i < lines.length; i++) {
+            String[] parts = lines[i].split("\t", -1);
+            String[] row = new String[count];
+            for (int j = 0; j < count && j < parts.length; j++) {
+                row[j] = parts[j].isEmpty() && j > 0 ? null : parts[j];
+            }
+            rows[i] = row;
+        }
+        return rows;
+    }
+}
@@ -0,0 +1,47 @@
+/*
+ * Copyright 2020 momosecurity.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.immomo.momosec.bench;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * SQLi.hasVulOnSQLJoinStr，MomoSec 与 ZSec 两份实现对比
+ */
+@State(Scope.Benchmark)
+public class SQLiBenchmark {
+
+    private String[][] joins;
+
+    @Setup
+    public void setup() {
+        joins = Corpus.columns(Corpus.SQL_JOIN, 3);
+    }
+
+    @Benchmark
+    public void momosecHasVulOnSQLJoinStr(Blackhole bh) {
+        for (String[] join : joins) {
+            bh.consume(com.immomo.momosec.utils.SQLi.hasVulOnSQLJoinStr(join[0], join[1], join[2]));
+        }
+    }
+
+    @Benchmark
+    public void zsecHasVulOnSQLJoinStr(Blackhole bh) {
+        for (String[] join : joins) {
+            bh.consume(com.zcy.zsec.util.SQLi.hasVulOnSQLJoinStr(join[0], join[1], join[2]));
+        }
+    }
+}
@@ -0,0 +1,97 @@
+/*
+ * Copyright 2020 momosecurity.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.immomo.momosec.lang.java.rule.momosecurity;
+
+import com.immomo.momosec.bench.Corpus;
+import com.immomo.momosec.utils.SQLi;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * BaseSQLi.isSql / hasEvalAdditive，语料包含 SQL 模板与普通的格式化字符串
+ * 语料小于 SQLi 的结论缓存，isSql / hasVulOnPlaceholder 预热后只命中缓存，*Cold 测量未命中时的开销
+ */
+@State(Scope.Benchmark)
+public class BaseSQLiBenchmark {
+
+    private BaseSQLi inspector;
+    private String[] statements;
+
+    @Setup
+    public void setup() {
+        inspector = new PolyadicExpressionSQLi();
+        statements = Corpus.lines(Corpus.SQL_STATEMENT);
+    }
+
+    @Benchmark
+    public void isSql(Blackhole bh) {
+        for (String statement : statements) {
+            bh.consume(inspector.isSql(statement));
+        }
+    }
+
+    @Benchmark
+    public void hasEvalAdditive(Blackhole bh) {
+        for (String statement : statements) {
+            bh.consume(inspector.hasEvalAdditive(statement, SQLi.placeholderPattern));
+        }
+    }
+
+    @Benchmark
+    public void hasVulOnPlaceholder(Blackhole bh) {
+        for (String statement : statements) {
+            bh.consume(SQLi.hasVulOnPlaceholder(statement));
+        }
+    }
+
+    /**
+     * 每次调用前给语料加上新的末尾注释，缓存键各不相同 (末尾注释不改变 isSql 与占位符的结论)
+     */
+    @State(Scope.Thread)
+    public static class ColdStatements {
+        private String[] corpus;
+        private long round;
+        String[] statements;
+
+        @Setup(Level.Trial)
+        public void load() {
+            corpus = Corpus.lines(Corpus.SQL_STATEMENT);
+            statements = new String[corpus.length];
+        }
+
+        @Setup(Level.Invocation)
+        public void next() {
+            round++;
+            for (int i = 0; i < corpus.length; i++) {
+                statements[i] = corpus[i] + " -- " + round;
+            }
+        }
+    }
+
+    @Benchmark
+    public void isSqlCold(ColdStatements cold, Blackhole bh) {
+        for (String statement : cold.statements) {
+            bh.consume(inspector.isSql(statement));
+        }
+    }
+
+    @Benchmark
+    public void hasVulOnPlaceholderCold(ColdStatements cold, Blackhole bh) {
+        for (String statement : cold.statements) {
+            bh.consume(SQLi.hasVulOnPlaceholder(statement));
+        }
+    }
+}
@@ -0,0 +1,60 @@
+/*
+ * Copyright 2020 momosecurity.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.immomo.momosec.lang.java.rule.momosecurity;
+
+import com.immomo.momosec.bench.Corpus;
+import com.immomo.momosec.utils.EntropyEstimator;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+@State(Scope.Benchmark)
+public class HardcodedCredentialsBenchmark {
+
+    private String[] literals;
+
+    @Setup
+    public void setup() {
+        literals = Corpus.lines(Corpus.LITERAL);
+    }
+
+    @Benchmark
+    public void isHighEntropyString(Blackhole bh) {
+        for (String literal : literals) {
+            bh.consume(HardcodedCredentials.isHighEntropyString(literal));
+        }
+    }
+
+    /**
+     * 语料小于缓存容量，isHighEntropyString 预热后只命中缓存；
+     * 每次调用前换一个新的 EntropyEstimator (与 isHighEntropyString 使用的配置相同)，测量未命中时的开销
+     */
+    @State(Scope.Thread)
+    public static class ColdEstimator {
+        EntropyEstimator estimator;
+
+        @Setup(Level.Invocation)
+        public void reset() {
+            estimator = new EntropyEstimator(EntropyEstimator.DEFAULT_THRESHOLD, EntropyEstimator.DEFAULT_TRUNCATE);
+        }
+    }
+
+    @Benchmark
+    public void isHighEntropyStringCold(ColdEstimator cold, Blackhole bh) {
+        for (String literal : literals) {
+            bh.consume(cold.estimator.isHighEntropy(literal));
+        }
+    }
+}
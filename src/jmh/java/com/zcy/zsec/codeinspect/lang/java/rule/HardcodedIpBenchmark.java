@@ -0,0 +1,39 @@
+/*
+ * Copyright 2020 momosecurity.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.zcy.zsec.codeinspect.lang.java.rule;
+
+import com.immomo.momosec.bench.Corpus;
+import com.immomo.momosec.utils.IpLiteral;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+@State(Scope.Benchmark)
+public class HardcodedIpBenchmark {
+
+    private String[] literals;
+
+    @Setup
+    public void setup() {
+        literals = Corpus.lines(Corpus.IP);
+    }
+
+    @Benchmark
+    public void isSensitiveIp(Blackhole bh) {
+        for (String literal : literals) {
+            bh.consume(HardcodedIp.isSensitiveIp(literal, IpLiteral.getDefaultTable()));
+        }
+    }
+}
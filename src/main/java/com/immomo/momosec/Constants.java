@@ -16,5 +16,6 @@
 package com.immomo.momosec;
 
 public class Constants {
+    public static final String PLUGIN_ID = "Momo Code Sec Inspector (Java)";
     public static final String SQL_INJECTION_HELP_COMMENT = "// 请查看示例 https://gist.github.com/retanoj/5fd369524a18ab68a4fe7ac5e0d121e8";
 }
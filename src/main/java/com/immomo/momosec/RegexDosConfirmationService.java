@@ -0,0 +1,154 @@
+/*
+ * Copyright 2020 momosecurity.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.immomo.momosec;
+
+import com.immomo.momosec.utils.CacheStats;
+import com.immomo.momosec.utils.LruCache;
+import com.immomo.momosec.utils.RegexDosAnalyzer;
+import com.immomo.momosec.utils.RegexDosConfirmer;
+import com.intellij.codeInsight.daemon.DaemonCodeAnalyzer;
+import com.intellij.openapi.application.ApplicationManager;
+import com.intellij.openapi.components.ServiceManager;
+import com.intellij.openapi.progress.ProgressManager;
+import com.intellij.openapi.project.Project;
+import com.intellij.psi.PsiFile;
+import com.intellij.util.concurrency.AppExecutorUtil;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * RegexDos 动态验证的调度
+ *
+ * 验证在有界的后台线程池中并行执行，每个正则最多执行 BUDGET_MILLIS，结果按正则原文缓存在内存中 (与机器相关，不持久化)。
+ * 编辑器内高亮时只读取已有结果，没有结果则提交验证并立即返回，验证完成后重新触发相关文件的高亮，
+ * 因此不会阻塞高亮；批量检查 (非 on-the-fly) 时等待验证完成。
+ */
+public class RegexDosConfirmationService {
+
+    static final long BUDGET_MILLIS = 2000;
+    private static final int CAPACITY = 1024;
+
+    private final ExecutorService executor = AppExecutorUtil.createBoundedApplicationPoolExecutor(
+            "MomoSec RegexDos Confirmer", Math.max(1, Runtime.getRuntime().availableProcessors() / 2));
+    private final LruCache<String, RegexDosConfirmer.Confirmation> confirmations =
+            new LruCache<>(CAPACITY, CacheStats.counter("regexdos.confirm"));
+    private final ConcurrentMap<String, Pending> running = new ConcurrentHashMap<>();
+
+    @NotNull
+    public static RegexDosConfirmationService getInstance() {
+        return ServiceManager.getService(RegexDosConfirmationService.class);
+    }
+
+    /**
+     * 不阻塞: 返回已有的验证结果；没有时提交验证，完成后重新高亮 file
+     * @return Confirmation | null 验证尚未完成
+     */
+    @Nullable
+    public RegexDosConfirmer.Confirmation getOrSchedule(@NotNull String regex, @NotNull RegexDosAnalyzer.Result result,
+                                                        @NotNull PsiFile file) {
+        RegexDosConfirmer.Confirmation confirmation = confirmations.get(regex);
+        if (confirmation != null) {
+            return confirmation;
+        }
+        Pending pending = schedule(regex, result);
+        pending.files.add(file);
+        if (pending.future.isDone()) {
+            // 验证恰好在加入等待列表之前完成
+            restartHighlighting(file);
+        }
+        return null;
+    }
+
+    /**
+     * 阻塞等待验证结果，期间响应取消
+     * @return Confirmation | null 验证失败
+     */
+    @Nullable
+    public RegexDosConfirmer.Confirmation confirm(@NotNull String regex, @NotNull RegexDosAnalyzer.Result result) {
+        RegexDosConfirmer.Confirmation confirmation = confirmations.get(regex);
+        if (confirmation != null) {
+            return confirmation;
+        }
+        CompletableFuture<RegexDosConfirmer.Confirmation> future = schedule(regex, result).future;
+        while (true) {
+            ProgressManager.checkCanceled();
+            try {
+                return future.get(50, TimeUnit.MILLISECONDS);
+            } catch (TimeoutException ignored) {
+                // keep waiting
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return null;
+            } catch (ExecutionException e) {
+                return null;
+            }
+        }
+    }
+
+    @NotNull
+    private Pending schedule(@NotNull String regex, @NotNull RegexDosAnalyzer.Result result) {
+        Pending pending = running.get(regex);
+        if (pending != null) {
+            return pending;
+        }
+        pending = new Pending();
+        Pending raced = running.putIfAbsent(regex, pending);
+        if (raced != null) {
+            return raced;
+        }
+
+        Pending started = pending;
+        started.future.whenComplete((confirmation, error) -> {
+            // 验证出错时同样记录为未确认，避免重新高亮后反复提交
+            confirmations.put(regex, confirmation != null ? confirmation : RegexDosConfirmer.unconfirmed());
+            running.remove(regex);
+            for (PsiFile file : started.files) {
+                restartHighlighting(file);
+            }
+        });
+        RegexDosConfirmer.confirmAsync(regex, result, BUDGET_MILLIS, executor).whenComplete((confirmation, error) -> {
+            if (error != null) {
+                started.future.completeExceptionally(error);
+            } else {
+                started.future.complete(confirmation);
+            }
+        });
+        return started;
+    }
+
+    private static void restartHighlighting(@NotNull PsiFile file) {
+        Project project = file.getProject();
+        ApplicationManager.getApplication().invokeLater(() -> {
+            if (file.isValid()) {
+                DaemonCodeAnalyzer.getInstance(project).restart(file);
+            }
+        }, project.getDisposed());
+    }
+
+    private static class Pending {
+        private final Set<PsiFile> files = ConcurrentHashMap.newKeySet();
+        private final CompletableFuture<RegexDosConfirmer.Confirmation> future = new CompletableFuture<>();
+    }
+}
@@ -0,0 +1,191 @@
+/*
+ * Copyright 2020 momosecurity.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.immomo.momosec;
+
+import com.immomo.momosec.utils.CacheStats;
+import com.immomo.momosec.utils.LruCache;
+import com.immomo.momosec.utils.RegexDosAnalyzer;
+import com.intellij.openapi.components.PersistentStateComponent;
+import com.intellij.openapi.components.ServiceManager;
+import com.intellij.openapi.components.State;
+import com.intellij.openapi.components.Storage;
+import com.intellij.util.xmlb.annotations.Attribute;
+import com.intellij.util.xmlb.annotations.Tag;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 正则 -> RegexDos 分析结论 的全局缓存
+ *
+ * 同一个校验正则 (邮箱、手机号、UUID 等) 在各模块中大量重复出现，按正则原文缓存分析结论，
+ * 容量有限，按 LRU 淘汰；结论随 IDE 配置持久化，重启后仍然有效。
+ * matches() 与 find() 语义的结论不同，分别缓存。
+ * 分析器逻辑变化时需要提升 VERSION，已持久化的旧结论将被丢弃。
+ */
+@State(name = "MomoSecRegexDosVerdicts", storages = @Storage("momosec-regexdos.xml"))
+public class RegexDosVerdictService implements PersistentStateComponent<RegexDosVerdictService.VerdictState> {
+
+    static final int VERSION = 2;
+    static final int CAPACITY = 4096;
+    // 过长的正则很少重复出现，不缓存
+    static final int MAX_REGEX_LENGTH = 2048;
+
+    private static final Verdict SAFE = new Verdict(null);
+
+    private final LruCache<String, Verdict> cache = new LruCache<>(CAPACITY, CacheStats.counter("regexdos.verdict"));
+    private final LruCache<String, Verdict> findCache = new LruCache<>(CAPACITY, CacheStats.counter("regexdos.verdict.find"));
+
+    @NotNull
+    public static RegexDosVerdictService getInstance() {
+        return ServiceManager.getService(RegexDosVerdictService.class);
+    }
+
+    /**
+     * @param regex String
+     * @return RegexDosAnalyzer.Result | null 同 RegexDosAnalyzer.analyze
+     */
+    @Nullable
+    public RegexDosAnalyzer.Result analyze(@NotNull String regex) {
+        return analyze(regex, false);
+    }
+
+    /**
+     * @param regex String
+     * @param find boolean 按 find() 语义分析
+     * @return RegexDosAnalyzer.Result | null 同 RegexDosAnalyzer.analyze
+     */
+    @Nullable
+    public RegexDosAnalyzer.Result analyze(@NotNull String regex, boolean find) {
+        if (regex.length() > MAX_REGEX_LENGTH) {
+            return RegexDosAnalyzer.analyze(regex, find);
+        }
+        return (find ? findCache : cache).computeIfAbsent(regex, r -> compute(r, find)).result;
+    }
+
+    public int size() {
+        return cache.size() + findCache.size();
+    }
+
+    private static Verdict compute(@NotNull String regex, boolean find) {
+        RegexDosAnalyzer.Result result = RegexDosAnalyzer.analyze(regex, find);
+        return result == null ? SAFE : new Verdict(result);
+    }
+
+    @NotNull
+    @Override
+    public VerdictState getState() {
+        VerdictState state = new VerdictState();
+        state.version = VERSION;
+        store(state, cache, false);
+        store(state, findCache, true);
+        return state;
+    }
+
+    private static void store(@NotNull VerdictState state, @NotNull LruCache<String, Verdict> cache, boolean find) {
+        for (Map.Entry<String, Verdict> entry : cache.snapshot().entrySet()) {
+            if (!isXmlSafe(entry.getKey())) {
+                continue;
+            }
+            StoredVerdict stored = new StoredVerdict();
+            stored.regex = entry.getKey();
+            stored.find = find;
+            RegexDosAnalyzer.Result result = entry.getValue().result;
+            if (result != null) {
+                stored.kind = result.getKind().name();
+                stored.start = result.getStart();
+                stored.end = result.getEnd();
+            }
+            state.verdicts.add(stored);
+        }
+    }
+
+    @Override
+    public void loadState(@NotNull VerdictState state) {
+        cache.clear();
+        findCache.clear();
+        if (state.version != VERSION) {
+            return ;
+        }
+        // 按从旧到新的顺序写入，保持 LRU 次序
+        for (StoredVerdict stored : state.verdicts) {
+            if (stored.regex == null || stored.regex.length() > MAX_REGEX_LENGTH) {
+                continue;
+            }
+            Verdict verdict;
+            if (stored.kind == null) {
+                verdict = SAFE;
+            } else {
+                try {
+                    RegexDosAnalyzer.Kind kind = RegexDosAnalyzer.Kind.valueOf(stored.kind);
+                    verdict = new Verdict(new RegexDosAnalyzer.Result(kind, stored.start, stored.end));
+                } catch (IllegalArgumentException e) {
+                    continue;
+                }
+            }
+            (stored.find ? findCache : cache).put(stored.regex, verdict);
+        }
+    }
+
+    /**
+     * XML 中无法表示的控制字符不持久化
+     */
+    private static boolean isXmlSafe(@NotNull String s) {
+        for (int i = 0; i < s.length(); i++) {
+            char c = s.charAt(i);
+            if (c < 0x20 || c >= 0xFFFE) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static class Verdict {
+        private final RegexDosAnalyzer.Result result;
+
+        Verdict(@Nullable RegexDosAnalyzer.Result result) {
+            this.result = result;
+        }
+    }
+
+    public static class VerdictState {
+        @Attribute("version")
+        public int version;
+
+        public List<StoredVerdict> verdicts = new ArrayList<>();
+    }
+
+    @Tag("verdict")
+    public static class StoredVerdict {
+        @Attribute("regex")
+        public String regex;
+
+        @Attribute("find")
+        public boolean find;
+
+        @Attribute("kind")
+        public String kind;
+
+        @Attribute("start")
+        public int start;
+
+        @Attribute("end")
+        public int end;
+    }
+}
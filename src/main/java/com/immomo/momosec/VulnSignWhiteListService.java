@@ -0,0 +1,273 @@
+/*
+ * Copyright 2020 momosecurity.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.immomo.momosec;
+
+import com.immomo.momosec.lang.MomoBaseLocalInspectionTool;
+import com.immomo.momosec.utils.CacheStats;
+import com.immomo.momosec.utils.IntHashSet;
+import com.intellij.codeInspection.ProblemDescriptor;
+import com.intellij.codeInspection.ProblemsHolder;
+import com.intellij.openapi.application.PathManager;
+import com.intellij.openapi.components.ServiceManager;
+import com.intellij.openapi.diagnostic.Logger;
+import com.intellij.psi.PsiElement;
+import org.jetbrains.annotations.NotNull;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.List;
+
+/**
+ * 漏洞签名白名单 (已确认的误报)
+ *
+ * 签名即 MomoBaseLocalInspectionTool.getVulnSign 的结果，白名单文件每行一个签名，
+ * 支持有符号十进制或 0x 开头的十六进制，# 之后为注释。
+ * 文件默认位于 {config}/momosec/vuln-sign-whitelist.txt，可通过 -Dmomosec.vuln.sign.whitelist=path 指定。
+ *
+ * 文件一次读入后直接解析为 IntHashSet，不产生逐行字符串与装箱对象；
+ * 规则注册问题时经 wrap 返回的 ProblemsHolder 以 O(1) 查询签名，命中则丢弃该问题。
+ */
+public class VulnSignWhiteListService {
+    private static final Logger LOG = Logger.getInstance(VulnSignWhiteListService.class);
+
+    public static final String PATH_PROPERTY = "momosec.vuln.sign.whitelist";
+    private static final String DEFAULT_FILE_NAME = "vuln-sign-whitelist.txt";
+
+    // 白名单文件变化的检查间隔，避免每次构建 visitor 都访问文件系统
+    private static final long CHECK_INTERVAL_MILLIS = 10_000;
+
+    private static final CacheStats.Counter STATS = CacheStats.counter("whitelist");
+
+    private volatile IntHashSet signs = new IntHashSet();
+    private volatile String loadedStamp = null;
+    private volatile long lastCheckMillis = 0;
+
+    @NotNull
+    public static VulnSignWhiteListService getInstance() {
+        return ServiceManager.getService(VulnSignWhiteListService.class);
+    }
+
+    public VulnSignWhiteListService() {
+        reload();
+    }
+
+    @NotNull
+    public static Path getWhiteListPath() {
+        String path = System.getProperty(PATH_PROPERTY);
+        if (path != null && !path.isEmpty()) {
+            return Paths.get(path);
+        }
+        return Paths.get(PathManager.getConfigPath(), "momosec", DEFAULT_FILE_NAME);
+    }
+
+    public boolean contains(int sign) {
+        checkModified();
+        return signs.contains(sign);
+    }
+
+    public int size() {
+        checkModified();
+        return signs.size();
+    }
+
+    /**
+     * 白名单为空时原样返回 holder，否则返回一个过滤白名单签名后再转发给 holder 的 ProblemsHolder
+     * @param holder ProblemsHolder
+     * @return ProblemsHolder
+     */
+    @NotNull
+    public ProblemsHolder wrap(@NotNull ProblemsHolder holder) {
+        checkModified();
+        IntHashSet current = signs;
+        if (current.isEmpty() || holder instanceof WhiteListProblemsHolder) {
+            return holder;
+        }
+        return new WhiteListProblemsHolder(holder, current);
+    }
+
+    /**
+     * 重新读取白名单文件，文件不存在时白名单为空
+     */
+    public synchronized void reload() {
+        lastCheckMillis = System.currentTimeMillis();
+        Path path = getWhiteListPath();
+        String stamp = getStamp(path);
+        if (stamp == null) {
+            signs = new IntHashSet();
+            loadedStamp = null;
+            return ;
+        }
+
+        // 不使用内存映射: 映射在 GC 前不会释放，Windows 下会一直锁住文件，用户无法保存或替换白名单
+        try {
+            signs = parse(ByteBuffer.wrap(Files.readAllBytes(path)));
+            loadedStamp = stamp;
+            LOG.info("Loaded " + signs.size() + " vuln signs from " + path);
+        } catch (IOException | IllegalArgumentException e) {
+            LOG.warn("Failed to load vuln sign whitelist " + path, e);
+        }
+    }
+
+    private void checkModified() {
+        long now = System.currentTimeMillis();
+        if (now - lastCheckMillis < CHECK_INTERVAL_MILLIS) {
+            return ;
+        }
+        lastCheckMillis = now;
+        String stamp = getStamp(getWhiteListPath());
+        String loaded = loadedStamp;
+        if (stamp == null ? loaded != null : !stamp.equals(loaded)) {
+            reload();
+        }
+    }
+
+    private static String getStamp(@NotNull Path path) {
+        try {
+            BasicFileAttributes attributes = Files.readAttributes(path, BasicFileAttributes.class);
+            return attributes.isRegularFile() ? attributes.lastModifiedTime().toMillis() + ":" + attributes.size() : null;
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    /**
+     * 逐字节解析白名单内容，无法识别的行被忽略
+     * @param buffer ByteBuffer 文件内容
+     * @return IntHashSet
+     */
+    @NotNull
+    static IntHashSet parse(@NotNull ByteBuffer buffer) {
+        int limit = buffer.limit();
+        int lines = 1;
+        for (int i = 0; i < limit; i++) {
+            if (buffer.get(i) == '\n') {
+                lines++;
+            }
+        }
+
+        IntHashSet result = new IntHashSet(lines);
+        int pos = 0;
+        while (pos < limit) {
+            pos = parseLine(buffer, pos, limit, result);
+        }
+        return result;
+    }
+
+    /**
+     * @return 下一行的起始位置
+     */
+    private static int parseLine(@NotNull ByteBuffer buffer, int pos, int limit, @NotNull IntHashSet result) {
+        pos = skipBlank(buffer, pos, limit);
+
+        boolean negative = false;
+        int radix = 10;
+        if (pos < limit && buffer.get(pos) == '-') {
+            negative = true;
+            pos++;
+        } else if (pos + 1 < limit && buffer.get(pos) == '0' && (buffer.get(pos + 1) == 'x' || buffer.get(pos + 1) == 'X')) {
+            radix = 16;
+            pos += 2;
+        }
+
+        long value = 0;
+        int digits = 0;
+        boolean valid = true;
+        for (; pos < limit; pos++) {
+            int digit = Character.digit((char) (buffer.get(pos) & 0xFF), radix);
+            if (digit < 0) {
+                break;
+            }
+            value = value * radix + digit;
+            digits++;
+            if (value > 0xFFFFFFFFL) {
+                valid = false;
+            }
+        }
+
+        pos = skipBlank(buffer, pos, limit);
+        if (pos < limit && buffer.get(pos) != '\n' && buffer.get(pos) != '#') {
+            valid = false;
+        }
+
+        if (valid && digits > 0) {
+            if (negative) {
+                if (value <= -(long) Integer.MIN_VALUE) {
+                    result.add((int) -value);
+                }
+            } else if (radix == 16 || value <= Integer.MAX_VALUE) {
+                result.add((int) value);
+            }
+        }
+
+        while (pos < limit && buffer.get(pos) != '\n') {
+            pos++;
+        }
+        return pos + 1;
+    }
+
+    private static int skipBlank(@NotNull ByteBuffer buffer, int pos, int limit) {
+        while (pos < limit) {
+            byte b = buffer.get(pos);
+            if (b != ' ' && b != '\t' && b != '\r') {
+                break;
+            }
+            pos++;
+        }
+        return pos;
+    }
+
+    private static class WhiteListProblemsHolder extends ProblemsHolder {
+        private final ProblemsHolder delegate;
+        private final IntHashSet signs;
+
+        WhiteListProblemsHolder(@NotNull ProblemsHolder delegate, @NotNull IntHashSet signs) {
+            super(delegate.getManager(), delegate.getFile(), delegate.isOnTheFly());
+            this.delegate = delegate;
+            this.signs = signs;
+        }
+
+        @Override
+        public void registerProblem(@NotNull ProblemDescriptor problemDescriptor) {
+            PsiElement element = problemDescriptor.getPsiElement();
+            if (element != null && signs.contains(MomoBaseLocalInspectionTool.getVulnSign(element))) {
+                STATS.hit();
+                return ;
+            }
+            STATS.miss();
+            delegate.registerProblem(problemDescriptor);
+        }
+
+        @NotNull
+        @Override
+        public List<ProblemDescriptor> getResults() {
+            return delegate.getResults();
+        }
+
+        @Override
+        public int getResultCount() {
+            return delegate.getResultCount();
+        }
+
+        @Override
+        public boolean hasResults() {
+            return delegate.hasResults();
+        }
+    }
+}
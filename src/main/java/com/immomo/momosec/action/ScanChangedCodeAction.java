@@ -0,0 +1,128 @@
+/*
+ * Copyright 2020 momosecurity.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.immomo.momosec.action;
+
+import com.immomo.momosec.lang.InspectionBundle;
+import com.immomo.momosec.scan.ChangedLines;
+import com.immomo.momosec.scan.MomoSecScanner;
+import com.immomo.momosec.scan.ScanProblem;
+import com.intellij.openapi.actionSystem.AnAction;
+import com.intellij.openapi.actionSystem.AnActionEvent;
+import com.intellij.openapi.fileEditor.FileDocumentManager;
+import com.intellij.openapi.fileEditor.OpenFileDescriptor;
+import com.intellij.openapi.progress.ProgressIndicator;
+import com.intellij.openapi.progress.Task;
+import com.intellij.openapi.project.DumbService;
+import com.intellij.openapi.project.Project;
+import com.intellij.openapi.ui.Messages;
+import com.intellij.openapi.ui.popup.JBPopupFactory;
+import com.intellij.openapi.ui.popup.PopupStep;
+import com.intellij.openapi.ui.popup.util.BaseListPopupStep;
+import com.intellij.openapi.vcs.VcsException;
+import com.intellij.openapi.vfs.LocalFileSystem;
+import com.intellij.openapi.vfs.VirtualFile;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * 增量扫描: 只扫描相对 baseRef 有变更的文件，只展示与变更行相交的问题
+ */
+public class ScanChangedCodeAction extends AnAction {
+
+    private static final String DEFAULT_BASE_REF = "HEAD";
+
+    @Override
+    public void update(@NotNull AnActionEvent e) {
+        e.getPresentation().setEnabled(e.getProject() != null);
+    }
+
+    @Override
+    public void actionPerformed(@NotNull AnActionEvent e) {
+        Project project = e.getProject();
+        if (project == null) {
+            return ;
+        }
+        String baseRef = Messages.showInputDialog(project,
+                InspectionBundle.message("scan.changed.code.base.ref"),
+                InspectionBundle.message("scan.changed.code.title"),
+                null, DEFAULT_BASE_REF, null);
+        if (baseRef == null || baseRef.trim().isEmpty()) {
+            return ;
+        }
+        // 变更行来自磁盘上的 diff，扫描前先落盘，保证问题行号与 diff 一致
+        FileDocumentManager.getInstance().saveAllDocuments();
+
+        new Task.Backgroundable(project, InspectionBundle.message("scan.changed.code.title"), true) {
+            private List<ScanProblem> problems = Collections.emptyList();
+            private String error;
+
+            @Override
+            public void run(@NotNull ProgressIndicator indicator) {
+                try {
+                    ChangedLines changedLines = ChangedLines.collect(project, baseRef.trim());
+                    DumbService.getInstance(project).waitForSmartMode();
+                    problems = new MomoSecScanner(project).scan(new ArrayList<>(changedLines.getFiles()), indicator, changedLines);
+                } catch (VcsException ex) {
+                    error = ex.getMessage();
+                }
+            }
+
+            @Override
+            public void onSuccess() {
+                if (error != null) {
+                    Messages.showErrorDialog(project, error, InspectionBundle.message("scan.changed.code.title"));
+                } else if (problems.isEmpty()) {
+                    Messages.showInfoMessage(project, InspectionBundle.message("scan.changed.code.no.problem"),
+                            InspectionBundle.message("scan.changed.code.title"));
+                } else {
+                    showProblems(project, problems);
+                }
+            }
+        }.queue();
+    }
+
+    private static void showProblems(@NotNull Project project, @NotNull List<ScanProblem> problems) {
+        BaseListPopupStep<ScanProblem> step = new BaseListPopupStep<ScanProblem>(
+                InspectionBundle.message("scan.changed.code.result", problems.size()), problems) {
+            @NotNull
+            @Override
+            public String getTextFor(ScanProblem problem) {
+                return problem.getFile() + ":" + problem.getLine() + "  " + problem.getMessage();
+            }
+
+            @Override
+            public PopupStep onChosen(ScanProblem problem, boolean finalChoice) {
+                VirtualFile file = findFile(project, problem);
+                if (file != null) {
+                    new OpenFileDescriptor(project, file, problem.getStartOffset()).navigate(true);
+                }
+                return FINAL_CHOICE;
+            }
+        };
+        JBPopupFactory.getInstance().createListPopup(step).showCenteredInCurrentWindow(project);
+    }
+
+    @Nullable
+    private static VirtualFile findFile(@NotNull Project project, @NotNull ScanProblem problem) {
+        VirtualFile baseDir = project.getBaseDir();
+        VirtualFile file = baseDir == null ? null : baseDir.findFileByRelativePath(problem.getFile());
+        return file != null ? file : LocalFileSystem.getInstance().findFileByPath(problem.getFile());
+    }
+}
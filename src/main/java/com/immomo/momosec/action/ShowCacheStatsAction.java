@@ -0,0 +1,44 @@
+/*
+ * Copyright 2020 momosecurity.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.immomo.momosec.action;
+
+import com.immomo.momosec.lang.InspectionBundle;
+import com.immomo.momosec.utils.CacheStats;
+import com.intellij.openapi.actionSystem.AnAction;
+import com.intellij.openapi.actionSystem.AnActionEvent;
+import com.intellij.openapi.project.DumbAware;
+import com.intellij.openapi.ui.Messages;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.List;
+
+/**
+ * 调试用: 查看插件内各缓存的命中情况，查看后计数清零
+ */
+public class ShowCacheStatsAction extends AnAction implements DumbAware {
+
+    @Override
+    public void actionPerformed(@NotNull AnActionEvent e) {
+        List<CacheStats.Counter> counters = CacheStats.all();
+        StringBuilder sb = new StringBuilder();
+        for (CacheStats.Counter counter : counters) {
+            sb.append(counter).append('\n');
+        }
+        String content = counters.isEmpty() ? InspectionBundle.message("cache.stats.empty") : sb.toString();
+        Messages.showInfoMessage(e.getProject(), content, InspectionBundle.message("cache.stats.title"));
+        CacheStats.resetAll();
+    }
+}
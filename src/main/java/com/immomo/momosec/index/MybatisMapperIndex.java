@@ -0,0 +1,458 @@
+/*
+ * Copyright 2020 momosecurity.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.immomo.momosec.index;
+
+import com.immomo.momosec.utils.SQLi;
+import com.intellij.ide.highlighter.XmlFileType;
+import com.intellij.openapi.project.DumbService;
+import com.intellij.openapi.project.Project;
+import com.intellij.openapi.roots.ProjectFileIndex;
+import com.intellij.openapi.util.Ref;
+import com.intellij.openapi.util.text.StringUtil;
+import com.intellij.openapi.vfs.VirtualFile;
+import com.intellij.openapi.vfs.VirtualFileWithId;
+import com.intellij.psi.PsiFile;
+import com.intellij.psi.XmlRecursiveElementWalkingVisitor;
+import com.intellij.psi.search.GlobalSearchScope;
+import com.intellij.psi.xml.*;
+import com.intellij.util.indexing.*;
+import com.intellij.util.io.DataExternalizer;
+import com.intellij.util.io.DataInputOutputUtil;
+import com.intellij.util.io.EnumeratorStringDescriptor;
+import com.intellij.util.io.IOUtil;
+import com.intellij.util.io.KeyDescriptor;
+import com.intellij.xml.util.XmlUtil;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.*;
+import java.util.regex.Matcher;
+
+/**
+ * MyBatis mapper 文件摘要: namespace、语句 id 以及全部 ${} 拼接点
+ *
+ * 每个拼接点记录变量名、所在语句 id、位置，以及拼接点之前对判断有影响的尾部 (见 SQLi.joinContextStart)
+ * 和之后的第一个非空白字符，MybatisXmlSQLi 据此判断，不再对每个 XmlText 重新解析 DTD、截取整段文本。
+ * 批量扫描也可以直接从索引列出项目内全部拼接点，不需要解析 PSI。
+ *
+ * 平台 2018.3 尚无按文件取值的接口，以文件名为键，按文件查询时再以 fileScope 限定，
+ * 只需读取同名 mapper 文件的值，不必随项目内 mapper 文件的数量增长。
+ * 修改索引内容或格式后需要升级 VERSION。
+ */
+public class MybatisMapperIndex extends FileBasedIndexExtension<String, MybatisMapperIndex.Mapper> {
+
+    public static final ID<String, Mapper> NAME = ID.create("momosec.mybatis.mapper");
+
+    private static final int VERSION = 2;
+
+    private static final Set<String> STATEMENT_TAGS = new HashSet<>(Arrays.asList("select", "insert", "update", "delete"));
+
+    /**
+     * 一个 ${} 拼接点
+     */
+    public static final class Site {
+        private final String statementId;
+        private final String var;
+        private final int textOffset;
+        private final int textHash;
+        private final int valueOffset;
+        private final String prefix;
+        private final String suffix;
+
+        private Site(@NotNull String statementId, @NotNull String var, int textOffset, int textHash, int valueOffset,
+                     @NotNull String prefix, @NotNull String suffix) {
+            this.statementId = statementId;
+            this.var = var;
+            this.textOffset = textOffset;
+            this.textHash = textHash;
+            this.valueOffset = valueOffset;
+            this.prefix = prefix;
+            this.suffix = suffix;
+        }
+
+        /**
+         * @return String 所在 select / insert / update / delete / sql 的 id，不在其中时为空串
+         */
+        @NotNull
+        public String getStatementId() {
+            return statementId;
+        }
+
+        @NotNull
+        public String getVar() {
+            return var;
+        }
+
+        /**
+         * @return int 所在 XmlText 在文件中的起始位置
+         */
+        public int getTextOffset() {
+            return textOffset;
+        }
+
+        /**
+         * @return int ${ 在 XmlText.getValue() 中的位置
+         */
+        public int getValueOffset() {
+            return valueOffset;
+        }
+
+        /**
+         * @return String 拼接点之前对判断有影响的尾部，可代替完整前缀传给 SQLi.hasVulOnSQLJoinStr
+         */
+        @NotNull
+        public String getPrefix() {
+            return prefix;
+        }
+
+        /**
+         * @return String 拼接点之后的第一个非空白字符，不存在时为空串
+         */
+        @NotNull
+        public String getSuffix() {
+            return suffix;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof Site)) {
+                return false;
+            }
+            Site other = (Site) o;
+            return textOffset == other.textOffset && textHash == other.textHash && valueOffset == other.valueOffset &&
+                   statementId.equals(other.statementId) && var.equals(other.var) &&
+                   prefix.equals(other.prefix) && suffix.equals(other.suffix);
+        }
+
+        @Override
+        public int hashCode() {
+            return (textOffset * 31 + valueOffset) * 31 + var.hashCode();
+        }
+
+        @Override
+        public String toString() {
+            return statementId + " ${" + var + "}";
+        }
+    }
+
+    /**
+     * 一个 mapper 文件的摘要
+     */
+    public static final class Mapper {
+        private final String namespace;
+        private final List<String> statementIds;
+        private final List<Site> sites;
+        // XmlText 起始位置 -> 其中的拼接点
+        private final Map<Integer, List<Site>> sitesByText = new HashMap<>();
+
+        private Mapper(@NotNull String namespace, @NotNull List<String> statementIds, @NotNull List<Site> sites) {
+            this.namespace = namespace;
+            this.statementIds = Collections.unmodifiableList(statementIds);
+            this.sites = Collections.unmodifiableList(sites);
+            for (Site site : sites) {
+                sitesByText.computeIfAbsent(site.textOffset, k -> new ArrayList<>(1)).add(site);
+            }
+        }
+
+        @NotNull
+        public String getNamespace() {
+            return namespace;
+        }
+
+        /**
+         * @return List<String> select / insert / update / delete 的 id
+         */
+        @NotNull
+        public List<String> getStatementIds() {
+            return statementIds;
+        }
+
+        @NotNull
+        public List<Site> getSites() {
+            return sites;
+        }
+
+        /**
+         * text 中的拼接点
+         * 索引与当前文本不一致 (如文件修改后尚未重新索引) 时直接从 text 重新计算
+         * @param text XmlText
+         * @return List<Site>
+         */
+        @NotNull
+        public List<Site> getSites(@NotNull XmlText text) {
+            String value = text.getValue();
+            if (!value.contains(SinkTokenIndex.DOLLAR_BRACE)) {
+                return Collections.emptyList();
+            }
+            List<Site> indexed = sitesByText.get(text.getTextRange().getStartOffset());
+            if (indexed != null && indexed.get(0).textHash == value.hashCode()) {
+                return indexed;
+            }
+            return collectSites(text);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof Mapper)) {
+                return false;
+            }
+            Mapper other = (Mapper) o;
+            return namespace.equals(other.namespace) && statementIds.equals(other.statementIds) && sites.equals(other.sites);
+        }
+
+        @Override
+        public int hashCode() {
+            return (namespace.hashCode() * 31 + statementIds.hashCode()) * 31 + sites.hashCode();
+        }
+    }
+
+    @NotNull
+    @Override
+    public ID<String, Mapper> getName() {
+        return NAME;
+    }
+
+    @NotNull
+    @Override
+    public DataIndexer<String, Mapper, FileContent> getIndexer() {
+        return inputData -> {
+            // 先按文本过滤，大部分 XML 不需要解析 PSI
+            if (!StringUtil.contains(inputData.getContentAsText(), "mybatis.org")) {
+                return Collections.emptyMap();
+            }
+            PsiFile file = inputData.getPsiFile();
+            if (!(file instanceof XmlFile) || !isMapperFile((XmlFile) file)) {
+                return Collections.emptyMap();
+            }
+            return Collections.singletonMap(inputData.getFile().getName(), compute((XmlFile) file));
+        };
+    }
+
+    @NotNull
+    @Override
+    public KeyDescriptor<String> getKeyDescriptor() {
+        return EnumeratorStringDescriptor.INSTANCE;
+    }
+
+    @NotNull
+    @Override
+    public DataExternalizer<Mapper> getValueExternalizer() {
+        return new DataExternalizer<Mapper>() {
+            @Override
+            public void save(@NotNull DataOutput out, Mapper value) throws IOException {
+                IOUtil.writeUTF(out, value.namespace);
+                DataInputOutputUtil.writeINT(out, value.statementIds.size());
+                for (String id : value.statementIds) {
+                    IOUtil.writeUTF(out, id);
+                }
+                DataInputOutputUtil.writeINT(out, value.sites.size());
+                for (Site site : value.sites) {
+                    IOUtil.writeUTF(out, site.statementId);
+                    IOUtil.writeUTF(out, site.var);
+                    DataInputOutputUtil.writeINT(out, site.textOffset);
+                    out.writeInt(site.textHash);
+                    DataInputOutputUtil.writeINT(out, site.valueOffset);
+                    IOUtil.writeUTF(out, site.prefix);
+                    IOUtil.writeUTF(out, site.suffix);
+                }
+            }
+
+            @Override
+            public Mapper read(@NotNull DataInput in) throws IOException {
+                String namespace = IOUtil.readUTF(in);
+                int idCount = DataInputOutputUtil.readINT(in);
+                List<String> statementIds = new ArrayList<>(idCount);
+                for (int i = 0; i < idCount; i++) {
+                    statementIds.add(IOUtil.readUTF(in));
+                }
+                int siteCount = DataInputOutputUtil.readINT(in);
+                List<Site> sites = new ArrayList<>(siteCount);
+                for (int i = 0; i < siteCount; i++) {
+                    sites.add(new Site(IOUtil.readUTF(in), IOUtil.readUTF(in), DataInputOutputUtil.readINT(in), in.readInt(),
+                            DataInputOutputUtil.readINT(in), IOUtil.readUTF(in), IOUtil.readUTF(in)));
+                }
+                return new Mapper(namespace, statementIds, sites);
+            }
+        };
+    }
+
+    @Override
+    public int getVersion() {
+        return VERSION;
+    }
+
+    @NotNull
+    @Override
+    public FileBasedIndex.InputFilter getInputFilter() {
+        return new DefaultFileTypeSpecificInputFilter(XmlFileType.INSTANCE);
+    }
+
+    @Override
+    public boolean dependsOnFileContent() {
+        return true;
+    }
+
+    /**
+     * 文件的 mapper 摘要
+     * 无法通过索引获取时 (dumb mode / 非项目内文件) 直接从 PSI 计算
+     * @param file PsiFile
+     * @return Mapper | null 不是 MyBatis mapper 文件
+     */
+    @Nullable
+    public static Mapper getMapper(@NotNull PsiFile file) {
+        if (!(file instanceof XmlFile)) {
+            return null;
+        }
+
+        Project project = file.getProject();
+        VirtualFile virtualFile = file.getVirtualFile();
+        if (!(virtualFile instanceof VirtualFileWithId) ||
+            DumbService.isDumb(project) ||
+            !ProjectFileIndex.getInstance(project).isInContent(virtualFile)
+        ) {
+            return isMapperFile((XmlFile) file) ? compute((XmlFile) file) : null;
+        }
+
+        Ref<Mapper> mapper = Ref.create();
+        FileBasedIndex.getInstance().processValues(NAME, virtualFile.getName(), virtualFile, (f, value) -> {
+            mapper.set(value);
+            return false;
+        }, GlobalSearchScope.fileScope(file));
+        return mapper.get();
+    }
+
+    /**
+     * 遍历项目内全部 mapper 文件的摘要，需在 read action 中调用
+     * @param project Project
+     * @param processor FileBasedIndex.ValueProcessor 返回 false 时停止
+     */
+    public static void processAllMappers(@NotNull Project project, @NotNull FileBasedIndex.ValueProcessor<Mapper> processor) {
+        FileBasedIndex index = FileBasedIndex.getInstance();
+        GlobalSearchScope scope = GlobalSearchScope.projectScope(project);
+        // getAllKeys 可能含有已失效的键，其值为空，不影响结果
+        for (String fileName : index.getAllKeys(NAME, project)) {
+            if (!index.processValues(NAME, fileName, null, processor, scope)) {
+                return;
+            }
+        }
+    }
+
+    /**
+     * 是否为 MyBatis mapper 文件 (DTD 为 mybatis.org 的 mapper.dtd)
+     * @param file XmlFile
+     * @return boolean
+     */
+    public static boolean isMapperFile(@NotNull XmlFile file) {
+        XmlDocument document = file.getDocument();
+        if (document == null) {
+            return false;
+        }
+        String dtd = XmlUtil.getDtdUri(document);
+        return dtd != null && dtd.contains("mybatis.org") && dtd.contains("mapper.dtd");
+    }
+
+    /**
+     * text 中的 ${} 拼接点，直接位于 sql、mapper 标签下的文本不计入
+     * @param text XmlText
+     * @return List<Site>
+     */
+    @NotNull
+    public static List<Site> collectSites(@NotNull XmlText text) {
+        XmlTag parentTag = text.getParentTag();
+        if (parentTag != null && ("sql".equals(parentTag.getName()) || "mapper".equals(parentTag.getName()))) {
+            return Collections.emptyList();
+        }
+        String value = text.getValue();
+        if (value.isEmpty() || !value.contains(SinkTokenIndex.DOLLAR_BRACE)) {
+            return Collections.emptyList();
+        }
+
+        String statementId = getStatementId(parentTag);
+        int textOffset = text.getTextRange().getStartOffset();
+        List<Site> sites = new ArrayList<>(1);
+        Matcher m = SQLi.dollarVarPattern.matcher(value);
+        int offset = 0;
+        while (m.find(offset)) {
+            String prefix = value.substring(SQLi.joinContextStart(value, m.start()), m.start());
+            sites.add(new Site(statementId, m.group(1), textOffset, value.hashCode(), m.start(), prefix,
+                    firstNonBlank(value, m.end())));
+            offset = m.end();
+        }
+        return sites;
+    }
+
+    @NotNull
+    private static Mapper compute(@NotNull XmlFile file) {
+        XmlTag rootTag = file.getRootTag();
+        String namespace = rootTag != null ? rootTag.getAttributeValue("namespace") : null;
+        List<String> statementIds = new ArrayList<>();
+        List<Site> sites = new ArrayList<>();
+        file.accept(new XmlRecursiveElementWalkingVisitor() {
+            @Override
+            public void visitXmlTag(XmlTag tag) {
+                if (STATEMENT_TAGS.contains(tag.getName())) {
+                    String id = tag.getAttributeValue("id");
+                    if (id != null) {
+                        statementIds.add(id);
+                    }
+                }
+                super.visitXmlTag(tag);
+            }
+
+            @Override
+            public void visitXmlText(XmlText text) {
+                sites.addAll(collectSites(text));
+            }
+        });
+        return new Mapper(namespace != null ? namespace : "", statementIds, sites);
+    }
+
+    /**
+     * @return String 最近一层 select / insert / update / delete / sql 的 id
+     */
+    @NotNull
+    private static String getStatementId(@Nullable XmlTag tag) {
+        for (; tag != null; tag = tag.getParentTag()) {
+            if (STATEMENT_TAGS.contains(tag.getName()) || "sql".equals(tag.getName())) {
+                String id = tag.getAttributeValue("id");
+                return id != null ? id : "";
+            }
+        }
+        return "";
+    }
+
+    /**
+     * 与 String.trim() 一致，跳过 <= ' ' 的字符
+     */
+    @NotNull
+    private static String firstNonBlank(@NotNull String value, int from) {
+        for (int i = from; i < value.length(); i++) {
+            if (value.charAt(i) > ' ') {
+                return String.valueOf(value.charAt(i));
+            }
+        }
+        return "";
+    }
+}
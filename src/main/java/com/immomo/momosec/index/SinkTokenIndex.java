@@ -0,0 +1,168 @@
+/*
+ * Copyright 2020 momosecurity.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.immomo.momosec.index;
+
+import com.intellij.ide.highlighter.JavaFileType;
+import com.intellij.ide.highlighter.XmlFileType;
+import com.intellij.openapi.project.DumbService;
+import com.intellij.openapi.project.Project;
+import com.intellij.openapi.roots.ProjectFileIndex;
+import com.intellij.openapi.vfs.VirtualFile;
+import com.intellij.openapi.vfs.VirtualFileWithId;
+import com.intellij.psi.PsiFile;
+import com.intellij.psi.search.GlobalSearchScope;
+import com.intellij.util.indexing.*;
+import com.intellij.util.io.EnumeratorStringDescriptor;
+import com.intellij.util.io.KeyDescriptor;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.*;
+
+/**
+ * 记录每个 Java / XML 文件中出现了哪些 sink 标识符
+ *
+ * 规则通过 getTriggerTokens 声明触发词，文件中一个触发词都不包含时，该规则直接返回空 visitor。
+ * 只索引 TOKENS 中的词，修改 TOKENS 后需要同时升级 VERSION。
+ */
+public class SinkTokenIndex extends ScalarIndexExtension<String> {
+
+    public static final ID<String, Void> NAME = ID.create("momosec.sink.tokens");
+
+    private static final int VERSION = 2;
+
+    // MyBatis ${} 拼接
+    public static final String DOLLAR_BRACE = "${";
+
+    private static final Set<String> TOKENS = new HashSet<>(Arrays.asList(
+            DOLLAR_BRACE,
+            // 方法调用 sink 的方法名
+            "addAllowedOrigin", "addHeader", "addMapping", "applyPermitDefaultValues", "compile", "createXMLReader",
+            "enableDefaultTyping", "eval", "exec", "format", "getDigest", "getInstance", "getRuntime", "matches",
+            "newFactory", "newInstance", "newValidator", "none", "replaceAll", "replaceFirst", "setAutoTypeSupport",
+            "setHeader", "setIgnoreComments", "setReturningObjFlag", "setSeed", "split",
+            // 构造 sink 及注解的类短名
+            "CrossOrigin", "DefaultHttpHeaders", "DefaultHttpResponse", "DigestUtils", "EnableWebSecurity",
+            "JsonTypeInfo", "ProcessBuilder", "Random", "SAXBuilder", "SAXReader", "SearchControls", "SecureRandom",
+            "XMLDecoder", "XStream",
+            "Select", "Delete", "Update", "Insert",
+            "RequestMapping", "GetMapping", "PostMapping", "PutMapping", "DeleteMapping", "PatchMapping"
+    ));
+
+    // 词长度过滤，避免对每个标识符都创建字符串
+    private static final BitSet TOKEN_LENGTHS = new BitSet();
+    static {
+        for (String token : TOKENS) {
+            TOKEN_LENGTHS.set(token.length());
+        }
+    }
+
+    @NotNull
+    @Override
+    public ID<String, Void> getName() {
+        return NAME;
+    }
+
+    @NotNull
+    @Override
+    public DataIndexer<String, Void, FileContent> getIndexer() {
+        return inputData -> {
+            CharSequence text = inputData.getContentAsText();
+            Map<String, Void> result = new HashMap<>();
+            int len = text.length();
+            int i = 0;
+            while (i < len) {
+                char c = text.charAt(i);
+                if (c == '$' && i + 1 < len && text.charAt(i + 1) == '{') {
+                    result.put(DOLLAR_BRACE, null);
+                    i += 2;
+                } else if (Character.isJavaIdentifierStart(c)) {
+                    int start = i++;
+                    while (i < len && Character.isJavaIdentifierPart(text.charAt(i))) {
+                        i++;
+                    }
+                    if (TOKEN_LENGTHS.get(i - start)) {
+                        String token = text.subSequence(start, i).toString();
+                        if (TOKENS.contains(token)) {
+                            result.put(token, null);
+                        }
+                    }
+                } else {
+                    i++;
+                }
+            }
+            return result;
+        };
+    }
+
+    @NotNull
+    @Override
+    public KeyDescriptor<String> getKeyDescriptor() {
+        return EnumeratorStringDescriptor.INSTANCE;
+    }
+
+    @Override
+    public int getVersion() {
+        return VERSION;
+    }
+
+    @NotNull
+    @Override
+    public FileBasedIndex.InputFilter getInputFilter() {
+        return new DefaultFileTypeSpecificInputFilter(JavaFileType.INSTANCE, XmlFileType.INSTANCE);
+    }
+
+    @Override
+    public boolean dependsOnFileContent() {
+        return true;
+    }
+
+    /**
+     * 文件是否可能包含任一触发词
+     * 无法通过索引确定时 (未声明触发词 / 触发词未被索引 / dumb mode / 非项目内文件) 一律返回 true
+     * @param file PsiFile
+     * @param tokens String[] | null
+     * @return boolean
+     */
+    public static boolean mayContainAny(@NotNull PsiFile file, @Nullable String[] tokens) {
+        if (tokens == null || tokens.length == 0) {
+            return true;
+        }
+        for (String token : tokens) {
+            if (!TOKENS.contains(token)) {
+                return true;
+            }
+        }
+
+        Project project = file.getProject();
+        VirtualFile virtualFile = file.getVirtualFile();
+        if (!(virtualFile instanceof VirtualFileWithId) ||
+            DumbService.isDumb(project) ||
+            !ProjectFileIndex.getInstance(project).isInContent(virtualFile)
+        ) {
+            return true;
+        }
+
+        GlobalSearchScope scope = GlobalSearchScope.fileScope(file);
+        FileBasedIndex index = FileBasedIndex.getInstance();
+        for (String token : tokens) {
+            if (!index.getContainingFiles(NAME, token, scope).isEmpty()) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
@@ -15,8 +15,12 @@
  */
 package com.immomo.momosec.lang;
 
+import com.immomo.momosec.VulnSignWhiteListService;
+import com.immomo.momosec.index.SinkTokenIndex;
 import com.immomo.momosec.lang.java.utils.MoExpressionUtils;
 import com.intellij.codeInspection.AbstractBaseJavaLocalInspectionTool;
+import com.intellij.codeInspection.LocalInspectionToolSession;
+import com.intellij.codeInspection.ProblemsHolder;
 import com.intellij.psi.*;
 import org.apache.commons.codec.digest.MurmurHash3;
 import org.jetbrains.annotations.NotNull;
@@ -30,6 +34,44 @@ public abstract class MomoBaseLocalInspectionTool extends AbstractBaseJavaLocalI
         CLASS_FIELD
     }
 
+    /**
+     * 规则通过 registerHandlers 声明关心的节点类型，由 MomoRuleDispatcher 在每个节点上按类型分发
+     * 未注册任何处理函数的子类 (或直接重写 buildVisitor 的子类) 不受影响
+     */
+    @NotNull
+    @Override
+    public PsiElementVisitor buildVisitor(@NotNull ProblemsHolder holder, boolean isOnTheFly) {
+        MomoRuleDispatcher.HandlerTable table = new MomoRuleDispatcher.HandlerTable();
+        registerHandlers(table, holder, isOnTheFly);
+        return MomoRuleDispatcher.buildVisitor(table);
+    }
+
+    protected void registerHandlers(@NotNull MomoRuleDispatcher.HandlerTable table, @NotNull ProblemsHolder holder, boolean isOnTheFly) {
+    }
+
+    /**
+     * 文件中不包含任何触发词时 (见 SinkTokenIndex)，该规则不可能命中，直接返回空 visitor
+     * 注册到 holder 的问题先经过签名白名单过滤 (见 VulnSignWhiteListService)
+     */
+    @NotNull
+    @Override
+    public PsiElementVisitor buildVisitor(@NotNull ProblemsHolder holder, boolean isOnTheFly, @NotNull LocalInspectionToolSession session) {
+        if (!SinkTokenIndex.mayContainAny(session.getFile(), getTriggerTokens())) {
+            return PsiElementVisitor.EMPTY_VISITOR;
+        }
+        return buildVisitor(VulnSignWhiteListService.getInstance().wrap(holder), isOnTheFly);
+    }
+
+    /**
+     * 规则的触发词，通常是 sink 的方法名 / 类短名 / 注解短名，文件中至少出现其一时规则才会执行
+     * 返回 null 表示不做过滤
+     * @return String[] | null
+     */
+    @Nullable
+    protected String[] getTriggerTokens() {
+        return null;
+    }
+
     /**
      * 本方法针对可利用安全设置修复的漏洞，例如：
      * DocumentBuilderFactory dbf = DocumentBuilderFactory.newInstance();
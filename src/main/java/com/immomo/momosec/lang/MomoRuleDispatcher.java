@@ -0,0 +1,217 @@
+/*
+ * Copyright 2020 momosecurity.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.immomo.momosec.lang;
+
+import com.immomo.momosec.lang.java.utils.MoResolveCache;
+import com.immomo.momosec.utils.CacheStats;
+import com.intellij.openapi.util.Key;
+import com.intellij.openapi.util.text.StringUtil;
+import com.intellij.psi.*;
+import com.intellij.psi.util.CachedValue;
+import com.intellij.psi.util.CachedValueProvider;
+import com.intellij.psi.util.CachedValuesManager;
+import com.intellij.psi.util.PsiModificationTracker;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 按节点类型的规则分发器
+ *
+ * 各规则通过 HandlerTable 声明关心的节点类型，visitor 在每个节点上按 节点类 -> 处理函数 查表分发，
+ * 不关心的节点只有一次哈希查找，问题仍报告到各自的 ProblemsHolder。
+ * 分发在每个节点上进行 (而不是在文件节点上一次处理全部)，LocalInspectionsPass 可以先分析可见区域并增量高亮。
+ *
+ * 对于 "某个类的某个方法 / 某个类的构造" 这类 sink，规则可通过 onCall / onNew 声明，
+ * 分发时先按方法短名 (或类短名) 做一次哈希查找，不命中的调用不做任何 resolve；
+ * 命中的调用只 resolve 一次，结果在本轮分析的所有规则间共享。
+ */
+public class MomoRuleDispatcher {
+
+    private static final Key<CachedValue<Map<PsiElement, String>>> OWNER_TABLE_KEY = Key.create("momosec.dispatcher.owner.table");
+
+    // ConcurrentHashMap 不能存 null，resolve 失败时以空串占位
+    private static final String UNRESOLVED = "";
+
+    private static final CacheStats.Counter OWNER_STATS = CacheStats.counter("dispatcher.owner");
+
+    public interface Handler<T extends PsiElement> {
+        void handle(@NotNull T element);
+    }
+
+    /**
+     * 节点类型 -> 处理函数 的分发表，每个规则在 buildVisitor 时填充一份
+     */
+    public static class HandlerTable {
+        private final Map<Class<? extends PsiElement>, List<Handler<PsiElement>>> handlers = new LinkedHashMap<>();
+        private final Map<String, List<Sink<PsiMethodCallExpression>>> callSinks = new HashMap<>();
+        private final Map<String, List<Sink<PsiNewExpression>>> newSinks = new HashMap<>();
+        // 节点的具体类 -> 适用的处理函数，由 handlers 按 isAssignableFrom 展开
+        private final Map<Class<?>, List<Handler<PsiElement>>> handlersByClass = new ConcurrentHashMap<>();
+
+        @SuppressWarnings("unchecked")
+        public <T extends PsiElement> HandlerTable on(@NotNull Class<T> nodeType, @NotNull Handler<? super T> handler) {
+            handlers.computeIfAbsent(nodeType, k -> new ArrayList<>()).add((Handler<PsiElement>) handler);
+            handlersByClass.clear();
+            return this;
+        }
+
+        /**
+         * 声明方法调用 sink: qualifiedName 类的 methodName 方法
+         * @param qualifiedName String 方法所属类的全限定名
+         * @param methodName String 方法名
+         * @param handler Handler
+         * @return HandlerTable
+         */
+        public HandlerTable onCall(@NotNull String qualifiedName, @NotNull String methodName,
+                                   @NotNull Handler<? super PsiMethodCallExpression> handler) {
+            callSinks.computeIfAbsent(methodName, k -> new ArrayList<>()).add(new Sink<>(qualifiedName, handler));
+            return this;
+        }
+
+        /**
+         * 声明构造 sink: new qualifiedName(...)
+         * @param qualifiedName String 类的全限定名
+         * @param handler Handler
+         * @return HandlerTable
+         */
+        public HandlerTable onNew(@NotNull String qualifiedName, @NotNull Handler<? super PsiNewExpression> handler) {
+            newSinks.computeIfAbsent(StringUtil.getShortName(qualifiedName), k -> new ArrayList<>()).add(new Sink<>(qualifiedName, handler));
+            return this;
+        }
+
+        public boolean isEmpty() {
+            return handlers.isEmpty() && callSinks.isEmpty() && newSinks.isEmpty();
+        }
+
+        @NotNull
+        private List<Handler<PsiElement>> getHandlers(@NotNull Class<?> elementClass) {
+            return handlersByClass.computeIfAbsent(elementClass, type -> {
+                List<Handler<PsiElement>> result = new ArrayList<>();
+                for (Map.Entry<Class<? extends PsiElement>, List<Handler<PsiElement>>> entry : handlers.entrySet()) {
+                    if (entry.getKey().isAssignableFrom(type)) {
+                        result.addAll(entry.getValue());
+                    }
+                }
+                return result.isEmpty() ? Collections.emptyList() : result;
+            });
+        }
+    }
+
+    private static class Sink<T extends PsiElement> {
+        private final String qualifiedName;
+        private final Handler<? super T> handler;
+
+        Sink(@NotNull String qualifiedName, @NotNull Handler<? super T> handler) {
+            this.qualifiedName = qualifiedName;
+            this.handler = handler;
+        }
+    }
+
+    /**
+     * 根据分发表生成 visitor，在每个节点上按类型分发
+     * @param table HandlerTable
+     * @return PsiElementVisitor
+     */
+    @NotNull
+    public static PsiElementVisitor buildVisitor(@NotNull HandlerTable table) {
+        if (table.isEmpty()) {
+            return PsiElementVisitor.EMPTY_VISITOR;
+        }
+        return new PsiElementVisitor() {
+            @Override
+            public void visitElement(PsiElement element) {
+                dispatch(element, table);
+            }
+        };
+    }
+
+    public static void dispatch(@NotNull PsiElement element, @NotNull HandlerTable table) {
+        for (Handler<PsiElement> handler : table.getHandlers(element.getClass())) {
+            handler.handle(element);
+        }
+
+        if (!table.callSinks.isEmpty() && element instanceof PsiMethodCallExpression) {
+            PsiMethodCallExpression call = (PsiMethodCallExpression) element;
+            List<Sink<PsiMethodCallExpression>> sinks = table.callSinks.get(call.getMethodExpression().getReferenceName());
+            if (sinks != null) {
+                String owner = getOwner(call);
+                for (Sink<PsiMethodCallExpression> sink : sinks) {
+                    if (sink.qualifiedName.equals(owner)) {
+                        sink.handler.handle(call);
+                    }
+                }
+            }
+        }
+
+        if (!table.newSinks.isEmpty() && element instanceof PsiNewExpression) {
+            PsiNewExpression newExpression = (PsiNewExpression) element;
+            PsiJavaCodeReferenceElement classReference = newExpression.getClassReference();
+            List<Sink<PsiNewExpression>> sinks = classReference != null ? table.newSinks.get(classReference.getReferenceName()) : null;
+            if (sinks != null) {
+                String owner = getOwner(newExpression);
+                for (Sink<PsiNewExpression> sink : sinks) {
+                    if (sink.qualifiedName.equals(owner)) {
+                        sink.handler.handle(newExpression);
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * 调用 / 构造表达式 -> 所属类全限定名
+     * resolve 结果依赖其他文件，因此跟随全局 PSI 修改计数失效，而不是只跟随当前文件
+     */
+    @NotNull
+    private static Map<PsiElement, String> getOwnerTable(@NotNull PsiFile file) {
+        return CachedValuesManager.getCachedValue(file, OWNER_TABLE_KEY,
+                () -> CachedValueProvider.Result.create(new ConcurrentHashMap<PsiElement, String>(), PsiModificationTracker.MODIFICATION_COUNT));
+    }
+
+    @NotNull
+    private static String getOwner(@NotNull PsiElement element) {
+        PsiFile file = element.getContainingFile();
+        if (file == null) {
+            return resolveOwner(element);
+        }
+        Map<PsiElement, String> owners = getOwnerTable(file);
+        String owner = owners.get(element);
+        if (owner != null) {
+            OWNER_STATS.hit();
+        } else {
+            OWNER_STATS.miss();
+            owner = resolveOwner(element);
+            owners.putIfAbsent(element, owner);
+        }
+        return owner;
+    }
+
+    @NotNull
+    private static String resolveOwner(@NotNull PsiElement element) {
+        String qualifiedName = null;
+        if (element instanceof PsiMethodCallExpression) {
+            PsiMethod method = MoResolveCache.resolveMethod((PsiMethodCallExpression) element);
+            PsiClass containingClass = method != null ? method.getContainingClass() : null;
+            qualifiedName = containingClass != null ? containingClass.getQualifiedName() : null;
+        } else if (element instanceof PsiNewExpression) {
+            PsiJavaCodeReferenceElement classReference = ((PsiNewExpression) element).getClassReference();
+            qualifiedName = classReference != null ? classReference.getQualifiedName() : null;
+        }
+        return qualifiedName != null ? qualifiedName : UNRESOLVED;
+    }
+}
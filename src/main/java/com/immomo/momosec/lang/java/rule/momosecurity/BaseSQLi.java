@@ -23,14 +23,10 @@ import com.intellij.psi.PsiMethodCallExpression;
 import com.intellij.psi.util.PsiTreeUtil;
 import com.siyeh.ig.psiutils.MethodCallUtils;
 
-import java.util.ArrayList;
 import java.util.List;
-import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
 public abstract class BaseSQLi extends MomoBaseLocalInspectionTool {
-    private static final Pattern sqlPattern =
-            Pattern.compile("^\\s*(select|delete|update|insert)\\s+.*?(from|into|set)\\s+.*?where.*", Pattern.CASE_INSENSITIVE);
 
     /**
      * 判断指定字符串是否为SQL语句
@@ -38,7 +34,7 @@ public abstract class BaseSQLi extends MomoBaseLocalInspectionTool {
      * @return boolean
      */
     protected boolean isSql(String str) {
-        return sqlPattern.matcher(str).find();
+        return SQLi.isSql(str);
     }
 
     /**
@@ -48,14 +44,7 @@ public abstract class BaseSQLi extends MomoBaseLocalInspectionTool {
      * @return boolean
      */
     protected boolean hasEvalAdditive(String content, Pattern pattern) {
-        Matcher m = pattern.matcher(content);
-        int offset = 0;
-        List<String> prefixes = new ArrayList<>();
-        while(m.find(offset)) {
-            prefixes.add(content.substring(0, m.start()));
-            offset = m.end();
-        }
-        return hasEvalAdditive(prefixes);
+        return SQLi.hasVulOnJoinPoints(content, pattern);
     }
 
     /**
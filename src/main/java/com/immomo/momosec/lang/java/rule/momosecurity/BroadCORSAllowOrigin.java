@@ -17,11 +17,13 @@ package com.immomo.momosec.lang.java.rule.momosecurity;
 
 import com.immomo.momosec.lang.InspectionBundle;
 import com.immomo.momosec.lang.MomoBaseLocalInspectionTool;
+import com.immomo.momosec.lang.MomoRuleDispatcher;
 import com.immomo.momosec.lang.java.utils.MoExpressionUtils;
 import com.intellij.codeInspection.ProblemHighlightType;
 import com.intellij.codeInspection.ProblemsHolder;
 import com.intellij.psi.*;
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 
 /**
  * Momo 1018: 宽泛的 CORS Allowed Origin 设置
@@ -31,9 +33,17 @@ import org.jetbrains.annotations.NotNull;
 public class BroadCORSAllowOrigin extends MomoBaseLocalInspectionTool {
     public static final String MESSAGE = InspectionBundle.message("board.cors.allow.origin.msg");
 
+    private static final String[] TRIGGER_TOKENS = {"CrossOrigin", "setHeader", "addHeader", "addAllowedOrigin", "applyPermitDefaultValues", "addMapping"};
+
+    @Nullable
     @Override
-    public @NotNull PsiElementVisitor buildVisitor(@NotNull ProblemsHolder holder, boolean isOnTheFly) {
-        return new JavaElementVisitor() {
+    protected String[] getTriggerTokens() {
+        return TRIGGER_TOKENS;
+    }
+
+    @Override
+    protected void registerHandlers(@NotNull MomoRuleDispatcher.HandlerTable table, @NotNull ProblemsHolder holder, boolean isOnTheFly) {
+        JavaElementVisitor visitor = new JavaElementVisitor() {
             @Override
             public void visitAnnotation(PsiAnnotation annotation) {
 
@@ -56,79 +66,73 @@ public class BroadCORSAllowOrigin extends MomoBaseLocalInspectionTool {
                     }
                 }
             }
+        };
+        table.on(PsiAnnotation.class, visitor::visitAnnotation);
 
-            @Override
-            public void visitMethodCallExpression(PsiMethodCallExpression expression) {
+        // Java servlet framework
+        MomoRuleDispatcher.Handler<PsiMethodCallExpression> servletHeaderHandler = expression -> {
+            PsiExpressionList expressionList = expression.getArgumentList();
+            PsiExpression[] args = expressionList.getExpressions();
+            if (args.length == 2 &&
+                args[0] instanceof PsiLiteralExpression &&
+                args[1] instanceof PsiLiteralExpression
+            ) {
+                Object arg0 = ((PsiLiteralExpression)args[0]).getValue();
+                Object arg1 = ((PsiLiteralExpression)args[1]).getValue();
+                if (arg0 instanceof String && arg1 instanceof String &&
+                    "access-control-allow-origin".equals(((String) arg0).toLowerCase()) && "*".equals(arg1)
+                ) {
+                    holder.registerProblem(expression, MESSAGE, ProblemHighlightType.GENERIC_ERROR_OR_WARNING);
+                }
+            }
+        };
+        table.onCall("javax.servlet.http.HttpServletResponse", "setHeader", servletHeaderHandler)
+             .onCall("javax.servlet.http.HttpServletResponse", "addHeader", servletHeaderHandler);
 
-                // Java servlet framework
-                if (MoExpressionUtils.hasFullQualifiedName(expression, "javax.servlet.http.HttpServletResponse", "setHeader") ||
-                    MoExpressionUtils.hasFullQualifiedName(expression, "javax.servlet.http.HttpServletResponse", "addHeader")
+        // Spring MVC framework #cors.CorsConfiguration
+        table.onCall("org.springframework.web.cors.CorsConfiguration", "addAllowedOrigin", expression -> {
+            PsiExpressionList expressionList = expression.getArgumentList();
+            PsiExpression[] args = expressionList.getExpressions();
+            if (args.length == 1) {
+                if (args[0] instanceof PsiLiteralExpression &&
+                    "*".equals(((PsiLiteralExpression)args[0]).getValue())
                 ) {
-                    PsiExpressionList expressionList = expression.getArgumentList();
-                    PsiExpression[] args = expressionList.getExpressions();
-                    if (args.length == 2 &&
-                        args[0] instanceof PsiLiteralExpression &&
-                        args[1] instanceof PsiLiteralExpression
-                    ) {
-                        Object arg0 = ((PsiLiteralExpression)args[0]).getValue();
-                        Object arg1 = ((PsiLiteralExpression)args[1]).getValue();
-                        if (arg0 instanceof String && arg1 instanceof String &&
-                            "access-control-allow-origin".equals(((String) arg0).toLowerCase()) && "*".equals(arg1)
-                        ) {
-                            holder.registerProblem(expression, MESSAGE, ProblemHighlightType.GENERIC_ERROR_OR_WARNING);
-                        }
+                    holder.registerProblem(expression, MESSAGE, ProblemHighlightType.GENERIC_ERROR_OR_WARNING);
+                } else if (args[0] instanceof PsiReferenceExpression) {
+                    PsiReferenceExpression refArg = (PsiReferenceExpression)args[0];
+                    if ("CorsConfiguration.ALL".equals(refArg.getQualifiedName())) {
+                        holder.registerProblem(expression, MESSAGE, ProblemHighlightType.GENERIC_ERROR_OR_WARNING);
                     }
                 }
+            }
+        }).onCall("org.springframework.web.cors.CorsConfiguration", "applyPermitDefaultValues",
+                  expression -> holder.registerProblem(expression, MESSAGE, ProblemHighlightType.GENERIC_ERROR_OR_WARNING));
 
-                // Spring MVC framework #cors.CorsConfiguration
-                if (MoExpressionUtils.hasFullQualifiedName(expression, "org.springframework.web.cors.CorsConfiguration", "addAllowedOrigin")) {
-                    PsiExpressionList expressionList = expression.getArgumentList();
+        // Spring MVC framework #web.servlet.config.annotation.CorsRegistration
+        table.onCall("org.springframework.web.servlet.config.annotation.CorsRegistry", "addMapping", expression -> {
+            PsiElement parent = expression;
+            boolean foundAllowedOriginsSetup = false;
+            do {
+                parent = parent.getParent();
+                if (parent instanceof PsiMethodCallExpression &&
+                    MoExpressionUtils.hasFullQualifiedName((PsiMethodCallExpression)parent, "org.springframework.web.servlet.config.annotation.CorsRegistration", "allowedOrigins")
+                ) {
+                    foundAllowedOriginsSetup = true;
+                    PsiExpressionList expressionList = ((PsiMethodCallExpression)parent).getArgumentList();
                     PsiExpression[] args = expressionList.getExpressions();
-                    if (args.length == 1) {
-                        if (args[0] instanceof PsiLiteralExpression &&
-                            "*".equals(((PsiLiteralExpression)args[0]).getValue())
-                        ) {
-                            holder.registerProblem(expression, MESSAGE, ProblemHighlightType.GENERIC_ERROR_OR_WARNING);
-                        } else if (args[0] instanceof PsiReferenceExpression) {
-                            PsiReferenceExpression refArg = (PsiReferenceExpression)args[0];
-                            if ("CorsConfiguration.ALL".equals(refArg.getQualifiedName())) {
-                                holder.registerProblem(expression, MESSAGE, ProblemHighlightType.GENERIC_ERROR_OR_WARNING);
-                            }
-                        }
+                    if (args.length == 1 &&
+                        args[0] instanceof PsiLiteralExpression &&
+                        "*".equals(((PsiLiteralExpression) args[0]).getValue())
+                    ) {
+                        holder.registerProblem(parent, MESSAGE, ProblemHighlightType.GENERIC_ERROR_OR_WARNING);
+                        break;
                     }
                 }
-                if (MoExpressionUtils.hasFullQualifiedName(expression, "org.springframework.web.cors.CorsConfiguration", "applyPermitDefaultValues")) {
-                    holder.registerProblem(expression, MESSAGE, ProblemHighlightType.GENERIC_ERROR_OR_WARNING);
-                }
-
+            } while(!(parent instanceof PsiCodeBlock));
 
-                // Spring MVC framework #web.servlet.config.annotation.CorsRegistration
-                if (MoExpressionUtils.hasFullQualifiedName(expression, "org.springframework.web.servlet.config.annotation.CorsRegistry", "addMapping")) {
-                    PsiElement parent = expression;
-                    boolean foundAllowedOriginsSetup = false;
-                    do {
-                        parent = parent.getParent();
-                        if (parent instanceof PsiMethodCallExpression &&
-                            MoExpressionUtils.hasFullQualifiedName((PsiMethodCallExpression)parent, "org.springframework.web.servlet.config.annotation.CorsRegistration", "allowedOrigins")
-                        ) {
-                            foundAllowedOriginsSetup = true;
-                            PsiExpressionList expressionList = ((PsiMethodCallExpression)parent).getArgumentList();
-                            PsiExpression[] args = expressionList.getExpressions();
-                            if (args.length == 1 &&
-                                args[0] instanceof PsiLiteralExpression &&
-                                "*".equals(((PsiLiteralExpression) args[0]).getValue())
-                            ) {
-                                holder.registerProblem(parent, MESSAGE, ProblemHighlightType.GENERIC_ERROR_OR_WARNING);
-                                break;
-                            }
-                        }
-                    } while(!(parent instanceof PsiCodeBlock));
-
-                    if (!foundAllowedOriginsSetup) {
-                        holder.registerProblem(expression, MESSAGE, ProblemHighlightType.GENERIC_ERROR_OR_WARNING);
-                    }
-                }
+            if (!foundAllowedOriginsSetup) {
+                holder.registerProblem(expression, MESSAGE, ProblemHighlightType.GENERIC_ERROR_OR_WARNING);
             }
-        };
+        });
     }
 }
@@ -18,11 +18,12 @@ package com.immomo.momosec.lang.java.rule.momosecurity;
 import com.immomo.momosec.fix.DeleteElementQuickFix;
 import com.immomo.momosec.lang.InspectionBundle;
 import com.immomo.momosec.lang.MomoBaseLocalInspectionTool;
-import com.immomo.momosec.lang.java.utils.MoExpressionUtils;
+import com.immomo.momosec.lang.MomoRuleDispatcher;
 import com.intellij.codeInspection.ProblemHighlightType;
 import com.intellij.codeInspection.ProblemsHolder;
 import com.intellij.psi.*;
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 
 /**
  * 1007: Fastjson反序列化风险
@@ -39,28 +40,30 @@ public class FastjsonAutoType extends MomoBaseLocalInspectionTool {
     public static final String MESSAGE = InspectionBundle.message("fastjson.auto.type.msg");
     private static final String QUICK_FIX_NAME = InspectionBundle.message("fastjson.auto.type.fix");
 
+    private static final String[] TRIGGER_TOKENS = {"setAutoTypeSupport"};
+
+    @Nullable
+    @Override
+    protected String[] getTriggerTokens() {
+        return TRIGGER_TOKENS;
+    }
+
     @Override
-    @NotNull
-    public PsiElementVisitor buildVisitor(@NotNull ProblemsHolder holder, boolean isOnTheFly) {
-        return new JavaElementVisitor() {
-            @Override
-            public void visitMethodCallExpression(PsiMethodCallExpression expression) {
-                if (MoExpressionUtils.hasFullQualifiedName(expression, "com.alibaba.fastjson.parser.ParserConfig", "setAutoTypeSupport")) {
-                    PsiExpression[] args = expression.getArgumentList().getExpressions();
-                    if (args.length == 1 &&
-                        args[0] instanceof PsiLiteralExpression &&
-                        Boolean.TRUE.equals(((PsiLiteralExpression)args[0]).getValue())
-                    ) {
-                        holder.registerProblem(
-                                expression,
-                                MESSAGE,
-                                ProblemHighlightType.GENERIC_ERROR_OR_WARNING,
-                                new DeleteElementQuickFix(expression, QUICK_FIX_NAME)
-                        );
-                    }
-                }
+    protected void registerHandlers(@NotNull MomoRuleDispatcher.HandlerTable table, @NotNull ProblemsHolder holder, boolean isOnTheFly) {
+        table.onCall("com.alibaba.fastjson.parser.ParserConfig", "setAutoTypeSupport", expression -> {
+            PsiExpression[] args = expression.getArgumentList().getExpressions();
+            if (args.length == 1 &&
+                args[0] instanceof PsiLiteralExpression &&
+                Boolean.TRUE.equals(((PsiLiteralExpression)args[0]).getValue())
+            ) {
+                holder.registerProblem(
+                        expression,
+                        MESSAGE,
+                        ProblemHighlightType.GENERIC_ERROR_OR_WARNING,
+                        new DeleteElementQuickFix(expression, QUICK_FIX_NAME)
+                );
             }
-        };
+        });
     }
 
 }
@@ -18,13 +18,19 @@ package com.immomo.momosec.lang.java.rule.momosecurity;
 import com.immomo.momosec.lang.InspectionBundle;
 import com.immomo.momosec.lang.MomoBaseLocalInspectionTool;
 import com.immomo.momosec.lang.java.utils.MoExpressionUtils;
+import com.immomo.momosec.utils.EntropyEstimator;
+import com.immomo.momosec.utils.KeywordMatcher;
 import com.intellij.codeInspection.ProblemHighlightType;
 import com.intellij.codeInspection.ProblemsHolder;
 import com.intellij.psi.*;
+import com.intellij.ui.DocumentAdapter;
+import com.intellij.ui.components.JBScrollPane;
 import com.intellij.util.ObjectUtils;
-import me.gosimple.nbvcxz.Nbvcxz;
 import org.jetbrains.annotations.NotNull;
 
+import javax.swing.*;
+import javax.swing.event.DocumentEvent;
+import java.awt.BorderLayout;
 import java.util.regex.Pattern;
 
 /**
@@ -35,19 +41,46 @@ import java.util.regex.Pattern;
  */
 public class HardcodedCredentials extends MomoBaseLocalInspectionTool {
     public static final String MESSAGE = InspectionBundle.message("hardcoded.credentials.msg");
-    private static final Pattern pattern = Pattern.compile("passwd|pass|password|pwd|secret|token", Pattern.CASE_INSENSITIVE);
     private static final Pattern connPwdPattern = Pattern.compile("password=(.*?)($|&)", Pattern.CASE_INSENSITIVE);
-    private static final double entropyThreshold = 50.0;
-    private static final int truncate = 16;
+
+    // 用户追加的变量名关键字 (如厂商特有的 accessKey / sk)，以逗号或空白分隔
+    public String customKeywords = "";
+
+    private final KeywordMatcher.Configurable keywordMatcher =
+            new KeywordMatcher.Configurable("passwd", "pass", "password", "pwd", "secret", "token");
+
+    @Override
+    public JComponent createOptionsPanel() {
+        JTextArea textArea = new JTextArea(customKeywords, 4, 60);
+        textArea.getDocument().addDocumentListener(new DocumentAdapter() {
+            @Override
+            protected void textChanged(@NotNull DocumentEvent e) {
+                customKeywords = textArea.getText();
+            }
+        });
+        JPanel panel = new JPanel(new BorderLayout());
+        panel.add(new JLabel(InspectionBundle.message("hardcoded.credentials.option.keywords")), BorderLayout.NORTH);
+        panel.add(new JBScrollPane(textArea), BorderLayout.CENTER);
+        return panel;
+    }
+
+    /**
+     * @return KeywordMatcher 内置关键字与用户追加的关键字，配置不变时复用同一个匹配器
+     */
+    @NotNull
+    private KeywordMatcher getKeywords() {
+        return keywordMatcher.get(customKeywords);
+    }
 
 
     @Override
     public @NotNull PsiElementVisitor buildVisitor(@NotNull ProblemsHolder holder, boolean isOnTheFly) {
+        KeywordMatcher keywords = getKeywords();
         return new JavaElementVisitor() {
             @Override
             public void visitLocalVariable(PsiLocalVariable variable) {
                 String varname = variable.getName();
-                if (varname != null && pattern.matcher(varname).find()) {
+                if (varname != null && keywords.find(varname)) {
                      PsiExpression initializer = variable.getInitializer();
                      if (initializer instanceof PsiLiteralExpression) {
                          String value = MoExpressionUtils.getLiteralInnerText(initializer);
@@ -64,7 +97,7 @@ public class HardcodedCredentials extends MomoBaseLocalInspectionTool {
                 PsiExpression lexp = expression.getLExpression();
                 if (lexp instanceof PsiReferenceExpression) {
                     String varname = ((PsiReferenceExpression) lexp).getQualifiedName();
-                    if (pattern.matcher(varname).find()) {
+                    if (keywords.find(varname)) {
                         PsiExpression rexp = expression.getRExpression();
                         if (rexp instanceof PsiLiteralExpression) {
                             String value = MoExpressionUtils.getLiteralInnerText(rexp);
@@ -79,7 +112,7 @@ public class HardcodedCredentials extends MomoBaseLocalInspectionTool {
             @Override
             public void visitField(PsiField field) {
                 String varname = field.getName();
-                if (varname != null && pattern.matcher(varname).find()) {
+                if (varname != null && keywords.find(varname)) {
                     PsiExpression initializer = field.getInitializer();
                     if (initializer instanceof PsiLiteralExpression) {
                         String value = MoExpressionUtils.getLiteralInnerText(initializer);
@@ -101,7 +134,7 @@ public class HardcodedCredentials extends MomoBaseLocalInspectionTool {
                         PsiExpression[] args = expression.getArgumentList().getExpressions();
                         if (args.length == 2 && args[1] instanceof PsiLiteralExpression) {
                             String key = MoExpressionUtils.getText(args[0], true);
-                            if (key != null && pattern.matcher(key).find()) {
+                            if (key != null && keywords.find(key)) {
                                 String value = MoExpressionUtils.getLiteralInnerText(args[1]);
                                 if (value != null && isHighEntropyString(value) && isASCII(value)) {
                                     holder.registerProblem(expression, MESSAGE, ProblemHighlightType.GENERIC_ERROR_OR_WARNING);
@@ -128,11 +161,8 @@ public class HardcodedCredentials extends MomoBaseLocalInspectionTool {
         };
     }
 
-    private static boolean isHighEntropyString(String v) {
-        if (truncate < v.length()) {
-            v = v.substring(0, truncate);
-        }
-        return new Nbvcxz().estimate(v).getEntropy() > entropyThreshold;
+    static boolean isHighEntropyString(String v) {
+        return EntropyEstimator.getInstance().isHighEntropy(v);
     }
 
     /**
@@ -19,6 +19,7 @@ import com.immomo.momosec.fix.DeleteElementQuickFix;
 import com.immomo.momosec.lang.InspectionBundle;
 import com.immomo.momosec.lang.MomoBaseFixElementWalkingVisitor;
 import com.immomo.momosec.lang.MomoBaseLocalInspectionTool;
+import com.immomo.momosec.lang.MomoRuleDispatcher;
 import com.immomo.momosec.lang.java.utils.MoExpressionUtils;
 import com.intellij.codeInspection.LocalQuickFix;
 import com.intellij.codeInspection.ProblemDescriptor;
@@ -29,6 +30,7 @@ import com.intellij.openapi.project.Project;
 import com.intellij.psi.*;
 import org.jetbrains.annotations.Nls;
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 
 /**
  * 1006: Jackson反序列化风险
@@ -47,31 +49,36 @@ public class JacksonDatabindDefaultTyping extends MomoBaseLocalInspectionTool {
 
     private final AnnotationQuickFix annotationQuickFix = new AnnotationQuickFix();
 
+    private static final String[] TRIGGER_TOKENS = {"enableDefaultTyping", "JsonTypeInfo"};
+
+    @Nullable
+    @Override
+    protected String[] getTriggerTokens() {
+        return TRIGGER_TOKENS;
+    }
+
     @Override
-    @NotNull
-    public PsiElementVisitor buildVisitor(@NotNull ProblemsHolder holder, boolean isOnTheFly) {
-        return new JavaElementVisitor() {
+    protected void registerHandlers(@NotNull MomoRuleDispatcher.HandlerTable table, @NotNull ProblemsHolder holder, boolean isOnTheFly) {
+        JavaElementVisitor visitor = new JavaElementVisitor() {
             @Override
             public void visitMethodCallExpression(PsiMethodCallExpression expression) {
-                if (MoExpressionUtils.hasFullQualifiedName(expression, "com.fasterxml.jackson.databind.ObjectMapper", "enableDefaultTyping")) {
-                    PsiExpression varExp = expression.getMethodExpression().getQualifierExpression();
-                    if (varExp != null &&  varExp.getReference() != null) {
-                        PsiElement var = varExp.getReference().resolve();
-                        if (var != null) {
-                            UseToJackson2JsonRedisSerializerVisitor visitor = new UseToJackson2JsonRedisSerializerVisitor(var);
-                            if (checkVariableUseFix(var, null, visitor)) {
-                                return ;
-                            }
+                PsiExpression varExp = expression.getMethodExpression().getQualifierExpression();
+                if (varExp != null &&  varExp.getReference() != null) {
+                    PsiElement var = varExp.getReference().resolve();
+                    if (var != null) {
+                        UseToJackson2JsonRedisSerializerVisitor visitor = new UseToJackson2JsonRedisSerializerVisitor(var);
+                        if (checkVariableUseFix(var, null, visitor)) {
+                            return ;
                         }
                     }
-
-                    holder.registerProblem(
-                            expression,
-                            MESSAGE,
-                            ProblemHighlightType.GENERIC_ERROR_OR_WARNING,
-                            new DeleteElementQuickFix(expression, DEFAULT_TYPING_FIX_NAME)
-                    );
                 }
+
+                holder.registerProblem(
+                        expression,
+                        MESSAGE,
+                        ProblemHighlightType.GENERIC_ERROR_OR_WARNING,
+                        new DeleteElementQuickFix(expression, DEFAULT_TYPING_FIX_NAME)
+                );
             }
 
             @Override
@@ -95,6 +102,8 @@ public class JacksonDatabindDefaultTyping extends MomoBaseLocalInspectionTool {
                 }
             }
         };
+        table.onCall("com.fasterxml.jackson.databind.ObjectMapper", "enableDefaultTyping", visitor::visitMethodCallExpression)
+             .on(PsiAnnotation.class, visitor::visitAnnotation);
     }
 
     public static class UseToJackson2JsonRedisSerializerVisitor extends MomoBaseFixElementWalkingVisitor {
@@ -18,11 +18,12 @@ package com.immomo.momosec.lang.java.rule.momosecurity;
 import com.immomo.momosec.fix.SetBoolArgQuickFix;
 import com.immomo.momosec.lang.InspectionBundle;
 import com.immomo.momosec.lang.MomoBaseLocalInspectionTool;
-import com.immomo.momosec.lang.java.utils.MoExpressionUtils;
+import com.immomo.momosec.lang.MomoRuleDispatcher;
 import com.intellij.codeInspection.ProblemHighlightType;
 import com.intellij.codeInspection.ProblemsHolder;
 import com.intellij.psi.*;
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 
 /**
  * Momo 1017: LDAP反序列化风险
@@ -33,47 +34,45 @@ public class LDAPUnserialize extends MomoBaseLocalInspectionTool {
     public static final String MESSAGE = InspectionBundle.message("ldap.unserialize.msg");
     private static final String QUICK_FIX_NAME = InspectionBundle.message("ldap.unserialize.fix");
 
+    private static final String[] TRIGGER_TOKENS = {"SearchControls", "setReturningObjFlag"};
+
+    @Nullable
     @Override
-    public @NotNull PsiElementVisitor buildVisitor(@NotNull ProblemsHolder holder, boolean isOnTheFly) {
-        return new JavaElementVisitor() {
-            @Override
-            public void visitNewExpression(PsiNewExpression expression) {
-                if (MoExpressionUtils.hasFullQualifiedName(expression, "javax.naming.directory.SearchControls")) {
-                    PsiExpressionList expressionList = expression.getArgumentList();
-                    if (expressionList != null && expressionList.getExpressionCount() == 6) {
-                        PsiExpression[] args = expressionList.getExpressions();
-                        if (args[4] instanceof PsiLiteralExpression &&
-                            Boolean.TRUE.equals(((PsiLiteralExpression) args[4]).getValue())
-                        ) {
-                            holder.registerProblem(
-                                    expression,
-                                    MESSAGE,
-                                    ProblemHighlightType.GENERIC_ERROR_OR_WARNING,
-                                    new SetBoolArgQuickFix(QUICK_FIX_NAME, false, (PsiLiteralExpression)args[4])
-                            );
-                        }
-                    }
-                }
-            }
+    protected String[] getTriggerTokens() {
+        return TRIGGER_TOKENS;
+    }
 
-            @Override
-            public void visitMethodCallExpression(PsiMethodCallExpression expression) {
-                if (MoExpressionUtils.hasFullQualifiedName(expression, "javax.naming.directory.SearchControls", "setReturningObjFlag")) {
-                    PsiExpressionList expressionList = expression.getArgumentList();
-                    PsiExpression[] args = expressionList.getExpressions();
-                    if (args.length == 1 &&
-                        args[0] instanceof PsiLiteralExpression &&
-                        Boolean.TRUE.equals(((PsiLiteralExpression)args[0]).getValue())
-                    ) {
-                        holder.registerProblem(
-                                expression,
-                                MESSAGE,
-                                ProblemHighlightType.GENERIC_ERROR_OR_WARNING,
-                                new SetBoolArgQuickFix(QUICK_FIX_NAME, false, (PsiLiteralExpression)args[0])
-                        );
-                    }
+    @Override
+    protected void registerHandlers(@NotNull MomoRuleDispatcher.HandlerTable table, @NotNull ProblemsHolder holder, boolean isOnTheFly) {
+        table.onNew("javax.naming.directory.SearchControls", expression -> {
+            PsiExpressionList expressionList = expression.getArgumentList();
+            if (expressionList != null && expressionList.getExpressionCount() == 6) {
+                PsiExpression[] args = expressionList.getExpressions();
+                if (args[4] instanceof PsiLiteralExpression &&
+                    Boolean.TRUE.equals(((PsiLiteralExpression) args[4]).getValue())
+                ) {
+                    holder.registerProblem(
+                            expression,
+                            MESSAGE,
+                            ProblemHighlightType.GENERIC_ERROR_OR_WARNING,
+                            new SetBoolArgQuickFix(QUICK_FIX_NAME, false, (PsiLiteralExpression)args[4])
+                    );
                 }
             }
-        };
+        }).onCall("javax.naming.directory.SearchControls", "setReturningObjFlag", expression -> {
+            PsiExpressionList expressionList = expression.getArgumentList();
+            PsiExpression[] args = expressionList.getExpressions();
+            if (args.length == 1 &&
+                args[0] instanceof PsiLiteralExpression &&
+                Boolean.TRUE.equals(((PsiLiteralExpression)args[0]).getValue())
+            ) {
+                holder.registerProblem(
+                        expression,
+                        MESSAGE,
+                        ProblemHighlightType.GENERIC_ERROR_OR_WARNING,
+                        new SetBoolArgQuickFix(QUICK_FIX_NAME, false, (PsiLiteralExpression)args[0])
+                );
+            }
+        });
     }
 }
@@ -17,7 +17,9 @@ package com.immomo.momosec.lang.java.rule.momosecurity;
 
 import com.immomo.momosec.lang.InspectionBundle;
 import com.immomo.momosec.lang.MomoBaseLocalInspectionTool;
+import com.immomo.momosec.lang.MomoRuleDispatcher;
 import com.immomo.momosec.lang.java.utils.MoExpressionUtils;
+import com.immomo.momosec.lang.java.utils.MoStringValue;
 import com.immomo.momosec.utils.SQLi;
 import com.immomo.momosec.utils.Str;
 import com.intellij.codeInspection.LocalQuickFix;
@@ -30,6 +32,7 @@ import com.intellij.psi.impl.source.tree.java.PsiArrayInitializerMemberValueImpl
 import org.apache.commons.lang3.StringUtils;
 import org.jetbrains.annotations.Nls;
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 
 import java.util.*;
 import java.util.regex.Matcher;
@@ -66,10 +69,17 @@ public class MybatisAnnotationSQLi extends MomoBaseLocalInspectionTool {
     ));
     private final MybatisAnnotationSQLiQuickFix mybatisAnnotationSQLiQuickFix = new MybatisAnnotationSQLiQuickFix();
 
-    @NotNull
+    private static final String[] TRIGGER_TOKENS = {"Select", "Delete", "Update", "Insert"};
+
+    @Nullable
+    @Override
+    protected String[] getTriggerTokens() {
+        return TRIGGER_TOKENS;
+    }
+
     @Override
-    public PsiElementVisitor buildVisitor(@NotNull ProblemsHolder holder, boolean isOnTheFly) {
-        return new JavaElementVisitor() {
+    protected void registerHandlers(@NotNull MomoRuleDispatcher.HandlerTable table, @NotNull ProblemsHolder holder, boolean isOnTheFly) {
+        JavaElementVisitor visitor = new JavaElementVisitor() {
             @Override
             public void visitAnnotation(PsiAnnotation annotation) {
                 if (Boolean.FALSE.equals(checkedAnnotations.contains(annotation.getQualifiedName()))) {
@@ -89,10 +99,10 @@ public class MybatisAnnotationSQLi extends MomoBaseLocalInspectionTool {
                     }
 
                     if (innerElem instanceof PsiPolyadicExpression) {   // 见注释 (2)
-                        content = MoExpressionUtils.getText((PsiPolyadicExpression)innerElem, true);
+                        content = MoStringValue.of((PsiPolyadicExpression)innerElem).getFolded();
                     } else if (innerElem instanceof PsiArrayInitializerMemberValue) {   // 见注释 (3) / (4)
                         content = Arrays.stream(((PsiArrayInitializerMemberValueImpl)innerElem).getInitializers())
-                                .map(elem -> MoExpressionUtils.getText((PsiExpression)elem, true))
+                                .map(elem -> MoStringValue.of((PsiExpression)elem).getFolded())
                                 .collect(Collectors.joining());
                     }
                 }
@@ -102,6 +112,7 @@ public class MybatisAnnotationSQLi extends MomoBaseLocalInspectionTool {
                 }
             }
         };
+        table.on(PsiAnnotation.class, visitor::visitAnnotation);
     }
 
     private boolean hasSQLi(String content) {
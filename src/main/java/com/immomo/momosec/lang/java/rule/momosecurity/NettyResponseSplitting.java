@@ -17,7 +17,7 @@ package com.immomo.momosec.lang.java.rule.momosecurity;
 
 import com.immomo.momosec.lang.InspectionBundle;
 import com.immomo.momosec.lang.MomoBaseLocalInspectionTool;
-import com.immomo.momosec.lang.java.utils.MoExpressionUtils;
+import com.immomo.momosec.lang.MomoRuleDispatcher;
 import com.intellij.codeInspection.LocalQuickFix;
 import com.intellij.codeInspection.ProblemDescriptor;
 import com.intellij.codeInspection.ProblemHighlightType;
@@ -26,6 +26,7 @@ import com.intellij.openapi.project.Project;
 import com.intellij.psi.*;
 import org.jetbrains.annotations.Nls;
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 
 /**
  * 1008: Netty响应拆分攻击
@@ -38,45 +39,47 @@ public class NettyResponseSplitting extends MomoBaseLocalInspectionTool {
     public static final String MESSAGE = InspectionBundle.message("netty.response.splitting.msg");
     private static final String QUICK_FIX_NAME = InspectionBundle.message("netty.response.splitting.fix");
 
+    private static final String[] TRIGGER_TOKENS = {"DefaultHttpHeaders", "DefaultHttpResponse"};
+
+    @Nullable
     @Override
-    public @NotNull PsiElementVisitor buildVisitor(@NotNull ProblemsHolder holder, boolean isOnTheFly) {
-        return new JavaElementVisitor() {
-            @Override
-            public void visitNewExpression(PsiNewExpression expression) {
-                if (MoExpressionUtils.hasFullQualifiedName(expression, "io.netty.handler.codec.http.DefaultHttpHeaders")) {
-                    if (expression.getArgumentList() != null) {
-                        PsiExpression[] args = expression.getArgumentList().getExpressions();
-                        if (args.length > 0 && args[0] instanceof PsiLiteralExpression &&
-                            Boolean.FALSE.equals(((PsiLiteralExpression)args[0]).getValue())
-                        ) {
-                            holder.registerProblem(
-                                    expression,
-                                    MESSAGE,
-                                    ProblemHighlightType.GENERIC_ERROR_OR_WARNING,
-                                    new NettyResponseSplittingQuickFix(0)
-                            );
-                        }
-                    }
+    protected String[] getTriggerTokens() {
+        return TRIGGER_TOKENS;
+    }
+
+    @Override
+    protected void registerHandlers(@NotNull MomoRuleDispatcher.HandlerTable table, @NotNull ProblemsHolder holder, boolean isOnTheFly) {
+        table.onNew("io.netty.handler.codec.http.DefaultHttpHeaders", expression -> {
+            if (expression.getArgumentList() != null) {
+                PsiExpression[] args = expression.getArgumentList().getExpressions();
+                if (args.length > 0 && args[0] instanceof PsiLiteralExpression &&
+                    Boolean.FALSE.equals(((PsiLiteralExpression)args[0]).getValue())
+                ) {
+                    holder.registerProblem(
+                            expression,
+                            MESSAGE,
+                            ProblemHighlightType.GENERIC_ERROR_OR_WARNING,
+                            new NettyResponseSplittingQuickFix(0)
+                    );
                 }
-                if (MoExpressionUtils.hasFullQualifiedName(expression, "io.netty.handler.codec.http.DefaultHttpResponse")) {
-                    if (expression.getArgumentList() != null) {
-                        PsiExpression[] args = expression.getArgumentList().getExpressions();
+            }
+        }).onNew("io.netty.handler.codec.http.DefaultHttpResponse", expression -> {
+            if (expression.getArgumentList() != null) {
+                PsiExpression[] args = expression.getArgumentList().getExpressions();
 
-                        // DefaultHttpResponse 第2位参数会有问题 (0位算起)
-                        if (args.length > 2 && args[2] instanceof PsiLiteralExpression &&
-                            Boolean.FALSE.equals(((PsiLiteralExpression)args[2]).getValue())
-                        ) {
-                            holder.registerProblem(
-                                    expression,
-                                    MESSAGE,
-                                    ProblemHighlightType.GENERIC_ERROR_OR_WARNING,
-                                    new NettyResponseSplittingQuickFix(2)
-                            );
-                        }
-                    }
+                // DefaultHttpResponse 第2位参数会有问题 (0位算起)
+                if (args.length > 2 && args[2] instanceof PsiLiteralExpression &&
+                    Boolean.FALSE.equals(((PsiLiteralExpression)args[2]).getValue())
+                ) {
+                    holder.registerProblem(
+                            expression,
+                            MESSAGE,
+                            ProblemHighlightType.GENERIC_ERROR_OR_WARNING,
+                            new NettyResponseSplittingQuickFix(2)
+                    );
                 }
             }
-        };
+        });
     }
 
     public static class NettyResponseSplittingQuickFix implements LocalQuickFix {
@@ -18,7 +18,7 @@ package com.immomo.momosec.lang.java.rule.momosecurity;
 import com.immomo.momosec.fix.SetBoolArgQuickFix;
 import com.immomo.momosec.lang.InspectionBundle;
 import com.immomo.momosec.lang.MomoBaseLocalInspectionTool;
-import com.immomo.momosec.lang.java.utils.MoExpressionUtils;
+import com.immomo.momosec.lang.MomoRuleDispatcher;
 import com.intellij.codeInspection.ProblemHighlightType;
 import com.intellij.codeInspection.ProblemsHolder;
 import com.intellij.psi.*;
@@ -26,6 +26,7 @@ import com.intellij.psi.util.PsiLiteralUtil;
 import com.intellij.util.ObjectUtils;
 import com.siyeh.ig.psiutils.ExpressionUtils;
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 
 /**
  * Momo 1024: OpenSAML2 认证绕过风险
@@ -38,29 +39,32 @@ public class OpenSAML2IgnoreComment extends MomoBaseLocalInspectionTool {
     public static final String MESSAGE = InspectionBundle.message("open.saml2.ignore.comment.msg");
     public static final String QUICK_FIX_NAME = InspectionBundle.message("open.saml2.ignore.comment.fix");
 
+    private static final String[] TRIGGER_TOKENS = {"setIgnoreComments"};
+
+    @Nullable
+    @Override
+    protected String[] getTriggerTokens() {
+        return TRIGGER_TOKENS;
+    }
+
     @Override
-    public @NotNull PsiElementVisitor buildVisitor(@NotNull ProblemsHolder holder, boolean isOnTheFly) {
-        return new JavaElementVisitor() {
-            @Override
-            public void visitMethodCallExpression(PsiMethodCallExpression expression) {
-                if (MoExpressionUtils.hasFullQualifiedName(expression, "org.opensaml.xml.parse.StaticBasicParserPool", "setIgnoreComments") ||
-                    MoExpressionUtils.hasFullQualifiedName(expression, "org.opensaml.xml.parse.BasicParserPool", "setIgnoreComments")
-                ) {
-                    PsiExpression[] args = expression.getArgumentList().getExpressions();
-                    if (args.length > 0) {
-                        PsiLiteralExpression arg0 = ObjectUtils.tryCast(args[0], PsiLiteralExpression.class);
-                        if (arg0 == null) return ;
-                        if (ExpressionUtils.isLiteral(arg0, Boolean.FALSE)) {
-                            holder.registerProblem(
-                                    expression,
-                                    MESSAGE,
-                                    ProblemHighlightType.GENERIC_ERROR_OR_WARNING,
-                                    new SetBoolArgQuickFix(QUICK_FIX_NAME, true, arg0)
-                            );
-                        }
-                    }
+    protected void registerHandlers(@NotNull MomoRuleDispatcher.HandlerTable table, @NotNull ProblemsHolder holder, boolean isOnTheFly) {
+        MomoRuleDispatcher.Handler<PsiMethodCallExpression> handler = expression -> {
+            PsiExpression[] args = expression.getArgumentList().getExpressions();
+            if (args.length > 0) {
+                PsiLiteralExpression arg0 = ObjectUtils.tryCast(args[0], PsiLiteralExpression.class);
+                if (arg0 == null) return ;
+                if (ExpressionUtils.isLiteral(arg0, Boolean.FALSE)) {
+                    holder.registerProblem(
+                            expression,
+                            MESSAGE,
+                            ProblemHighlightType.GENERIC_ERROR_OR_WARNING,
+                            new SetBoolArgQuickFix(QUICK_FIX_NAME, true, arg0)
+                    );
                 }
             }
         };
+        table.onCall("org.opensaml.xml.parse.StaticBasicParserPool", "setIgnoreComments", handler)
+             .onCall("org.opensaml.xml.parse.BasicParserPool", "setIgnoreComments", handler);
     }
 }    
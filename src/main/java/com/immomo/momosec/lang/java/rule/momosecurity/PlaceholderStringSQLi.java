@@ -17,12 +17,15 @@ package com.immomo.momosec.lang.java.rule.momosecurity;
 
 import com.immomo.momosec.fix.ShowHelpCommentQuickFix;
 import com.immomo.momosec.lang.InspectionBundle;
-import com.immomo.momosec.lang.java.utils.MoExpressionUtils;
+import com.immomo.momosec.lang.MomoRuleDispatcher;
+import com.immomo.momosec.lang.java.utils.MoStringValue;
+import com.immomo.momosec.lang.java.utils.MoTaintSummary;
 import com.intellij.codeInspection.ProblemHighlightType;
 import com.intellij.codeInspection.ProblemsHolder;
 import com.intellij.psi.*;
 import com.siyeh.ig.psiutils.ExpressionUtils;
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 
 import java.util.ArrayList;
 import java.util.Arrays;
@@ -46,16 +49,20 @@ public class PlaceholderStringSQLi extends BaseSQLi {
 
     private final ShowHelpCommentQuickFix showHelpCommentQuickFix = new ShowHelpCommentQuickFix(QUICK_FIX_NAME, SQL_INJECTION_HELP_COMMENT);
 
-    @NotNull
+    private static final String[] TRIGGER_TOKENS = {"format"};
+
+    @Nullable
+    @Override
+    protected String[] getTriggerTokens() {
+        return TRIGGER_TOKENS;
+    }
+
     @Override
-    public PsiElementVisitor buildVisitor(@NotNull final ProblemsHolder holder, boolean isOnTheFly) {
-        return new JavaElementVisitor() {
+    protected void registerHandlers(@NotNull MomoRuleDispatcher.HandlerTable table, @NotNull ProblemsHolder holder, boolean isOnTheFly) {
+        JavaElementVisitor visitor = new JavaElementVisitor() {
 
             @Override
             public void visitMethodCallExpression(PsiMethodCallExpression expression) {
-                if (!MoExpressionUtils.hasFullQualifiedName(expression, "java.lang.String", "format")) {
-                    return ;
-                }
                 PsiExpression[] args = expression.getArgumentList().getExpressions();
                 if (!(args.length > 0)) {
                     return ;
@@ -70,14 +77,15 @@ public class PlaceholderStringSQLi extends BaseSQLi {
                     idx += 1;
                 }
                 String content = null;
-                if (ExpressionUtils.isLiteral(args[idx])) {
-                    content = MoExpressionUtils.getLiteralInnerText(args[idx]);
+                if (ExpressionUtils.isLiteral(args[idx]) || args[idx] instanceof PsiPolyadicExpression) {
+                    // 常量拼接的模板，如 "select * from table" + " where id = %s"
+                    content = MoStringValue.of(args[idx]).getExact();
                 } else {
                     PsiLocalVariable localVariable = ExpressionUtils.resolveLocalVariable(args[idx]);
                     if (localVariable != null) {
-                        PsiExpression localVariableInitializer = localVariable.getInitializer();
-                        if (localVariableInitializer != null && ExpressionUtils.isLiteral(localVariableInitializer)) {
-                            content = MoExpressionUtils.getLiteralInnerText(localVariableInitializer);
+                        MoStringValue value = MoStringValue.ofLocalInitializer(localVariable);
+                        if (value != null) {
+                            content = value.getExact();
                         }
                     }
                 }
@@ -96,7 +104,7 @@ public class PlaceholderStringSQLi extends BaseSQLi {
                     idx += 1;
                     for(String seg : split_cont_by_placeholder) {
                         sb.append(seg);
-                        if (idx < args.length && isSqliCareExpression(args[idx])) {
+                        if (idx < args.length && isSqliCareExpression(args[idx]) && !MoTaintSummary.isConstant(args[idx])) {
                             concat_cont.add(sb.toString());
                         }
                         sb.append(" ? ");
@@ -114,5 +122,6 @@ public class PlaceholderStringSQLi extends BaseSQLi {
                 }
             }
         };
+        table.onCall("java.lang.String", "format", visitor::visitMethodCallExpression);
     }
 }
@@ -17,7 +17,11 @@ package com.immomo.momosec.lang.java.rule.momosecurity;
 
 import com.immomo.momosec.fix.ShowHelpCommentQuickFix;
 import com.immomo.momosec.lang.InspectionBundle;
+import com.immomo.momosec.lang.MomoRuleDispatcher;
 import com.immomo.momosec.lang.java.utils.MoExpressionUtils;
+import com.immomo.momosec.lang.java.utils.MoStringValue;
+import com.immomo.momosec.lang.java.utils.MoTaintSummary;
+import com.immomo.momosec.utils.SQLi;
 import com.intellij.codeInspection.ProblemHighlightType;
 import com.intellij.codeInspection.ProblemsHolder;
 import com.intellij.psi.*;
@@ -25,7 +29,6 @@ import org.jetbrains.annotations.NotNull;
 
 import java.util.ArrayList;
 import java.util.List;
-import java.util.stream.Collectors;
 
 import static com.immomo.momosec.Constants.SQL_INJECTION_HELP_COMMENT;
 import static com.immomo.momosec.lang.java.utils.MoExpressionUtils.isSqliCareExpression;
@@ -44,25 +47,31 @@ public class PolyadicExpressionSQLi extends BaseSQLi {
 
     private final ShowHelpCommentQuickFix showHelpCommentQuickFix = new ShowHelpCommentQuickFix(QUICK_FIX_NAME, SQL_INJECTION_HELP_COMMENT);
 
-    @NotNull
     @Override
-    public PsiElementVisitor buildVisitor(@NotNull final ProblemsHolder holder, boolean isOnTheFly) {
-        return new JavaElementVisitor() {
+    protected void registerHandlers(@NotNull MomoRuleDispatcher.HandlerTable table, @NotNull ProblemsHolder holder, boolean isOnTheFly) {
+        JavaElementVisitor visitor = new JavaElementVisitor() {
 
             @Override
             public void visitPolyadicExpression(PsiPolyadicExpression expression) {
                 List<PsiExpression> exps = MoExpressionUtils.deconPolyadicExpression(expression);
                 if (exps.isEmpty() || ignoreMethodName(expression)) { return ; }
 
-                String expStr = exps.stream()
-                        .map(item -> MoExpressionUtils.getText(item, true))
-                        .collect(Collectors.joining());
+                // 每项只折叠一次，拼接结果与逐项判断共用
+                List<MoStringValue> values = new ArrayList<>(exps.size());
+                StringBuilder expSb = new StringBuilder();
+                for (PsiExpression exp : exps) {
+                    MoStringValue value = MoStringValue.of(exp);
+                    values.add(value);
+                    expSb.append(value.getFolded());
+                }
+                String expStr = expSb.toString();
                 if (isSql(expStr)) {
                     List<String> sql_segments = new ArrayList<>();
                     StringBuilder sb = new StringBuilder();
 
                     boolean hasVar = false;
-                    for (PsiExpression exp : exps) {
+                    for (int i = 0; i < exps.size(); i++) {
+                        PsiExpression exp = exps.get(i);
                         if (isSqliCareExpression(exp)) {
                             String s = MoExpressionUtils.getLiteralInnerText(exp);
                             if ( s == null ) {
@@ -70,7 +79,8 @@ public class PolyadicExpressionSQLi extends BaseSQLi {
                                     sql_segments.add(sb.toString());
                                 }
 
-                                if (!MoExpressionUtils.isText(exp)) {
+                                // 经过辅助方法传递的常量 (见 MoTaintSummary) 不视为变量
+                                if (!values.get(i).isExact() && !MoTaintSummary.isConstant(exp)) {
                                     hasVar = true;
                                 }
 
@@ -99,8 +109,9 @@ public class PolyadicExpressionSQLi extends BaseSQLi {
             private boolean hasPlaceholderProblem(String content) {
                 return placeholderPattern.matcher(content).find() &&
                         isSql(content) &&
-                        hasEvalAdditive(content, placeholderPattern);
+                        SQLi.hasVulOnPlaceholder(content);
             }
         };
+        table.on(PsiPolyadicExpression.class, visitor::visitPolyadicExpression);
     }
 }
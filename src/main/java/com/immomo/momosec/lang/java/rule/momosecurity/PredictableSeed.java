@@ -18,7 +18,7 @@ package com.immomo.momosec.lang.java.rule.momosecurity;
 import com.immomo.momosec.fix.DeleteElementQuickFix;
 import com.immomo.momosec.lang.InspectionBundle;
 import com.immomo.momosec.lang.MomoBaseLocalInspectionTool;
-import com.immomo.momosec.lang.java.utils.MoExpressionUtils;
+import com.immomo.momosec.lang.MomoRuleDispatcher;
 import com.intellij.codeInspection.LocalQuickFix;
 import com.intellij.codeInspection.ProblemDescriptor;
 import com.intellij.codeInspection.ProblemHighlightType;
@@ -29,6 +29,7 @@ import com.intellij.psi.impl.source.resolve.graphInference.PsiPolyExpressionUtil
 import com.intellij.psi.util.PsiLiteralUtil;
 import org.jetbrains.annotations.Nls;
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 
 /**
  * 1009: 固定的随机数种子风险
@@ -39,41 +40,39 @@ public class PredictableSeed extends MomoBaseLocalInspectionTool {
     public static final String MESSAGE = InspectionBundle.message("predictable.seed.msg");
     private static final String QUICK_FIX_NAME = InspectionBundle.message("predictable.seed.fix");
 
+    private static final String[] TRIGGER_TOKENS = {"setSeed", "SecureRandom"};
+
+    @Nullable
     @Override
-    public @NotNull PsiElementVisitor buildVisitor(@NotNull ProblemsHolder holder, boolean isOnTheFly) {
-        return new JavaElementVisitor() {
-            @Override
-            public void visitMethodCallExpression(PsiMethodCallExpression expression) {
-                if (MoExpressionUtils.hasFullQualifiedName(expression, "java.security.SecureRandom", "setSeed")) {
-                    PsiExpression[] args = expression.getArgumentList().getExpressions();
-                    if (args.length != 1) { return ; }
-                    PsiExpression arg0 = args[0];
-                    if (arg0 instanceof PsiLiteralExpression) {
-                        holder.registerProblem(
-                                expression,
-                                MESSAGE,
-                                ProblemHighlightType.GENERIC_ERROR_OR_WARNING,
-                                new DeleteElementQuickFix(expression, QUICK_FIX_NAME)
-                        );
-                    }
-                }
-            }
+    protected String[] getTriggerTokens() {
+        return TRIGGER_TOKENS;
+    }
 
-            @Override
-            public void visitNewExpression(PsiNewExpression expression) {
-                if (MoExpressionUtils.hasFullQualifiedName(expression, "java.security.SecureRandom")) {
-                    PsiExpressionList expressionList = expression.getArgumentList();
-                    if (expressionList != null && expressionList.getExpressions().length != 0) {
-                        holder.registerProblem(
-                                expression,
-                                MESSAGE,
-                                ProblemHighlightType.GENERIC_ERROR_OR_WARNING,
-                                new PredictableSeedQuickFix(expressionList)
-                        );
-                    }
-                }
+    @Override
+    protected void registerHandlers(@NotNull MomoRuleDispatcher.HandlerTable table, @NotNull ProblemsHolder holder, boolean isOnTheFly) {
+        table.onCall("java.security.SecureRandom", "setSeed", expression -> {
+            PsiExpression[] args = expression.getArgumentList().getExpressions();
+            if (args.length != 1) { return ; }
+            PsiExpression arg0 = args[0];
+            if (arg0 instanceof PsiLiteralExpression) {
+                holder.registerProblem(
+                        expression,
+                        MESSAGE,
+                        ProblemHighlightType.GENERIC_ERROR_OR_WARNING,
+                        new DeleteElementQuickFix(expression, QUICK_FIX_NAME)
+                );
+            }
+        }).onNew("java.security.SecureRandom", expression -> {
+            PsiExpressionList expressionList = expression.getArgumentList();
+            if (expressionList != null && expressionList.getExpressions().length != 0) {
+                holder.registerProblem(
+                        expression,
+                        MESSAGE,
+                        ProblemHighlightType.GENERIC_ERROR_OR_WARNING,
+                        new PredictableSeedQuickFix(expressionList)
+                );
             }
-        };
+        });
     }
 
     public static class PredictableSeedQuickFix implements LocalQuickFix {
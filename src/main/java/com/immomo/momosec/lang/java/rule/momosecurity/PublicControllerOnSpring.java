@@ -17,6 +17,7 @@ package com.immomo.momosec.lang.java.rule.momosecurity;
 
 import com.immomo.momosec.lang.InspectionBundle;
 import com.immomo.momosec.lang.MomoBaseLocalInspectionTool;
+import com.immomo.momosec.lang.MomoRuleDispatcher;
 import com.immomo.momosec.lang.java.utils.MoExpressionUtils;
 import com.intellij.codeInspection.LocalQuickFix;
 import com.intellij.codeInspection.ProblemDescriptor;
@@ -27,6 +28,7 @@ import com.intellij.psi.*;
 import com.intellij.util.ObjectUtils;
 import org.jetbrains.annotations.Nls;
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 
 import java.util.HashSet;
 import java.util.Set;
@@ -62,9 +64,17 @@ public class PublicControllerOnSpring extends MomoBaseLocalInspectionTool {
 
     private final PublicControllerOnSpringQuickFix publicControllerOnSpringQuickFix = new PublicControllerOnSpringQuickFix();
 
+    private static final String[] TRIGGER_TOKENS = {"RequestMapping", "GetMapping", "PostMapping", "PutMapping", "DeleteMapping", "PatchMapping"};
+
+    @Nullable
+    @Override
+    protected String[] getTriggerTokens() {
+        return TRIGGER_TOKENS;
+    }
+
     @Override
-    public @NotNull PsiElementVisitor buildVisitor(@NotNull ProblemsHolder holder, boolean isOnTheFly) {
-        return new JavaElementVisitor() {
+    protected void registerHandlers(@NotNull MomoRuleDispatcher.HandlerTable table, @NotNull ProblemsHolder holder, boolean isOnTheFly) {
+        JavaElementVisitor visitor = new JavaElementVisitor() {
             @Override
             public void visitAnnotation(PsiAnnotation annotation) {
                 if (Boolean.FALSE.equals(requestMappingAnnotations.contains(annotation.getQualifiedName()))) {
@@ -86,6 +96,7 @@ public class PublicControllerOnSpring extends MomoBaseLocalInspectionTool {
                 }
             }
         };
+        table.on(PsiAnnotation.class, visitor::visitAnnotation);
     }
 
     public static class PublicControllerOnSpringQuickFix implements LocalQuickFix {
@@ -15,21 +15,28 @@
  */
 package com.immomo.momosec.lang.java.rule.momosecurity;
 
+import com.immomo.momosec.RegexDosConfirmationService;
+import com.immomo.momosec.RegexDosVerdictService;
 import com.immomo.momosec.lang.InspectionBundle;
 import com.immomo.momosec.lang.MomoBaseLocalInspectionTool;
-import com.immomo.momosec.lang.java.utils.MoExpressionUtils;
+import com.immomo.momosec.lang.MomoRuleDispatcher;
+import com.immomo.momosec.lang.java.utils.MoConstantEvaluator;
+import com.immomo.momosec.utils.RegexDosAnalyzer;
+import com.immomo.momosec.utils.RegexDosConfirmer;
+import com.intellij.codeInsight.CodeInsightUtilCore;
 import com.intellij.codeInspection.LocalQuickFix;
 import com.intellij.codeInspection.ProblemDescriptor;
 import com.intellij.codeInspection.ProblemHighlightType;
 import com.intellij.codeInspection.ProblemsHolder;
+import com.intellij.codeInspection.ui.SingleCheckboxOptionsPanel;
 import com.intellij.openapi.project.Project;
+import com.intellij.openapi.util.TextRange;
 import com.intellij.psi.*;
-import com.siyeh.ig.psiutils.MethodCallUtils;
 import org.jetbrains.annotations.Nls;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
-import java.util.regex.Pattern;
+import javax.swing.*;
 
 /**
  * 1005: RegexDos风险
@@ -42,70 +49,123 @@ import java.util.regex.Pattern;
  * check:
  * java.util.regex.Pattern#compile args:0
  * java.util.regex.Pattern#matchers args:0
+ * java.lang.String#matches / replaceAll / replaceFirst / split args:0
  *
  * fix:
  * (1) optimize Regular Expressions
  * (2) use com.google.re2j
  *
  * notes:
- * `isExponentialRegex` method copy from CodeQL
+ * 正则由 RegexDosAnalyzer 解析为 NFA 后分析歧义:
+ * 指数级回溯 (如 ([a-z]+)+、(a|aa)+) 与多项式级回溯 (如 \d+\.?\d+、(.*a){12}) 分别报告，
+ * 正则参数经 MoConstantEvaluator 求值 (拼接、跨类常量、String.format 等)，
+ * 参数本身是字面量时只高亮引起回溯的子表达式；分析结论按正则原文缓存在 RegexDosVerdictService 中。
+ * String.replaceAll / replaceFirst / split 按 find() 语义分析，其余 (含用法未知的 Pattern.compile) 按 matches() 语义分析
+ *
+ * 开启 confirmDynamically 后，由 RegexDosConfirmationService 在后台以生成的攻击串限时执行正则，
+ * 实测确认增长的问题在描述中附上增长类型与耗时曲线
  */
 public class RegexDos extends MomoBaseLocalInspectionTool {
     public static final String MESSAGE = InspectionBundle.message("regex.dos.msg");
+    public static final String POLYNOMIAL_MESSAGE = InspectionBundle.message("regex.dos.polynomial.msg");
     private static final String QUICK_FIX_NAME = InspectionBundle.message("regex.dos.fix");
 
     private final RegexDosWithRe2jQuickFix regexDosWithRe2jQuickFix = new RegexDosWithRe2jQuickFix();
 
+    public boolean confirmDynamically = false;
+
+    @Nullable
+    @Override
+    public JComponent createOptionsPanel() {
+        return new SingleCheckboxOptionsPanel(InspectionBundle.message("regex.dos.option.confirm"), this, "confirmDynamically");
+    }
+
     public static boolean isExponentialRegex(String s) {
-        return
-        // Example: ([a-z]+)+
-        Pattern.matches(".*\\([^()*+\\]]+\\]?(\\*|\\+)\\)(\\*|\\+).*", s) ||
-        // Example: (([a-z])?([a-z]+))+
-        Pattern.matches(".*\\((\\([^()]+\\)\\?)?\\([^()*+\\]]+\\]?(\\*|\\+)\\)\\)(\\*|\\+).*", s) ||
-        // Example: (([a-z])+)+
-        Pattern.matches(".*\\(\\([^()*+\\]]+\\]?\\)(\\*|\\+)\\)(\\*|\\+).*", s) ||
-        // Example: (a|aa)+
-        Pattern.matches(".*\\(([^()*+\\]]+\\]?)\\|\\1+\\??\\)(\\*|\\+).*", s) ||
-        // Example: (.*[a-z]){n} n >= 10
-        Pattern.matches(".*\\(\\.\\*[^()*+\\]]+\\]?\\)\\{[1-9][0-9]+,?[0-9]*\\}.*", s);
+        RegexDosAnalyzer.Result result = RegexDosAnalyzer.analyze(s);
+        return result != null && result.getKind() == RegexDosAnalyzer.Kind.EXPONENTIAL;
     }
 
-    @NotNull
+    // 按 find() 语义查找匹配的方法
+    private static final String[] STRING_FIND_METHODS = {"replaceAll", "replaceFirst", "split"};
+    private static final String[] TRIGGER_TOKENS = {"compile", "matches", "replaceAll", "replaceFirst", "split"};
+
+    @Nullable
     @Override
-    public PsiElementVisitor buildVisitor(@NotNull ProblemsHolder holder, boolean isOnTheFly) {
-        return new JavaElementVisitor() {
-            @Override
-            public void visitMethodCallExpression(PsiMethodCallExpression expression) {
-                if (MethodCallUtils.isCallToRegexMethod(expression)) { // `isCallToRegexMethod` judges include java.util.regex.Pattern
-                    String methodName = MethodCallUtils.getMethodName(expression);
-                    if (methodName != null && ( methodName.equals("compile") || methodName.equals("matches") )) {
-                        PsiExpression[] expressions = expression.getArgumentList().getExpressions();
-                        if (expressions.length > 0) {
-                            PsiLiteralExpression literal = getLiteralExpression(expressions[0]);
-                            if (literal != null && isExponentialRegex(MoExpressionUtils.getLiteralInnerText(literal))) {
-                                holder.registerProblem(expressions[0], MESSAGE, ProblemHighlightType.GENERIC_ERROR_OR_WARNING, regexDosWithRe2jQuickFix);
-                            }
-                        }
-                    }
-                }
-            }
-        };
+    protected String[] getTriggerTokens() {
+        return TRIGGER_TOKENS;
     }
 
+    @Override
+    protected void registerHandlers(@NotNull MomoRuleDispatcher.HandlerTable table, @NotNull ProblemsHolder holder, boolean isOnTheFly) {
+        LocalQuickFix[] patternFixes = {regexDosWithRe2jQuickFix};
+        table.onCall("java.util.regex.Pattern", "compile", call -> checkRegexArgument(call, false, holder, isOnTheFly, patternFixes));
+        table.onCall("java.util.regex.Pattern", "matches", call -> checkRegexArgument(call, false, holder, isOnTheFly, patternFixes));
+        // String 上的正则方法不能简单替换为 RE2/J，不提供修复
+        table.onCall("java.lang.String", "matches", call -> checkRegexArgument(call, false, holder, isOnTheFly, LocalQuickFix.EMPTY_ARRAY));
+        for (String methodName : STRING_FIND_METHODS) {
+            table.onCall("java.lang.String", methodName, call -> checkRegexArgument(call, true, holder, isOnTheFly, LocalQuickFix.EMPTY_ARRAY));
+        }
+    }
+
+    /**
+     * 第一个参数为正则，经常量求值得到正则原文后分析
+     * @param find boolean 调用按 find() 语义查找匹配
+     */
+    private void checkRegexArgument(@NotNull PsiMethodCallExpression call, boolean find, @NotNull ProblemsHolder holder,
+                                    boolean isOnTheFly, @NotNull LocalQuickFix[] fixes) {
+        PsiExpression[] expressions = call.getArgumentList().getExpressions();
+        if (expressions.length == 0) {
+            return ;
+        }
+        String regex = MoConstantEvaluator.evaluateString(expressions[0]);
+        RegexDosAnalyzer.Result result = regex != null ? RegexDosVerdictService.getInstance().analyze(regex, find) : null;
+        if (result == null) {
+            return ;
+        }
+        String message = result.getKind() == RegexDosAnalyzer.Kind.EXPONENTIAL ? MESSAGE : POLYNOMIAL_MESSAGE;
+        if (confirmDynamically) {
+            message = withConfirmation(message, regex, result, holder, isOnTheFly);
+        }
+        TextRange range = expressions[0] instanceof PsiLiteralExpression
+                ? getSourceRange((PsiLiteralExpression) expressions[0], result) : null;
+        holder.registerProblem(expressions[0], message, ProblemHighlightType.GENERIC_ERROR_OR_WARNING, range, fixes);
+    }
+
+    @NotNull
+    private static String withConfirmation(@NotNull String message, @NotNull String regex, @NotNull RegexDosAnalyzer.Result result,
+                                           @NotNull ProblemsHolder holder, boolean isOnTheFly) {
+        RegexDosConfirmationService service = RegexDosConfirmationService.getInstance();
+        // 编辑器内不等待验证结果，完成后会重新高亮
+        RegexDosConfirmer.Confirmation confirmation = isOnTheFly
+                ? service.getOrSchedule(regex, result, holder.getFile())
+                : service.confirm(regex, result);
+        if (confirmation == null || confirmation.getObserved() == null) {
+            return message;
+        }
+        String kind = InspectionBundle.message(confirmation.getObserved() == RegexDosAnalyzer.Kind.EXPONENTIAL
+                ? "regex.dos.kind.exponential" : "regex.dos.kind.polynomial");
+        return InspectionBundle.message("regex.dos.confirmed.msg", message, kind, confirmation.getCurve());
+    }
+
+    /**
+     * 将正则字符串中 [start, end) 映射为字面量源码中的范围 (相对字面量起始位置)
+     * @param literal PsiLiteralExpression
+     * @param result RegexDosAnalyzer.Result
+     * @return TextRange | null 无法映射时返回 null
+     */
     @Nullable
-    private PsiLiteralExpression getLiteralExpression(PsiExpression expression) {
-        if (expression instanceof PsiReferenceExpression) {
-            PsiElement elem = ((PsiReferenceExpression) expression).resolve();
-            if (elem instanceof PsiVariable) {
-                PsiExpression initializer = ((PsiVariable) elem).getInitializer();
-                if (initializer instanceof PsiLiteralExpression) {
-                    return (PsiLiteralExpression)initializer;
-                }
-            }
-        } else if (expression instanceof PsiLiteralExpression) {
-            return (PsiLiteralExpression)expression;
+    private static TextRange getSourceRange(@NotNull PsiLiteralExpression literal, @NotNull RegexDosAnalyzer.Result result) {
+        String text = literal.getText();
+        if (text.length() < 2 || text.charAt(0) != '"' || text.charAt(text.length() - 1) != '"') {
+            return null;
+        }
+        StringBuilder chars = new StringBuilder();
+        int[] offsets = new int[text.length() - 1];
+        if (!CodeInsightUtilCore.parseStringCharacters(text.substring(1, text.length() - 1), chars, offsets)
+                || result.getEnd() > chars.length()) {
+            return null;
         }
-        return null;
+        return new TextRange(offsets[result.getStart()] + 1, offsets[result.getEnd()] + 1);
     }
 
     public static class RegexDosWithRe2jQuickFix implements LocalQuickFix {
@@ -17,6 +17,7 @@ package com.immomo.momosec.lang.java.rule.momosecurity;
 
 import com.immomo.momosec.lang.InspectionBundle;
 import com.immomo.momosec.lang.MomoBaseLocalInspectionTool;
+import com.immomo.momosec.lang.MomoRuleDispatcher;
 import com.intellij.codeInspection.LocalQuickFix;
 import com.intellij.codeInspection.ProblemDescriptor;
 import com.intellij.codeInspection.ProblemHighlightType;
@@ -25,6 +26,7 @@ import com.intellij.openapi.project.Project;
 import com.intellij.psi.*;
 import org.jetbrains.annotations.Nls;
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 
 /**
  *  1019: SpringSecurity关闭Debug模式
@@ -36,9 +38,17 @@ public class SpringSecurityDebugEnabled extends MomoBaseLocalInspectionTool {
     private static final String QUICK_FIX_NAME = InspectionBundle.message("spring.security.debug.enabled.fix");
     private final SpringSecurityDebugDisable springSecurityDebugDisable = new SpringSecurityDebugDisable();
 
+    private static final String[] TRIGGER_TOKENS = {"EnableWebSecurity"};
+
+    @Nullable
+    @Override
+    protected String[] getTriggerTokens() {
+        return TRIGGER_TOKENS;
+    }
+
     @Override
-    public @NotNull PsiElementVisitor buildVisitor(@NotNull ProblemsHolder holder, boolean isOnTheFly) {
-        return new JavaElementVisitor() {
+    protected void registerHandlers(@NotNull MomoRuleDispatcher.HandlerTable table, @NotNull ProblemsHolder holder, boolean isOnTheFly) {
+        JavaElementVisitor visitor = new JavaElementVisitor() {
             @Override
             public void visitAnnotation(PsiAnnotation annotation) {
                 if ("org.springframework.security.config.annotation.web.configuration.EnableWebSecurity".equals(annotation.getQualifiedName())) {
@@ -59,6 +69,7 @@ public class SpringSecurityDebugEnabled extends MomoBaseLocalInspectionTool {
                 }
             }
         };
+        table.on(PsiAnnotation.class, visitor::visitAnnotation);
     }
 
     public static class SpringSecurityDebugDisable implements LocalQuickFix {
@@ -17,7 +17,7 @@ package com.immomo.momosec.lang.java.rule.momosecurity;
 
 import com.immomo.momosec.lang.InspectionBundle;
 import com.immomo.momosec.lang.MomoBaseLocalInspectionTool;
-import com.immomo.momosec.lang.java.utils.MoExpressionUtils;
+import com.immomo.momosec.lang.MomoRuleDispatcher;
 import com.intellij.codeInspection.LocalQuickFix;
 import com.intellij.codeInspection.ProblemDescriptor;
 import com.intellij.codeInspection.ProblemHighlightType;
@@ -27,6 +27,7 @@ import com.intellij.psi.*;
 import com.intellij.util.ObjectUtils;
 import org.jetbrains.annotations.Nls;
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 
 /**
  * Momo 1022: Spring 会话固定攻击风险
@@ -41,20 +42,21 @@ public class SpringSessionFixProtection extends MomoBaseLocalInspectionTool {
 
     private final SpringSessionFixProtectionQuickFix springSessionFixProtectionQuickFix = new SpringSessionFixProtectionQuickFix();
 
+    private static final String[] TRIGGER_TOKENS = {"none"};
+
+    @Nullable
     @Override
-    public @NotNull PsiElementVisitor buildVisitor(@NotNull ProblemsHolder holder, boolean isOnTheFly) {
-        return new JavaElementVisitor() {
-            @Override
-            public void visitMethodCallExpression(PsiMethodCallExpression expression) {
-                if (MoExpressionUtils.hasFullQualifiedName(
-                        expression,
-                        "org.springframework.security.config.annotation.web.configurers.SessionManagementConfigurer.SessionFixationConfigurer",
-                        "none")
-                ) {
-                    holder.registerProblem(expression, MESSAGE, ProblemHighlightType.GENERIC_ERROR_OR_WARNING, springSessionFixProtectionQuickFix);
-                }
-            }
-        };
+    protected String[] getTriggerTokens() {
+        return TRIGGER_TOKENS;
+    }
+
+    @Override
+    protected void registerHandlers(@NotNull MomoRuleDispatcher.HandlerTable table, @NotNull ProblemsHolder holder, boolean isOnTheFly) {
+        table.onCall(
+                "org.springframework.security.config.annotation.web.configurers.SessionManagementConfigurer.SessionFixationConfigurer",
+                "none",
+                expression -> holder.registerProblem(expression, MESSAGE, ProblemHighlightType.GENERIC_ERROR_OR_WARNING, springSessionFixProtectionQuickFix)
+        );
     }
 
     public static class SpringSessionFixProtectionQuickFix implements LocalQuickFix {
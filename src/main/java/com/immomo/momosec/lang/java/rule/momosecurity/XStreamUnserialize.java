@@ -19,6 +19,7 @@ import com.immomo.momosec.fix.ShowHelpCommentQuickFix;
 import com.immomo.momosec.lang.InspectionBundle;
 import com.immomo.momosec.lang.MomoBaseFixElementWalkingVisitor;
 import com.immomo.momosec.lang.MomoBaseLocalInspectionTool;
+import com.immomo.momosec.lang.MomoRuleDispatcher;
 import com.immomo.momosec.lang.java.utils.MoExpressionUtils;
 import com.intellij.codeInspection.LocalQuickFix;
 import com.intellij.codeInspection.ProblemDescriptor;
@@ -29,6 +30,7 @@ import com.intellij.openapi.project.Project;
 import com.intellij.psi.*;
 import org.jetbrains.annotations.Nls;
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 
 /**
  * 1011: XStream 反序列化风险
@@ -45,36 +47,39 @@ public class XStreamUnserialize extends MomoBaseLocalInspectionTool {
 
     private final XStreamUnserializeQuickFix xStreamUnserializeQuickFix = new XStreamUnserializeQuickFix();
 
+    private static final String[] TRIGGER_TOKENS = {"XStream"};
+
+    @Nullable
     @Override
-    public @NotNull PsiElementVisitor buildVisitor(@NotNull ProblemsHolder holder, boolean isOnTheFly) {
-        return new JavaElementVisitor() {
-            @Override
-            public void visitNewExpression(PsiNewExpression expression) {
-                if (MoExpressionUtils.hasFullQualifiedName(expression, "com.thoughtworks.xstream.XStream")) {
-                    if (expression.getParent() instanceof PsiLocalVariable) {
-                        PsiLocalVariable localVariable = (PsiLocalVariable)expression.getParent();
-                        SetupDefaultSecurityElementVisitor visitor = new SetupDefaultSecurityElementVisitor(localVariable);
-                        if (checkVariableUseFix(localVariable, null, visitor)) {
-                            return ;
-                        }
-                    } else if (expression.getParent() instanceof PsiAssignmentExpression) {
-                        PsiAssignmentExpression assignmentExpression = (PsiAssignmentExpression)expression.getParent();
-                        PsiElement resolvedElem = ((PsiReferenceExpression) assignmentExpression.getLExpression()).resolve();
-                        SetupDefaultSecurityElementVisitor visitor = new SetupDefaultSecurityElementVisitor(resolvedElem);
-                        if (checkVariableUseFix(assignmentExpression, resolvedElem, visitor)) {
-                            return ;
-                        }
-                    } else if (expression.getParent() instanceof PsiField) {
-                        PsiField field = (PsiField)expression.getParent();
-                        SetupDefaultSecurityElementVisitor visitor = new SetupDefaultSecurityElementVisitor(field);
-                        if (checkVariableUseFix(null, field, visitor)) {
-                            return ;
-                        }
-                    }
-                    holder.registerProblem(expression, MESSAGE, ProblemHighlightType.GENERIC_ERROR_OR_WARNING, xStreamUnserializeQuickFix);
+    protected String[] getTriggerTokens() {
+        return TRIGGER_TOKENS;
+    }
+
+    @Override
+    protected void registerHandlers(@NotNull MomoRuleDispatcher.HandlerTable table, @NotNull ProblemsHolder holder, boolean isOnTheFly) {
+        table.onNew("com.thoughtworks.xstream.XStream", expression -> {
+            if (expression.getParent() instanceof PsiLocalVariable) {
+                PsiLocalVariable localVariable = (PsiLocalVariable)expression.getParent();
+                SetupDefaultSecurityElementVisitor visitor = new SetupDefaultSecurityElementVisitor(localVariable);
+                if (checkVariableUseFix(localVariable, null, visitor)) {
+                    return ;
+                }
+            } else if (expression.getParent() instanceof PsiAssignmentExpression) {
+                PsiAssignmentExpression assignmentExpression = (PsiAssignmentExpression)expression.getParent();
+                PsiElement resolvedElem = ((PsiReferenceExpression) assignmentExpression.getLExpression()).resolve();
+                SetupDefaultSecurityElementVisitor visitor = new SetupDefaultSecurityElementVisitor(resolvedElem);
+                if (checkVariableUseFix(assignmentExpression, resolvedElem, visitor)) {
+                    return ;
+                }
+            } else if (expression.getParent() instanceof PsiField) {
+                PsiField field = (PsiField)expression.getParent();
+                SetupDefaultSecurityElementVisitor visitor = new SetupDefaultSecurityElementVisitor(field);
+                if (checkVariableUseFix(null, field, visitor)) {
+                    return ;
                 }
             }
-        };
+            holder.registerProblem(expression, MESSAGE, ProblemHighlightType.GENERIC_ERROR_OR_WARNING, xStreamUnserializeQuickFix);
+        });
     }
 
     private static class SetupDefaultSecurityElementVisitor extends MomoBaseFixElementWalkingVisitor {
@@ -16,9 +16,10 @@
 package com.immomo.momosec.lang.java.rule.momosecurity;
 
 import com.immomo.momosec.lang.InspectionBundle;
-import com.immomo.momosec.lang.MomoBaseFixElementWalkingVisitor;
 import com.immomo.momosec.lang.MomoBaseLocalInspectionTool;
 import com.immomo.momosec.lang.java.utils.MoExpressionUtils;
+import com.immomo.momosec.lang.java.utils.MoXmlConfigSummary;
+import com.immomo.momosec.lang.java.utils.MoXmlFactorySpec;
 import com.intellij.codeInsight.daemon.impl.quickfix.ImportClassFix;
 import com.intellij.codeInsight.intention.QuickFixFactory;
 import com.intellij.codeInspection.LocalQuickFix;
@@ -31,15 +32,19 @@ import com.intellij.openapi.editor.Editor;
 import com.intellij.openapi.editor.EditorFactory;
 import com.intellij.openapi.project.Project;
 import com.intellij.psi.*;
-import com.siyeh.ig.psiutils.ExpressionUtils;
-import com.siyeh.ig.psiutils.MethodCallUtils;
+import com.intellij.ui.DocumentAdapter;
+import com.intellij.ui.components.JBScrollPane;
 import org.jetbrains.annotations.Nls;
 import org.jetbrains.annotations.NotNull;
 
+import javax.swing.*;
+import javax.swing.event.DocumentEvent;
+import java.awt.BorderLayout;
 import java.util.ArrayList;
-import java.util.HashMap;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
-import java.util.Map;
+import java.util.stream.Collectors;
 
 /**
  * 1010: XXE漏洞
@@ -63,77 +68,147 @@ public class XxeInspector extends MomoBaseLocalInspectionTool {
     public static final String MESSAGE = InspectionBundle.message("xxe.inspector.msg");
     private static final String QUICK_FIX_NAME = InspectionBundle.message("xxe.inspector.fix");
 
+    private static final String DISALLOW_DOCTYPE_DECL = "\"http://apache.org/xml/features/disallow-doctype-decl\"";
+    private static final String ACCESS_EXTERNAL_DTD = "XMLConstants.ACCESS_EXTERNAL_DTD";
+    private static final String ACCESS_EXTERNAL_STYLESHEET = "XMLConstants.ACCESS_EXTERNAL_STYLESHEET";
+
+    /**
+     * 内置工厂的加固规格: 创建方式 -> 需要完成的配置 -> 修复语句 (见 MoXmlFactorySpec)
+     */
     public enum XmlFactory {
-        DOCUMENT_BUILDER_FACTORY,
-        SAX_PARSER_FACTORY,
-        SAX_TRANSFORMER_FACTORY,
-        SAX_BUILDER,
-        SAX_READER,
-        XML_READER_FACTORY,
-        SCHEMA_FACTORY,
-        XML_INPUT_FACTORY,
-        TRANSFORMER_FACTORY,
-        VALIDATOR_OF_SCHEMA
+        DOCUMENT_BUILDER_FACTORY(MoXmlFactorySpec.ofCall("javax.xml.parsers.DocumentBuilderFactory", "newInstance", false,
+                "setFeature", DISALLOW_DOCTYPE_DECL, "true")),
+        SAX_PARSER_FACTORY(MoXmlFactorySpec.ofCall("javax.xml.parsers.SAXParserFactory", "newInstance", false,
+                "setFeature", DISALLOW_DOCTYPE_DECL, "true")),
+        SAX_TRANSFORMER_FACTORY(MoXmlFactorySpec.ofCall("javax.xml.transform.sax.SAXTransformerFactory", "newInstance", true,
+                "setAttribute", ACCESS_EXTERNAL_DTD, "\"\"", ACCESS_EXTERNAL_STYLESHEET, "\"\"")),
+        SAX_BUILDER(MoXmlFactorySpec.ofNew("org.jdom.input.SAXBuilder",
+                "setFeature", DISALLOW_DOCTYPE_DECL, "true")),
+        SAX_READER(MoXmlFactorySpec.ofNew("org.dom4j.io.SAXReader",
+                "setFeature", DISALLOW_DOCTYPE_DECL, "true")),
+        XML_READER_FACTORY(MoXmlFactorySpec.ofCall("org.xml.sax.helpers.XMLReaderFactory", "createXMLReader", false,
+                "setFeature", DISALLOW_DOCTYPE_DECL, "true")),
+        SCHEMA_FACTORY(MoXmlFactorySpec.ofCall("javax.xml.validation.SchemaFactory", "newInstance", false,
+                "setProperty", ACCESS_EXTERNAL_DTD, "\"\"", ACCESS_EXTERNAL_STYLESHEET, "\"\"")),
+        XML_INPUT_FACTORY(MoXmlFactorySpec.ofCall("javax.xml.stream.XMLInputFactory", "newFactory", false,
+                "setProperty", ACCESS_EXTERNAL_DTD, "\"\"", ACCESS_EXTERNAL_STYLESHEET, "\"\"")),
+        TRANSFORMER_FACTORY(MoXmlFactorySpec.ofCall("javax.xml.transform.TransformerFactory", "newInstance", true,
+                "setAttribute", ACCESS_EXTERNAL_DTD, "\"\"", ACCESS_EXTERNAL_STYLESHEET, "\"\"")),
+        VALIDATOR_OF_SCHEMA(MoXmlFactorySpec.ofCall("javax.xml.validation.Schema", "newValidator", false,
+                "setProperty", ACCESS_EXTERNAL_DTD, "\"\"", ACCESS_EXTERNAL_STYLESHEET, "\"\""));
+
+        private final MoXmlFactorySpec spec;
+
+        XmlFactory(MoXmlFactorySpec spec) {
+            this.spec = spec;
+        }
+
+        public MoXmlFactorySpec getSpec() {
+            return spec;
+        }
+    }
+
+    private static final List<MoXmlFactorySpec> BUILTIN_SPECS = Collections.unmodifiableList(
+            Arrays.stream(XmlFactory.values()).map(XmlFactory::getSpec).collect(Collectors.toList()));
+
+    // 用户追加的工厂，格式见 MoXmlFactorySpec
+    public String customFactories = "";
+
+    private volatile CustomSpecs customSpecs = new CustomSpecs("", BUILTIN_SPECS);
+
+    @Override
+    public JComponent createOptionsPanel() {
+        JTextArea textArea = new JTextArea(customFactories, 6, 60);
+        textArea.getDocument().addDocumentListener(new DocumentAdapter() {
+            @Override
+            protected void textChanged(@NotNull DocumentEvent e) {
+                customFactories = textArea.getText();
+            }
+        });
+        JPanel panel = new JPanel(new BorderLayout());
+        panel.add(new JLabel(InspectionBundle.message("xxe.inspector.option.custom")), BorderLayout.NORTH);
+        panel.add(new JBScrollPane(textArea), BorderLayout.CENTER);
+        return panel;
     }
 
     @Override
     public @NotNull PsiElementVisitor buildVisitor(@NotNull ProblemsHolder holder, boolean isOnTheFly) {
+        List<MoXmlFactorySpec> specs = getSpecs();
         return new JavaElementVisitor() {
             @Override
             public void visitMethodCallExpression(PsiMethodCallExpression expression) {
-                if (MoExpressionUtils.hasFullQualifiedName(expression, "javax.xml.parsers.DocumentBuilderFactory", "newInstance")) {
-                    commonExpressionCheck(expression, "setFeature", XmlFactory.DOCUMENT_BUILDER_FACTORY, false);
-                } else if (MoExpressionUtils.hasFullQualifiedName(expression, "javax.xml.parsers.SAXParserFactory", "newInstance")) {
-                    commonExpressionCheck(expression, "setFeature", XmlFactory.SAX_PARSER_FACTORY, false);
-                } else if (MoExpressionUtils.hasFullQualifiedName(expression, "javax.xml.transform.sax.SAXTransformerFactory", "newInstance")) {
-                    commonExpressionCheck(expression, "setAttribute", XmlFactory.SAX_TRANSFORMER_FACTORY, true);
-                } else if (MoExpressionUtils.hasFullQualifiedName(expression, "org.xml.sax.helpers.XMLReaderFactory", "createXMLReader")) {
-                    commonExpressionCheck(expression, "setFeature", XmlFactory.XML_READER_FACTORY, false);
-                } else if (MoExpressionUtils.hasFullQualifiedName(expression, "javax.xml.validation.SchemaFactory", "newInstance")) {
-                    commonExpressionCheck(expression, "setProperty", XmlFactory.SCHEMA_FACTORY, false);
-                } else if (MoExpressionUtils.hasFullQualifiedName(expression, "javax.xml.stream.XMLInputFactory", "newFactory")) {
-                    commonExpressionCheck(expression, "setProperty", XmlFactory.XML_INPUT_FACTORY, false);
-                } else if (MoExpressionUtils.hasFullQualifiedName(expression, "javax.xml.transform.TransformerFactory", "newInstance")) {
-                    commonExpressionCheck(expression, "setAttribute", XmlFactory.TRANSFORMER_FACTORY, true);
-                } else if (MoExpressionUtils.hasFullQualifiedName(expression, "javax.xml.validation.Schema", "newValidator")) {
-                    commonExpressionCheck(expression, "setProperty", XmlFactory.VALIDATOR_OF_SCHEMA, false);
-                }
+                checkCreation(expression);
             }
 
             @Override
             public void visitNewExpression(PsiNewExpression expression) {
-                if (MoExpressionUtils.hasFullQualifiedName(expression, "org.jdom.input.SAXBuilder")) {
-                    commonExpressionCheck(expression, "setFeature", XmlFactory.SAX_BUILDER, false);
-                } else if (MoExpressionUtils.hasFullQualifiedName(expression, "org.dom4j.io.SAXReader")) {
-                    commonExpressionCheck(expression, "setFeature", XmlFactory.SAX_READER, false);
-                }
+                checkCreation(expression);
             }
 
-            private void commonExpressionCheck(PsiCallExpression expression, String methodName, XmlFactory xmlFactory, boolean withTypeCast) {
-                if (expression.getParent() instanceof PsiAssignmentExpression ||
-                    (withTypeCast &&
-                     expression.getParent() instanceof PsiTypeCastExpression &&
-                     expression.getParent().getParent() instanceof PsiAssignmentExpression)
-                ) {
-                    assignmentExpressionCheck(holder, expression, methodName, xmlFactory);
-                } else if (expression.getParent() instanceof PsiLocalVariable ||
-                    (withTypeCast &&
-                     expression.getParent() instanceof PsiTypeCastExpression &&
-                     expression.getParent().getParent() instanceof PsiLocalVariable)
-                ) {
-                    localVariableCheck(holder, expression, methodName, xmlFactory);
-                } else if (expression.getParent() instanceof PsiField ||
-                    (withTypeCast &&
-                     expression.getParent() instanceof PsiTypeCastExpression &&
-                     expression.getParent().getParent() instanceof PsiField)
-                ) {
-                    classFieldCheck(holder, expression, methodName, xmlFactory);
+            private void checkCreation(PsiCallExpression expression) {
+                for (MoXmlFactorySpec spec : specs) {
+                    if (spec.matches(expression)) {
+                        commonExpressionCheck(holder, expression, spec);
+                        return;
+                    }
                 }
             }
         };
     }
 
-    private void assignmentExpressionCheck(@NotNull ProblemsHolder holder, PsiCallExpression expression, String shouldUsedMethodName, XmlFactory xmlFactory) {
+    /**
+     * @return List<MoXmlFactorySpec> 内置工厂与用户追加的工厂，用户配置变化时重新解析
+     */
+    private List<MoXmlFactorySpec> getSpecs() {
+        return getCustomSpecs().specs;
+    }
+
+    private CustomSpecs getCustomSpecs() {
+        String source = customFactories != null ? customFactories : "";
+        CustomSpecs custom = customSpecs;
+        if (!custom.source.equals(source)) {
+            List<MoXmlFactorySpec> specs = new ArrayList<>(BUILTIN_SPECS);
+            specs.addAll(MoXmlFactorySpec.parseAll(source));
+            custom = new CustomSpecs(source, Collections.unmodifiableList(specs));
+            customSpecs = custom;
+        }
+        return custom;
+    }
+
+    private static class CustomSpecs {
+        private final String source;
+        private final List<MoXmlFactorySpec> specs;
+
+        CustomSpecs(String source, List<MoXmlFactorySpec> specs) {
+            this.source = source;
+            this.specs = specs;
+        }
+    }
+
+    private void commonExpressionCheck(@NotNull ProblemsHolder holder, PsiCallExpression expression, MoXmlFactorySpec spec) {
+        boolean withTypeCast = spec.isWithTypeCast();
+        if (expression.getParent() instanceof PsiAssignmentExpression ||
+            (withTypeCast &&
+             expression.getParent() instanceof PsiTypeCastExpression &&
+             expression.getParent().getParent() instanceof PsiAssignmentExpression)
+        ) {
+            assignmentExpressionCheck(holder, expression, spec);
+        } else if (expression.getParent() instanceof PsiLocalVariable ||
+            (withTypeCast &&
+             expression.getParent() instanceof PsiTypeCastExpression &&
+             expression.getParent().getParent() instanceof PsiLocalVariable)
+        ) {
+            localVariableCheck(holder, expression, spec);
+        } else if (expression.getParent() instanceof PsiField ||
+            (withTypeCast &&
+             expression.getParent() instanceof PsiTypeCastExpression &&
+             expression.getParent().getParent() instanceof PsiField)
+        ) {
+            classFieldCheck(holder, expression, spec);
+        }
+    }
+
+    private void assignmentExpressionCheck(@NotNull ProblemsHolder holder, PsiCallExpression expression, MoXmlFactorySpec spec) {
         PsiElement parent = expression.getParent();
         if (parent instanceof PsiTypeCastExpression) {
             parent = parent.getParent();
@@ -141,9 +216,8 @@ public class XxeInspector extends MomoBaseLocalInspectionTool {
 
         PsiAssignmentExpression assignmentExpression = (PsiAssignmentExpression)parent;
         PsiElement resolvedElem = ((PsiReferenceExpression) assignmentExpression.getLExpression()).resolve();
-        DisableEntityElementVisitor visitor = new DisableEntityElementVisitor(shouldUsedMethodName, xmlFactory, resolvedElem);
 
-        if (checkVariableUseFix(assignmentExpression, resolvedElem, visitor)) {
+        if (MoXmlConfigSummary.isConfigured(assignmentExpression, resolvedElem, spec.getRequiredSettings())) {
             return ;
         }
 
@@ -151,19 +225,18 @@ public class XxeInspector extends MomoBaseLocalInspectionTool {
                 expression,
                 MESSAGE,
                 ProblemHighlightType.GENERIC_ERROR_OR_WARNING,
-                new XxeInspectionQuickFix(xmlFactory, VulnElemType.ASSIGNMENT_EXPRESSION)
+                new XxeInspectionQuickFix(spec, VulnElemType.ASSIGNMENT_EXPRESSION)
         );
     }
 
-    private void localVariableCheck(@NotNull ProblemsHolder holder, PsiCallExpression expression, String shouldUsedMethodName, XmlFactory xmlFactory) {
+    private void localVariableCheck(@NotNull ProblemsHolder holder, PsiCallExpression expression, MoXmlFactorySpec spec) {
         PsiElement parent = expression.getParent();
         if (parent instanceof PsiTypeCastExpression) {
             parent = parent.getParent();
         }
 
         PsiLocalVariable localVariable = (PsiLocalVariable)parent;
-        DisableEntityElementVisitor visitor = new DisableEntityElementVisitor(shouldUsedMethodName, xmlFactory, localVariable);
-        if (checkVariableUseFix(localVariable, null, visitor)) {
+        if (MoXmlConfigSummary.isConfigured(localVariable, localVariable, spec.getRequiredSettings())) {
             return ;
         }
 
@@ -171,19 +244,18 @@ public class XxeInspector extends MomoBaseLocalInspectionTool {
                 expression,
                 MESSAGE,
                 ProblemHighlightType.GENERIC_ERROR_OR_WARNING,
-                new XxeInspectionQuickFix(xmlFactory, VulnElemType.LOCAL_VARIABLE)
+                new XxeInspectionQuickFix(spec, VulnElemType.LOCAL_VARIABLE)
         );
     }
 
-    private void classFieldCheck(@NotNull ProblemsHolder holder, PsiCallExpression expression, String shouldUsedMethodName, XmlFactory xmlFactory) {
+    private void classFieldCheck(@NotNull ProblemsHolder holder, PsiCallExpression expression, MoXmlFactorySpec spec) {
         PsiElement parent  = expression.getParent();
         if (parent instanceof PsiTypeCastExpression) {
             parent = parent.getParent();
         }
 
         PsiField field = (PsiField) parent;
-        DisableEntityElementVisitor visitor = new DisableEntityElementVisitor(shouldUsedMethodName, xmlFactory, field);
-        if (checkVariableUseFix(null, field, visitor)) {
+        if (MoXmlConfigSummary.isConfigured(null, field, spec.getRequiredSettings())) {
             return ;
         }
 
@@ -191,109 +263,21 @@ public class XxeInspector extends MomoBaseLocalInspectionTool {
                 expression,
                 MESSAGE,
                 ProblemHighlightType.GENERIC_ERROR_OR_WARNING,
-                new XxeInspectionQuickFix(xmlFactory, VulnElemType.CLASS_FIELD)
+                new XxeInspectionQuickFix(spec, VulnElemType.CLASS_FIELD)
         );
     }
 
-    private static class DisableEntityElementVisitor extends MomoBaseFixElementWalkingVisitor {
-
-        private final String shouldUsedMethodName;
-        private final XmlFactory xmlFactory;
-        private final PsiElement refVar;
-        private Map<String, Boolean> needSatisfiedRules;
-
-        public DisableEntityElementVisitor(String shouldUsedMethodName, XmlFactory xmlFactory, PsiElement refVar) {
-            this.shouldUsedMethodName = shouldUsedMethodName;
-            this.xmlFactory = xmlFactory;
-            this.refVar = refVar;
-
-            if (xmlFactory.equals(XmlFactory.DOCUMENT_BUILDER_FACTORY) ||
-                xmlFactory.equals(XmlFactory.SAX_PARSER_FACTORY) ||
-                xmlFactory.equals(XmlFactory.SAX_BUILDER) ||
-                xmlFactory.equals(XmlFactory.SAX_READER) ||
-                xmlFactory.equals(XmlFactory.XML_READER_FACTORY)
-            ) {
-                this.needSatisfiedRules = new HashMap<String, Boolean>() {{
-                   put("http://apache.org/xml/features/disallow-doctype-decl", false);
-                }};
-            } else if (xmlFactory.equals(XmlFactory.SAX_TRANSFORMER_FACTORY) ||
-                xmlFactory.equals(XmlFactory.SCHEMA_FACTORY) ||
-                xmlFactory.equals(XmlFactory.XML_INPUT_FACTORY) ||
-                xmlFactory.equals(XmlFactory.TRANSFORMER_FACTORY) ||
-                xmlFactory.equals(XmlFactory.VALIDATOR_OF_SCHEMA)
-            ) {
-                this.needSatisfiedRules = new HashMap<String, Boolean>() {{
-                   put("XMLConstants.ACCESS_EXTERNAL_DTD", false);
-                   put("XMLConstants.ACCESS_EXTERNAL_STYLESHEET", false);
-               }};
-            }
-        }
-
-        @Override
-        public void visitElement(PsiElement element) {
-            if (element instanceof PsiMethodCallExpression) {
-                PsiMethodCallExpression methodCallExpression = (PsiMethodCallExpression)element;
-                if (shouldUsedMethodName.equals(MethodCallUtils.getMethodName(methodCallExpression))) {
-                    PsiExpressionList args = methodCallExpression.getArgumentList();
-                    if (!(args.getExpressionCount() == 2)) { return ; }
-                    // 根据 xmlFactory 类型判断参数值
-                    if (xmlFactory.equals(XmlFactory.DOCUMENT_BUILDER_FACTORY) ||
-                        xmlFactory.equals(XmlFactory.SAX_PARSER_FACTORY) ||
-                        xmlFactory.equals(XmlFactory.SAX_BUILDER) ||
-                        xmlFactory.equals(XmlFactory.SAX_READER) ||
-                        xmlFactory.equals(XmlFactory.XML_READER_FACTORY)
-                    ) {
-                        if (ExpressionUtils.isLiteral(args.getExpressions()[0], "http://apache.org/xml/features/disallow-doctype-decl") &&
-                            ExpressionUtils.isLiteral(args.getExpressions()[1], Boolean.TRUE)
-                        ) {
-                            this.needSatisfiedRules.replace("http://apache.org/xml/features/disallow-doctype-decl", true);
-                        } else {
-                            return ;
-                        }
-                    } else if (xmlFactory.equals(XmlFactory.SAX_TRANSFORMER_FACTORY) ||
-                        xmlFactory.equals(XmlFactory.SCHEMA_FACTORY) ||
-                        xmlFactory.equals(XmlFactory.XML_INPUT_FACTORY) ||
-                        xmlFactory.equals(XmlFactory.TRANSFORMER_FACTORY) ||
-                        xmlFactory.equals(XmlFactory.VALIDATOR_OF_SCHEMA)
-                    ) {
-                        if (!(args.getExpressions()[0] instanceof PsiReferenceExpression)) { return ; }
-                        if (args.getExpressions()[0].textMatches("XMLConstants.ACCESS_EXTERNAL_DTD") &&
-                            ExpressionUtils.isEmptyStringLiteral(args.getExpressions()[1])
-                        ) {
-                            this.needSatisfiedRules.replace("XMLConstants.ACCESS_EXTERNAL_DTD", true);
-                        } else if (args.getExpressions()[0].textMatches("XMLConstants.ACCESS_EXTERNAL_STYLESHEET") &&
-                            ExpressionUtils.isEmptyStringLiteral(args.getExpressions()[1])
-                        ) {
-                            this.needSatisfiedRules.replace("XMLConstants.ACCESS_EXTERNAL_STYLESHEET", true);
-                        } else {
-                            return ;
-                        }
-                    } else { return ; }
-
-                    PsiExpression refQualifier = methodCallExpression.getMethodExpression().getQualifierExpression();
-                    if (refQualifier != null &&
-                        refQualifier.getReference() != null &&
-                        refVar.isEquivalentTo(refQualifier.getReference().resolve()) &&
-                        this.needSatisfiedRules.values().stream().allMatch(Boolean::booleanValue)
-                    ) {
-                        this.setFix(true);
-                        this.stopWalking();
-                        return;
-                    }
-                }
-                return ; // 停止继续 walking 当前的 methodcall
-            }
-            super.visitElement(element);
-        }
-    }
-
     public static class XxeInspectionQuickFix implements LocalQuickFix {
 
-        private final XmlFactory xmlFactory;
+        private final MoXmlFactorySpec spec;
         private final VulnElemType vulnElemType;
 
         public XxeInspectionQuickFix(XmlFactory xmlFactory, VulnElemType vulnElemType) {
-            this.xmlFactory = xmlFactory;
+            this(xmlFactory.getSpec(), vulnElemType);
+        }
+
+        public XxeInspectionQuickFix(MoXmlFactorySpec spec, VulnElemType vulnElemType) {
+            this.spec = spec;
             this.vulnElemType = vulnElemType;
         }
 
@@ -327,28 +311,7 @@ public class XxeInspector extends MomoBaseLocalInspectionTool {
             PsiElementFactory factory = JavaPsiFacade.getElementFactory(project);
 
             // 生成待插入的语句内容
-            List<String> blockTextes = new ArrayList<>();
-            if (xmlFactory.equals(XmlFactory.DOCUMENT_BUILDER_FACTORY) ||
-                xmlFactory.equals(XmlFactory.SAX_PARSER_FACTORY) ||
-                xmlFactory.equals(XmlFactory.SAX_BUILDER) ||
-                xmlFactory.equals(XmlFactory.SAX_READER) ||
-                xmlFactory.equals(XmlFactory.XML_READER_FACTORY)
-            ) {
-                blockTextes.add(varName + ".setFeature(\"http://apache.org/xml/features/disallow-doctype-decl\", true);");
-            } else if (
-                xmlFactory.equals(XmlFactory.SAX_TRANSFORMER_FACTORY) ||
-                xmlFactory.equals(XmlFactory.TRANSFORMER_FACTORY)
-            ) {
-                blockTextes.add(varName+".setAttribute(XMLConstants.ACCESS_EXTERNAL_DTD, \"\");");
-                blockTextes.add(varName+".setAttribute(XMLConstants.ACCESS_EXTERNAL_STYLESHEET, \"\");");
-            } else if (
-                xmlFactory.equals(XmlFactory.SCHEMA_FACTORY) ||
-                xmlFactory.equals(XmlFactory.XML_INPUT_FACTORY) ||
-                xmlFactory.equals(XmlFactory.VALIDATOR_OF_SCHEMA)
-            ) {
-                blockTextes.add(varName+".setProperty(XMLConstants.ACCESS_EXTERNAL_DTD, \"\");");
-                blockTextes.add(varName+".setProperty(XMLConstants.ACCESS_EXTERNAL_STYLESHEET, \"\");");
-            }
+            List<String> blockTextes = spec.getFixStatements(varName);
             if (blockTextes.size() == 0) { return ; }
 
             if (VulnElemType.LOCAL_VARIABLE.equals(vulnElemType) ||
@@ -0,0 +1,267 @@
+/*
+ * Copyright 2020 momosecurity.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.immomo.momosec.lang.java.utils;
+
+import com.immomo.momosec.utils.CacheStats;
+import com.intellij.openapi.util.Key;
+import com.intellij.psi.*;
+import com.intellij.psi.tree.IElementType;
+import com.intellij.psi.util.CachedValue;
+import com.intellij.psi.util.CachedValueProvider;
+import com.intellij.psi.util.CachedValuesManager;
+import com.intellij.psi.util.PsiModificationTracker;
+import com.intellij.psi.util.PsiUtil;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.HashSet;
+import java.util.IllegalFormatException;
+import java.util.Set;
+
+/**
+ * 常量求值
+ *
+ * 在 JavaPsiFacade 常量求值的基础上补充:
+ * (1) 字符串拼接 (包括 final 实例字段、有初始值的局部变量等非编译期常量)
+ * (2) 跨类的 static final 字段
+ * (3) String.format / String.join / String.valueOf / concat，参数均为常量时求值
+ * (4) 无参数、方法体只有一条 return 语句的 static 方法
+ *
+ * 字段与方法的求值结果以 CachedValue 缓存在字段 / 方法上，跟随全局 PSI 修改计数失效，
+ * 同一个常量在两次修改之间只求值一次。
+ */
+public class MoConstantEvaluator {
+
+    private static final Key<CachedValue<Object>> VALUE_KEY = Key.create("momosec.constant.value");
+
+    // CachedValue 中以此表示无法求值
+    private static final Object UNKNOWN = new Object();
+
+    private static final int MAX_DEPTH = 32;
+    private static final int MAX_LENGTH = 64 * 1024;
+
+    private static final CacheStats.Counter STATS = CacheStats.counter("constant");
+
+    // 当前线程正在求值的字段 / 方法，用于截断循环引用
+    private static final ThreadLocal<Set<PsiElement>> EVALUATING = ThreadLocal.withInitial(HashSet::new);
+
+    /**
+     * @param expression PsiExpression
+     * @return String | null 不是字符串常量时返回 null
+     */
+    @Nullable
+    public static String evaluateString(@Nullable PsiExpression expression) {
+        Object value = evaluate(expression);
+        return value instanceof String ? (String) value : null;
+    }
+
+    /**
+     * @param expression PsiExpression
+     * @return String / 基础类型的包装类型 | null 无法求值
+     */
+    @Nullable
+    public static Object evaluate(@Nullable PsiExpression expression) {
+        return expression == null ? null : evaluate(expression, 0);
+    }
+
+    @Nullable
+    private static Object evaluate(@NotNull PsiExpression expression, int depth) {
+        if (depth > MAX_DEPTH) {
+            return null;
+        }
+        expression = PsiUtil.skipParenthesizedExprDown(expression);
+        if (expression == null) {
+            return null;
+        }
+
+        if (expression instanceof PsiLiteralExpression) {
+            return ((PsiLiteralExpression) expression).getValue();
+        }
+        if (expression instanceof PsiReferenceExpression) {
+            PsiElement target = MoResolveCache.resolve((PsiReferenceExpression) expression);
+            return target instanceof PsiVariable ? evaluateVariable((PsiVariable) target, depth) : null;
+        }
+        if (expression instanceof PsiPolyadicExpression) {
+            Object value = evaluatePolyadic((PsiPolyadicExpression) expression, depth);
+            return value != null ? value : computeConstant(expression);
+        }
+        if (expression instanceof PsiMethodCallExpression) {
+            return evaluateMethodCall((PsiMethodCallExpression) expression, depth);
+        }
+        return computeConstant(expression);
+    }
+
+    @Nullable
+    private static Object computeConstant(@NotNull PsiExpression expression) {
+        return JavaPsiFacade.getInstance(expression.getProject()).getConstantEvaluationHelper().computeConstantExpression(expression);
+    }
+
+    /**
+     * final 字段 / 有初始值的局部变量按初始值求值；非 final 字段只接受字面量初始值
+     */
+    @Nullable
+    private static Object evaluateVariable(@NotNull PsiVariable variable, int depth) {
+        PsiExpression initializer = variable.getInitializer();
+        if (initializer == null || variable instanceof PsiParameter) {
+            return null;
+        }
+        if (variable instanceof PsiField) {
+            if (!variable.hasModifierProperty(PsiModifier.FINAL)) {
+                PsiExpression literal = PsiUtil.skipParenthesizedExprDown(initializer);
+                return literal instanceof PsiLiteralExpression ? ((PsiLiteralExpression) literal).getValue() : null;
+            }
+            return cached(variable, initializer);
+        }
+        return evaluate(initializer, depth + 1);
+    }
+
+    @Nullable
+    private static Object evaluatePolyadic(@NotNull PsiPolyadicExpression expression, int depth) {
+        IElementType operation = expression.getOperationTokenType();
+        PsiType type = expression.getType();
+        if (operation != JavaTokenType.PLUS || type == null || !type.equalsToText(CommonClassNames.JAVA_LANG_STRING)) {
+            return null;
+        }
+        PsiExpression[] operands = expression.getOperands();
+        Object first = evaluate(operands[0], depth + 1);
+        if (first == null) {
+            return null;
+        }
+        boolean isString = first instanceof String;
+        StringBuilder sb = new StringBuilder(String.valueOf(first));
+        for (int i = 1; i < operands.length; i++) {
+            Object value = evaluate(operands[i], depth + 1);
+            // 左结合: 出现字符串之前的数值相加不按拼接处理
+            if (value == null || !isString && !(value instanceof String)) {
+                return null;
+            }
+            isString = true;
+            sb.append(value);
+            if (sb.length() > MAX_LENGTH) {
+                return null;
+            }
+        }
+        return sb.toString();
+    }
+
+    @Nullable
+    private static Object evaluateMethodCall(@NotNull PsiMethodCallExpression call, int depth) {
+        PsiMethod method = MoResolveCache.resolveMethod(call);
+        if (method == null) {
+            return null;
+        }
+        PsiClass containingClass = method.getContainingClass();
+        PsiExpression[] args = call.getArgumentList().getExpressions();
+
+        if (containingClass != null && CommonClassNames.JAVA_LANG_STRING.equals(containingClass.getQualifiedName())) {
+            return evaluateStringMethod(call, method.getName(), args, depth);
+        }
+
+        if (args.length == 0 && method.hasModifierProperty(PsiModifier.STATIC) && method.getParameterList().getParametersCount() == 0) {
+            PsiCodeBlock body = method.getBody();
+            PsiStatement[] statements = body != null ? body.getStatements() : PsiStatement.EMPTY_ARRAY;
+            if (statements.length == 1 && statements[0] instanceof PsiReturnStatement) {
+                PsiExpression returnValue = ((PsiReturnStatement) statements[0]).getReturnValue();
+                if (returnValue != null) {
+                    return cached(method, returnValue);
+                }
+            }
+        }
+        return null;
+    }
+
+    @Nullable
+    private static Object evaluateStringMethod(@NotNull PsiMethodCallExpression call, @NotNull String name,
+                                               @NotNull PsiExpression[] args, int depth) {
+        Object[] values = new Object[args.length];
+        for (int i = 0; i < args.length; i++) {
+            values[i] = evaluate(args[i], depth + 1);
+            if (values[i] == null) {
+                return null;
+            }
+        }
+
+        switch (name) {
+            case "format":
+                if (values.length == 0 || !(values[0] instanceof String)) {
+                    return null;
+                }
+                Object[] formatArgs = new Object[values.length - 1];
+                System.arraycopy(values, 1, formatArgs, 0, formatArgs.length);
+                try {
+                    return limit(String.format((String) values[0], formatArgs));
+                } catch (IllegalFormatException e) {
+                    return null;
+                }
+            case "join": {
+                if (values.length < 2 || !(values[0] instanceof String)) {
+                    return null;
+                }
+                StringBuilder sb = new StringBuilder();
+                for (int i = 1; i < values.length; i++) {
+                    if (i > 1) {
+                        sb.append(values[0]);
+                    }
+                    sb.append(values[i]);
+                }
+                return limit(sb.toString());
+            }
+            case "valueOf":
+                return values.length == 1 ? String.valueOf(values[0]) : null;
+            case "concat": {
+                PsiExpression qualifier = call.getMethodExpression().getQualifierExpression();
+                Object base = qualifier != null ? evaluate(qualifier, depth + 1) : null;
+                return base instanceof String && values.length == 1 && values[0] instanceof String
+                        ? limit(base + (String) values[0]) : null;
+            }
+            default:
+                return null;
+        }
+    }
+
+    @Nullable
+    private static String limit(@NotNull String s) {
+        return s.length() > MAX_LENGTH ? null : s;
+    }
+
+    /**
+     * 在 owner (字段 / 方法) 上缓存 expression 的值
+     */
+    @Nullable
+    private static Object cached(@NotNull PsiElement owner, @NotNull PsiExpression expression) {
+        Set<PsiElement> evaluating = EVALUATING.get();
+        if (evaluating.contains(owner)) {
+            return null;
+        }
+        boolean[] computed = {false};
+        Object value = CachedValuesManager.getCachedValue(owner, VALUE_KEY, () -> {
+            computed[0] = true;
+            evaluating.add(owner);
+            try {
+                Object result = evaluate(expression, 0);
+                return CachedValueProvider.Result.create(result != null ? result : UNKNOWN, PsiModificationTracker.MODIFICATION_COUNT);
+            } finally {
+                evaluating.remove(owner);
+            }
+        });
+        if (computed[0]) {
+            STATS.miss();
+        } else {
+            STATS.hit();
+        }
+        return value == UNKNOWN ? null : value;
+    }
+}
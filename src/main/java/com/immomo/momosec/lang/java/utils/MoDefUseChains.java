@@ -0,0 +1,326 @@
+/*
+ * Copyright 2020 momosecurity.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.immomo.momosec.lang.java.utils;
+
+import com.immomo.momosec.utils.CacheStats;
+import com.intellij.openapi.util.Key;
+import com.intellij.psi.*;
+import com.intellij.psi.util.CachedValue;
+import com.intellij.psi.util.CachedValueProvider;
+import com.intellij.psi.util.CachedValuesManager;
+import com.intellij.psi.util.PsiModificationTracker;
+import com.intellij.util.ObjectUtils;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * 方法内变量的定义点链
+ *
+ * 对一个方法只遍历一次，按源码位置顺序记录每个变量的定义点:
+ * (1) DECLARATION 局部变量声明及其初始值
+ * (2) ASSIGN      赋值 (含 += 等复合赋值)，a = a + b 中 a 自身不计入
+ * (3) APPEND      StringBuilder / StringBuffer 的 append(x, ...) / insert(i, x, ...)，含链式调用 sb.append(a).append(b)
+ * (4) ELEMENT     数组元素写入 a[i] = x
+ * (5) CALL        以可变对象变量为接收者的其他方法调用 (String、基础类型及其包装类不可变，不记录)
+ * (6) ARGUMENT    可变对象变量作为实参传入方法调用或构造，被调用方可能修改其内容 (如 fill(sb, host)、System.arraycopy)
+ * 并同时判断每个定义点写入的内容是否为常量文本，
+ * 以 CachedValue 缓存在方法上，跟随全局 PSI 修改计数失效。
+ *
+ * 与此前基于 ReferencesSearch 的实现一致，以源码位置近似控制流: 位于引用点之前的定义点视为可达。
+ */
+public class MoDefUseChains {
+
+    private static final Key<CachedValue<MoDefUseChains>> CHAINS_KEY = Key.create("momosec.def.use.chains");
+
+    public static final CacheStats.Counter STATS = CacheStats.counter("def-use-chains");
+
+    public enum DefKind {
+        DECLARATION,
+        ASSIGN,
+        APPEND,
+        ELEMENT,
+        CALL,
+        ARGUMENT
+    }
+
+    /**
+     * 一个定义点
+     */
+    public static final class Def {
+        private final DefKind kind;
+        private final int offset;
+        @Nullable
+        private final PsiExpression value;
+        private final boolean constant;
+
+        private Def(@NotNull DefKind kind, int offset, @Nullable PsiExpression value, boolean constant) {
+            this.kind = kind;
+            this.offset = offset;
+            this.value = value;
+            this.constant = constant;
+        }
+
+        @NotNull
+        public DefKind getKind() {
+            return kind;
+        }
+
+        public int getOffset() {
+            return offset;
+        }
+
+        /**
+         * @return PsiExpression | null 写入的内容: 初始值 / 赋值右侧 / append 的参数 / 数组元素的值 / CALL 与 ARGUMENT 的调用本身，
+         *                              无初始值等情况为 null
+         */
+        @Nullable
+        public PsiExpression getValue() {
+            return value;
+        }
+
+        /**
+         * @return boolean 写入的内容是否为常量文本
+         */
+        public boolean isConstant() {
+            return constant;
+        }
+    }
+
+    // 变量 -> 按位置排序的定义点
+    private final Map<PsiVariable, List<Def>> defs;
+
+    private MoDefUseChains(@NotNull Map<PsiVariable, List<Def>> defs) {
+        this.defs = defs;
+    }
+
+    /**
+     * @param method PsiMethod
+     * @return MoDefUseChains
+     */
+    @NotNull
+    public static MoDefUseChains of(@NotNull PsiMethod method) {
+        boolean[] computed = {false};
+        MoDefUseChains chains = CachedValuesManager.getCachedValue(method, CHAINS_KEY, () -> {
+            computed[0] = true;
+            return CachedValueProvider.Result.create(compute(method), PsiModificationTracker.MODIFICATION_COUNT);
+        });
+        if (computed[0]) {
+            STATS.miss();
+        } else {
+            STATS.hit();
+        }
+        return chains;
+    }
+
+    /**
+     * 引用点 ref 之前，变量上全部 kinds 类定义点是否都写入常量文本
+     * @param ref PsiReferenceExpression 方法内对局部变量的引用
+     * @param kinds DefKind 关心的定义点种类
+     * @return boolean 无法定位所在方法时返回 true，与此前的实现一致
+     */
+    public static boolean isConstantBefore(@NotNull PsiReferenceExpression ref, @NotNull DefKind... kinds) {
+        PsiVariable variable = ObjectUtils.tryCast(MoResolveCache.resolve(ref), PsiVariable.class);
+        if (variable == null) {
+            return true;
+        }
+        PsiMethod method = MoExpressionUtils.getParentOfMethod(variable);
+        if (method == null) {
+            return true;
+        }
+        Set<DefKind> kindSet = EnumSet.noneOf(DefKind.class);
+        Collections.addAll(kindSet, kinds);
+        return of(method).isConstantBefore(variable, ref.getTextOffset(), kindSet);
+    }
+
+    /**
+     * @param variable PsiVariable
+     * @return List<Def> 按位置排序的定义点
+     */
+    @NotNull
+    public List<Def> getDefs(@NotNull PsiVariable variable) {
+        List<Def> result = defs.get(variable);
+        return result != null ? result : Collections.emptyList();
+    }
+
+    private boolean isConstantBefore(@NotNull PsiVariable variable, int offset, @NotNull Set<DefKind> kinds) {
+        for (Def def : getDefs(variable)) {
+            if (def.offset >= offset) {
+                break;
+            }
+            if (!def.constant && kinds.contains(def.kind)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @NotNull
+    private static MoDefUseChains compute(@NotNull PsiMethod method) {
+        Map<PsiVariable, List<Def>> defs = new HashMap<>();
+        method.accept(new JavaRecursiveElementWalkingVisitor() {
+            @Override
+            public void visitLocalVariable(PsiLocalVariable variable) {
+                super.visitLocalVariable(variable);
+                PsiExpression initializer = variable.getInitializer();
+                add(variable, new Def(DefKind.DECLARATION, variable.getTextOffset(), initializer,
+                        initializer == null || MoExpressionUtils.isText(initializer)));
+            }
+
+            @Override
+            public void visitReferenceExpression(PsiReferenceExpression expression) {
+                super.visitReferenceExpression(expression);
+                PsiElement parent = expression.getParent();
+                if (parent instanceof PsiAssignmentExpression &&
+                    expression.equals(((PsiAssignmentExpression) parent).getLExpression())
+                ) {
+                    PsiVariable variable = resolveVariable(expression);
+                    if (variable != null) {
+                        PsiAssignmentExpression assignExp = (PsiAssignmentExpression) parent;
+                        add(variable, new Def(DefKind.ASSIGN, expression.getTextOffset(), assignExp.getRExpression(),
+                                isConstAssignment(assignExp, expression.getReferenceName())));
+                    }
+                } else if (parent instanceof PsiArrayAccessExpression &&
+                           expression.equals(((PsiArrayAccessExpression) parent).getArrayExpression()) &&
+                           parent.getParent() instanceof PsiAssignmentExpression &&
+                           parent.equals(((PsiAssignmentExpression) parent.getParent()).getLExpression())
+                ) {
+                    PsiVariable variable = resolveVariable(expression);
+                    if (variable != null) {
+                        PsiExpression value = ((PsiAssignmentExpression) parent.getParent()).getRExpression();
+                        add(variable, new Def(DefKind.ELEMENT, expression.getTextOffset(), value,
+                                value == null || MoExpressionUtils.isText(value)));
+                    }
+                } else if (parent instanceof PsiReferenceExpression &&
+                           parent.getParent() instanceof PsiMethodCallExpression
+                ) {
+                    PsiVariable variable = resolveVariable(expression);
+                    if (variable == null || isImmutable(variable.getType())) {
+                        return;
+                    }
+                    PsiMethodCallExpression call = (PsiMethodCallExpression) parent.getParent();
+                    if (!isAppend(call)) {
+                        add(variable, new Def(DefKind.CALL, expression.getTextOffset(), call, isTextArguments(call)));
+                        return;
+                    }
+                    // sb.append(a).append(b): append / insert 返回接收者本身，链上的每一次调用都写入同一变量
+                    while (call != null && isAppend(call)) {
+                        PsiExpression[] args = call.getArgumentList().getExpressions();
+                        boolean isInsert = "insert".equals(call.getMethodExpression().getReferenceName());
+                        PsiExpression value = isInsert ? (args.length >= 2 ? args[1] : null) : (args.length >= 1 ? args[0] : null);
+                        add(variable, new Def(DefKind.APPEND, call.getMethodExpression().getTextOffset(), value,
+                                value == null || MoExpressionUtils.isText(value)));
+                        call = getChainedCall(call);
+                    }
+                } else if (parent instanceof PsiExpressionList && parent.getParent() instanceof PsiCallExpression) {
+                    PsiVariable variable = resolveVariable(expression);
+                    if (variable != null && !isImmutable(variable.getType())) {
+                        add(variable, new Def(DefKind.ARGUMENT, expression.getTextOffset(), (PsiCallExpression) parent.getParent(), false));
+                    }
+                }
+            }
+
+            private void add(@NotNull PsiVariable variable, @NotNull Def def) {
+                defs.computeIfAbsent(variable, k -> new ArrayList<>()).add(def);
+            }
+        });
+        // 按位置排序，查询时遇到引用点之后的定义点即可停止
+        for (List<Def> list : defs.values()) {
+            list.sort((a, b) -> Integer.compare(a.offset, b.offset));
+        }
+        return new MoDefUseChains(defs);
+    }
+
+    @Nullable
+    private static PsiVariable resolveVariable(@NotNull PsiReferenceExpression expression) {
+        if (expression.getQualifierExpression() != null) {
+            return null;
+        }
+        return ObjectUtils.tryCast(MoResolveCache.resolve(expression), PsiVariable.class);
+    }
+
+    private static boolean isAppend(@NotNull PsiMethodCallExpression call) {
+        String methodName = call.getMethodExpression().getReferenceName();
+        return "append".equals(methodName) || "insert".equals(methodName);
+    }
+
+    /**
+     * @return PsiMethodCallExpression | null 以 call 的结果为接收者的下一个调用，即 call.next(...)
+     */
+    @Nullable
+    private static PsiMethodCallExpression getChainedCall(@NotNull PsiMethodCallExpression call) {
+        PsiElement parent = call.getParent();
+        if (parent instanceof PsiReferenceExpression && parent.getParent() instanceof PsiMethodCallExpression) {
+            return (PsiMethodCallExpression) parent.getParent();
+        }
+        return null;
+    }
+
+    private static boolean isTextArguments(@NotNull PsiMethodCallExpression call) {
+        for (PsiExpression arg : call.getArgumentList().getExpressions()) {
+            if (!MoExpressionUtils.isText(arg)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * String、基础类型及其包装类的方法调用不会修改变量本身
+     */
+    private static boolean isImmutable(@NotNull PsiType type) {
+        return type instanceof PsiPrimitiveType ||
+               PsiPrimitiveType.getUnboxedType(type) != null ||
+               type.equalsToText(CommonClassNames.JAVA_LANG_STRING);
+    }
+
+    /**
+     * a = "x" / a = a + "x" / a += "x" 视为常量赋值
+     */
+    private static boolean isConstAssignment(@NotNull PsiAssignmentExpression assignExp, @Nullable String varName) {
+        PsiExpression rExp = assignExp.getRExpression();
+        if (varName == null || rExp == null) {
+            return true;
+        }
+        if (rExp instanceof PsiReferenceExpression &&
+            varName.equals(((PsiReferenceExpression) rExp).getReferenceName())
+        ) {
+            return true;
+        }
+        if (rExp instanceof PsiPolyadicExpression) {
+            // 对于拼接，需要检查是否为  a = a + b 的场景
+            for (PsiExpression operand : ((PsiPolyadicExpression) rExp).getOperands()) {
+                if (operand instanceof PsiReferenceExpression &&
+                    varName.equals(((PsiReferenceExpression) operand).getReferenceName())
+                ) {
+                    continue;
+                }
+                if (!MoExpressionUtils.isText(operand)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+        return MoExpressionUtils.isText(rExp);
+    }
+}
@@ -17,10 +17,7 @@ package com.immomo.momosec.lang.java.utils;
 
 import com.intellij.openapi.project.Project;
 import com.intellij.psi.*;
-import com.intellij.psi.search.LocalSearchScope;
-import com.intellij.psi.search.searches.ReferencesSearch;
 import com.intellij.psi.util.PsiUtil;
-import com.intellij.psi.util.TypeConversionUtil;
 import com.intellij.util.ObjectUtils;
 import com.siyeh.ig.psiutils.ExpressionUtils;
 import com.siyeh.ig.psiutils.MethodCallUtils;
@@ -29,7 +26,6 @@ import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
 import java.util.*;
-import java.util.stream.Collectors;
 
 public class MoExpressionUtils {
 
@@ -48,7 +44,7 @@ public class MoExpressionUtils {
     public static PsiField resolveField(@Nullable PsiExpression expression) {
         expression = PsiUtil.skipParenthesizedExprDown(expression);
         PsiReferenceExpression referenceExpression = ObjectUtils.tryCast(expression, PsiReferenceExpression.class);
-        return referenceExpression == null ? null : ObjectUtils.tryCast(referenceExpression.resolve(), PsiField.class);
+        return referenceExpression == null ? null : ObjectUtils.tryCast(MoResolveCache.resolve(referenceExpression), PsiField.class);
     }
 
     /**
@@ -86,6 +82,7 @@ public class MoExpressionUtils {
      * (1) 文本节点解析
      * (2) 基础类型 / 枚举类型
      * (3) field 字段
+     * 折叠规则与缓存见 MoStringValue
      * @param expression PsiExpression
      * @param force boolean             强制转换为表达式字面值
      * @return String
@@ -96,49 +93,8 @@ public class MoExpressionUtils {
             return null;
         }
 
-        String value = getLiteralInnerText(expression);
-
-        if (value == null && (
-            TypeConversionUtil.isPrimitiveAndNotNull(expression.getType()) ||
-            PsiUtil.isConstantExpression(expression) &&
-            !(expression instanceof PsiPolyadicExpression)
-        )) {
-            value = expression.getText();
-        }
-
-        if (value == null && expression instanceof PsiReferenceExpression) {
-            PsiElement resolve = ((PsiReferenceExpression) expression).resolve();
-            if (resolve instanceof PsiField) {
-                // 对于 field 可不区分force，field值不是Text时，直接用field变量名
-                PsiExpression initializer = ((PsiField) resolve).getInitializer();
-                if (initializer != null) {
-                    value = getText(initializer, false);
-                }
-                if (value == null) {
-                    value = ((PsiField) resolve).getName();
-                }
-            }
-        }
-
-        if (value == null && expression instanceof PsiPolyadicExpression) {
-            StringBuilder sb = new StringBuilder();
-            for(PsiExpression operand : ((PsiPolyadicExpression) expression).getOperands()) {
-                String text = getText(operand, force);
-                if (text == null) {
-                    sb.setLength(0);
-                    break;
-                }
-                sb.append(text);
-            }
-            if (sb.length() != 0) {
-                value = sb.toString();
-            }
-        }
-
-        if (force && value == null) {
-            value = expression.getText();
-        }
-        return value;
+        MoStringValue value = MoStringValue.of(expression);
+        return value.isExact() ? value.getExact() : force ? value.getFolded() : null;
     }
 
     public static Boolean isText(@NotNull PsiExpression expression) {
@@ -267,7 +223,7 @@ public class MoExpressionUtils {
             } else {
                 PsiExpression qualifierExp = ((PsiMethodCallExpression) psiExpression).getMethodExpression().getQualifierExpression();
                 if (qualifierExp != null && qualifierExp.getReference() != null) {
-                    PsiElement targetElem = qualifierExp.getReference().resolve();
+                    PsiElement targetElem = MoResolveCache.resolve(qualifierExp.getReference());
                     return !(targetElem instanceof PsiClass) || !((PsiClass) targetElem).isEnum();
                 }
             }
@@ -280,6 +236,7 @@ public class MoExpressionUtils {
      * 对于拼接的每一部分
      * (1) 判断为常量则输出为常量
      * (2) 判断为 field 则输出为常量
+     * (3) 局部变量在此之前的定义点均为常量时输出为常量 (见 MoDefUseChains)
      * (-) 原样输出
      * @param expression PsiPolyadicExpression
      * @return List<PsiExpression>
@@ -336,134 +293,11 @@ public class MoExpressionUtils {
     }
 
     private static boolean isConstStringBuilderToReference(PsiReferenceExpression ref) {
-        List<PsiReference> refPoints = getReferenceOnMethodScope(ref, ref.getTextOffset()-1);
-
-        for(PsiReference refPoint : refPoints) {
-            PsiReferenceExpression refPointExp =
-                    ObjectUtils.tryCast(refPoint, PsiReferenceExpression.class);
-            if (refPointExp == null) {
-                continue;
-            }
-            PsiReferenceExpression refParentExp =
-                    ObjectUtils.tryCast(refPointExp.getParent(), PsiReferenceExpression.class);
-            if (refParentExp == null) {
-                continue;
-            }
-            if ("append".equals(refParentExp.getReferenceName()) || "insert".equals(refParentExp.getReferenceName())) {
-                PsiMethodCallExpression methodCall =
-                        ObjectUtils.tryCast(refParentExp.getParent(), PsiMethodCallExpression.class);
-                if (methodCall == null) {
-                    continue;
-                }
-                PsiExpression[] args = methodCall.getArgumentList().getExpressions();
-                boolean isConst = true;
-                if ("append".equals(refParentExp.getReferenceName()) && args.length == 1) {
-                    isConst = isText(args[0]);
-                } else if ("insert".equals(refParentExp.getReferenceName()) && args.length >= 2) {
-                    isConst = isText(args[1]);
-                }
-                if (!isConst) {
-                    return false;
-                }
-            }
-        }
-
-        return true;
+        return MoDefUseChains.isConstantBefore(ref, MoDefUseChains.DefKind.APPEND);
     }
 
     private static boolean isConstStringConcatToReference(PsiReferenceExpression ref) {
-        List<PsiReference> refPoints = getReferenceOnMethodScope(ref, ref.getTextOffset()-1);
-
-        // 1. 先检查拼接点
-        for(PsiReference refPoint : refPoints) {
-            PsiReferenceExpression refPointExp =
-                    ObjectUtils.tryCast(refPoint, PsiReferenceExpression.class);
-            if (refPointExp == null) {
-                continue;
-            }
-
-            PsiAssignmentExpression assignExp =
-                    ObjectUtils.tryCast(refPointExp.getParent(), PsiAssignmentExpression.class);
-            if (assignExp == null || !refPoint.equals(assignExp.getLExpression())) {
-                continue;
-            }
-
-            PsiReferenceExpression lExp =
-                    ObjectUtils.tryCast(assignExp.getLExpression(), PsiReferenceExpression.class);
-            if (lExp == null) {
-                continue;
-            }
-            String varName = lExp.getReferenceName();
-            if (varName == null) {
-                continue;
-            }
-
-            PsiExpression rExp = assignExp.getRExpression();
-            if (rExp == null) {
-                continue;
-            }
-
-            if (rExp instanceof PsiReferenceExpression &&
-                varName.equals(((PsiReferenceExpression) rExp).getReferenceName())) {
-                continue;
-            }
-
-            if (rExp instanceof PsiPolyadicExpression) {
-                // 对于拼接，需要检查是否为  a = a + b 的场景
-                for (PsiExpression operand : ((PsiPolyadicExpression) rExp).getOperands()) {
-                    if (operand instanceof PsiReferenceExpression &&
-                        varName.equals(((PsiReferenceExpression) operand).getReferenceName())
-                    ) {
-                        continue;
-                    }
-                    if (!isText(operand)) {
-                        return false;
-                    }
-                }
-            } else if (!isText(rExp)) {
-                return false;
-            }
-        }
-
-        // 2. 再检查定义点
-        PsiElement origin = ref.resolve();
-        if (origin instanceof PsiLocalVariable) {
-            PsiExpression initializer = ((PsiLocalVariable) origin).getInitializer();
-            if (initializer != null && !isText(initializer)) {
-                return false;
-            }
-        }
-
-        return true;
-    }
-
-    /**
-     * 通过一个引用节点，获取当前方法内该节点对应变量的所有引用点
-     * @param reference PsiReference
-     * @param maxOffset int             用偏移代表行号
-     * @return List<PsiReference>
-     */
-    @NotNull
-    private static List<PsiReference> getReferenceOnMethodScope(PsiReference reference, int maxOffset) {
-        List<PsiReference> refResults = new ArrayList<>();
-        PsiElement element = reference.resolve();
-        if (element == null) {
-            return refResults;
-        }
-
-        PsiMethod method = MoExpressionUtils.getParentOfMethod(element);
-        if (method == null) {
-            return refResults;
-        }
-        refResults = new ArrayList<>(ReferencesSearch
-                .search(element, new LocalSearchScope(new PsiElement[]{method}, null, true))
-                .findAll());
-        if (maxOffset != -1) {
-            refResults = refResults.stream()
-                    .filter(item -> item.getElement().getTextOffset() <= maxOffset)
-                    .collect(Collectors.toList());
-        }
-        return refResults;
+        return MoDefUseChains.isConstantBefore(ref, MoDefUseChains.DefKind.DECLARATION, MoDefUseChains.DefKind.ASSIGN);
     }
 
     public static boolean hasFullQualifiedName(PsiMethodCallExpression methodCall, String qualifiedName, String methodName) {
@@ -472,7 +306,7 @@ public class MoExpressionUtils {
             return false;
         }
 
-        PsiMethod method = methodCall.resolveMethod();
+        PsiMethod method = MoResolveCache.resolveMethod(methodCall);
         if (method == null) { return false; }
 
         PsiClass containingClass = method.getContainingClass();
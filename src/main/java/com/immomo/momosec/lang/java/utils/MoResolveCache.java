@@ -0,0 +1,110 @@
+/*
+ * Copyright 2020 momosecurity.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.immomo.momosec.lang.java.utils;
+
+import com.immomo.momosec.utils.CacheStats;
+import com.intellij.openapi.util.Key;
+import com.intellij.psi.*;
+import com.intellij.psi.util.CachedValue;
+import com.intellij.psi.util.CachedValueProvider;
+import com.intellij.psi.util.CachedValuesManager;
+import com.intellij.psi.util.PsiModificationTracker;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 按文件缓存的 resolve 结果
+ *
+ * MomoSec / ZSec 两套规则以及 MoExpressionUtils / ZSecExpressionUtils 会对同一引用反复 resolve，
+ * 这里以引用所在的 PsiFile 为单位缓存 resolve 的结果，方法内的定义点见 MoDefUseChains。
+ * resolve 结果依赖其他文件，因此跟随全局 PSI 修改计数失效。
+ */
+public class MoResolveCache {
+
+    private static final Key<CachedValue<MoResolveCache>> RESOLVE_CACHE_KEY = Key.create("momosec.resolve.cache");
+
+    // ConcurrentHashMap 不能存 null，resolve 失败时以此占位
+    private static final Object NULL = new Object();
+
+    public static final CacheStats.Counter STATS = CacheStats.counter("resolve");
+
+    private final Map<Object, Object> resolved = new ConcurrentHashMap<>();
+
+    /**
+     * 带缓存的 PsiReference.resolve()
+     * @param reference PsiReference
+     * @return PsiElement | null
+     */
+    @Nullable
+    public static PsiElement resolve(@Nullable PsiReference reference) {
+        if (reference == null) {
+            return null;
+        }
+        MoResolveCache cache = getInstance(reference.getElement());
+        if (cache == null) {
+            return reference.resolve();
+        }
+        return (PsiElement) cache.get(reference, reference::resolve);
+    }
+
+    /**
+     * 带缓存的 PsiMethodCallExpression.resolveMethod()
+     * @param methodCall PsiMethodCallExpression
+     * @return PsiMethod | null
+     */
+    @Nullable
+    public static PsiMethod resolveMethod(@NotNull PsiMethodCallExpression methodCall) {
+        MoResolveCache cache = getInstance(methodCall);
+        if (cache == null) {
+            return methodCall.resolveMethod();
+        }
+        return (PsiMethod) cache.get(methodCall, methodCall::resolveMethod);
+    }
+
+    private interface Resolver {
+        @Nullable
+        Object resolve();
+    }
+
+    @Nullable
+    private Object get(@NotNull Object key, @NotNull Resolver resolver) {
+        Object value = resolved.get(key);
+        if (value != null) {
+            STATS.hit();
+        } else {
+            STATS.miss();
+            value = resolver.resolve();
+            if (value == null) {
+                value = NULL;
+            }
+            resolved.putIfAbsent(key, value);
+        }
+        return value == NULL ? null : value;
+    }
+
+    @Nullable
+    private static MoResolveCache getInstance(@NotNull PsiElement element) {
+        PsiFile file = element.getContainingFile();
+        if (file == null) {
+            return null;
+        }
+        return CachedValuesManager.getCachedValue(file, RESOLVE_CACHE_KEY,
+                () -> CachedValueProvider.Result.create(new MoResolveCache(), PsiModificationTracker.MODIFICATION_COUNT));
+    }
+}
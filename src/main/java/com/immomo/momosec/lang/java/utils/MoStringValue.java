@@ -0,0 +1,245 @@
+/*
+ * Copyright 2020 momosecurity.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.immomo.momosec.lang.java.utils;
+
+import com.immomo.momosec.utils.CacheStats;
+import com.intellij.openapi.util.Key;
+import com.intellij.psi.*;
+import com.intellij.psi.util.CachedValue;
+import com.intellij.psi.util.CachedValueProvider;
+import com.intellij.psi.util.CachedValuesManager;
+import com.intellij.psi.util.PsiModificationTracker;
+import com.intellij.psi.util.PsiUtil;
+import com.intellij.psi.util.TypeConversionUtil;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * 字符串抽象值，SQLi 系列规则共用的折叠视图
+ *
+ * (1) EXACT   文本完全已知: 字面量、基础类型 / 常量表达式 (取源码文本)、field (取初始值，否则取字段名)、全部已知的拼接
+ * (2) PARTIAL 拼接中含未知部分，已知前缀 / 后缀
+ * (3) UNKNOWN 完全未知 (可能被污染)
+ *
+ * 无论哪种情况，getFolded() 给出把未知部分替换为其源码文本后的折叠结果，即 MoExpressionUtils.getText(expression, true)。
+ * field 与局部变量的结果以 CachedValue 缓存在对应的 PsiField / PsiLocalVariable 上，跟随全局 PSI 修改计数失效，
+ * 同一字段在两次修改之间只折叠一次；字段之间的循环引用按未知处理。
+ */
+public final class MoStringValue {
+
+    public enum Kind {
+        EXACT,
+        PARTIAL,
+        UNKNOWN
+    }
+
+    private static final Key<CachedValue<MoStringValue>> VALUE_KEY = Key.create("momosec.string.value");
+
+    public static final CacheStats.Counter STATS = CacheStats.counter("string-value");
+
+    // 当前线程正在折叠的字段 / 局部变量，用于截断循环引用
+    private static final ThreadLocal<Set<PsiVariable>> EVALUATING = ThreadLocal.withInitial(HashSet::new);
+
+    private final Kind kind;
+    private final String prefix;
+    private final String suffix;
+    private final String folded;
+
+    private MoStringValue(@NotNull Kind kind, @NotNull String prefix, @NotNull String suffix, @NotNull String folded) {
+        this.kind = kind;
+        this.prefix = prefix;
+        this.suffix = suffix;
+        this.folded = folded;
+    }
+
+    @NotNull
+    public static MoStringValue exact(@NotNull String text) {
+        return new MoStringValue(Kind.EXACT, text, text, text);
+    }
+
+    @NotNull
+    public static MoStringValue unknown(@NotNull String sourceText) {
+        return new MoStringValue(Kind.UNKNOWN, "", "", sourceText);
+    }
+
+    @NotNull
+    public Kind getKind() {
+        return kind;
+    }
+
+    public boolean isExact() {
+        return kind == Kind.EXACT;
+    }
+
+    /**
+     * @return String | null 文本完全已知时返回文本
+     */
+    @Nullable
+    public String getExact() {
+        return kind == Kind.EXACT ? folded : null;
+    }
+
+    /**
+     * @return String 已知前缀，完全未知时为空串
+     */
+    @NotNull
+    public String getPrefix() {
+        return prefix;
+    }
+
+    /**
+     * @return String 已知后缀，完全未知时为空串
+     */
+    @NotNull
+    public String getSuffix() {
+        return suffix;
+    }
+
+    /**
+     * @return String 未知部分以源码文本代替后的折叠结果
+     */
+    @NotNull
+    public String getFolded() {
+        return folded;
+    }
+
+    /**
+     * @param expression PsiExpression
+     * @return MoStringValue
+     */
+    @NotNull
+    public static MoStringValue of(@NotNull PsiExpression expression) {
+        String literal = MoExpressionUtils.getLiteralInnerText(expression);
+        if (literal != null) {
+            return exact(literal);
+        }
+
+        if (TypeConversionUtil.isPrimitiveAndNotNull(expression.getType()) ||
+            PsiUtil.isConstantExpression(expression) &&
+            !(expression instanceof PsiPolyadicExpression)
+        ) {
+            return exact(expression.getText());
+        }
+
+        if (expression instanceof PsiReferenceExpression) {
+            PsiElement resolve = MoResolveCache.resolve((PsiReferenceExpression) expression);
+            if (resolve instanceof PsiField) {
+                return ofField((PsiField) resolve);
+            }
+        }
+
+        if (expression instanceof PsiPolyadicExpression) {
+            return ofPolyadic((PsiPolyadicExpression) expression);
+        }
+
+        return unknown(expression.getText());
+    }
+
+    /**
+     * field 总是视为已知: 初始值文本完全已知时取初始值，否则取字段名
+     * @param field PsiField
+     * @return MoStringValue
+     */
+    @NotNull
+    public static MoStringValue ofField(@NotNull PsiField field) {
+        MoStringValue value = cached(field);
+        return value != null && value.isExact() ? value : exact(field.getName());
+    }
+
+    /**
+     * 局部变量的初始值，不考虑之后的重新赋值
+     * @param localVariable PsiLocalVariable
+     * @return MoStringValue | null 没有初始值
+     */
+    @Nullable
+    public static MoStringValue ofLocalInitializer(@NotNull PsiLocalVariable localVariable) {
+        return cached(localVariable);
+    }
+
+    @NotNull
+    private static MoStringValue ofPolyadic(@NotNull PsiPolyadicExpression expression) {
+        StringBuilder prefix = new StringBuilder();
+        StringBuilder suffix = new StringBuilder();
+        StringBuilder folded = new StringBuilder();
+        boolean exact = true;
+        for (PsiExpression operand : expression.getOperands()) {
+            MoStringValue value = of(operand);
+            folded.append(value.folded);
+            if (exact && value.isExact()) {
+                prefix.append(value.folded);
+            } else if (exact) {
+                exact = false;
+                prefix.append(value.prefix);
+                suffix.setLength(0);
+                suffix.append(value.suffix);
+            } else if (value.isExact()) {
+                suffix.append(value.folded);
+            } else {
+                suffix.setLength(0);
+                suffix.append(value.suffix);
+            }
+        }
+        if (exact) {
+            return exact(folded.toString());
+        }
+        return new MoStringValue(prefix.length() == 0 && suffix.length() == 0 ? Kind.UNKNOWN : Kind.PARTIAL,
+                prefix.toString(), suffix.toString(), folded.toString());
+    }
+
+    /**
+     * 在 variable 上缓存其初始值的抽象值
+     */
+    @Nullable
+    private static MoStringValue cached(@NotNull PsiVariable variable) {
+        Set<PsiVariable> evaluating = EVALUATING.get();
+        if (evaluating.contains(variable)) {
+            return null;
+        }
+        boolean[] computed = {false};
+        MoStringValue value = CachedValuesManager.getCachedValue(variable, VALUE_KEY, () -> {
+            computed[0] = true;
+            evaluating.add(variable);
+            try {
+                PsiExpression initializer = variable.getInitializer();
+                return CachedValueProvider.Result.create(initializer != null ? of(initializer) : null,
+                        PsiModificationTracker.MODIFICATION_COUNT);
+            } finally {
+                evaluating.remove(variable);
+            }
+        });
+        if (computed[0]) {
+            STATS.miss();
+        } else {
+            STATS.hit();
+        }
+        return value;
+    }
+
+    @Override
+    public String toString() {
+        switch (kind) {
+            case EXACT:
+                return "EXACT(" + folded + ")";
+            case PARTIAL:
+                return "PARTIAL(" + prefix + "..." + suffix + ")";
+            default:
+                return "UNKNOWN(" + folded + ")";
+        }
+    }
+}
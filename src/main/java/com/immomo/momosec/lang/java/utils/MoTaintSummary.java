@@ -0,0 +1,494 @@
+/*
+ * Copyright 2020 momosecurity.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.immomo.momosec.lang.java.utils;
+
+import com.immomo.momosec.utils.CacheStats;
+import com.intellij.openapi.project.Project;
+import com.intellij.openapi.util.Key;
+import com.intellij.psi.*;
+import com.intellij.psi.util.CachedValue;
+import com.intellij.psi.util.CachedValueProvider;
+import com.intellij.psi.util.CachedValuesManager;
+import com.intellij.psi.util.PsiModificationTracker;
+import com.intellij.psi.util.PsiTreeUtil;
+import com.intellij.psi.util.PsiUtil;
+import com.intellij.psi.util.TypeConversionUtil;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 方法的污点摘要: 返回值由哪些参数决定，是否含有未知 (可能被污染) 的来源
+ *
+ * 摘要按需计算，以 CachedValue 缓存在 Project 上的 方法 -> 摘要 表中，跟随全局 PSI 修改计数失效，
+ * 同一方法在两次修改之间只分析一次，各调用点直接代入实参，不再逐个调用点进入被调方法。
+ *
+ * 表达式的污点按以下规则求值 (流不敏感，局部变量取其全部定义点的并集，见 MoDefUseChains):
+ * (1) 字面量、基础类型、枚举常量与编译期常量 (含初始值为常量的 final 字段) 为常量，其余 field 为未知
+ * (2) 所在方法的参数为对应参数
+ * (3) 拼接 / 三元 / 强转 / 数组初始化取各部分的并集
+ * (4) 调用有源码且不会被覆写的方法 (static / private / final 方法或 final 类) 时代入其摘要，
+ *     调用 String / StringBuilder 等纯函数类时取接收者与实参的并集
+ * (5) 局部变量取全部定义点的并集，其中以变量为接收者的其他调用 (CALL) 只有纯函数类按其实参计算
+ *     变量作为实参传入的调用 (ARGUMENT) 除纯函数类外均视为写入未知内容，引用点所在的调用本身除外
+ * (-) 其余均为未知
+ * 递归调用与超过 MAX_DEPTH 的调用链按未知处理，此时得到的摘要不写入缓存。
+ */
+public final class MoTaintSummary {
+
+    private static final Key<CachedValue<Map<PsiMethod, MoTaintSummary>>> SUMMARIES_KEY = Key.create("momosec.taint.summaries");
+
+    public static final CacheStats.Counter STATS = CacheStats.counter("taint-summary");
+
+    private static final int MAX_DEPTH = 16;
+
+    // 调用结果只由接收者和实参决定的类
+    private static final Set<String> PURE_CLASSES = new HashSet<>(Arrays.asList(
+            "java.lang.String",
+            "java.lang.StringBuilder",
+            "java.lang.StringBuffer",
+            "java.lang.Integer",
+            "java.lang.Long",
+            "java.lang.Short",
+            "java.lang.Byte",
+            "java.lang.Boolean",
+            "java.lang.Character",
+            "java.lang.Math"
+    ));
+
+    // 当前线程正在计算摘要的方法，用于截断递归
+    private static final ThreadLocal<Set<PsiMethod>> IN_PROGRESS = ThreadLocal.withInitial(HashSet::new);
+    // 当前线程发生截断的次数
+    private static final ThreadLocal<int[]> CUTS = ThreadLocal.withInitial(() -> new int[1]);
+
+    public static final MoTaintSummary UNKNOWN = new MoTaintSummary(Taint.UNKNOWN);
+
+    private final Taint returnTaint;
+
+    private MoTaintSummary(@NotNull Taint returnTaint) {
+        this.returnTaint = returnTaint;
+    }
+
+    /**
+     * 污点值: 依赖的参数 (第 i 位表示第 i 个参数，超过 64 个的参数不记录) 与是否含有未知来源
+     */
+    public static final class Taint {
+        public static final Taint CONSTANT = new Taint(0, false);
+        public static final Taint UNKNOWN = new Taint(0, true);
+
+        private final long params;
+        private final boolean unknown;
+
+        private Taint(long params, boolean unknown) {
+            this.params = params;
+            this.unknown = unknown;
+        }
+
+        @NotNull
+        static Taint param(int index) {
+            return index < Long.SIZE ? new Taint(1L << index, false) : UNKNOWN;
+        }
+
+        @NotNull
+        Taint union(@NotNull Taint other) {
+            if (other == CONSTANT || this == other) {
+                return this;
+            }
+            if (this == CONSTANT) {
+                return other;
+            }
+            return new Taint(params | other.params, unknown || other.unknown);
+        }
+
+        public boolean isConstant() {
+            return params == 0 && !unknown;
+        }
+
+        public boolean isUnknown() {
+            return unknown;
+        }
+
+        public boolean dependsOn(int paramIndex) {
+            return paramIndex < Long.SIZE && (params & (1L << paramIndex)) != 0;
+        }
+
+        @Override
+        public String toString() {
+            return unknown ? "UNKNOWN(" + Long.toBinaryString(params) + ")" : "PARAMS(" + Long.toBinaryString(params) + ")";
+        }
+    }
+
+    /**
+     * @return Taint 返回值的污点，void 方法为常量
+     */
+    @NotNull
+    public Taint getReturnTaint() {
+        return returnTaint;
+    }
+
+    /**
+     * @return boolean 返回值是否与参数无关且为常量
+     */
+    public boolean isReturnConstant() {
+        return returnTaint.isConstant();
+    }
+
+    /**
+     * 判断表达式在所在方法内是否为常量，所在方法的参数视为非常量
+     * @param expression PsiExpression
+     * @return boolean
+     */
+    public static boolean isConstant(@NotNull PsiExpression expression) {
+        return taintOf(expression).isConstant();
+    }
+
+    /**
+     * @param expression PsiExpression
+     * @return Taint 表达式相对所在方法参数的污点，不在方法内时只判断是否为文本
+     */
+    @NotNull
+    public static Taint taintOf(@NotNull PsiExpression expression) {
+        PsiMethod method = MoExpressionUtils.getParentOfMethod(expression);
+        if (method == null) {
+            return isConstantValue(expression) ? Taint.CONSTANT : Taint.UNKNOWN;
+        }
+        return new Flow(method).of(expression);
+    }
+
+    /**
+     * @param method PsiMethod
+     * @return MoTaintSummary 没有源码的方法 (库方法 / 抽象方法) 返回 UNKNOWN
+     */
+    @NotNull
+    public static MoTaintSummary of(@NotNull PsiMethod method) {
+        if (!hasSourceBody(method)) {
+            return UNKNOWN;
+        }
+        Map<PsiMethod, MoTaintSummary> summaries = getSummaries(method.getProject());
+        MoTaintSummary summary = summaries.get(method);
+        if (summary != null) {
+            STATS.hit();
+            return summary;
+        }
+
+        Set<PsiMethod> inProgress = IN_PROGRESS.get();
+        if (inProgress.contains(method) || inProgress.size() >= MAX_DEPTH) {
+            CUTS.get()[0]++;
+            return UNKNOWN;
+        }
+        STATS.miss();
+        int cuts = CUTS.get()[0];
+        inProgress.add(method);
+        try {
+            summary = compute(method);
+        } finally {
+            inProgress.remove(method);
+        }
+        // 计算过程中发生截断的摘要依赖于进入顺序，不缓存
+        if (CUTS.get()[0] == cuts) {
+            summaries.putIfAbsent(method, summary);
+        }
+        return summary;
+    }
+
+    @NotNull
+    private static Map<PsiMethod, MoTaintSummary> getSummaries(@NotNull Project project) {
+        return CachedValuesManager.getManager(project).getCachedValue(project, SUMMARIES_KEY,
+                () -> CachedValueProvider.Result.create(new ConcurrentHashMap<>(), PsiModificationTracker.MODIFICATION_COUNT),
+                false);
+    }
+
+    private static boolean hasSourceBody(@NotNull PsiMethod method) {
+        return !(method instanceof PsiCompiledElement) && method.getBody() != null;
+    }
+
+    /**
+     * 字面量、基础类型、枚举常量与编译期常量
+     * 与 MoExpressionUtils.isText 不同，非常量的 field 不视为文本
+     */
+    private static boolean isConstantValue(@NotNull PsiExpression expression) {
+        if (expression instanceof PsiLiteralExpression ||
+            TypeConversionUtil.isPrimitiveAndNotNull(expression.getType()) ||
+            PsiUtil.isConstantExpression(expression)
+        ) {
+            return true;
+        }
+        return expression instanceof PsiReferenceExpression &&
+               MoResolveCache.resolve((PsiReferenceExpression) expression) instanceof PsiEnumConstant;
+    }
+
+    /**
+     * 调用目标是否唯一: 可被子类覆写的方法可能返回任意内容，不能套用本方法的摘要
+     */
+    private static boolean isNonVirtual(@NotNull PsiMethodCallExpression call, @NotNull PsiMethod callee) {
+        if (callee.hasModifierProperty(PsiModifier.STATIC) ||
+            callee.hasModifierProperty(PsiModifier.PRIVATE) ||
+            callee.hasModifierProperty(PsiModifier.FINAL)
+        ) {
+            return true;
+        }
+        PsiClass containingClass = callee.getContainingClass();
+        if (containingClass != null &&
+            (containingClass.hasModifierProperty(PsiModifier.FINAL) || containingClass instanceof PsiAnonymousClass)
+        ) {
+            return true;
+        }
+        return call.getMethodExpression().getQualifierExpression() instanceof PsiSuperExpression;
+    }
+
+    private static boolean isPure(@NotNull PsiMethod callee) {
+        PsiClass containingClass = callee.getContainingClass();
+        return containingClass != null && PURE_CLASSES.contains(containingClass.getQualifiedName());
+    }
+
+    private static boolean isPureCall(@NotNull PsiExpression call) {
+        if (call instanceof PsiMethodCallExpression) {
+            PsiMethod callee = MoResolveCache.resolveMethod((PsiMethodCallExpression) call);
+            return callee != null && isPure(callee);
+        }
+        if (call instanceof PsiNewExpression) {
+            PsiJavaCodeReferenceElement classReference = ((PsiNewExpression) call).getClassReference();
+            return classReference != null && PURE_CLASSES.contains(classReference.getQualifiedName());
+        }
+        return false;
+    }
+
+    @NotNull
+    private static MoTaintSummary compute(@NotNull PsiMethod method) {
+        PsiCodeBlock body = method.getBody();
+        if (body == null) {
+            return UNKNOWN;
+        }
+        Flow flow = new Flow(method);
+        Taint[] returnTaint = {Taint.CONSTANT};
+        body.accept(new JavaRecursiveElementWalkingVisitor() {
+            @Override
+            public void visitReturnStatement(PsiReturnStatement statement) {
+                super.visitReturnStatement(statement);
+                PsiExpression value = statement.getReturnValue();
+                if (value != null) {
+                    returnTaint[0] = returnTaint[0].union(flow.of(value));
+                }
+            }
+
+            // 匿名类 / 局部类 / lambda 中的 return 不属于当前方法
+            @Override
+            public void visitClass(PsiClass aClass) {}
+
+            @Override
+            public void visitLambdaExpression(PsiLambdaExpression expression) {}
+        });
+        return new MoTaintSummary(returnTaint[0]);
+    }
+
+    /**
+     * 单个方法内的污点求值
+     */
+    private static final class Flow {
+        private final PsiMethod method;
+        private final MoDefUseChains chains;
+        // 正在求值的变量，用于截断 a = a + b 等循环定义
+        private final Set<PsiVariable> visiting = new HashSet<>();
+        private final Map<PsiVariable, Taint> variables = new HashMap<>();
+
+        Flow(@NotNull PsiMethod method) {
+            this.method = method;
+            this.chains = MoDefUseChains.of(method);
+        }
+
+        @NotNull
+        Taint of(@Nullable PsiExpression expression) {
+            expression = PsiUtil.skipParenthesizedExprDown(expression);
+            if (expression == null) {
+                return Taint.CONSTANT;
+            }
+            if (isConstantValue(expression)) {
+                return Taint.CONSTANT;
+            }
+
+            if (expression instanceof PsiReferenceExpression) {
+                PsiElement target = MoResolveCache.resolve((PsiReferenceExpression) expression);
+                if (target instanceof PsiLocalVariable || target instanceof PsiParameter) {
+                    PsiVariable variable = (PsiVariable) target;
+                    return ofVariable(variable).union(ofArguments(variable, expression));
+                }
+                return Taint.UNKNOWN;
+            }
+            if (expression instanceof PsiPolyadicExpression) {
+                return union(((PsiPolyadicExpression) expression).getOperands());
+            }
+            if (expression instanceof PsiConditionalExpression) {
+                PsiConditionalExpression conditional = (PsiConditionalExpression) expression;
+                return of(conditional.getThenExpression()).union(of(conditional.getElseExpression()));
+            }
+            if (expression instanceof PsiTypeCastExpression) {
+                return of(((PsiTypeCastExpression) expression).getOperand());
+            }
+            if (expression instanceof PsiAssignmentExpression) {
+                return of(((PsiAssignmentExpression) expression).getRExpression());
+            }
+            if (expression instanceof PsiArrayInitializerExpression) {
+                return union(((PsiArrayInitializerExpression) expression).getInitializers());
+            }
+            if (expression instanceof PsiMethodCallExpression) {
+                return ofCall((PsiMethodCallExpression) expression);
+            }
+            if (expression instanceof PsiNewExpression) {
+                return ofNew((PsiNewExpression) expression);
+            }
+            return Taint.UNKNOWN;
+        }
+
+        @NotNull
+        private Taint union(@NotNull PsiExpression[] expressions) {
+            Taint taint = Taint.CONSTANT;
+            for (PsiExpression expression : expressions) {
+                taint = taint.union(of(expression));
+            }
+            return taint;
+        }
+
+        @NotNull
+        private Taint ofVariable(@NotNull PsiVariable variable) {
+            Taint taint = variables.get(variable);
+            if (taint != null) {
+                return taint;
+            }
+            if (!visiting.add(variable)) {
+                return Taint.CONSTANT;
+            }
+            boolean outermost = visiting.size() == 1;
+            try {
+                taint = Taint.CONSTANT;
+                if (variable instanceof PsiParameter) {
+                    // foreach / catch / lambda 的参数不在方法参数列表中
+                    taint = Taint.UNKNOWN;
+                    PsiParameter[] parameters = method.getParameterList().getParameters();
+                    for (int i = 0; i < parameters.length; i++) {
+                        if (parameters[i].equals(variable)) {
+                            taint = Taint.param(i);
+                            break;
+                        }
+                    }
+                }
+                for (MoDefUseChains.Def def : chains.getDefs(variable)) {
+                    if (def.getKind() != MoDefUseChains.DefKind.ARGUMENT) {
+                        taint = taint.union(ofDef(def));
+                    }
+                }
+            } finally {
+                visiting.remove(variable);
+            }
+            // 循环定义中途得到的结果不完整，只记录最外层的结果
+            if (outermost) {
+                variables.put(variable, taint);
+            }
+            return taint;
+        }
+
+        /**
+         * 变量作为实参传入的调用可能修改其内容，纯函数类的方法与构造不修改实参。
+         * 引用点所在的调用 (如 exec(command) 中的 command) 发生在取值之后，不计入，因此不随变量缓存
+         */
+        @NotNull
+        private Taint ofArguments(@NotNull PsiVariable variable, @NotNull PsiReferenceExpression ref) {
+            for (MoDefUseChains.Def def : chains.getDefs(variable)) {
+                if (def.getKind() != MoDefUseChains.DefKind.ARGUMENT) {
+                    continue;
+                }
+                PsiExpression call = def.getValue();
+                if (call == null || PsiTreeUtil.isAncestor(call, ref, false)) {
+                    continue;
+                }
+                if (!isPureCall(call)) {
+                    return Taint.UNKNOWN;
+                }
+            }
+            return Taint.CONSTANT;
+        }
+
+        @NotNull
+        private Taint ofDef(@NotNull MoDefUseChains.Def def) {
+            PsiExpression value = def.getValue();
+            if (value == null) {
+                // 没有初始值的声明不写入内容，其余 (如无法识别的 append 重载) 写入内容未知
+                return def.getKind() == MoDefUseChains.DefKind.DECLARATION ? Taint.CONSTANT : Taint.UNKNOWN;
+            }
+            if (def.getKind() == MoDefUseChains.DefKind.CALL) {
+                // 调用可能修改接收者，其影响不在返回值摘要中，只有纯函数类可按实参计算
+                PsiMethod callee = value instanceof PsiMethodCallExpression ?
+                        MoResolveCache.resolveMethod((PsiMethodCallExpression) value) : null;
+                return callee != null && isPure(callee) ? of(value) : Taint.UNKNOWN;
+            }
+            return of(value);
+        }
+
+        @NotNull
+        private Taint ofCall(@NotNull PsiMethodCallExpression call) {
+            PsiMethod callee = MoResolveCache.resolveMethod(call);
+            if (callee == null) {
+                return Taint.UNKNOWN;
+            }
+            PsiExpression[] args = call.getArgumentList().getExpressions();
+
+            if (hasSourceBody(callee) && isNonVirtual(call, callee)) {
+                Taint returnTaint = MoTaintSummary.of(callee).getReturnTaint();
+                Taint taint = returnTaint.isUnknown() ? Taint.UNKNOWN : Taint.CONSTANT;
+                int paramCount = callee.getParameterList().getParametersCount();
+                for (int i = 0; i < args.length; i++) {
+                    // 可变参数均对应最后一个形参
+                    int index = callee.isVarArgs() ? Math.min(i, paramCount - 1) : i;
+                    if (returnTaint.dependsOn(index)) {
+                        taint = taint.union(of(args[i]));
+                    }
+                }
+                return taint;
+            }
+
+            if (isPure(callee)) {
+                return of(call.getMethodExpression().getQualifierExpression()).union(union(args));
+            }
+            return Taint.UNKNOWN;
+        }
+
+        @NotNull
+        private Taint ofNew(@NotNull PsiNewExpression newExpression) {
+            PsiArrayInitializerExpression arrayInitializer = newExpression.getArrayInitializer();
+            if (arrayInitializer != null) {
+                return of(arrayInitializer);
+            }
+            PsiJavaCodeReferenceElement classReference = newExpression.getClassReference();
+            PsiExpressionList argumentList = newExpression.getArgumentList();
+            if (classReference == null || argumentList == null ||
+                !PURE_CLASSES.contains(classReference.getQualifiedName())
+            ) {
+                return Taint.UNKNOWN;
+            }
+            return union(argumentList.getExpressions());
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "MoTaintSummary{return=" + returnTaint + "}";
+    }
+}
@@ -0,0 +1,244 @@
+/*
+ * Copyright 2020 momosecurity.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.immomo.momosec.lang.java.utils;
+
+import com.immomo.momosec.utils.CacheStats;
+import com.intellij.openapi.util.Key;
+import com.intellij.psi.*;
+import com.intellij.psi.util.CachedValue;
+import com.intellij.psi.util.CachedValueProvider;
+import com.intellij.psi.util.CachedValuesManager;
+import com.intellij.psi.util.PsiModificationTracker;
+import com.siyeh.ig.psiutils.MethodCallUtils;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.*;
+
+/**
+ * XML 解析器配置摘要
+ *
+ * 对一个方法 / 初始化块只遍历一次，记录其中每个变量上调用过的 setXxx(键, 字面量) 形式的配置方法
+ * (setFeature / setAttribute / setProperty 等)，
+ * 以 CachedValue 缓存在该方法 / 初始化块上，跟随全局 PSI 修改计数失效。
+ * XxeInspector 对每个工厂的检查由此变为查表，同一方法中创建多个解析器时不再重复遍历。
+ *
+ * 不进入方法调用表达式的参数内部，如 foo(dbf.setFeature(...)) 不计入。
+ */
+public class MoXmlConfigSummary {
+
+    private static final Key<CachedValue<MoXmlConfigSummary>> SUMMARY_KEY = Key.create("momosec.xml.config.summary");
+
+    public static final CacheStats.Counter STATS = CacheStats.counter("xml-config-summary");
+
+    // 配置方法的名称前缀，用户配置的工厂可能使用 setFeature / setProperty 之外的方法
+    private static final String CONFIG_METHOD_PREFIX = "set";
+
+    // 变量 (PsiLocalVariable / PsiField / PsiParameter) -> 其上的配置调用
+    private final Map<PsiElement, Set<Setting>> settings;
+
+    private MoXmlConfigSummary(@NotNull Map<PsiElement, Set<Setting>> settings) {
+        this.settings = settings;
+    }
+
+    /**
+     * 一次配置调用，如 dbf.setFeature("http://apache.org/xml/features/disallow-doctype-decl", true)
+     * 记为 (setFeature, "http://apache.org/xml/features/disallow-doctype-decl", true)
+     *
+     * key 与 value 均为源码文本: key 为字面量或引用表达式 (如 XMLConstants.ACCESS_EXTERNAL_DTD)，
+     * value 为字面量 (true / "" 等)，因此可以直接拼出修复语句 (见 MoXmlFactorySpec)
+     */
+    public static final class Setting {
+        private final String method;
+        private final String key;
+        private final String value;
+
+        public Setting(@NotNull String method, @NotNull String key, @NotNull String value) {
+            this.method = method;
+            this.key = key;
+            this.value = value;
+        }
+
+        @NotNull
+        public String getMethod() {
+            return method;
+        }
+
+        @NotNull
+        public String getKey() {
+            return key;
+        }
+
+        @NotNull
+        public String getValue() {
+            return value;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof Setting)) {
+                return false;
+            }
+            Setting other = (Setting) o;
+            return method.equals(other.method) && key.equals(other.key) && value.equals(other.value);
+        }
+
+        @Override
+        public int hashCode() {
+            return (method.hashCode() * 31 + key.hashCode()) * 31 + value.hashCode();
+        }
+
+        @Override
+        public String toString() {
+            return method + "(" + key + ", " + value + ")";
+        }
+    }
+
+    /**
+     * 判断工厂变量是否已完成 required 中的全部配置
+     * 作用域的选择与 MomoBaseLocalInspectionTool.checkVariableUseFix 一致:
+     * 所在方法 -> 所在初始化块 -> 字段则查看静态初始化块，或实例初始化块与全部构造方法
+     *
+     * @param assignElem PsiElement | null 创建工厂的赋值表达式或局部变量，字段定义时为 null
+     * @param variable PsiElement | null 工厂变量
+     * @param required List<Setting> 至多 64 项
+     * @return boolean
+     */
+    public static boolean isConfigured(@Nullable PsiElement assignElem, @Nullable PsiElement variable, @NotNull List<Setting> required) {
+        if (variable == null) {
+            return false;
+        }
+        long all = required.size() == Long.SIZE ? -1L : (1L << required.size()) - 1;
+
+        PsiMethod method = MoExpressionUtils.getParentOfMethod(assignElem);
+        if (method != null) {
+            return of(method).satisfied(variable, required) == all;
+        }
+
+        PsiClassInitializer initializer = MoExpressionUtils.getParentOfClassInitializer(assignElem);
+        if (initializer != null) {
+            return of(initializer).satisfied(variable, required) == all;
+        }
+
+        if (!(variable instanceof PsiField) || !(variable.getParent() instanceof PsiClass)) {
+            return false;
+        }
+        PsiClass aClass = (PsiClass) variable.getParent();
+        boolean isStatic = ((PsiField) variable).hasModifierProperty(PsiModifier.STATIC);
+
+        // 字段可能在多个初始化块 / 构造方法中分别配置，取并集
+        long satisfied = 0;
+        for (PsiClassInitializer classInitializer : aClass.getInitializers()) {
+            if (classInitializer.hasModifierProperty(PsiModifier.STATIC) == isStatic) {
+                satisfied |= of(classInitializer).satisfied(variable, required);
+            }
+        }
+        if (!isStatic) {
+            for (PsiMethod constructor : aClass.getConstructors()) {
+                satisfied |= of(constructor).satisfied(variable, required);
+            }
+        }
+        return satisfied == all;
+    }
+
+    /**
+     * @param scope PsiMethod 或 PsiClassInitializer
+     * @return MoXmlConfigSummary
+     */
+    @NotNull
+    public static MoXmlConfigSummary of(@NotNull PsiElement scope) {
+        boolean[] computed = {false};
+        MoXmlConfigSummary summary = CachedValuesManager.getCachedValue(scope, SUMMARY_KEY, () -> {
+            computed[0] = true;
+            return CachedValueProvider.Result.create(compute(scope), PsiModificationTracker.MODIFICATION_COUNT);
+        });
+        if (computed[0]) {
+            STATS.miss();
+        } else {
+            STATS.hit();
+        }
+        return summary;
+    }
+
+    /**
+     * @param variable PsiElement
+     * @return Set<Setting> 该变量上的全部配置调用
+     */
+    @NotNull
+    public Set<Setting> getSettings(@NotNull PsiElement variable) {
+        Set<Setting> result = settings.get(variable);
+        return result != null ? result : Collections.emptySet();
+    }
+
+    /**
+     * @return long 第 i 位表示 variable 上已完成 required 中的第 i 项配置
+     */
+    private long satisfied(@NotNull PsiElement variable, @NotNull List<Setting> required) {
+        Set<Setting> done = settings.get(variable);
+        if (done == null) {
+            return 0;
+        }
+        long mask = 0;
+        for (int i = 0; i < required.size(); i++) {
+            if (done.contains(required.get(i))) {
+                mask |= 1L << i;
+            }
+        }
+        return mask;
+    }
+
+    @NotNull
+    private static MoXmlConfigSummary compute(@NotNull PsiElement scope) {
+        Map<PsiElement, Set<Setting>> settings = new HashMap<>();
+        scope.accept(new JavaRecursiveElementWalkingVisitor() {
+            @Override
+            public void visitMethodCallExpression(PsiMethodCallExpression expression) {
+                Setting setting = toSetting(expression);
+                if (setting == null) {
+                    return;
+                }
+                PsiExpression qualifier = expression.getMethodExpression().getQualifierExpression();
+                if (!(qualifier instanceof PsiReferenceExpression)) {
+                    return;
+                }
+                PsiElement variable = MoResolveCache.resolve(qualifier.getReference());
+                if (variable != null) {
+                    settings.computeIfAbsent(variable, k -> new HashSet<>()).add(setting);
+                }
+            }
+        });
+        return new MoXmlConfigSummary(settings);
+    }
+
+    @Nullable
+    private static Setting toSetting(@NotNull PsiMethodCallExpression expression) {
+        String methodName = MethodCallUtils.getMethodName(expression);
+        if (methodName == null || !methodName.startsWith(CONFIG_METHOD_PREFIX)) {
+            return null;
+        }
+        PsiExpression[] args = expression.getArgumentList().getExpressions();
+        if (args.length != 2 ||
+            !(args[0] instanceof PsiLiteralExpression || args[0] instanceof PsiReferenceExpression) ||
+            !(args[1] instanceof PsiLiteralExpression)
+        ) {
+            return null;
+        }
+        return new Setting(methodName, args[0].getText(), args[1].getText());
+    }
+}
@@ -0,0 +1,224 @@
+/*
+ * Copyright 2020 momosecurity.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.immomo.momosec.lang.java.utils;
+
+import com.intellij.psi.PsiCallExpression;
+import com.intellij.psi.PsiMethodCallExpression;
+import com.intellij.psi.PsiNewExpression;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * XML 解析器工厂的加固规格: 创建方式 -> 需要完成的配置 -> 修复语句
+ *
+ * 内置工厂见 XxeInspector.XmlFactory，用户可在规则选项中按行追加，每行格式为
+ * <pre>
+ * 类全名[#方法名] 配置方法 键=值 [键=值 ...]
+ * </pre>
+ * 省略 #方法名 表示 new 类全名(...)。键和值均按源码文本书写，字符串需带引号，例如
+ * <pre>
+ * com.ctc.wstx.stax.WstxInputFactory setProperty XMLInputFactory.SUPPORT_DTD=false
+ * org.apache.xerces.parsers.DOMParser setFeature "http://apache.org/xml/features/disallow-doctype-decl"=true
+ * </pre>
+ * 空行与 # 开头的行被忽略，格式错误的行被跳过。构建后只读，可在多线程间共享。
+ */
+public final class MoXmlFactorySpec {
+
+    // 已满足的配置以 long 位图记录
+    private static final int MAX_SETTINGS = Long.SIZE;
+
+    private final String qualifiedName;
+    @Nullable
+    private final String methodName;
+    private final boolean withTypeCast;
+    private final List<MoXmlConfigSummary.Setting> requiredSettings;
+
+    private MoXmlFactorySpec(@NotNull String qualifiedName, @Nullable String methodName, boolean withTypeCast,
+                             @NotNull List<MoXmlConfigSummary.Setting> requiredSettings) {
+        if (requiredSettings.isEmpty() || requiredSettings.size() > MAX_SETTINGS) {
+            throw new IllegalArgumentException("required settings must be 1.." + MAX_SETTINGS + ": " + qualifiedName);
+        }
+        this.qualifiedName = qualifiedName;
+        this.methodName = methodName;
+        this.withTypeCast = withTypeCast;
+        this.requiredSettings = Collections.unmodifiableList(new ArrayList<>(requiredSettings));
+    }
+
+    /**
+     * 通过静态方法创建的工厂，如 DocumentBuilderFactory.newInstance()
+     * @param withTypeCast boolean 创建结果是否可能经过强转，如 (SAXTransformerFactory) SAXTransformerFactory.newInstance()
+     * @param configMethod String setFeature / setAttribute / setProperty
+     * @param keyValues String 依次为 键, 值, 键, 值 ...
+     */
+    @NotNull
+    public static MoXmlFactorySpec ofCall(@NotNull String qualifiedName, @NotNull String methodName, boolean withTypeCast,
+                                          @NotNull String configMethod, @NotNull String... keyValues) {
+        return new MoXmlFactorySpec(qualifiedName, methodName, withTypeCast, toSettings(configMethod, keyValues));
+    }
+
+    /**
+     * 通过构造方法创建的工厂，如 new SAXReader()
+     */
+    @NotNull
+    public static MoXmlFactorySpec ofNew(@NotNull String qualifiedName, @NotNull String configMethod, @NotNull String... keyValues) {
+        return new MoXmlFactorySpec(qualifiedName, null, false, toSettings(configMethod, keyValues));
+    }
+
+    /**
+     * 解析用户配置，格式见类注释
+     * @param text String 多行配置
+     * @return List<MoXmlFactorySpec>
+     */
+    @NotNull
+    public static List<MoXmlFactorySpec> parseAll(@Nullable String text) {
+        if (text == null || text.trim().isEmpty()) {
+            return Collections.emptyList();
+        }
+        List<MoXmlFactorySpec> specs = new ArrayList<>();
+        for (String line : text.split("\n")) {
+            MoXmlFactorySpec spec = parse(line);
+            if (spec != null) {
+                specs.add(spec);
+            }
+        }
+        return Collections.unmodifiableList(specs);
+    }
+
+    /**
+     * @param line String 单行配置
+     * @return MoXmlFactorySpec | null 空行、注释或格式错误
+     */
+    @Nullable
+    public static MoXmlFactorySpec parse(@NotNull String line) {
+        line = line.trim();
+        if (line.isEmpty() || line.startsWith("#")) {
+            return null;
+        }
+        String[] parts = line.split("\\s+");
+        if (parts.length < 3) {
+            return null;
+        }
+
+        String qualifiedName = parts[0];
+        String methodName = null;
+        int sharp = qualifiedName.indexOf('#');
+        if (sharp >= 0) {
+            methodName = qualifiedName.substring(sharp + 1);
+            qualifiedName = qualifiedName.substring(0, sharp);
+            if (methodName.isEmpty()) {
+                return null;
+            }
+        }
+        if (qualifiedName.isEmpty()) {
+            return null;
+        }
+
+        List<MoXmlConfigSummary.Setting> settings = new ArrayList<>();
+        for (int i = 2; i < parts.length; i++) {
+            int eq = parts[i].indexOf('=');
+            if (eq <= 0 || eq == parts[i].length() - 1) {
+                return null;
+            }
+            settings.add(new MoXmlConfigSummary.Setting(parts[1], parts[i].substring(0, eq), parts[i].substring(eq + 1)));
+        }
+        if (settings.size() > MAX_SETTINGS) {
+            return null;
+        }
+        // 用户配置的工厂同时接受强转后的创建表达式
+        return new MoXmlFactorySpec(qualifiedName, methodName, true, settings);
+    }
+
+    @NotNull
+    private static List<MoXmlConfigSummary.Setting> toSettings(@NotNull String configMethod, @NotNull String... keyValues) {
+        if (keyValues.length % 2 != 0) {
+            throw new IllegalArgumentException("keyValues must be key, value pairs");
+        }
+        List<MoXmlConfigSummary.Setting> settings = new ArrayList<>(keyValues.length / 2);
+        for (int i = 0; i < keyValues.length; i += 2) {
+            settings.add(new MoXmlConfigSummary.Setting(configMethod, keyValues[i], keyValues[i + 1]));
+        }
+        return settings;
+    }
+
+    @NotNull
+    public String getQualifiedName() {
+        return qualifiedName;
+    }
+
+    /**
+     * @return String | null 为 null 时表示通过 new 创建
+     */
+    @Nullable
+    public String getMethodName() {
+        return methodName;
+    }
+
+    public boolean isWithTypeCast() {
+        return withTypeCast;
+    }
+
+    @NotNull
+    public List<MoXmlConfigSummary.Setting> getRequiredSettings() {
+        return requiredSettings;
+    }
+
+    /**
+     * SinkTokenIndex 触发词: 方法名或类短名
+     * @return String
+     */
+    @NotNull
+    public String getTriggerToken() {
+        if (methodName != null) {
+            return methodName;
+        }
+        return qualifiedName.substring(qualifiedName.lastIndexOf('.') + 1);
+    }
+
+    /**
+     * @param expression PsiCallExpression
+     * @return boolean expression 是否为该工厂的创建表达式
+     */
+    public boolean matches(@NotNull PsiCallExpression expression) {
+        if (methodName != null) {
+            return expression instanceof PsiMethodCallExpression &&
+                   MoExpressionUtils.hasFullQualifiedName((PsiMethodCallExpression) expression, qualifiedName, methodName);
+        }
+        return expression instanceof PsiNewExpression &&
+               MoExpressionUtils.hasFullQualifiedName((PsiNewExpression) expression, qualifiedName);
+    }
+
+    /**
+     * @param varName String 工厂变量名
+     * @return List<String> 修复时需要插入的语句，如 dbf.setFeature("...", true);
+     */
+    @NotNull
+    public List<String> getFixStatements(@NotNull String varName) {
+        List<String> statements = new ArrayList<>(requiredSettings.size());
+        for (MoXmlConfigSummary.Setting setting : requiredSettings) {
+            statements.add(varName + "." + setting.getMethod() + "(" + setting.getKey() + ", " + setting.getValue() + ");");
+        }
+        return statements;
+    }
+
+    @Override
+    public String toString() {
+        return qualifiedName + (methodName != null ? "#" + methodName : "") + " " + requiredSettings;
+    }
+}
@@ -0,0 +1,92 @@
+/*
+ * Copyright 2020 momosecurity.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.immomo.momosec.lang.resource.rule.momosecurity;
+
+import com.immomo.momosec.VulnSignWhiteListService;
+import com.immomo.momosec.lang.InspectionBundle;
+import com.immomo.momosec.lang.MomoBaseLocalInspectionTool;
+import com.immomo.momosec.utils.KeywordMatcher;
+import com.immomo.momosec.utils.ResourceSecretScanner;
+import com.intellij.codeInspection.InspectionProfileEntry;
+import com.intellij.codeInspection.LocalInspectionTool;
+import com.intellij.codeInspection.ProblemHighlightType;
+import com.intellij.codeInspection.ProblemsHolder;
+import com.intellij.codeInspection.ex.InspectionProfileImpl;
+import com.intellij.codeInspection.ex.InspectionToolWrapper;
+import com.intellij.openapi.project.Project;
+import com.intellij.openapi.util.TextRange;
+import com.intellij.profile.codeInspection.InspectionProjectProfileManager;
+import com.intellij.psi.PsiElementVisitor;
+import com.intellij.psi.PsiFile;
+import com.zcy.zsec.codeinspect.lang.java.rule.HardcodedCredentials;
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * Momo 1026: 资源文件中的硬编码凭证
+ *
+ * application.properties、yaml、xml、.env 等资源文件中的明文凭证，判断逻辑与 1020 硬编码凭证一致，
+ * 关键字 (含用户在 1020 规则选项中追加的关键字) 取自 profile 中的 HardcodedCredentials。
+ * 不依赖对应语言的 PSI，直接在文件文本上切分 key / value (见 ResourceSecretScanner)；
+ * 批量扫描时 MomoSecScanner 读取文件后调用同一套逻辑，不经过本规则的 visitor。
+ *
+ * 问题签名为 getVulnSign(文件名#key, value)，同样可以加入签名白名单
+ */
+public class HardcodedResourceCredentials extends LocalInspectionTool {
+    public static final String MESSAGE = InspectionBundle.message("hardcoded.resource.credentials.msg");
+    private static final String CREDENTIALS_SHORT_NAME = InspectionProfileEntry.getShortName(HardcodedCredentials.class.getSimpleName());
+    private static final ResourceSecretScanner DEFAULT_SCANNER = ResourceSecretScanner.of(new KeywordMatcher(HardcodedCredentials.KEYWORDS));
+
+    @NotNull
+    @Override
+    public PsiElementVisitor buildVisitor(@NotNull ProblemsHolder holder, boolean isOnTheFly) {
+        ResourceSecretScanner.Format format = ResourceSecretScanner.getFormat(holder.getFile().getName());
+        if (format == null) {
+            return PsiElementVisitor.EMPTY_VISITOR;
+        }
+        Project project = holder.getProject();
+        ResourceSecretScanner scanner = getScanner(InspectionProjectProfileManager.getInstance(project).getCurrentProfile(), project);
+        return new PsiElementVisitor() {
+            @Override
+            public void visitFile(PsiFile file) {
+                String fileName = file.getName();
+                VulnSignWhiteListService whiteList = VulnSignWhiteListService.getInstance();
+                for (ResourceSecretScanner.Finding finding : scanner.scan(file.getViewProvider().getContents(), format)) {
+                    if (whiteList.contains(getVulnSign(fileName, finding))) {
+                        continue;
+                    }
+                    holder.registerProblem(file, MESSAGE, ProblemHighlightType.GENERIC_ERROR_OR_WARNING,
+                            new TextRange(finding.getValueStart(), finding.getValueEnd()));
+                }
+            }
+        };
+    }
+
+    /**
+     * @param profile InspectionProfileImpl
+     * @param project Project
+     * @return ResourceSecretScanner 使用 profile 中 HardcodedCredentials 的关键字 (内置 + 用户追加)，规则不存在时使用内置关键字
+     */
+    @NotNull
+    public static ResourceSecretScanner getScanner(@NotNull InspectionProfileImpl profile, @NotNull Project project) {
+        InspectionToolWrapper<?, ?> wrapper = profile.getInspectionTool(CREDENTIALS_SHORT_NAME, project);
+        InspectionProfileEntry tool = wrapper == null ? null : wrapper.getTool();
+        return tool instanceof HardcodedCredentials ? ResourceSecretScanner.of(((HardcodedCredentials) tool).getKeywords()) : DEFAULT_SCANNER;
+    }
+
+    public static int getVulnSign(@NotNull String fileName, @NotNull ResourceSecretScanner.Finding finding) {
+        return MomoBaseLocalInspectionTool.getVulnSign(fileName + "#" + finding.getKey(), finding.getValue());
+    }
+}
@@ -15,6 +15,8 @@
  */
 package com.immomo.momosec.lang.xml.rule.momosecurity;
 
+import com.immomo.momosec.index.MybatisMapperIndex;
+import com.immomo.momosec.index.SinkTokenIndex;
 import com.immomo.momosec.lang.InspectionBundle;
 import com.immomo.momosec.lang.MomoBaseLocalInspectionTool;
 import com.immomo.momosec.utils.SQLi;
@@ -24,10 +26,10 @@ import com.intellij.lang.ASTFactory;
 import com.intellij.openapi.project.Project;
 import com.intellij.psi.*;
 import com.intellij.psi.xml.*;
-import com.intellij.xml.util.XmlUtil;
 import org.apache.commons.lang3.StringUtils;
 import org.jetbrains.annotations.Nls;
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 
 import java.util.*;
 import java.util.regex.Matcher;
@@ -48,38 +50,32 @@ public class MybatisXmlSQLi extends MomoBaseLocalInspectionTool {
             new HashSet<>(Arrays.asList("orderByClause", "pageStart", "pageSize", "criterion.condition", "alias"));
     private final MybatisXmlSQLiQuickFix mybatisXmlSQLiQuickFix = new MybatisXmlSQLiQuickFix();
 
+    private static final String[] TRIGGER_TOKENS = {SinkTokenIndex.DOLLAR_BRACE};
+
+    @Nullable
+    @Override
+    protected String[] getTriggerTokens() {
+        return TRIGGER_TOKENS;
+    }
+
     @NotNull
     @Override
     public PsiElementVisitor buildVisitor(@NotNull ProblemsHolder holder, boolean isOnTheFly) {
+        MybatisMapperIndex.Mapper mapper = MybatisMapperIndex.getMapper(holder.getFile());
+        if (mapper == null) {
+            return PsiElementVisitor.EMPTY_VISITOR;
+        }
         return new XmlElementVisitor() {
             @Override
             public void visitXmlText(XmlText text) {
-                if (text.getParentTag() != null &&
-                    ("sql".equals(text.getParentTag().getName()) || "mapper".equals(text.getParentTag().getName()) )
-                ) {
-                    return ;
-                }
-
-                XmlDocument document = XmlUtil.getContainingFile(text).getDocument();
-                if ( document == null ) { return ; }
-                String dtd = XmlUtil.getDtdUri(document);
-                if (dtd == null || !(dtd.contains("mybatis.org") && dtd.contains("mapper.dtd"))) { return ; }
-
-                String _text = text.getValue();
-                if (_text.isEmpty() || !_text.contains("${")) { return ; }
-
-                Matcher m = dollarVarPattern.matcher(_text);
-                int offset = 0;
-                while (m.find(offset)) {
-                    String prefix = _text.substring(0, m.start());
-                    String var    = m.group(1);
-                    String suffix = _text.substring(m.end());
+                for (MybatisMapperIndex.Site site : mapper.getSites(text)) {
 //                    判断是否在ignore列表中，并判断此处是否有注入风险
-                    if (!ignorePosition(prefix, var, suffix) && SQLi.hasVulOnSQLJoinStr(prefix, var, suffix)) {
+                    if (!ignorePosition(site.getPrefix(), site.getVar(), site.getSuffix()) &&
+                        SQLi.hasVulOnSQLJoinStr(site.getPrefix(), site.getVar(), site.getSuffix())
+                    ) {
                         holder.registerProblem(text, MESSAGE, ProblemHighlightType.GENERIC_ERROR_OR_WARNING, mybatisXmlSQLiQuickFix);
                         break;
                     }
-                    offset = m.end();
                 }
             }
         };
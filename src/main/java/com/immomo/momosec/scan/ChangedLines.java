@@ -0,0 +1,98 @@
+/*
+ * Copyright 2020 momosecurity.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.immomo.momosec.scan;
+
+import com.intellij.openapi.project.Project;
+import com.intellij.openapi.vcs.VcsException;
+import com.intellij.openapi.vfs.VirtualFile;
+import git4idea.commands.Git;
+import git4idea.commands.GitCommand;
+import git4idea.commands.GitLineHandler;
+import git4idea.repo.GitRepository;
+import git4idea.repo.GitRepositoryManager;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.*;
+
+/**
+ * 相对 baseRef 的变更文件与变更行 (通过 Git4Idea 执行 git diff)
+ *
+ * 仅包含已跟踪文件的变更 (含工作区未提交的修改)，未跟踪的新文件不在其中。
+ */
+public class ChangedLines implements MomoSecScanner.ProblemFilter {
+
+    private final Map<VirtualFile, List<int[]>> changes;
+
+    private ChangedLines(@NotNull Map<VirtualFile, List<int[]>> changes) {
+        this.changes = changes;
+    }
+
+    /**
+     * @param project Project
+     * @param baseRef String 比较基准，如 origin/master、HEAD~1
+     * @return ChangedLines
+     * @throws VcsException git 执行失败
+     */
+    @NotNull
+    public static ChangedLines collect(@NotNull Project project, @NotNull String baseRef) throws VcsException {
+        Map<VirtualFile, List<int[]>> changes = new LinkedHashMap<>();
+        for (VirtualFile root : getGitRoots(project)) {
+            GitLineHandler handler = new GitLineHandler(project, root, GitCommand.DIFF);
+            handler.setSilent(true);
+            handler.setStdoutSuppressed(true);
+            // 固定路径前缀，不受用户的 diff.noprefix / diff.mnemonicPrefix 配置影响
+            handler.addParameters("--unified=0", "--no-color", "--no-ext-diff", "--no-renames",
+                    "--src-prefix=a/", "--dst-prefix=b/", baseRef);
+            handler.endOptions();
+            String output = Git.getInstance().runCommand(handler).getOutputOrThrow();
+
+            for (Map.Entry<String, List<int[]>> entry : DiffHunkParser.parse(output).entrySet()) {
+                VirtualFile file = root.findFileByRelativePath(entry.getKey());
+                if (file != null && !entry.getValue().isEmpty() && MomoSecScanner.isScannable(file)) {
+                    changes.put(file, entry.getValue());
+                }
+            }
+        }
+        return new ChangedLines(changes);
+    }
+
+    /**
+     * 无界面模式下 VCS 映射可能尚未初始化，此时退回到项目根目录
+     */
+    @NotNull
+    private static List<VirtualFile> getGitRoots(@NotNull Project project) {
+        List<VirtualFile> roots = new ArrayList<>();
+        for (GitRepository repository : GitRepositoryManager.getInstance(project).getRepositories()) {
+            roots.add(repository.getRoot());
+        }
+        VirtualFile baseDir = project.getBaseDir();
+        if (roots.isEmpty() && baseDir != null && baseDir.findChild(".git") != null) {
+            roots.add(baseDir);
+        }
+        return roots;
+    }
+
+    @NotNull
+    public Set<VirtualFile> getFiles() {
+        return changes.keySet();
+    }
+
+    @Override
+    public boolean accept(@NotNull VirtualFile file, @NotNull ScanProblem problem) {
+        List<int[]> ranges = changes.get(file);
+        return ranges != null && DiffHunkParser.intersects(ranges, problem.getLine(), problem.getEndLine());
+    }
+}
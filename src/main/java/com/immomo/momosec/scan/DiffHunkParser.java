@@ -0,0 +1,151 @@
+/*
+ * Copyright 2020 momosecurity.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.immomo.momosec.scan;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * 解析 git diff --unified=0 的输出，得到每个文件在新版本中的变更行区间
+ *
+ * 新文件路径取自 "+++ b/路径" 行，要求 diff 以 --dst-prefix=b/ 执行 (不受 diff.noprefix / diff.mnemonicPrefix 影响)
+ */
+public class DiffHunkParser {
+
+    private static final Pattern HUNK_HEADER = Pattern.compile("^@@ -\\d+(?:,\\d+)? \\+(\\d+)(?:,(\\d+))? @@");
+
+    private static final String FILE_HEADER_PREFIX = "diff --git ";
+    private static final String NEW_FILE_PREFIX = "+++ ";
+    private static final String DEV_NULL = "/dev/null";
+
+    /**
+     * @param diff String git diff 输出
+     * @return Map 文件相对仓库根目录的路径 -> 变更行区间 [start, end] (从 1 开始，闭区间)
+     */
+    @NotNull
+    public static Map<String, List<int[]>> parse(@NotNull String diff) {
+        Map<String, List<int[]>> result = new LinkedHashMap<>();
+        List<int[]> current = null;
+        // 文件头部分 (diff --git 到第一个 @@ 之间)，hunk 内容中的 "+++" 可能是新增行，不能当作文件头
+        boolean inHeader = false;
+        for (String line : diff.split("\n")) {
+            if (line.startsWith(FILE_HEADER_PREFIX)) {
+                inHeader = true;
+                current = null;
+                continue;
+            }
+            if (inHeader && line.startsWith(NEW_FILE_PREFIX)) {
+                String path = unquote(line.substring(NEW_FILE_PREFIX.length()).trim());
+                if (DEV_NULL.equals(path)) {
+                    // 文件被删除
+                    current = null;
+                } else {
+                    if (path.startsWith("b/")) {
+                        path = path.substring(2);
+                    }
+                    current = result.computeIfAbsent(path, k -> new ArrayList<>());
+                }
+                continue;
+            }
+            if (!line.startsWith("@@")) {
+                continue;
+            }
+            inHeader = false;
+            if (current == null) {
+                continue;
+            }
+            Matcher matcher = HUNK_HEADER.matcher(line);
+            if (!matcher.find()) {
+                continue;
+            }
+            int start = Integer.parseInt(matcher.group(1));
+            int count = matcher.group(2) == null ? 1 : Integer.parseInt(matcher.group(2));
+            if (count == 0) {
+                // 纯删除: 删除点位于 start 行之后，相邻两行均视为变更
+                current.add(new int[]{Math.max(start, 1), start + 1});
+            } else {
+                current.add(new int[]{start, start + count - 1});
+            }
+        }
+        return result;
+    }
+
+    /**
+     * 区间列表是否与 [startLine, endLine] 相交
+     */
+    public static boolean intersects(@NotNull List<int[]> ranges, int startLine, int endLine) {
+        for (int[] range : ranges) {
+            if (range[0] <= endLine && startLine <= range[1]) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * 还原 git 对含特殊字符 (core.quotepath 开启时还包括非 ASCII 字符) 的路径所做的 C 风格转义，
+     * 如 "b/\346\265\213.java"，八进制转义为 UTF-8 字节
+     */
+    @NotNull
+    static String unquote(@NotNull String path) {
+        if (path.length() < 2 || !path.startsWith("\"") || !path.endsWith("\"")) {
+            return path;
+        }
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(path.length());
+        int end = path.length() - 1;
+        for (int i = 1; i < end; i++) {
+            if (path.charAt(i) != '\\' || i + 1 >= end) {
+                // 未转义的连续字符整体编码，避免拆开代理对
+                int run = i;
+                while (run + 1 < end && path.charAt(run + 1) != '\\') {
+                    run++;
+                }
+                byte[] raw = path.substring(i, run + 1).getBytes(StandardCharsets.UTF_8);
+                bytes.write(raw, 0, raw.length);
+                i = run;
+                continue;
+            }
+            char next = path.charAt(++i);
+            if (next >= '0' && next <= '7') {
+                int value = next - '0';
+                for (int k = 0; k < 2 && i + 1 < end && path.charAt(i + 1) >= '0' && path.charAt(i + 1) <= '7'; k++) {
+                    value = value * 8 + (path.charAt(++i) - '0');
+                }
+                bytes.write(value);
+                continue;
+            }
+            switch (next) {
+                case 'a': bytes.write(7); break;
+                case 'b': bytes.write('\b'); break;
+                case 't': bytes.write('\t'); break;
+                case 'n': bytes.write('\n'); break;
+                case 'v': bytes.write(11); break;
+                case 'f': bytes.write('\f'); break;
+                case 'r': bytes.write('\r'); break;
+                default: bytes.write(next); break;
+            }
+        }
+        return new String(bytes.toByteArray(), StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,165 @@
+/*
+ * Copyright 2020 momosecurity.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.immomo.momosec.scan;
+
+import com.immomo.momosec.index.MybatisMapperIndex;
+import com.intellij.ide.impl.ProjectUtil;
+import com.intellij.openapi.application.ApplicationManager;
+import com.intellij.openapi.application.ApplicationStarterEx;
+import com.intellij.openapi.application.ex.ApplicationManagerEx;
+import com.intellij.openapi.diagnostic.Logger;
+import com.intellij.openapi.progress.EmptyProgressIndicator;
+import com.intellij.openapi.progress.ProgressIndicator;
+import com.intellij.openapi.progress.ProgressManager;
+import com.intellij.openapi.project.DumbService;
+import com.intellij.openapi.project.Project;
+import com.intellij.openapi.util.Ref;
+import com.intellij.openapi.vcs.VcsException;
+import com.intellij.openapi.vfs.VirtualFile;
+import org.jetbrains.annotations.NotNull;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 无界面批量扫描入口，供 CI 使用
+ *
+ * idea.sh momosec-scan &lt;projectPath&gt; &lt;output.json&gt; [--since &lt;baseRef&gt;] [--no-cache] [--mybatis-sites &lt;sites.txt&gt;]
+ *     [--fail-on-problems]
+ * (需在 vmoptions 中加入 -Djava.awt.headless=true)
+ */
+public class MomoSecScanStarter extends ApplicationStarterEx {
+    private static final Logger LOG = Logger.getInstance(MomoSecScanStarter.class);
+
+    public static final String COMMAND_NAME = "momosec-scan";
+
+    @Override
+    public String getCommandName() {
+        return COMMAND_NAME;
+    }
+
+    @Override
+    public boolean isHeadless() {
+        return true;
+    }
+
+    @Override
+    public void premain(String[] args) {
+    }
+
+    @Override
+    public void main(String[] args) {
+        ScanOptions options = ScanOptions.parse(args);
+        if (options == null) {
+            System.err.println(ScanOptions.USAGE);
+            System.exit(1);
+            return ;
+        }
+
+        // 等待索引需要 EDT 空闲，扫描放到后台线程执行
+        ApplicationManager.getApplication().executeOnPooledThread(() -> {
+            int problemCount;
+            try {
+                problemCount = run(options);
+            } catch (Throwable e) {
+                LOG.error("MomoSec scan failed", e);
+                System.err.println("MomoSec scan failed: " + e.getMessage());
+                System.exit(1);
+                return ;
+            }
+            if (options.isFailOnProblems() && problemCount > 0) {
+                System.exit(ScanOptions.EXIT_PROBLEMS_FOUND);
+                return ;
+            }
+            ApplicationManager.getApplication().invokeLater(() -> ApplicationManagerEx.getApplicationEx().exit(true, true));
+        });
+    }
+
+    /**
+     * @return int 报告的问题数
+     */
+    private static int run(@NotNull ScanOptions options) throws IOException, VcsException {
+        Project project = openProject(options.getProjectPath());
+        DumbService.getInstance(project).waitForSmartMode();
+
+        long start = System.currentTimeMillis();
+        MomoSecScanner scanner = new MomoSecScanner(project);
+        List<VirtualFile> files;
+        ChangedLines changedLines = null;
+        if (options.getSince() != null) {
+            changedLines = ChangedLines.collect(project, options.getSince());
+            files = new ArrayList<>(changedLines.getFiles());
+        } else {
+            files = scanner.collectSourceFiles();
+        }
+        ScanResultCache cache = null;
+        if (!options.isNoCache()) {
+            cache = new ScanResultCache(project, scanner.getRuleNames());
+            scanner.setResultCache(cache);
+        }
+        ProgressIndicator indicator = new EmptyProgressIndicator();
+        MomoSecScanner.ProblemFilter filter = changedLines;
+        List<ScanProblem> problems = ProgressManager.getInstance().runProcess(() -> scanner.scan(files, indicator, filter), indicator);
+        if (cache != null) {
+            cache.trim();
+        }
+
+        ScanReport report = new ScanReport(project.getName(), scanner.getRuleCount(), files.size(),
+                System.currentTimeMillis() - start, problems);
+        report.writeTo(options.getOutput());
+        System.out.println(report);
+
+        if (options.getMybatisSitesOutput() != null) {
+            writeMybatisSites(scanner.collectMybatisMappers(), options.getMybatisSitesOutput());
+        }
+        return problems.size();
+    }
+
+    /**
+     * 每行一个拼接点: 文件路径 \t 拼接点所在文本的偏移 \t namespace.语句id \t ${变量}
+     */
+    private static void writeMybatisSites(@NotNull Map<String, MybatisMapperIndex.Mapper> mappers, @NotNull File output) throws IOException {
+        List<String> lines = new ArrayList<>();
+        for (Map.Entry<String, MybatisMapperIndex.Mapper> entry : mappers.entrySet()) {
+            MybatisMapperIndex.Mapper mapper = entry.getValue();
+            for (MybatisMapperIndex.Site site : mapper.getSites()) {
+                lines.add(entry.getKey() + "\t" + site.getTextOffset() + "\t" +
+                          mapper.getNamespace() + "." + site.getStatementId() + "\t${" + site.getVar() + "}");
+            }
+        }
+        File parent = output.getAbsoluteFile().getParentFile();
+        if (parent != null && !parent.exists() && !parent.mkdirs()) {
+            throw new IOException("can not create directory " + parent);
+        }
+        Files.write(output.toPath(), lines, StandardCharsets.UTF_8);
+        System.out.println(String.format("%d mybatis mappers, %d ${} sites", mappers.size(), lines.size()));
+    }
+
+    @NotNull
+    private static Project openProject(@NotNull String path) {
+        Ref<Project> project = Ref.create();
+        ApplicationManager.getApplication().invokeAndWait(() -> project.set(ProjectUtil.openOrImport(path, null, false)));
+        if (project.isNull()) {
+            throw new IllegalStateException("can not open project " + path);
+        }
+        return project.get();
+    }
+}
@@ -0,0 +1,539 @@
+/*
+ * Copyright 2020 momosecurity.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.immomo.momosec.scan;
+
+import com.immomo.momosec.VulnSignWhiteListService;
+import com.immomo.momosec.index.MybatisMapperIndex;
+import com.immomo.momosec.lang.MomoBaseLocalInspectionTool;
+import com.immomo.momosec.lang.resource.rule.momosecurity.HardcodedResourceCredentials;
+import com.immomo.momosec.utils.ResourceSecretScanner;
+import com.intellij.codeInsight.daemon.HighlightDisplayKey;
+import com.intellij.codeInspection.*;
+import com.intellij.codeInspection.ex.InspectionProfileImpl;
+import com.intellij.codeInspection.ex.InspectionToolWrapper;
+import com.intellij.concurrency.JobLauncher;
+import com.intellij.ide.highlighter.JavaFileType;
+import com.intellij.ide.highlighter.XmlFileType;
+import com.intellij.lang.Language;
+import com.intellij.openapi.application.ReadAction;
+import com.intellij.openapi.diagnostic.Logger;
+import com.intellij.openapi.editor.Document;
+import com.intellij.openapi.fileTypes.FileType;
+import com.intellij.openapi.progress.ProcessCanceledException;
+import com.intellij.openapi.progress.ProgressIndicator;
+import com.intellij.openapi.project.Project;
+import com.intellij.openapi.roots.ProjectFileIndex;
+import com.intellij.openapi.util.JDOMUtil;
+import com.intellij.openapi.util.TextRange;
+import com.intellij.openapi.util.WriteExternalException;
+import com.intellij.openapi.vfs.VfsUtilCore;
+import com.intellij.openapi.vfs.VirtualFile;
+import com.intellij.profile.codeInspection.InspectionProjectProfileManager;
+import com.intellij.psi.*;
+import org.jdom.Element;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.IOException;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * 脱离编辑器的批量扫描引擎
+ *
+ * 加载 plugin.xml 中注册、且在项目当前 inspection profile 中启用的 MomoSec / ZSec 规则
+ * (级别、选项与作用域均取自 profile，与 IDE 中的结果一致)，按文件并行 (JobLauncher 工作窃取) 执行，
+ * 每个文件在独立的 read action 中完成，所有规则共用一次 PSI 遍历。
+ * properties / yaml / .env 等资源文件不解析 PSI，读取文件内容后直接扫描硬编码凭证 (见 ResourceSecretScanner)。
+ */
+public class MomoSecScanner {
+    private static final Logger LOG = Logger.getInstance(MomoSecScanner.class);
+
+    private static final String[] RULE_PACKAGES = {"com.immomo.momosec.", "com.zcy.zsec."};
+
+    private final Project project;
+    private final InspectionProfileImpl profile;
+    private final List<Rule> rules;
+    // 资源文件凭证规则不走 PSI 遍历，未注册时为 null
+    private final Rule resourceRule;
+    // 关键字取自 profile 中的 HardcodedCredentials
+    private final ResourceSecretScanner resourceScanner;
+    private ScanResultCache resultCache;
+    // 单次扫描内 Java 文件 -> 其直接引用的项目内 Java 源文件，用于计算缓存键中的依赖指纹，见 ScanResultCache
+    private final Map<VirtualFile, Set<VirtualFile>> referencedSources = new ConcurrentHashMap<>();
+    // 单次扫描内 文件 -> 内容哈希
+    private final Map<VirtualFile, byte[]> contentHashes = new ConcurrentHashMap<>();
+
+    /**
+     * 扫描结果过滤，如仅保留变更行上的问题
+     */
+    public interface ProblemFilter {
+        boolean accept(@NotNull VirtualFile file, @NotNull ScanProblem problem);
+    }
+
+    public MomoSecScanner(@NotNull Project project) {
+        this.project = project;
+        this.profile = InspectionProjectProfileManager.getInstance(project).getCurrentProfile();
+        this.rules = loadRules(project, profile);
+        this.resourceRule = rules.stream().filter(rule -> rule.tool instanceof HardcodedResourceCredentials).findFirst().orElse(null);
+        this.resourceScanner = HardcodedResourceCredentials.getScanner(profile, project);
+    }
+
+    /**
+     * 本插件注册的 localInspection 中在 profile 里启用的规则
+     * 规则实例取自 profile，用户在 IDE 中修改的选项 (如自定义关键词) 同样生效
+     */
+    @NotNull
+    private static List<Rule> loadRules(@NotNull Project project, @NotNull InspectionProfileImpl profile) {
+        List<Rule> rules = new ArrayList<>();
+        for (LocalInspectionEP ep : LocalInspectionEP.LOCAL_INSPECTION.getExtensions()) {
+            if (ep.implementationClass == null || !isOwnRule(ep.implementationClass)) {
+                continue;
+            }
+            HighlightDisplayKey key = HighlightDisplayKey.find(ep.getShortName());
+            if (key == null || !profile.isToolEnabled(key)) {
+                continue;
+            }
+            InspectionToolWrapper<?, ?> wrapper = profile.getInspectionTool(ep.getShortName(), project);
+            InspectionProfileEntry tool = wrapper != null ? wrapper.getTool() : null;
+            if (tool instanceof LocalInspectionTool) {
+                Language language = ep.language == null ? null : Language.findLanguageByID(ep.language);
+                String level = profile.getErrorLevel(key, (PsiElement) null).getSeverity().getName();
+                rules.add(new Rule((LocalInspectionTool) tool, key, language, level));
+            }
+        }
+        return rules;
+    }
+
+    private static boolean isOwnRule(@NotNull String implementationClass) {
+        for (String pkg : RULE_PACKAGES) {
+            if (implementationClass.startsWith(pkg)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    public int getRuleCount() {
+        return rules.size();
+    }
+
+    /**
+     * @return 启用的每个规则的 shortName:实现类:级别:选项，用于计算缓存指纹
+     */
+    @NotNull
+    public List<String> getRuleNames() {
+        List<String> names = new ArrayList<>();
+        for (Rule rule : rules) {
+            names.add(rule.tool.getShortName() + ":" + rule.tool.getClass().getName() + ":" + rule.level + ":" + getSettings(rule.tool));
+        }
+        if (resourceRule != null) {
+            // 资源文件规则的关键字来自 HardcodedCredentials，后者被禁用时其选项不在上面的列表中
+            names.add(resourceRule.tool.getShortName() + ":keywords:" + resourceScanner.getKeywords().getKeywords());
+        }
+        return names;
+    }
+
+    /**
+     * 规则选项的序列化结果，选项修改后缓存随之失效
+     */
+    @NotNull
+    private static String getSettings(@NotNull InspectionProfileEntry tool) {
+        Element element = new Element("settings");
+        try {
+            tool.writeSettings(element);
+        } catch (WriteExternalException e) {
+            LOG.warn("can not serialize settings of " + tool.getShortName(), e);
+        }
+        return JDOMUtil.writeElement(element);
+    }
+
+    /**
+     * 启用磁盘结果缓存，内容未变化的文件直接复用上次结果
+     * @param resultCache ScanResultCache | null
+     */
+    public void setResultCache(@Nullable ScanResultCache resultCache) {
+        this.resultCache = resultCache;
+    }
+
+    /**
+     * 项目源码目录下全部 Java / XML 文件，以及项目内的 properties / yaml / .env 资源文件
+     * @return List<VirtualFile>
+     */
+    @NotNull
+    public List<VirtualFile> collectSourceFiles() {
+        return ReadAction.compute(() -> {
+            List<VirtualFile> files = new ArrayList<>();
+            ProjectFileIndex fileIndex = ProjectFileIndex.getInstance(project);
+            fileIndex.iterateContent(file -> {
+                if (!file.isDirectory() && isScannable(file) && (fileIndex.isInSourceContent(file) || !isPsiScannable(file))) {
+                    files.add(file);
+                }
+                return true;
+            });
+            return files;
+        });
+    }
+
+    /**
+     * 项目内全部 MyBatis mapper 文件的摘要 (含全部 ${} 拼接点)，直接读取 MybatisMapperIndex，不解析 PSI
+     * 需在 smart mode 下调用
+     * @return Map<String, Mapper> 项目相对路径 -> mapper 摘要，按路径排序
+     */
+    @NotNull
+    public Map<String, MybatisMapperIndex.Mapper> collectMybatisMappers() {
+        return ReadAction.compute(() -> {
+            Map<String, MybatisMapperIndex.Mapper> mappers = new TreeMap<>();
+            MybatisMapperIndex.processAllMappers(project, (file, mapper) -> {
+                mappers.put(getRelativePath(file), mapper);
+                return true;
+            });
+            return mappers;
+        });
+    }
+
+    /**
+     * Java 文件结果所依赖的源文件指纹: 文件引用到的项目内 Java 源文件，及这些文件传递引用到的源文件 (不含文件自身)
+     * @param file VirtualFile Java 文件
+     * @return String
+     * @throws IOException 读取失败
+     */
+    @NotNull
+    private String getJavaDependencies(@NotNull VirtualFile file) throws IOException {
+        SortedMap<String, byte[]> hashes = new TreeMap<>();
+        Set<VirtualFile> visited = new HashSet<>();
+        Deque<VirtualFile> queue = new ArrayDeque<>();
+        visited.add(file);
+        queue.add(file);
+        while (!queue.isEmpty()) {
+            for (VirtualFile source : getReferencedSources(queue.poll())) {
+                if (visited.add(source)) {
+                    hashes.put(getRelativePath(source), getContentHash(source));
+                    queue.add(source);
+                }
+            }
+        }
+        return ScanResultCache.sourceFingerprint(hashes);
+    }
+
+    @NotNull
+    private Set<VirtualFile> getReferencedSources(@NotNull VirtualFile file) {
+        Set<VirtualFile> sources = referencedSources.get(file);
+        if (sources == null) {
+            sources = ReadAction.compute(() -> collectReferencedSources(file));
+            referencedSources.put(file, sources);
+        }
+        return sources;
+    }
+
+    @NotNull
+    private byte[] getContentHash(@NotNull VirtualFile file) throws IOException {
+        byte[] hash = contentHashes.get(file);
+        if (hash == null) {
+            hash = ScanResultCache.contentHash(file);
+            contentHashes.put(file, hash);
+        }
+        return hash;
+    }
+
+    /**
+     * 文件中全部引用 resolve 到的项目内 Java 源文件，需在 read action 中调用
+     * 跨文件分析 (常量求值、污点摘要) 只经由引用进入其他类，未被引用的文件不影响本文件的结果
+     */
+    @NotNull
+    private Set<VirtualFile> collectReferencedSources(@NotNull VirtualFile file) {
+        PsiFile psiFile = file.isValid() ? PsiManager.getInstance(project).findFile(file) : null;
+        if (psiFile == null) {
+            return Collections.emptySet();
+        }
+        ProjectFileIndex fileIndex = ProjectFileIndex.getInstance(project);
+        Set<VirtualFile> sources = new HashSet<>();
+        psiFile.accept(new PsiRecursiveElementWalkingVisitor() {
+            @Override
+            public void visitElement(PsiElement element) {
+                if (element instanceof PsiJavaCodeReferenceElement) {
+                    PsiElement target = ((PsiJavaCodeReferenceElement) element).resolve();
+                    PsiFile targetFile = target != null ? target.getContainingFile() : null;
+                    VirtualFile source = targetFile != null ? targetFile.getVirtualFile() : null;
+                    if (source != null && !source.equals(file) && source.getFileType() == JavaFileType.INSTANCE &&
+                        fileIndex.isInSourceContent(source)) {
+                        sources.add(source);
+                    }
+                }
+                super.visitElement(element);
+            }
+        });
+        return sources;
+    }
+
+    public static boolean isScannable(@NotNull VirtualFile file) {
+        return isPsiScannable(file) || ResourceSecretScanner.getFormat(file.getName()) != null;
+    }
+
+    private static boolean isPsiScannable(@NotNull VirtualFile file) {
+        FileType fileType = file.getFileType();
+        return fileType == JavaFileType.INSTANCE || fileType == XmlFileType.INSTANCE;
+    }
+
+    /**
+     * 并行扫描给定文件
+     * @param files Collection<VirtualFile>
+     * @param indicator ProgressIndicator
+     * @return List<ScanProblem> 按文件、位置排序
+     */
+    @NotNull
+    public List<ScanProblem> scan(@NotNull Collection<VirtualFile> files, @NotNull ProgressIndicator indicator) {
+        return scan(files, indicator, null);
+    }
+
+    /**
+     * 并行扫描给定文件，仅保留 filter 接受的问题
+     * @param files Collection<VirtualFile>
+     * @param indicator ProgressIndicator
+     * @param filter ProblemFilter | null
+     * @return List<ScanProblem> 按文件、位置排序
+     */
+    @NotNull
+    public List<ScanProblem> scan(@NotNull Collection<VirtualFile> files, @NotNull ProgressIndicator indicator, @Nullable ProblemFilter filter) {
+        // 两次扫描之间文件可能已经变化
+        referencedSources.clear();
+        contentHashes.clear();
+        Queue<ScanProblem> problems = new ConcurrentLinkedQueue<>();
+        JobLauncher.getInstance().invokeConcurrentlyUnderProgress(new ArrayList<>(files), indicator, file -> {
+            try {
+                for (ScanProblem problem : scanFileCached(file)) {
+                    if (filter == null || filter.accept(file, problem)) {
+                        problems.add(problem);
+                    }
+                }
+            } catch (ProcessCanceledException e) {
+                throw e;
+            } catch (Exception e) {
+                LOG.warn("MomoSec scan failed on " + file.getPath(), e);
+            }
+            return true;
+        });
+
+        List<ScanProblem> result = new ArrayList<>(problems);
+        result.sort(Comparator.comparing(ScanProblem::getFile)
+                              .thenComparingInt(ScanProblem::getStartOffset)
+                              .thenComparing(ScanProblem::getInspection));
+        return result;
+    }
+
+    @NotNull
+    private List<ScanProblem> scanFileCached(@NotNull VirtualFile file) throws IOException {
+        // 资源文件的扫描本身只是一次顺序读，不经过结果缓存
+        if (!isPsiScannable(file)) {
+            return scanResourceFile(file);
+        }
+        ScanResultCache cache = resultCache;
+        if (cache == null) {
+            return ReadAction.compute(() -> scanFile(file));
+        }
+
+        String dependencies;
+        try {
+            dependencies = file.getFileType() == JavaFileType.INSTANCE ? getJavaDependencies(file) : "";
+        } catch (IOException e) {
+            LOG.debug("MomoSec scan cache skipped: can not fingerprint dependencies of " + file.getPath(), e);
+            return ReadAction.compute(() -> scanFile(file));
+        }
+        String key = ReadAction.compute(() -> {
+            PsiFile psiFile = file.isValid() ? PsiManager.getInstance(project).findFile(file) : null;
+            if (psiFile == null) {
+                return null;
+            }
+            return ScanResultCache.key(getRelativePath(file), psiFile.getViewProvider().getContents(), dependencies);
+        });
+        if (key == null) {
+            return Collections.emptyList();
+        }
+        // 磁盘读写放在 read action 之外
+        List<ScanProblem> problems = cache.get(key);
+        if (problems == null) {
+            problems = ReadAction.compute(() -> scanFile(file));
+            cache.put(key, problems);
+            return problems;
+        }
+        // 缓存的结果可能早于白名单的修改
+        VulnSignWhiteListService whiteList = VulnSignWhiteListService.getInstance();
+        problems.removeIf(problem -> whiteList.contains(problem.getSign()));
+        return problems;
+    }
+
+    /**
+     * 单文件扫描，需在 read action 中调用
+     * @param file VirtualFile
+     * @return List<ScanProblem>
+     */
+    @NotNull
+    public List<ScanProblem> scanFile(@NotNull VirtualFile file) {
+        if (!file.isValid()) {
+            return Collections.emptyList();
+        }
+        PsiFile psiFile = PsiManager.getInstance(project).findFile(file);
+        if (psiFile == null) {
+            return Collections.emptyList();
+        }
+
+        InspectionManager manager = InspectionManager.getInstance(project);
+        LocalInspectionToolSession session = new LocalInspectionToolSession(psiFile, 0, psiFile.getTextLength());
+        List<Rule> fileRules = new ArrayList<>();
+        List<ProblemsHolder> holders = new ArrayList<>();
+        List<PsiElementVisitor> visitors = new ArrayList<>();
+        for (Rule rule : rules) {
+            if (rule == resourceRule || rule.language != null && !psiFile.getLanguage().isKindOf(rule.language) ||
+                !profile.isToolEnabled(rule.key, psiFile)
+            ) {
+                continue;
+            }
+            ProblemsHolder holder = new ProblemsHolder(manager, psiFile, false);
+            rule.tool.inspectionStarted(session, false);
+            PsiElementVisitor visitor = rule.tool.buildVisitor(holder, false, session);
+            if (visitor == PsiElementVisitor.EMPTY_VISITOR) {
+                continue;
+            }
+            fileRules.add(rule);
+            holders.add(holder);
+            visitors.add(visitor);
+        }
+        List<ScanProblem> problems = new ArrayList<>(scanResourceText(file, psiFile.getViewProvider().getContents()));
+        if (visitors.isEmpty()) {
+            return problems;
+        }
+
+        // 所有规则共用一次遍历
+        psiFile.accept(new PsiRecursiveElementWalkingVisitor() {
+            @Override
+            public void visitElement(PsiElement element) {
+                for (PsiElementVisitor visitor : visitors) {
+                    element.accept(visitor);
+                }
+                super.visitElement(element);
+            }
+        });
+
+        String path = getRelativePath(file);
+        Document document = PsiDocumentManager.getInstance(project).getDocument(psiFile);
+        for (int i = 0; i < fileRules.size(); i++) {
+            Rule rule = fileRules.get(i);
+            ProblemsHolder holder = holders.get(i);
+            rule.tool.inspectionFinished(session, holder);
+            for (ProblemDescriptor descriptor : holder.getResults()) {
+                ScanProblem problem = toScanProblem(path, document, rule, descriptor);
+                if (problem != null) {
+                    problems.add(problem);
+                }
+            }
+        }
+        return problems;
+    }
+
+    /**
+     * 读取资源文件并扫描硬编码凭证，无需 read action
+     * @param file VirtualFile
+     * @return List<ScanProblem>
+     * @throws IOException 读取失败
+     */
+    @NotNull
+    private List<ScanProblem> scanResourceFile(@NotNull VirtualFile file) throws IOException {
+        ResourceSecretScanner.Format format = ResourceSecretScanner.getFormat(file.getName());
+        if (resourceRule == null || format == null || !file.isValid()) {
+            return Collections.emptyList();
+        }
+        List<ResourceSecretScanner.Finding> findings = file.isInLocalFileSystem()
+                ? resourceScanner.scan(VfsUtilCore.virtualToIoFile(file).toPath(), format)
+                : resourceScanner.scan(VfsUtilCore.loadText(file), format);
+        return toScanProblems(file, findings);
+    }
+
+    /**
+     * 已经加载的文件内容 (如 XML) 直接在文本上扫描硬编码凭证
+     */
+    @NotNull
+    private List<ScanProblem> scanResourceText(@NotNull VirtualFile file, @NotNull CharSequence text) {
+        ResourceSecretScanner.Format format = ResourceSecretScanner.getFormat(file.getName());
+        if (resourceRule == null || format == null) {
+            return Collections.emptyList();
+        }
+        return toScanProblems(file, resourceScanner.scan(text, format));
+    }
+
+    @NotNull
+    private List<ScanProblem> toScanProblems(@NotNull VirtualFile file, @NotNull List<ResourceSecretScanner.Finding> findings) {
+        if (findings.isEmpty()) {
+            return Collections.emptyList();
+        }
+        String path = getRelativePath(file);
+        VulnSignWhiteListService whiteList = VulnSignWhiteListService.getInstance();
+        List<ScanProblem> problems = new ArrayList<>(findings.size());
+        for (ResourceSecretScanner.Finding finding : findings) {
+            int sign = HardcodedResourceCredentials.getVulnSign(file.getName(), finding);
+            if (whiteList.contains(sign)) {
+                continue;
+            }
+            problems.add(new ScanProblem(path, finding.getLine(), finding.getLine(), finding.getValueStart(), finding.getValueEnd(),
+                    resourceRule.tool.getShortName(), resourceRule.level, HardcodedResourceCredentials.MESSAGE, sign));
+        }
+        return problems;
+    }
+
+    @Nullable
+    private static ScanProblem toScanProblem(@NotNull String path, @Nullable Document document,
+                                             @NotNull Rule rule, @NotNull ProblemDescriptor descriptor) {
+        PsiElement element = descriptor.getPsiElement();
+        if (element == null) {
+            return null;
+        }
+        TextRange range = element.getTextRange();
+        TextRange rangeInElement = descriptor.getTextRangeInElement();
+        if (rangeInElement != null) {
+            range = rangeInElement.shiftRight(range.getStartOffset());
+        }
+        int line = descriptor.getLineNumber() + 1;
+        int endLine = line;
+        if (document != null && range.getEndOffset() <= document.getTextLength()) {
+            line = document.getLineNumber(range.getStartOffset()) + 1;
+            endLine = document.getLineNumber(range.getEndOffset()) + 1;
+        }
+        String message = ProblemDescriptorUtil.renderDescriptionMessage(descriptor, element);
+        return new ScanProblem(path, line, endLine, range.getStartOffset(), range.getEndOffset(),
+                rule.tool.getShortName(), rule.level, message, MomoBaseLocalInspectionTool.getVulnSign(element));
+    }
+
+    @NotNull
+    private String getRelativePath(@NotNull VirtualFile file) {
+        VirtualFile baseDir = project.getBaseDir();
+        String relative = baseDir == null ? null : VfsUtilCore.getRelativePath(file, baseDir);
+        return relative != null ? relative : file.getPath();
+    }
+
+    private static class Rule {
+        private final LocalInspectionTool tool;
+        private final HighlightDisplayKey key;
+        private final Language language;
+        private final String level;
+
+        Rule(@NotNull LocalInspectionTool tool, @NotNull HighlightDisplayKey key, @Nullable Language language, @NotNull String level) {
+            this.tool = tool;
+            this.key = key;
+            this.language = language;
+            this.level = level;
+        }
+    }
+}
@@ -0,0 +1,135 @@
+/*
+ * Copyright 2020 momosecurity.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.immomo.momosec.scan;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 命令行参数
+ *
+ * momosec-scan &lt;projectPath&gt; &lt;output.json&gt; [--since &lt;baseRef&gt;]
+ * --since 仅扫描相对 baseRef 的变更文件，且只报告与变更行相交的问题
+ * --no-cache 不使用磁盘结果缓存
+ * --mybatis-sites 额外将项目内全部 MyBatis ${} 拼接点写入 sitesOutput，每行一个
+ * --fail-on-problems 存在问题时以退出码 EXIT_PROBLEMS_FOUND 结束，供 CI 判定构建失败
+ */
+public class ScanOptions {
+    public static final String USAGE = "Usage: momosec-scan <projectPath> <output.json> [--since <baseRef>] [--no-cache] [--mybatis-sites <sites.txt>] [--fail-on-problems]";
+
+    // 参数错误或扫描失败时为 1
+    public static final int EXIT_PROBLEMS_FOUND = 2;
+
+    private static final String SINCE = "--since";
+    private static final String NO_CACHE = "--no-cache";
+    private static final String MYBATIS_SITES = "--mybatis-sites";
+    private static final String FAIL_ON_PROBLEMS = "--fail-on-problems";
+
+    private final String projectPath;
+    private final File output;
+    private final String since;
+    private final boolean noCache;
+    private final File mybatisSitesOutput;
+    private final boolean failOnProblems;
+
+    private ScanOptions(@NotNull String projectPath, @NotNull File output, @Nullable String since, boolean noCache,
+                        @Nullable File mybatisSitesOutput, boolean failOnProblems) {
+        this.projectPath = projectPath;
+        this.output = output;
+        this.since = since;
+        this.noCache = noCache;
+        this.mybatisSitesOutput = mybatisSitesOutput;
+        this.failOnProblems = failOnProblems;
+    }
+
+    /**
+     * @param args String[] 第 0 位为命令名
+     * @return ScanOptions | null 参数不合法时返回 null
+     */
+    @Nullable
+    public static ScanOptions parse(@NotNull String[] args) {
+        List<String> positional = new ArrayList<>();
+        String since = null;
+        boolean noCache = false;
+        File mybatisSitesOutput = null;
+        boolean failOnProblems = false;
+        for (int i = 1; i < args.length; i++) {
+            if (NO_CACHE.equals(args[i])) {
+                noCache = true;
+            } else if (FAIL_ON_PROBLEMS.equals(args[i])) {
+                failOnProblems = true;
+            } else if (SINCE.equals(args[i])) {
+                if (i + 1 >= args.length) {
+                    return null;
+                }
+                since = args[++i];
+            } else if (MYBATIS_SITES.equals(args[i])) {
+                if (i + 1 >= args.length) {
+                    return null;
+                }
+                mybatisSitesOutput = new File(args[++i]);
+            } else {
+                positional.add(args[i]);
+            }
+        }
+        if (positional.size() != 2) {
+            return null;
+        }
+        File project = new File(positional.get(0));
+        if (!project.exists()) {
+            return null;
+        }
+        return new ScanOptions(project.getAbsolutePath(), new File(positional.get(1)), since, noCache, mybatisSitesOutput, failOnProblems);
+    }
+
+    @NotNull
+    public String getProjectPath() {
+        return projectPath;
+    }
+
+    @NotNull
+    public File getOutput() {
+        return output;
+    }
+
+    /**
+     * @return 增量扫描的比较基准，全量扫描时为 null
+     */
+    @Nullable
+    public String getSince() {
+        return since;
+    }
+
+    public boolean isNoCache() {
+        return noCache;
+    }
+
+    /**
+     * @return MyBatis ${} 拼接点列表的输出位置，未指定时为 null
+     */
+    @Nullable
+    public File getMybatisSitesOutput() {
+        return mybatisSitesOutput;
+    }
+
+    public boolean isFailOnProblems() {
+        return failOnProblems;
+    }
+}
@@ -0,0 +1,98 @@
+/*
+ * Copyright 2020 momosecurity.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.immomo.momosec.scan;
+
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * 扫描结果中的一条问题
+ */
+public class ScanProblem {
+    private final String file;
+    private final int line;
+    private final int endLine;
+    private final int startOffset;
+    private final int endOffset;
+    private final String inspection;
+    private final String level;
+    private final String message;
+    private final int sign;
+
+    public ScanProblem(@NotNull String file, int line, int endLine, int startOffset, int endOffset,
+                       @NotNull String inspection, @NotNull String level, @NotNull String message, int sign) {
+        this.file = file;
+        this.line = line;
+        this.endLine = endLine;
+        this.startOffset = startOffset;
+        this.endOffset = endOffset;
+        this.inspection = inspection;
+        this.level = level;
+        this.message = message;
+        this.sign = sign;
+    }
+
+    /**
+     * @return 相对项目根目录的路径
+     */
+    @NotNull
+    public String getFile() {
+        return file;
+    }
+
+    /**
+     * @return 行号，从 1 开始
+     */
+    public int getLine() {
+        return line;
+    }
+
+    /**
+     * @return 问题范围结束所在行号，从 1 开始
+     */
+    public int getEndLine() {
+        return endLine;
+    }
+
+    public int getStartOffset() {
+        return startOffset;
+    }
+
+    public int getEndOffset() {
+        return endOffset;
+    }
+
+    @NotNull
+    public String getInspection() {
+        return inspection;
+    }
+
+    @NotNull
+    public String getLevel() {
+        return level;
+    }
+
+    @NotNull
+    public String getMessage() {
+        return message;
+    }
+
+    /**
+     * @return 漏洞签名，加入白名单文件后不再报告 (见 VulnSignWhiteListService)
+     */
+    public int getSign() {
+        return sign;
+    }
+}
@@ -0,0 +1,68 @@
+/*
+ * Copyright 2020 momosecurity.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.immomo.momosec.scan;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import org.jetbrains.annotations.NotNull;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.List;
+
+/**
+ * 批量扫描的输出报告 (JSON)
+ */
+public class ScanReport {
+    private final String project;
+    private final int rules;
+    private final int files;
+    private final long elapsedMillis;
+    private final List<ScanProblem> problems;
+
+    public ScanReport(@NotNull String project, int rules, int files, long elapsedMillis, @NotNull List<ScanProblem> problems) {
+        this.project = project;
+        this.rules = rules;
+        this.files = files;
+        this.elapsedMillis = elapsedMillis;
+        this.problems = problems;
+    }
+
+    @NotNull
+    public List<ScanProblem> getProblems() {
+        return problems;
+    }
+
+    public void writeTo(@NotNull File output) throws IOException {
+        File parent = output.getAbsoluteFile().getParentFile();
+        if (parent != null && !parent.exists() && !parent.mkdirs()) {
+            throw new IOException("can not create directory " + parent);
+        }
+        Gson gson = new GsonBuilder().setPrettyPrinting().disableHtmlEscaping().create();
+        try (Writer writer = new OutputStreamWriter(Files.newOutputStream(output.toPath()), StandardCharsets.UTF_8)) {
+            gson.toJson(this, writer);
+        }
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%s: %d rules, %d files, %d problems, %d ms", project, rules, files, problems.size(), elapsedMillis);
+    }
+}
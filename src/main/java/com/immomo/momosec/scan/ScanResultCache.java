@@ -0,0 +1,202 @@
+/*
+ * Copyright 2020 momosecurity.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.immomo.momosec.scan;
+
+import com.google.gson.Gson;
+import com.google.gson.reflect.TypeToken;
+import com.immomo.momosec.Constants;
+import com.immomo.momosec.utils.CacheStats;
+import com.intellij.ide.plugins.IdeaPluginDescriptor;
+import com.intellij.ide.plugins.PluginManager;
+import com.intellij.openapi.application.PathManager;
+import com.intellij.openapi.diagnostic.Logger;
+import com.intellij.openapi.extensions.PluginId;
+import com.intellij.openapi.project.Project;
+import com.intellij.openapi.vfs.VirtualFile;
+import org.apache.commons.codec.binary.Hex;
+import org.apache.commons.codec.digest.DigestUtils;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.*;
+import java.lang.reflect.Type;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.nio.file.attribute.FileTime;
+import java.security.MessageDigest;
+import java.util.*;
+import java.util.stream.Stream;
+
+/**
+ * 批量扫描的磁盘结果缓存
+ *
+ * 位于 {system}/momosec/scan-cache/{project}/{ruleset}/，ruleset 由插件版本与规则集指纹决定，
+ * 每个文件的结果以 (路径, 内容, 依赖指纹) 的哈希为键单独存放。
+ * 命中时刷新修改时间，扫描结束后按修改时间淘汰最久未使用的条目，直到总大小不超过上限。
+ *
+ * Java 规则存在跨文件的分析 (其他类中常量的求值、被调用方法的污点摘要)，这些分析只沿引用进入其他类，
+ * 因此 Java 文件的依赖指纹取该文件经 resolve 引用 (含传递引用) 到的项目内 Java 源文件的内容指纹 (见 sourceFingerprint)，
+ * 修改一个 Java 文件只使引用到它的文件的结果失效；
+ * XML 规则只依赖文件自身，依赖指纹为空。依赖库 (jar) 的变化不在指纹中，升级依赖后需使用 --no-cache。
+ */
+public class ScanResultCache {
+    private static final Logger LOG = Logger.getInstance(ScanResultCache.class);
+
+    private static final long MAX_TOTAL_BYTES = 256L * 1024 * 1024;
+    private static final String SUFFIX = ".json";
+    // ScanProblem 结构变化时递增，使旧格式的缓存失效
+    private static final int FORMAT_VERSION = 2;
+
+    private static final CacheStats.Counter STATS = CacheStats.counter("scan.result");
+    private static final Type PROBLEMS_TYPE = new TypeToken<List<ScanProblem>>() {}.getType();
+
+    private final Path root;
+    private final Path dir;
+    private final Gson gson = new Gson();
+
+    public ScanResultCache(@NotNull Project project, @NotNull Collection<String> ruleNames) {
+        this.root = Paths.get(PathManager.getSystemPath(), "momosec", "scan-cache", project.getLocationHash());
+        this.dir = root.resolve(getRuleSetKey(ruleNames));
+    }
+
+    /**
+     * 插件版本 + 规则集指纹，任一变化后旧结果不再命中，随后被淘汰
+     */
+    @NotNull
+    private static String getRuleSetKey(@NotNull Collection<String> ruleNames) {
+        List<String> sorted = new ArrayList<>(ruleNames);
+        sorted.sort(Comparator.naturalOrder());
+        return DigestUtils.sha1Hex(FORMAT_VERSION + "|" + getPluginVersion() + "|" + String.join(",", sorted)).substring(0, 16);
+    }
+
+    @NotNull
+    private static String getPluginVersion() {
+        IdeaPluginDescriptor descriptor = PluginManager.getPlugin(PluginId.getId(Constants.PLUGIN_ID));
+        return descriptor == null || descriptor.getVersion() == null ? "dev" : descriptor.getVersion();
+    }
+
+    /**
+     * @param path String 文件相对路径
+     * @param content CharSequence 文件内容
+     * @param dependencies String 结果所依赖的其他文件的指纹，不依赖其他文件时为空串
+     * @return String
+     */
+    @NotNull
+    public static String key(@NotNull String path, @NotNull CharSequence content, @NotNull String dependencies) {
+        return DigestUtils.sha1Hex(path + "\n" + dependencies + "\n" + content);
+    }
+
+    /**
+     * @param file VirtualFile
+     * @return byte[] 文件磁盘内容的哈希
+     * @throws IOException 读取失败
+     */
+    @NotNull
+    public static byte[] contentHash(@NotNull VirtualFile file) throws IOException {
+        return DigestUtils.sha1(file.contentsToByteArray());
+    }
+
+    /**
+     * 一组文件的内容指纹
+     * @param hashes SortedMap 相对路径 -> 内容哈希 (见 contentHash)
+     * @return String
+     */
+    @NotNull
+    public static String sourceFingerprint(@NotNull SortedMap<String, byte[]> hashes) {
+        MessageDigest digest = DigestUtils.getSha1Digest();
+        for (Map.Entry<String, byte[]> entry : hashes.entrySet()) {
+            digest.update(entry.getKey().getBytes(StandardCharsets.UTF_8));
+            digest.update((byte) 0);
+            digest.update(entry.getValue());
+        }
+        return Hex.encodeHexString(digest.digest());
+    }
+
+    @Nullable
+    public List<ScanProblem> get(@NotNull String key) {
+        Path entry = dir.resolve(key + SUFFIX);
+        if (!Files.isRegularFile(entry)) {
+            STATS.miss();
+            return null;
+        }
+        try (Reader reader = new InputStreamReader(Files.newInputStream(entry), StandardCharsets.UTF_8)) {
+            List<ScanProblem> problems = gson.fromJson(reader, PROBLEMS_TYPE);
+            if (problems == null) {
+                STATS.miss();
+                return null;
+            }
+            Files.setLastModifiedTime(entry, FileTime.fromMillis(System.currentTimeMillis()));
+            STATS.hit();
+            return problems;
+        } catch (IOException | RuntimeException e) {
+            LOG.debug("MomoSec scan cache broken entry " + entry, e);
+            STATS.miss();
+            return null;
+        }
+    }
+
+    public void put(@NotNull String key, @NotNull List<ScanProblem> problems) {
+        try {
+            Files.createDirectories(dir);
+            Path tmp = Files.createTempFile(dir, key, ".tmp");
+            try (Writer writer = new OutputStreamWriter(Files.newOutputStream(tmp), StandardCharsets.UTF_8)) {
+                gson.toJson(problems, PROBLEMS_TYPE, writer);
+            }
+            Files.move(tmp, dir.resolve(key + SUFFIX), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            LOG.debug("MomoSec scan cache write failed", e);
+        }
+    }
+
+    /**
+     * 按最近使用时间淘汰，直到总大小不超过上限
+     */
+    public void trim() {
+        if (!Files.isDirectory(root)) {
+            return ;
+        }
+        List<Path> entries = new ArrayList<>();
+        long total = 0;
+        try (Stream<Path> walk = Files.walk(root)) {
+            for (Path path : (Iterable<Path>) walk::iterator) {
+                if (Files.isRegularFile(path)) {
+                    entries.add(path);
+                    total += path.toFile().length();
+                }
+            }
+        } catch (IOException | UncheckedIOException e) {
+            LOG.debug("MomoSec scan cache trim failed", e);
+            return ;
+        }
+        if (total <= MAX_TOTAL_BYTES) {
+            return ;
+        }
+
+        entries.sort(Comparator.comparingLong(path -> path.toFile().lastModified()));
+        for (Path path : entries) {
+            if (total <= MAX_TOTAL_BYTES) {
+                break;
+            }
+            long size = path.toFile().length();
+            try {
+                Files.deleteIfExists(path);
+                total -= size;
+            } catch (IOException e) {
+                LOG.debug("MomoSec scan cache evict failed " + path, e);
+            }
+        }
+    }
+}
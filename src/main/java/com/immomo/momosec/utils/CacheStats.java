@@ -0,0 +1,105 @@
+/*
+ * Copyright 2020 momosecurity.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.immomo.momosec.utils;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 插件内各缓存的命中统计，供调试 Action 查看
+ */
+public class CacheStats {
+
+    private static final Map<String, Counter> counters = new ConcurrentSkipListMap<>();
+
+    @NotNull
+    public static Counter counter(@NotNull String name) {
+        return counters.computeIfAbsent(name, Counter::new);
+    }
+
+    @NotNull
+    public static List<Counter> all() {
+        return new ArrayList<>(counters.values());
+    }
+
+    public static void resetAll() {
+        counters.values().forEach(Counter::reset);
+    }
+
+    public static class Counter {
+        private final String name;
+        private final AtomicLong hits = new AtomicLong();
+        private final AtomicLong misses = new AtomicLong();
+        private final AtomicLong evictions = new AtomicLong();
+
+        Counter(@NotNull String name) {
+            this.name = name;
+        }
+
+        public void hit() {
+            hits.incrementAndGet();
+        }
+
+        public void miss() {
+            misses.incrementAndGet();
+        }
+
+        /**
+         * 容量有限的缓存淘汰了一项
+         */
+        public void evict() {
+            evictions.incrementAndGet();
+        }
+
+        @NotNull
+        public String getName() {
+            return name;
+        }
+
+        public long getHits() {
+            return hits.get();
+        }
+
+        public long getMisses() {
+            return misses.get();
+        }
+
+        public long getEvictions() {
+            return evictions.get();
+        }
+
+        public void reset() {
+            hits.set(0);
+            misses.set(0);
+            evictions.set(0);
+        }
+
+        @Override
+        public String toString() {
+            long hit = getHits();
+            long total = hit + getMisses();
+            long evicted = getEvictions();
+            return String.format("%s: hits=%d misses=%d hit-rate=%.1f%%",
+                    name, hit, total - hit, total == 0 ? 0.0 : hit * 100.0 / total) +
+                    (evicted == 0 ? "" : " evictions=" + evicted);
+        }
+    }
+}
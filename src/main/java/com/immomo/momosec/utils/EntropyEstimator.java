@@ -0,0 +1,147 @@
+/*
+ * Copyright 2020 momosecurity.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.immomo.momosec.utils;
+
+import me.gosimple.nbvcxz.Nbvcxz;
+import me.gosimple.nbvcxz.resources.Configuration;
+import me.gosimple.nbvcxz.resources.ConfigurationBuilder;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * 字符串复杂度 (是否类似密码) 判断，供硬编码凭证类规则共用
+ *
+ * new Nbvcxz() 每次都会重新构建字典、键盘布局等配置，是这类规则最主要的开销。
+ * 这里配置只构建一次，各线程持有各自的 Nbvcxz 实例；在调用 Nbvcxz 之前先做两步廉价过滤:
+ * (1) 按出现的字符类别计算暴力枚举熵，这是 Nbvcxz 估算结果的上界，不超过阈值时直接判定为否
+ * (2) 单字符香农熵过低 (如 "aaaaaaaa"、"abababab") 的字符串不会是凭证，直接判定为否
+ * 通过过滤的字符串才交给 Nbvcxz，结论按 (截断后的) 字符串缓存。
+ */
+public class EntropyEstimator {
+
+    public static final double DEFAULT_THRESHOLD = 50.0;
+    public static final int DEFAULT_TRUNCATE = 16;
+
+    // 单字符香农熵下限 (bit)
+    static final double MIN_SHANNON_BITS = 1.5;
+
+    private static final int CAPACITY = 4096;
+
+    private static final EntropyEstimator INSTANCE = new EntropyEstimator(DEFAULT_THRESHOLD, DEFAULT_TRUNCATE);
+
+    private final double threshold;
+    private final int truncate;
+    private final LruCache<String, Boolean> cache = new LruCache<>(CAPACITY, CacheStats.counter("entropy"));
+    private final ThreadLocal<Nbvcxz> estimators = ThreadLocal.withInitial(() -> new Nbvcxz(ConfigurationHolder.CONFIGURATION));
+
+    /**
+     * 配置构建较重，首次真正需要 Nbvcxz 时才初始化
+     */
+    private static class ConfigurationHolder {
+        private static final Configuration CONFIGURATION = new ConfigurationBuilder().createConfiguration();
+    }
+
+    @NotNull
+    public static EntropyEstimator getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * @param threshold double Nbvcxz 熵阈值，超过即认为是高复杂度字符串
+     * @param truncate int 只取前 truncate 个字符参与估算
+     */
+    public EntropyEstimator(double threshold, int truncate) {
+        this.threshold = threshold;
+        this.truncate = truncate;
+    }
+
+    /**
+     * 判断字符串复杂度是否超过阈值，是否类似于密码
+     * @param v String
+     * @return boolean
+     */
+    public boolean isHighEntropy(@NotNull String v) {
+        if (truncate < v.length()) {
+            v = v.substring(0, truncate);
+        }
+        if (!mayExceed(v, threshold)) {
+            return false;
+        }
+        return cache.computeIfAbsent(v, s -> estimators.get().estimate(s).getEntropy() > threshold);
+    }
+
+    /**
+     * 廉价预过滤，返回 false 时字符串一定 (或几乎一定) 不超过阈值
+     * @param v String
+     * @param threshold double
+     * @return boolean
+     */
+    static boolean mayExceed(@NotNull String v, double threshold) {
+        int length = v.length();
+        if (length == 0) {
+            return false;
+        }
+        if (length * log2(cardinality(v)) <= threshold) {
+            return false;
+        }
+        return shannon(v) >= MIN_SHANNON_BITS;
+    }
+
+    /**
+     * 与 Nbvcxz 暴力枚举一致的字符集大小: 小写 26, 大写 26, 数字 10, ASCII 符号 33, 其他 100
+     */
+    static int cardinality(@NotNull String v) {
+        boolean lower = false, upper = false, digit = false, symbol = false, other = false;
+        for (int i = 0, l = v.length(); i < l; i++) {
+            char c = v.charAt(i);
+            if (c >= 'a' && c <= 'z') {
+                lower = true;
+            } else if (c >= 'A' && c <= 'Z') {
+                upper = true;
+            } else if (c >= '0' && c <= '9') {
+                digit = true;
+            } else if (c >= 0x20 && c <= 0x7E) {
+                symbol = true;
+            } else {
+                other = true;
+            }
+        }
+        return (lower ? 26 : 0) + (upper ? 26 : 0) + (digit ? 10 : 0) + (symbol ? 33 : 0) + (other ? 100 : 0);
+    }
+
+    /**
+     * 单字符香农熵 (bit)
+     */
+    static double shannon(@NotNull String v) {
+        int length = v.length();
+        Map<Character, Integer> counts = new HashMap<>();
+        for (int i = 0; i < length; i++) {
+            counts.merge(v.charAt(i), 1, Integer::sum);
+        }
+        double entropy = 0;
+        for (int count : counts.values()) {
+            double p = (double) count / length;
+            entropy -= p * log2(p);
+        }
+        return entropy;
+    }
+
+    private static double log2(double x) {
+        return Math.log(x) / Math.log(2);
+    }
+}
@@ -0,0 +1,131 @@
+/*
+ * Copyright 2020 momosecurity.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.immomo.momosec.utils;
+
+/**
+ * 基本类型 int 集合，开放寻址 + 线性探测，不做装箱
+ *
+ * 0 作为空槽标记，集合中是否包含 0 单独记录。
+ * 负载因子不超过 0.5，查找在常数次探测内结束。
+ * 非线程安全；构建完成后只读使用时可在多线程间共享。
+ */
+public class IntHashSet {
+
+    private static final int EMPTY = 0;
+    private static final int MIN_CAPACITY = 8;
+
+    private int[] table;
+    private int mask;
+    private int size;
+    private boolean containsZero;
+
+    public IntHashSet() {
+        this(0);
+    }
+
+    /**
+     * @param expectedSize int 预计元素个数，按此预分配，避免构建过程中扩容
+     */
+    public IntHashSet(int expectedSize) {
+        int capacity = tableSizeFor(Math.max(MIN_CAPACITY, expectedSize * 2));
+        this.table = new int[capacity];
+        this.mask = capacity - 1;
+    }
+
+    /**
+     * @param value int
+     * @return boolean 集合中原先不存在该值时返回 true
+     */
+    public boolean add(int value) {
+        if (value == EMPTY) {
+            if (containsZero) {
+                return false;
+            }
+            containsZero = true;
+            size++;
+            return true;
+        }
+
+        int i = mix(value) & mask;
+        while (table[i] != EMPTY) {
+            if (table[i] == value) {
+                return false;
+            }
+            i = (i + 1) & mask;
+        }
+        table[i] = value;
+        size++;
+        if (size * 2 > table.length) {
+            rehash(table.length << 1);
+        }
+        return true;
+    }
+
+    public boolean contains(int value) {
+        if (value == EMPTY) {
+            return containsZero;
+        }
+
+        int i = mix(value) & mask;
+        int slot;
+        while ((slot = table[i]) != EMPTY) {
+            if (slot == value) {
+                return true;
+            }
+            i = (i + 1) & mask;
+        }
+        return false;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    private void rehash(int capacity) {
+        int[] old = table;
+        table = new int[capacity];
+        mask = capacity - 1;
+        for (int value : old) {
+            if (value != EMPTY) {
+                int i = mix(value) & mask;
+                while (table[i] != EMPTY) {
+                    i = (i + 1) & mask;
+                }
+                table[i] = value;
+            }
+        }
+    }
+
+    /**
+     * 输入可能是 hash 值也可能是连续整数，乘以黄金分割常数打散低位
+     */
+    private static int mix(int value) {
+        int h = value * 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+
+    private static int tableSizeFor(int n) {
+        int capacity = Integer.highestOneBit(n);
+        if (capacity < n) {
+            capacity <<= 1;
+        }
+        return capacity < 0 ? 1 << 30 : capacity;
+    }
+}
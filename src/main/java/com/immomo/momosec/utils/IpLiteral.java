@@ -0,0 +1,489 @@
+/*
+ * Copyright 2020 momosecurity.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.immomo.momosec.utils;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.Arrays;
+import java.util.EnumSet;
+import java.util.Locale;
+import java.util.Set;
+
+/**
+ * IP 地址字面量识别
+ *
+ * 单次扫描识别 IPv4 (a.b.c.d)、IPv6 (含 :: 缩写与内嵌 IPv4) 以及两者的 CIDR 形式 (地址/前缀长度)，
+ * 再按地址段表 (RangeTable，最长前缀匹配) 归类为私有、回环、链路本地、文档示例等。
+ * 只由字母 a-f 与冒号组成的字符串 (如 add::、dead::beef) 多为普通单词或 C++ 作用域写法，不视为 IPv6。
+ * 地址以 int / 两个 long 表示，不是 IP 的字符串在首个非法字符处即返回，全程不产生对象。
+ */
+public class IpLiteral {
+
+    public enum Category {
+        PUBLIC,
+        PRIVATE,
+        LOOPBACK,
+        LINK_LOCAL,
+        DOCUMENTATION,
+        UNSPECIFIED,
+        BROADCAST,
+        // 2.5.x.x 通常是 X.500 属性的 OID (如 2.5.4.3)，而不是地址
+        OID
+    }
+
+    // 回环、0.0.0.0 / ::、广播、文档示例地址以及 2.5.x.x (OID) 不视为敏感地址
+    private static final Set<Category> IGNORED_CATEGORIES = EnumSet.of(
+            Category.LOOPBACK, Category.UNSPECIFIED, Category.BROADCAST, Category.DOCUMENTATION, Category.OID);
+
+    // "ffff:ffff:ffff:ffff:ffff:ffff:255.255.255.255/128"
+    private static final int MAX_LENGTH = 49;
+    private static final long INVALID = -1;
+
+    private static final RangeTable DEFAULT_TABLE = newDefaultTable();
+
+    @NotNull
+    private static RangeTable newDefaultTable() {
+        return new RangeTable()
+                .add("0.0.0.0/32", Category.UNSPECIFIED)
+                .add("2.5.0.0/16", Category.OID)
+                .add("10.0.0.0/8", Category.PRIVATE)
+                .add("100.64.0.0/10", Category.PRIVATE)
+                .add("127.0.0.0/8", Category.LOOPBACK)
+                .add("169.254.0.0/16", Category.LINK_LOCAL)
+                .add("172.16.0.0/12", Category.PRIVATE)
+                .add("192.0.2.0/24", Category.DOCUMENTATION)
+                .add("192.168.0.0/16", Category.PRIVATE)
+                .add("198.51.100.0/24", Category.DOCUMENTATION)
+                .add("203.0.113.0/24", Category.DOCUMENTATION)
+                .add("255.255.255.255/32", Category.BROADCAST)
+                .add("::/128", Category.UNSPECIFIED)
+                .add("::1/128", Category.LOOPBACK)
+                .add("fc00::/7", Category.PRIVATE)
+                .add("fe80::/10", Category.LINK_LOCAL)
+                .add("2001:db8::/32", Category.DOCUMENTATION);
+    }
+
+    @NotNull
+    public static RangeTable getDefaultTable() {
+        return DEFAULT_TABLE;
+    }
+
+    /**
+     * 默认地址段表 + 用户追加的地址段，每行一项 "网段 类别"，如 "100.100.0.0/16 public"、"fd00::/8 documentation"
+     * 网段或类别非法的行被跳过；与默认表中前缀长度相同的网段以用户配置为准
+     * @param text String | null
+     * @return RangeTable 未追加任何地址段时为默认表
+     */
+    @NotNull
+    public static RangeTable parseRanges(@Nullable String text) {
+        if (text == null || text.trim().isEmpty()) {
+            return DEFAULT_TABLE;
+        }
+        RangeTable table = newDefaultTable();
+        for (String line : text.split("\\r?\\n")) {
+            String[] parts = line.trim().split("[\\s,]+");
+            if (parts.length != 2) {
+                continue;
+            }
+            try {
+                table.add(parts[0], Category.valueOf(parts[1].toUpperCase(Locale.ROOT)));
+            } catch (IllegalArgumentException ignored) {
+                // 非法网段或未知类别
+            }
+        }
+        return table;
+    }
+
+    /**
+     * 硬编码规则是否应报告该类地址
+     * @param category Category
+     * @return boolean
+     */
+    public static boolean isSensitive(@NotNull Category category) {
+        return !IGNORED_CATEGORIES.contains(category);
+    }
+
+    /**
+     * 按默认地址段表归类
+     * @param s CharSequence
+     * @return Category | null 不是 IP 地址 (或 CIDR) 时返回 null
+     */
+    @Nullable
+    public static Category classify(@NotNull CharSequence s) {
+        return classify(s, DEFAULT_TABLE);
+    }
+
+    /**
+     * @param s CharSequence
+     * @param table RangeTable
+     * @return Category | null 不是 IP 地址 (或 CIDR) 时返回 null，不在表中的地址为 PUBLIC
+     */
+    @Nullable
+    public static Category classify(@NotNull CharSequence s, @NotNull RangeTable table) {
+        int length = s.length();
+        if (length < 2 || length > MAX_LENGTH) {
+            return null;
+        }
+        char first = s.charAt(0);
+        if (!(isDigit(first) || first == ':' || hexValue(first) >= 0)) {
+            return null;
+        }
+
+        int end = length;
+        int prefix = -1;
+        for (int i = length - 1; i >= length - 4 && i > 0; i--) {
+            if (s.charAt(i) == '/') {
+                prefix = parsePrefix(s, i + 1, length);
+                if (prefix < 0) {
+                    return null;
+                }
+                end = i;
+                break;
+            }
+        }
+
+        if (indexOf(s, ':', 0, end) < 0) {
+            long v4 = parseV4(s, 0, end);
+            if (v4 == INVALID || prefix > 32) {
+                return null;
+            }
+            return table.v4((int) v4);
+        }
+        if (prefix > 128 || !hasDigit(s, end) && hasHexLetter(s, end)) {
+            return null;
+        }
+        return classifyV6(s, end, table);
+    }
+
+    /**
+     * 解析 [start, end) 范围内的点分十进制 IPv4
+     * @return long 地址的无符号值，非法时返回 INVALID
+     */
+    private static long parseV4(@NotNull CharSequence s, int start, int end) {
+        long address = 0;
+        int octets = 0;
+        int i = start;
+        while (true) {
+            int value = 0;
+            int digits = 0;
+            for (; i < end && isDigit(s.charAt(i)); i++) {
+                if (++digits > 3) {
+                    return INVALID;
+                }
+                value = value * 10 + (s.charAt(i) - '0');
+            }
+            if (digits == 0 || value > 255) {
+                return INVALID;
+            }
+            address = (address << 8) | value;
+            octets++;
+            if (i == end) {
+                return octets == 4 ? address : INVALID;
+            }
+            if (s.charAt(i) != '.' || octets == 4) {
+                return INVALID;
+            }
+            i++;
+        }
+    }
+
+    /**
+     * 解析出的地址交给 sink 归类；RangeTable 构建时也借此解析自身的 IPv6 网段
+     */
+    private interface AddressSink {
+        @NotNull
+        Category v4(int address);
+
+        @NotNull
+        Category v6(long hi, long lo);
+    }
+
+    @Nullable
+    private static Category classifyV6(@NotNull CharSequence s, int end, @NotNull AddressSink table) {
+        // :: 之前的分组累积在 head，之后的累积在 tail，均为 128 位 (hi, lo)
+        long headHi = 0, headLo = 0, tailHi = 0, tailLo = 0;
+        int headGroups = 0, tailGroups = 0;
+        boolean compressed = false;
+
+        int i = 0;
+        if (startsWithDoubleColon(s, 0, end)) {
+            compressed = true;
+            i = 2;
+        } else if (s.charAt(0) == ':') {
+            return null;
+        }
+
+        while (i < end) {
+            int groupStart = i;
+            int value = 0;
+            int digits = 0;
+            for (; i < end && hexValue(s.charAt(i)) >= 0; i++) {
+                if (++digits > 4) {
+                    return null;
+                }
+                value = (value << 4) | hexValue(s.charAt(i));
+            }
+
+            int groups = 1;
+            long low = value;
+            if (i < end && s.charAt(i) == '.') {
+                // 末尾内嵌的 IPv4 占两个分组
+                long v4 = parseV4(s, groupStart, end);
+                if (v4 == INVALID) {
+                    return null;
+                }
+                groups = 2;
+                low = v4;
+                i = end;
+            } else if (digits == 0) {
+                return null;
+            }
+
+            if (compressed) {
+                for (int g = 0; g < groups; g++) {
+                    tailHi = (tailHi << 16) | (tailLo >>> 48);
+                    tailLo = tailLo << 16;
+                }
+                tailLo |= low;
+                tailGroups += groups;
+            } else {
+                for (int g = 0; g < groups; g++) {
+                    headHi = (headHi << 16) | (headLo >>> 48);
+                    headLo = headLo << 16;
+                }
+                headLo |= low;
+                headGroups += groups;
+            }
+            if (headGroups + tailGroups > 8) {
+                return null;
+            }
+
+            if (i == end) {
+                break;
+            }
+            if (s.charAt(i) != ':') {
+                return null;
+            }
+            if (startsWithDoubleColon(s, i, end)) {
+                if (compressed) {
+                    return null;
+                }
+                compressed = true;
+                i += 2;
+            } else {
+                i++;
+                if (i == end) {
+                    return null;
+                }
+            }
+        }
+
+        if (compressed ? headGroups + tailGroups > 7 : headGroups != 8) {
+            return null;
+        }
+        for (int g = headGroups; g < 8; g++) {
+            headHi = (headHi << 16) | (headLo >>> 48);
+            headLo = headLo << 16;
+        }
+        long hi = headHi | tailHi;
+        long lo = headLo | tailLo;
+
+        // ::ffff:a.b.c.d 按 IPv4 归类
+        if (hi == 0 && (lo >>> 32) == 0xFFFFL) {
+            return table.v4((int) lo);
+        }
+        return table.v6(hi, lo);
+    }
+
+    private static int parsePrefix(@NotNull CharSequence s, int start, int end) {
+        if (start == end) {
+            return -1;
+        }
+        int value = 0;
+        for (int i = start; i < end; i++) {
+            if (!isDigit(s.charAt(i))) {
+                return -1;
+            }
+            value = value * 10 + (s.charAt(i) - '0');
+        }
+        return value;
+    }
+
+    private static boolean startsWithDoubleColon(@NotNull CharSequence s, int i, int end) {
+        return i + 1 < end && s.charAt(i) == ':' && s.charAt(i + 1) == ':';
+    }
+
+    private static boolean hasDigit(@NotNull CharSequence s, int end) {
+        for (int i = 0; i < end; i++) {
+            if (isDigit(s.charAt(i))) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static boolean hasHexLetter(@NotNull CharSequence s, int end) {
+        for (int i = 0; i < end; i++) {
+            if (hexValue(s.charAt(i)) >= 10) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static int indexOf(@NotNull CharSequence s, char c, int start, int end) {
+        for (int i = start; i < end; i++) {
+            if (s.charAt(i) == c) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private static boolean isDigit(char c) {
+        return c >= '0' && c <= '9';
+    }
+
+    private static int hexValue(char c) {
+        if (c >= '0' && c <= '9') {
+            return c - '0';
+        }
+        if (c >= 'a' && c <= 'f') {
+            return c - 'a' + 10;
+        }
+        if (c >= 'A' && c <= 'F') {
+            return c - 'A' + 10;
+        }
+        return -1;
+    }
+
+    /**
+     * 地址段 -> 类别 的对照表，查询时取前缀最长的匹配项，前缀长度相同时后添加的优先
+     * 构建完成后只读，可在多线程间共享
+     */
+    public static class RangeTable implements AddressSink {
+        private int[] v4Networks = new int[0];
+        private int[] v4Prefixes = new int[0];
+        private Category[] v4Categories = new Category[0];
+        private long[] v6Networks = new long[0];
+        private int[] v6Prefixes = new int[0];
+        private Category[] v6Categories = new Category[0];
+
+        /**
+         * @param cidr String 如 10.0.0.0/8、fe80::/10，省略前缀长度时为单个地址
+         * @param category Category
+         * @return RangeTable
+         */
+        @NotNull
+        public RangeTable add(@NotNull String cidr, @NotNull Category category) {
+            int slash = cidr.indexOf('/');
+            String address = slash < 0 ? cidr : cidr.substring(0, slash);
+            boolean v6 = address.indexOf(':') >= 0;
+            int prefix = slash < 0 ? (v6 ? 128 : 32) : parsePrefix(cidr, slash + 1, cidr.length());
+            if (!v6) {
+                long network = parseV4(address, 0, address.length());
+                if (network == INVALID || prefix < 0 || prefix > 32) {
+                    throw new IllegalArgumentException("invalid IPv4 range: " + cidr);
+                }
+                int index = v4Prefixes.length;
+                v4Networks = Arrays.copyOf(v4Networks, index + 1);
+                v4Prefixes = Arrays.copyOf(v4Prefixes, index + 1);
+                v4Categories = Arrays.copyOf(v4Categories, index + 1);
+                v4Networks[index] = (int) network;
+                v4Prefixes[index] = prefix;
+                v4Categories[index] = category;
+            } else {
+                long[] parsed = new long[2];
+                AddressSink capture = new AddressSink() {
+                    @NotNull
+                    @Override
+                    public Category v4(int address) {
+                        return v6(0, 0xFFFF00000000L | (address & 0xFFFFFFFFL));
+                    }
+
+                    @NotNull
+                    @Override
+                    public Category v6(long hi, long lo) {
+                        parsed[0] = hi;
+                        parsed[1] = lo;
+                        return category;
+                    }
+                };
+                if (classifyV6(address, address.length(), capture) == null || prefix < 0 || prefix > 128) {
+                    throw new IllegalArgumentException("invalid IPv6 range: " + cidr);
+                }
+                int index = v6Prefixes.length;
+                v6Networks = Arrays.copyOf(v6Networks, (index + 1) * 2);
+                v6Prefixes = Arrays.copyOf(v6Prefixes, index + 1);
+                v6Categories = Arrays.copyOf(v6Categories, index + 1);
+                v6Networks[index * 2] = parsed[0];
+                v6Networks[index * 2 + 1] = parsed[1];
+                v6Prefixes[index] = prefix;
+                v6Categories[index] = category;
+            }
+            return this;
+        }
+
+        @NotNull
+        @Override
+        public Category v4(int address) {
+            Category best = Category.PUBLIC;
+            int bestPrefix = -1;
+            for (int k = 0; k < v4Prefixes.length; k++) {
+                int prefix = v4Prefixes[k];
+                if (prefix >= bestPrefix && matches(address, v4Networks[k], prefix)) {
+                    best = v4Categories[k];
+                    bestPrefix = prefix;
+                }
+            }
+            return best;
+        }
+
+        @NotNull
+        @Override
+        public Category v6(long hi, long lo) {
+            Category best = Category.PUBLIC;
+            int bestPrefix = -1;
+            for (int k = 0; k < v6Prefixes.length; k++) {
+                int prefix = v6Prefixes[k];
+                if (prefix >= bestPrefix
+                        && matches(hi, v6Networks[k * 2], Math.min(prefix, 64))
+                        && matches(lo, v6Networks[k * 2 + 1], Math.max(prefix - 64, 0))) {
+                    best = v6Categories[k];
+                    bestPrefix = prefix;
+                }
+            }
+            return best;
+        }
+
+        private static boolean matches(int address, int network, int prefix) {
+            if (prefix == 0) {
+                return true;
+            }
+            int mask = -1 << (32 - prefix);
+            return (address & mask) == (network & mask);
+        }
+
+        private static boolean matches(long address, long network, int prefix) {
+            if (prefix == 0) {
+                return true;
+            }
+            long mask = -1L << (64 - prefix);
+            return (address & mask) == (network & mask);
+        }
+    }
+}
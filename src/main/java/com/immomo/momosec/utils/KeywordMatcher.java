@@ -0,0 +1,259 @@
+/*
+ * Copyright 2020 momosecurity.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.immomo.momosec.utils;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * 忽略大小写的多关键字匹配 (Aho-Corasick)
+ *
+ * 构建时把关键字 trie 与失败链接合并为完整的 DFA 转移表，
+ * 匹配时每个字符只查一次表，耗时与关键字个数无关，且不产生任何对象。
+ * 关键字仅支持 ASCII 字符，文本中的非 ASCII 字符视为不匹配任何关键字。
+ * 构建完成后只读，可在多线程间共享。
+ */
+public class KeywordMatcher {
+
+    private static final int ALPHABET = 128;
+    private static final int NO_MATCH = -1;
+
+    private final List<String> keywords;
+    // transitions[state * ALPHABET + c] -> 下一状态
+    private final int[] transitions;
+    // 到达该状态时匹配到的关键字下标 (状态自身的关键字优先，其次沿失败链接)，无则为 NO_MATCH
+    private final int[] outputs;
+
+    /**
+     * @param keywords Collection 关键字列表，空串被忽略
+     */
+    public KeywordMatcher(@NotNull Collection<String> keywords) {
+        List<String> normalized = new ArrayList<>(keywords.size());
+        for (String keyword : keywords) {
+            if (keyword.isEmpty()) {
+                continue;
+            }
+            for (int i = 0; i < keyword.length(); i++) {
+                if (keyword.charAt(i) >= ALPHABET) {
+                    throw new IllegalArgumentException("keyword must be ASCII: " + keyword);
+                }
+            }
+            normalized.add(keyword);
+        }
+        this.keywords = Collections.unmodifiableList(normalized);
+
+        int maxStates = 1;
+        for (String keyword : normalized) {
+            maxStates += keyword.length();
+        }
+        int[] delta = new int[maxStates * ALPHABET];
+        Arrays.fill(delta, NO_MATCH);
+        int[] output = new int[maxStates];
+        Arrays.fill(output, NO_MATCH);
+
+        // trie
+        int states = 1;
+        for (int k = 0; k < normalized.size(); k++) {
+            String keyword = normalized.get(k);
+            int state = 0;
+            for (int i = 0; i < keyword.length(); i++) {
+                int c = toLower(keyword.charAt(i));
+                int next = delta[state * ALPHABET + c];
+                if (next == NO_MATCH) {
+                    next = states++;
+                    delta[state * ALPHABET + c] = next;
+                }
+                state = next;
+            }
+            if (output[state] == NO_MATCH) {
+                output[state] = k;
+            }
+        }
+
+        // BFS 计算失败链接，并把缺失的转移补全为失败状态上的转移
+        int[] fail = new int[states];
+        ArrayDeque<Integer> queue = new ArrayDeque<>();
+        for (int c = 0; c < ALPHABET; c++) {
+            int next = delta[c];
+            if (next == NO_MATCH) {
+                delta[c] = 0;
+            } else {
+                fail[next] = 0;
+                queue.add(next);
+            }
+        }
+        while (!queue.isEmpty()) {
+            int state = queue.poll();
+            if (output[state] == NO_MATCH) {
+                output[state] = output[fail[state]];
+            }
+            for (int c = 0; c < ALPHABET; c++) {
+                int next = delta[state * ALPHABET + c];
+                int fallback = delta[fail[state] * ALPHABET + c];
+                if (next == NO_MATCH) {
+                    delta[state * ALPHABET + c] = fallback;
+                } else {
+                    fail[next] = fallback;
+                    queue.add(next);
+                }
+            }
+        }
+
+        this.transitions = Arrays.copyOf(delta, states * ALPHABET);
+        this.outputs = Arrays.copyOf(output, states);
+    }
+
+    @NotNull
+    public static KeywordMatcher of(@NotNull String... keywords) {
+        return new KeywordMatcher(Arrays.asList(keywords));
+    }
+
+    /**
+     * 解析用户配置的关键字列表，以逗号或空白分隔，含非 ASCII 字符的关键字被跳过
+     * @param text String | null
+     * @return List<String>
+     */
+    @NotNull
+    public static List<String> parseKeywords(@Nullable String text) {
+        if (text == null || text.trim().isEmpty()) {
+            return Collections.emptyList();
+        }
+        List<String> result = new ArrayList<>();
+        for (String keyword : text.trim().split("[\\s,]+")) {
+            if (!keyword.isEmpty() && isAscii(keyword)) {
+                result.add(keyword);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * 内置关键字 + 用户在规则选项中追加的关键字
+     * 追加的内容变化时重建一次匹配器，否则始终复用，可在多线程间共享
+     */
+    public static final class Configurable {
+        private final List<String> builtin;
+        // 追加内容与对应的匹配器，整体替换
+        private volatile Built built;
+
+        public Configurable(@NotNull String... builtin) {
+            this.builtin = Collections.unmodifiableList(Arrays.asList(builtin));
+            this.built = new Built("", new KeywordMatcher(this.builtin));
+        }
+
+        @NotNull
+        public List<String> getBuiltin() {
+            return builtin;
+        }
+
+        /**
+         * @param custom String | null 用户追加的关键字，格式见 parseKeywords
+         * @return KeywordMatcher
+         */
+        @NotNull
+        public KeywordMatcher get(@Nullable String custom) {
+            String source = custom != null ? custom : "";
+            Built current = built;
+            if (!current.source.equals(source)) {
+                List<String> keywords = new ArrayList<>(builtin);
+                keywords.addAll(parseKeywords(source));
+                current = new Built(source, new KeywordMatcher(keywords));
+                built = current;
+            }
+            return current.matcher;
+        }
+
+        private static final class Built {
+            private final String source;
+            private final KeywordMatcher matcher;
+
+            Built(@NotNull String source, @NotNull KeywordMatcher matcher) {
+                this.source = source;
+                this.matcher = matcher;
+            }
+        }
+    }
+
+    @NotNull
+    public List<String> getKeywords() {
+        return keywords;
+    }
+
+    /**
+     * 文本中是否包含任一关键字 (忽略大小写)
+     * @param text CharSequence | null
+     * @return boolean
+     */
+    public boolean find(@Nullable CharSequence text) {
+        return text != null && indexOfMatch(text, 0, text.length()) != NO_MATCH;
+    }
+
+    /**
+     * 文本 [start, end) 范围内是否包含任一关键字 (忽略大小写)，无需先截取子串
+     * @param text CharSequence
+     * @param start int
+     * @param end int
+     * @return boolean
+     */
+    public boolean find(@NotNull CharSequence text, int start, int end) {
+        return indexOfMatch(text, start, end) != NO_MATCH;
+    }
+
+    /**
+     * @param text CharSequence | null
+     * @return String | null 文本中最先结束的关键字 (同时结束时取最长的一个)，不包含时返回 null
+     */
+    @Nullable
+    public String findFirst(@Nullable CharSequence text) {
+        int index = text == null ? NO_MATCH : indexOfMatch(text, 0, text.length());
+        return index == NO_MATCH ? null : keywords.get(index);
+    }
+
+    private int indexOfMatch(@NotNull CharSequence text, int start, int end) {
+        if (keywords.isEmpty()) {
+            return NO_MATCH;
+        }
+        int state = 0;
+        for (int i = start; i < end; i++) {
+            char c = text.charAt(i);
+            state = c < ALPHABET ? transitions[state * ALPHABET + toLower(c)] : 0;
+            if (outputs[state] != NO_MATCH) {
+                return outputs[state];
+            }
+        }
+        return NO_MATCH;
+    }
+
+    private static boolean isAscii(@NotNull String keyword) {
+        for (int i = 0; i < keyword.length(); i++) {
+            if (keyword.charAt(i) >= ALPHABET) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static int toLower(char c) {
+        return c >= 'A' && c <= 'Z' ? c + ('a' - 'A') : c;
+    }
+}
@@ -0,0 +1,108 @@
+/*
+ * Copyright 2020 momosecurity.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.immomo.momosec.utils;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.Function;
+
+/**
+ * 容量有限的 LRU 缓存，超出容量时淘汰最久未访问的项，淘汰次数计入 stats
+ *
+ * 所有操作在同一把锁内完成；computeIfAbsent 的计算在锁外进行，
+ * 并发计算同一个 key 时可能重复计算，以最后写入的结果为准。
+ * 不支持 null 值。
+ */
+public class LruCache<K, V> {
+
+    private final int capacity;
+    private final LinkedHashMap<K, V> map;
+    private final CacheStats.Counter stats;
+
+    /**
+     * @param capacity int 最大条目数
+     * @param stats CacheStats.Counter | null 命中统计
+     */
+    public LruCache(int capacity, @Nullable CacheStats.Counter stats) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("capacity must be positive: " + capacity);
+        }
+        this.capacity = capacity;
+        this.stats = stats;
+        this.map = new LinkedHashMap<K, V>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<K, V> eldest) {
+                if (size() <= LruCache.this.capacity) {
+                    return false;
+                }
+                if (LruCache.this.stats != null) {
+                    LruCache.this.stats.evict();
+                }
+                return true;
+            }
+        };
+    }
+
+    @Nullable
+    public synchronized V get(@NotNull K key) {
+        V value = map.get(key);
+        if (stats != null) {
+            if (value != null) {
+                stats.hit();
+            } else {
+                stats.miss();
+            }
+        }
+        return value;
+    }
+
+    public synchronized void put(@NotNull K key, @NotNull V value) {
+        map.put(key, value);
+    }
+
+    @NotNull
+    public V computeIfAbsent(@NotNull K key, @NotNull Function<? super K, ? extends V> function) {
+        V value = get(key);
+        if (value == null) {
+            value = function.apply(key);
+            put(key, value);
+        }
+        return value;
+    }
+
+    public synchronized int size() {
+        return map.size();
+    }
+
+    public int getCapacity() {
+        return capacity;
+    }
+
+    public synchronized void clear() {
+        map.clear();
+    }
+
+    /**
+     * @return Map 按访问时间从旧到新排列的副本
+     */
+    @NotNull
+    public synchronized Map<K, V> snapshot() {
+        return new LinkedHashMap<>(map);
+    }
+}
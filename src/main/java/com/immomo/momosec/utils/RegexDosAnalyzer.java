@@ -0,0 +1,1836 @@
+/*
+ * Copyright 2020 momosecurity.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.immomo.momosec.utils;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * 正则表达式回溯复杂度分析 (ReDoS)
+ *
+ * (1) 按 java.util.regex 语法将正则解析为语法树
+ * (2) 构建 Glushkov NFA：每个字符 / 字符类是一个状态，量词产生回边，回边记录产生它的量词
+ * (3) 指数级歧义 (EDA)：NFA 与自身的乘积自动机中，某个强连通分量同时包含 (q, q) 与 (p, r) p != r，
+ *     或包含由两条不同的边构成的 (q, q) -> (q', q') 转移，即存在同一字符串从 q 回到 q 的两条不同路径，
+ *     例如 (a+)+、(a|aa)+、(\w+\s?)*
+ * (4) 多项式级歧义 (IDA)：存在 p != q 及字符串 w，使 p -w-> p、p -w-> q、q -w-> q 同时成立，
+ *     在三重乘积自动机上从 (p, p, q) 搜索 (p, q, q)，例如 \d+\.?\d+、(.*a){12}；
+ *     只有 q 之后的部分可能匹配失败时才需要回溯: q 之后只剩 .*、$ 等必然成功的部分时 (如 .*foo.*、(.*)@(.*))
+ *     匹配是线性的，不报告。行终止符不计入 . 的失败 (多数输入为单行)。
+ * (5) 匹配语义: matches() 要求匹配到输入末尾；find() (replaceAll / split 等) 到达任一接受状态即成功，
+ *     因此 find() 下 q 为接受状态时同样不报告，除非正则以 $ / \z / \Z 锚定结尾
+ *
+ * 原子组 / 占有量词不回溯，整体视为一个状态；零宽断言视为空；反向引用视为任意字符。
+ * Unicode 属性类按类别近似为字符集合。
+ * 分析只做图遍历，不执行任何匹配；状态数与搜索步数均有上限，超出上限时放弃分析 (不报告)。
+ */
+public class RegexDosAnalyzer {
+
+    public enum Kind {
+        EXPONENTIAL,
+        POLYNOMIAL
+    }
+
+    /**
+     * 分析结果，[start, end) 为正则字符串中引起回溯的子表达式
+     */
+    public static class Result {
+        private final Kind kind;
+        private final int start;
+        private final int end;
+        private final Attack attack;
+
+        public Result(@NotNull Kind kind, int start, int end) {
+            this(kind, start, end, null);
+        }
+
+        Result(@NotNull Kind kind, int start, int end, @Nullable Attack attack) {
+            this.kind = kind;
+            this.start = start;
+            this.end = end;
+            this.attack = attack;
+        }
+
+        @NotNull
+        public Kind getKind() {
+            return kind;
+        }
+
+        public int getStart() {
+            return start;
+        }
+
+        public int getEnd() {
+            return end;
+        }
+
+        /**
+         * @return Attack | null 从缓存恢复的结果不含攻击串
+         */
+        @Nullable
+        public Attack getAttack() {
+            return attack;
+        }
+
+        @Override
+        public String toString() {
+            return kind + "[" + start + ", " + end + ")";
+        }
+    }
+
+    /**
+     * 由歧义路径构造的攻击串: prefix + pump * n + suffix
+     * prefix 使匹配到达歧义所在的状态，pump 沿两条 (或三条) 不同路径回到该状态，suffix 使整体匹配失败
+     */
+    public static class Attack {
+        private final String prefix;
+        private final String pump;
+        private final String suffix;
+
+        Attack(@NotNull String prefix, @NotNull String pump, @NotNull String suffix) {
+            this.prefix = prefix;
+            this.pump = pump;
+            this.suffix = suffix;
+        }
+
+        @NotNull
+        public String getPrefix() {
+            return prefix;
+        }
+
+        @NotNull
+        public String getPump() {
+            return pump;
+        }
+
+        @NotNull
+        public String getSuffix() {
+            return suffix;
+        }
+
+        @NotNull
+        public String build(int repeat) {
+            StringBuilder sb = new StringBuilder(prefix.length() + pump.length() * repeat + suffix.length());
+            sb.append(prefix);
+            for (int i = 0; i < repeat; i++) {
+                sb.append(pump);
+            }
+            return sb.append(suffix).toString();
+        }
+    }
+
+    private static final int INF = -1;
+    private static final int MAX_POSITIONS = 256;
+    private static final int MAX_DEPTH = 256;
+    private static final int MAX_COUNTER = 100_000;
+    private static final int MAX_IDA_STEPS = 200_000;
+
+    // 解析标志位
+    private static final int CASE_INSENSITIVE = 1;
+    private static final int COMMENTS = 1 << 1;
+    private static final int DOTALL = 1 << 2;
+    private static final int UNIX_LINES = 1 << 3;
+
+    /**
+     * 按 matches() 语义分析；用法未知时 (如 Pattern.compile) 使用该语义，报告范围最大
+     * @param regex String
+     * @return Result | null 无法解析或未发现风险时返回 null
+     */
+    @Nullable
+    public static Result analyze(@NotNull String regex) {
+        return analyze(regex, false);
+    }
+
+    /**
+     * @param regex String
+     * @param find boolean 是否按 find() 语义 (部分匹配即成功) 分析
+     * @return Result | null 无法解析或未发现风险时返回 null
+     */
+    @Nullable
+    public static Result analyze(@NotNull String regex, boolean find) {
+        Parser parser = new Parser(regex);
+        Node root;
+        try {
+            root = parser.parse();
+        } catch (ParseException e) {
+            return null;
+        }
+
+        Automaton automaton = new Automaton();
+        try {
+            automaton.build(root);
+        } catch (ParseException e) {
+            return null;
+        }
+        if (automaton.size() == 0) {
+            return null;
+        }
+
+        Result result = automaton.findExponential();
+        return result != null ? result : automaton.findPolynomial(find && !parser.endAnchored);
+    }
+
+    // ---------------------------------------------------------------- 语法树
+
+    private static class ParseException extends RuntimeException {
+        ParseException() {
+            super(null, null, false, false);
+        }
+    }
+
+    private abstract static class Node {
+        int start;
+        int end;
+
+        Node(int start, int end) {
+            this.start = start;
+            this.end = end;
+        }
+    }
+
+    private static final class CharNode extends Node {
+        final CharSet set;
+
+        CharNode(int start, int end, @NotNull CharSet set) {
+            super(start, end);
+            this.set = set;
+        }
+    }
+
+    private static final class EmptyNode extends Node {
+        EmptyNode(int start, int end) {
+            super(start, end);
+        }
+    }
+
+    private static final class SeqNode extends Node {
+        final Node[] items;
+
+        SeqNode(int start, int end, @NotNull Node[] items) {
+            super(start, end);
+            this.items = items;
+        }
+    }
+
+    private static final class AltNode extends Node {
+        final Node[] branches;
+
+        AltNode(int start, int end, @NotNull Node[] branches) {
+            super(start, end);
+            this.branches = branches;
+        }
+    }
+
+    private static final class RepeatNode extends Node {
+        final Node body;
+        final int min;
+        final int max;
+
+        RepeatNode(int start, int end, @NotNull Node body, int min, int max) {
+            super(start, end);
+            this.body = body;
+            this.min = min;
+            this.max = max;
+        }
+    }
+
+    /**
+     * 原子组 (?>X) 与占有量词 X*+ 等，匹配后不再回溯
+     */
+    private static final class AtomicNode extends Node {
+        final Node body;
+
+        AtomicNode(int start, int end, @NotNull Node body) {
+            super(start, end);
+            this.body = body;
+        }
+    }
+
+    // ---------------------------------------------------------------- 解析
+
+    private static final class Parser {
+        private final String s;
+        private final int len;
+        private int pos = 0;
+        private int flags = 0;
+        private int depth = 0;
+        // 出现 $ / \z / \Z，find() 也必须匹配到输入末尾
+        boolean endAnchored = false;
+
+        Parser(@NotNull String s) {
+            this.s = s;
+            this.len = s.length();
+        }
+
+        @NotNull
+        Node parse() {
+            Node node = parseAlternation();
+            if (pos != len) {
+                throw new ParseException();
+            }
+            return node;
+        }
+
+        private Node parseAlternation() {
+            int start = pos;
+            List<Node> branches = new ArrayList<>();
+            branches.add(parseSequence());
+            while (pos < len && s.charAt(pos) == '|') {
+                pos++;
+                branches.add(parseSequence());
+            }
+            return branches.size() == 1 ? branches.get(0) : new AltNode(start, pos, branches.toArray(new Node[0]));
+        }
+
+        private Node parseSequence() {
+            int start = pos;
+            List<Node> items = new ArrayList<>();
+            while (true) {
+                skipComments();
+                if (pos >= len || s.charAt(pos) == '|' || s.charAt(pos) == ')') {
+                    break;
+                }
+                items.add(parseQuantifier(parseAtom()));
+            }
+            return items.size() == 1 ? items.get(0) : new SeqNode(start, pos, items.toArray(new Node[0]));
+        }
+
+        private Node parseQuantifier(@NotNull Node atom) {
+            skipComments();
+            if (pos >= len) {
+                return atom;
+            }
+            int min;
+            int max;
+            char c = s.charAt(pos);
+            if (c == '*') {
+                min = 0;
+                max = INF;
+                pos++;
+            } else if (c == '+') {
+                min = 1;
+                max = INF;
+                pos++;
+            } else if (c == '?') {
+                min = 0;
+                max = 1;
+                pos++;
+            } else if (c == '{') {
+                pos++;
+                min = parseCounter();
+                max = min;
+                if (pos < len && s.charAt(pos) == ',') {
+                    pos++;
+                    max = pos < len && s.charAt(pos) == '}' ? INF : parseCounter();
+                }
+                expect('}');
+                if (max != INF && max < min) {
+                    throw new ParseException();
+                }
+            } else {
+                return atom;
+            }
+
+            boolean possessive = false;
+            if (pos < len && s.charAt(pos) == '?') {
+                pos++;
+            } else if (pos < len && s.charAt(pos) == '+') {
+                pos++;
+                possessive = true;
+            }
+            Node repeat = new RepeatNode(atom.start, pos, atom, min, max);
+            return possessive ? new AtomicNode(atom.start, pos, repeat) : repeat;
+        }
+
+        private int parseCounter() {
+            int value = 0;
+            int digits = 0;
+            while (pos < len && s.charAt(pos) >= '0' && s.charAt(pos) <= '9') {
+                value = Math.min(value * 10 + (s.charAt(pos) - '0'), MAX_COUNTER);
+                digits++;
+                pos++;
+            }
+            if (digits == 0) {
+                throw new ParseException();
+            }
+            return value;
+        }
+
+        private Node parseAtom() {
+            int start = pos;
+            char c = s.charAt(pos);
+            switch (c) {
+                case '(':
+                    return parseGroup();
+                case '[':
+                    pos++;
+                    return leaf(start, parseClass());
+                case '.':
+                    pos++;
+                    return leaf(start, dot());
+                case '^':
+                    pos++;
+                    return new EmptyNode(start, pos);
+                case '$':
+                    pos++;
+                    endAnchored = true;
+                    return new EmptyNode(start, pos);
+                case '\\':
+                    return parseEscape();
+                case '*':
+                case '+':
+                case '?':
+                case '{':
+                    throw new ParseException();
+                default:
+                    int cp = s.codePointAt(pos);
+                    pos += Character.charCount(cp);
+                    return leaf(start, CharSet.of(cp));
+            }
+        }
+
+        private Node parseGroup() {
+            int start = pos;
+            if (++depth > MAX_DEPTH) {
+                throw new ParseException();
+            }
+            pos++;
+            int savedFlags = flags;
+            Node node;
+            if (pos < len && s.charAt(pos) == '?') {
+                pos++;
+                char k = next();
+                if (k == ':') {
+                    node = parseAlternation();
+                } else if (k == '=' || k == '!') {
+                    parseAlternation();
+                    node = new EmptyNode(start, start);
+                } else if (k == '>') {
+                    Node body = parseAlternation();
+                    node = new AtomicNode(body.start, body.end, body);
+                } else if (k == '<') {
+                    char t = next();
+                    if (t == '=' || t == '!') {
+                        parseAlternation();
+                        node = new EmptyNode(start, start);
+                    } else {
+                        // 命名分组 (?<name>X)
+                        while (t != '>') {
+                            t = next();
+                        }
+                        node = parseAlternation();
+                    }
+                } else {
+                    pos--;
+                    parseFlags();
+                    if (next() == ')') {
+                        // (?i) 作用到所在分组结束，不恢复标志位
+                        depth--;
+                        return new EmptyNode(start, pos);
+                    }
+                    node = parseAlternation();
+                }
+            } else {
+                node = parseAlternation();
+            }
+            expect(')');
+            flags = savedFlags;
+            depth--;
+
+            node.start = start;
+            node.end = pos;
+            return node;
+        }
+
+        private void parseFlags() {
+            boolean on = true;
+            while (pos < len) {
+                char c = s.charAt(pos);
+                int flag;
+                switch (c) {
+                    case 'i': flag = CASE_INSENSITIVE; break;
+                    case 'x': flag = COMMENTS; break;
+                    case 's': flag = DOTALL; break;
+                    case 'd': flag = UNIX_LINES; break;
+                    case 'm': case 'u': case 'U': flag = 0; break;
+                    case '-': on = false; pos++; continue;
+                    default: return;
+                }
+                flags = on ? flags | flag : flags & ~flag;
+                pos++;
+            }
+        }
+
+        private Node parseEscape() {
+            int start = pos;
+            pos++;
+            char c = peek();
+            switch (c) {
+                case 'b': case 'B': case 'A': case 'G':
+                    pos++;
+                    return new EmptyNode(start, pos);
+                case 'Z': case 'z':
+                    pos++;
+                    endAnchored = true;
+                    return new EmptyNode(start, pos);
+                case 'Q': {
+                    pos++;
+                    int quoteEnd = s.indexOf("\\E", pos);
+                    int contentEnd = quoteEnd < 0 ? len : quoteEnd;
+                    List<Node> items = new ArrayList<>();
+                    while (pos < contentEnd) {
+                        int cpStart = pos;
+                        int cp = s.codePointAt(pos);
+                        pos += Character.charCount(cp);
+                        items.add(leaf(cpStart, CharSet.of(cp)));
+                    }
+                    pos = quoteEnd < 0 ? len : quoteEnd + 2;
+                    return new SeqNode(start, pos, items.toArray(new Node[0]));
+                }
+                case 'k': {
+                    // 命名反向引用 \k<name>
+                    pos++;
+                    expect('<');
+                    while (next() != '>') {
+                        // skip name
+                    }
+                    return new CharNode(start, pos, CharSet.ANY);
+                }
+                default:
+                    if (c >= '1' && c <= '9') {
+                        while (pos < len && s.charAt(pos) >= '0' && s.charAt(pos) <= '9') {
+                            pos++;
+                        }
+                        return new CharNode(start, pos, CharSet.ANY);
+                    }
+                    CharSet set = parseClassEscape();
+                    if (set == null) {
+                        set = CharSet.of(parseCharEscape());
+                    }
+                    return leaf(start, set);
+            }
+        }
+
+        /**
+         * \d \w \s \p{..} 等字符类转义，pos 位于反斜杠之后
+         * @return CharSet | null 不是字符类转义时返回 null 且不移动 pos
+         */
+        @Nullable
+        private CharSet parseClassEscape() {
+            char c = peek();
+            CharSet set;
+            switch (c) {
+                case 'd': set = CharSet.DIGIT; break;
+                case 'D': set = CharSet.DIGIT.complement(); break;
+                case 'w': set = CharSet.WORD; break;
+                case 'W': set = CharSet.WORD.complement(); break;
+                case 's': set = CharSet.SPACE; break;
+                case 'S': set = CharSet.SPACE.complement(); break;
+                case 'h': set = CharSet.HORIZONTAL_SPACE; break;
+                case 'H': set = CharSet.HORIZONTAL_SPACE.complement(); break;
+                case 'v': set = CharSet.VERTICAL_SPACE; break;
+                case 'V': set = CharSet.VERTICAL_SPACE.complement(); break;
+                case 'R': set = CharSet.VERTICAL_SPACE; break;
+                case 'X': set = CharSet.ANY; break;
+                case 'p':
+                case 'P': {
+                    pos++;
+                    String name;
+                    if (peek() == '{') {
+                        int close = s.indexOf('}', pos);
+                        if (close < 0) {
+                            throw new ParseException();
+                        }
+                        name = s.substring(pos + 1, close);
+                        pos = close;
+                    } else {
+                        name = String.valueOf(peek());
+                    }
+                    CharSet property = CharSet.property(name);
+                    set = property == null ? CharSet.ANY : (c == 'P' ? property.complement() : property);
+                    break;
+                }
+                default:
+                    return null;
+            }
+            pos++;
+            return set;
+        }
+
+        /**
+         * 单个字符的转义，pos 位于反斜杠之后
+         */
+        private int parseCharEscape() {
+            char c = next();
+            switch (c) {
+                case 't': return '\t';
+                case 'n': return '\n';
+                case 'r': return '\r';
+                case 'f': return '\f';
+                case 'a': return 0x07;
+                case 'e': return 0x1B;
+                case 'c': return next() ^ 64;
+                case '0': {
+                    int value = 0;
+                    int digits = 0;
+                    while (digits < 3 && pos < len && s.charAt(pos) >= '0' && s.charAt(pos) <= '7'
+                            && value * 8 + (s.charAt(pos) - '0') <= 0377) {
+                        value = value * 8 + (s.charAt(pos) - '0');
+                        digits++;
+                        pos++;
+                    }
+                    if (digits == 0) {
+                        throw new ParseException();
+                    }
+                    return value;
+                }
+                case 'x': {
+                    if (peek() == '{') {
+                        int close = s.indexOf('}', pos);
+                        if (close < 0) {
+                            throw new ParseException();
+                        }
+                        int cp = parseHex(pos + 1, close);
+                        pos = close + 1;
+                        return cp;
+                    }
+                    int cp = parseHex(pos, pos + 2);
+                    pos += 2;
+                    return cp;
+                }
+                case 'u': {
+                    int cp = parseHex(pos, pos + 4);
+                    pos += 4;
+                    return cp;
+                }
+                default:
+                    if (Character.isLetterOrDigit(c)) {
+                        throw new ParseException();
+                    }
+                    return c;
+            }
+        }
+
+        private int parseHex(int from, int to) {
+            if (from >= to || to > len || to - from > 6) {
+                throw new ParseException();
+            }
+            int value = 0;
+            for (int i = from; i < to; i++) {
+                int digit = Character.digit(s.charAt(i), 16);
+                if (digit < 0) {
+                    throw new ParseException();
+                }
+                value = value * 16 + digit;
+            }
+            if (value > Character.MAX_CODE_POINT) {
+                throw new ParseException();
+            }
+            return value;
+        }
+
+        /**
+         * 字符类 [...]，pos 位于 [ 之后
+         */
+        private CharSet parseClass() {
+            if (++depth > MAX_DEPTH) {
+                throw new ParseException();
+            }
+            boolean negate = false;
+            if (pos < len && s.charAt(pos) == '^') {
+                negate = true;
+                pos++;
+            }
+            CharSet set = parseClassUnion(true);
+            expect(']');
+            depth--;
+            return negate ? set.complement() : set;
+        }
+
+        /**
+         * 解析到 ] 为止 (不消费 ])，&& 右侧的部分与左侧求交集
+         */
+        private CharSet parseClassUnion(boolean first) {
+            CharSet set = CharSet.EMPTY;
+            while (true) {
+                if (pos >= len) {
+                    throw new ParseException();
+                }
+                char c = s.charAt(pos);
+                if (c == ']' && !first) {
+                    return set;
+                }
+                first = false;
+
+                if (c == '[') {
+                    pos++;
+                    set = set.union(parseClass());
+                    continue;
+                }
+                if (c == '&' && pos + 1 < len && s.charAt(pos + 1) == '&') {
+                    pos += 2;
+                    return set.intersect(parseClassUnion(false));
+                }
+                if ((flags & COMMENTS) != 0 && Character.isWhitespace(c)) {
+                    pos++;
+                    continue;
+                }
+
+                int lo;
+                if (c == '\\') {
+                    pos++;
+                    if (peek() == 'Q') {
+                        pos++;
+                        int quoteEnd = s.indexOf("\\E", pos);
+                        int contentEnd = quoteEnd < 0 ? len : quoteEnd;
+                        while (pos < contentEnd) {
+                            int cp = s.codePointAt(pos);
+                            pos += Character.charCount(cp);
+                            set = set.union(CharSet.of(cp));
+                        }
+                        pos = quoteEnd < 0 ? len : quoteEnd + 2;
+                        continue;
+                    }
+                    CharSet escape = parseClassEscape();
+                    if (escape != null) {
+                        set = set.union(escape);
+                        continue;
+                    }
+                    lo = parseCharEscape();
+                } else {
+                    lo = s.codePointAt(pos);
+                    pos += Character.charCount(lo);
+                }
+
+                if (pos + 1 < len && s.charAt(pos) == '-' && s.charAt(pos + 1) != ']' && s.charAt(pos + 1) != '[') {
+                    pos++;
+                    int hi;
+                    if (s.charAt(pos) == '\\') {
+                        pos++;
+                        hi = parseCharEscape();
+                    } else {
+                        hi = s.codePointAt(pos);
+                        pos += Character.charCount(hi);
+                    }
+                    if (hi < lo) {
+                        throw new ParseException();
+                    }
+                    set = set.union(CharSet.range(lo, hi));
+                } else {
+                    set = set.union(CharSet.of(lo));
+                }
+            }
+        }
+
+        private CharNode leaf(int start, @NotNull CharSet set) {
+            return new CharNode(start, pos, (flags & CASE_INSENSITIVE) != 0 ? set.foldCase() : set);
+        }
+
+        private CharSet dot() {
+            if ((flags & DOTALL) != 0) {
+                return CharSet.ANY;
+            }
+            return (flags & UNIX_LINES) != 0 ? CharSet.of('\n').complement() : CharSet.LINE_TERMINATOR.complement();
+        }
+
+        private void skipComments() {
+            if ((flags & COMMENTS) == 0) {
+                return ;
+            }
+            while (pos < len) {
+                char c = s.charAt(pos);
+                if (Character.isWhitespace(c)) {
+                    pos++;
+                } else if (c == '#') {
+                    while (pos < len && s.charAt(pos) != '\n') {
+                        pos++;
+                    }
+                } else {
+                    return ;
+                }
+            }
+        }
+
+        private char peek() {
+            if (pos >= len) {
+                throw new ParseException();
+            }
+            return s.charAt(pos);
+        }
+
+        private char next() {
+            char c = peek();
+            pos++;
+            return c;
+        }
+
+        private void expect(char c) {
+            if (next() != c) {
+                throw new ParseException();
+            }
+        }
+    }
+
+    // ---------------------------------------------------------------- 字符集合
+
+    /**
+     * 按码点区间表示的字符集合，ranges 为有序、不重叠、不相邻的 [lo, hi] 闭区间
+     */
+    static final class CharSet {
+        private static final int MAX = Character.MAX_CODE_POINT;
+
+        static final CharSet EMPTY = new CharSet(new int[0]);
+        static final CharSet ANY = new CharSet(new int[]{0, MAX});
+        static final CharSet DIGIT = range('0', '9');
+        static final CharSet LOWER = range('a', 'z');
+        static final CharSet UPPER = range('A', 'Z');
+        static final CharSet ALPHA = LOWER.union(UPPER);
+        static final CharSet ALNUM = ALPHA.union(DIGIT);
+        static final CharSet WORD = ALNUM.union(of('_'));
+        static final CharSet SPACE = of(new int[]{' ', ' ', '\t', '\r'});
+        static final CharSet HORIZONTAL_SPACE = of(new int[]{' ', ' ', '\t', '\t', 0xA0, 0xA0, 0x1680, 0x1680, 0x180E, 0x180E,
+                0x2000, 0x200A, 0x202F, 0x202F, 0x205F, 0x205F, 0x3000, 0x3000});
+        static final CharSet VERTICAL_SPACE = of(new int[]{'\n', '\r', 0x85, 0x85, 0x2028, 0x2029});
+        static final CharSet LINE_TERMINATOR = of(new int[]{'\n', '\n', '\r', '\r', 0x85, 0x85, 0x2028, 0x2029});
+        static final CharSet PUNCT = of(new int[]{'!', '/', ':', '@', '[', '`', '{', '~'});
+        static final CharSet SYMBOL = of(new int[]{'$', '$', '+', '+', '<', '>', '^', '^', '`', '`', '|', '|', '~', '~'});
+        static final CharSet CNTRL = of(new int[]{0, 0x1F, 0x7F, 0x7F});
+        static final CharSet PRINTABLE = range(' ', '~');
+        static final CharSet UNICODE_SPACE = SPACE.union(HORIZONTAL_SPACE).union(VERTICAL_SPACE);
+        // 非 ASCII 且非空白的字符，用于近似各类 Unicode 属性
+        static final CharSet NON_ASCII = range(0x80, MAX).intersect(UNICODE_SPACE.complement());
+
+        private final int[] ranges;
+
+        private CharSet(@NotNull int[] ranges) {
+            this.ranges = ranges;
+        }
+
+        static CharSet of(int c) {
+            return new CharSet(new int[]{c, c});
+        }
+
+        static CharSet range(int lo, int hi) {
+            return new CharSet(new int[]{lo, hi});
+        }
+
+        /**
+         * @param pairs int[] 任意顺序的 [lo, hi] 区间
+         */
+        static CharSet of(@NotNull int[] pairs) {
+            int count = pairs.length / 2;
+            long[] sorted = new long[count];
+            for (int i = 0; i < count; i++) {
+                sorted[i] = ((long) pairs[2 * i] << 32) | (pairs[2 * i + 1] & 0xFFFFFFFFL);
+            }
+            Arrays.sort(sorted);
+
+            int[] merged = new int[pairs.length];
+            int size = 0;
+            for (long pair : sorted) {
+                int lo = (int) (pair >>> 32);
+                int hi = (int) pair;
+                if (size > 0 && lo <= merged[size - 1] + 1) {
+                    merged[size - 1] = Math.max(merged[size - 1], hi);
+                } else {
+                    merged[size++] = lo;
+                    merged[size++] = hi;
+                }
+            }
+            return new CharSet(Arrays.copyOf(merged, size));
+        }
+
+        /**
+         * Unicode / POSIX 属性类
+         * @return CharSet | null 无法识别的属性
+         */
+        @Nullable
+        static CharSet property(@NotNull String name) {
+            String n = name.startsWith("Is") ? name.substring(2) : name;
+            switch (n) {
+                case "Lower": return LOWER;
+                case "Upper": return UPPER;
+                case "ASCII": return range(0, 0x7F);
+                case "Alpha": return ALPHA;
+                case "Digit": return DIGIT;
+                case "Alnum": return ALNUM;
+                case "Punct": return PUNCT;
+                case "Graph": return ALNUM.union(PUNCT);
+                case "Print": return ALNUM.union(PUNCT).union(of(' '));
+                case "Blank": return of(new int[]{' ', ' ', '\t', '\t'});
+                case "Cntrl": return CNTRL;
+                case "XDigit": return of(new int[]{'0', '9', 'a', 'f', 'A', 'F'});
+                case "Space": case "WhiteSpace": case "White_Space": return UNICODE_SPACE;
+                default:
+                    break;
+            }
+            if (n.isEmpty()) {
+                return null;
+            }
+            switch (n.charAt(0)) {
+                case 'N': return DIGIT.union(NON_ASCII);
+                case 'P': return PUNCT.union(NON_ASCII);
+                case 'S': return SYMBOL.union(NON_ASCII);
+                case 'Z': return UNICODE_SPACE;
+                case 'C': return CNTRL.union(NON_ASCII);
+                default:
+                    // L* / 文字 / 区块 / javaXxx
+                    return ALPHA.union(NON_ASCII);
+            }
+        }
+
+        boolean isEmpty() {
+            return ranges.length == 0;
+        }
+
+        CharSet union(@NotNull CharSet other) {
+            if (other.isEmpty()) {
+                return this;
+            }
+            if (isEmpty()) {
+                return other;
+            }
+            int[] pairs = Arrays.copyOf(ranges, ranges.length + other.ranges.length);
+            System.arraycopy(other.ranges, 0, pairs, ranges.length, other.ranges.length);
+            return of(pairs);
+        }
+
+        CharSet complement() {
+            int[] result = new int[ranges.length + 2];
+            int size = 0;
+            int next = 0;
+            for (int i = 0; i < ranges.length; i += 2) {
+                if (ranges[i] > next) {
+                    result[size++] = next;
+                    result[size++] = ranges[i] - 1;
+                }
+                next = ranges[i + 1] + 1;
+            }
+            if (next <= MAX) {
+                result[size++] = next;
+                result[size++] = MAX;
+            }
+            return new CharSet(Arrays.copyOf(result, size));
+        }
+
+        CharSet intersect(@NotNull CharSet other) {
+            int[] result = new int[ranges.length + other.ranges.length];
+            int size = 0;
+            int i = 0;
+            int j = 0;
+            while (i < ranges.length && j < other.ranges.length) {
+                int lo = Math.max(ranges[i], other.ranges[j]);
+                int hi = Math.min(ranges[i + 1], other.ranges[j + 1]);
+                if (lo <= hi) {
+                    result[size++] = lo;
+                    result[size++] = hi;
+                }
+                if (ranges[i + 1] < other.ranges[j + 1]) {
+                    i += 2;
+                } else {
+                    j += 2;
+                }
+            }
+            return new CharSet(Arrays.copyOf(result, size));
+        }
+
+        boolean intersects(@NotNull CharSet other) {
+            int i = 0;
+            int j = 0;
+            while (i < ranges.length && j < other.ranges.length) {
+                if (Math.max(ranges[i], other.ranges[j]) <= Math.min(ranges[i + 1], other.ranges[j + 1])) {
+                    return true;
+                }
+                if (ranges[i + 1] < other.ranges[j + 1]) {
+                    i += 2;
+                } else {
+                    j += 2;
+                }
+            }
+            return false;
+        }
+
+        /**
+         * 集合中的一个代表字符，优先取可见 ASCII 字符
+         * @return int | -1 集合为空
+         */
+        int sample() {
+            for (CharSet preferred : new CharSet[]{LOWER, DIGIT, UPPER, PRINTABLE}) {
+                CharSet common = intersect(preferred);
+                if (!common.isEmpty()) {
+                    return common.ranges[0];
+                }
+            }
+            return isEmpty() ? -1 : ranges[0];
+        }
+
+        /**
+         * 忽略大小写时补充 ASCII 字母的另一种大小写
+         */
+        CharSet foldCase() {
+            CharSet lower = intersect(LOWER);
+            CharSet upper = intersect(UPPER);
+            return union(lower.shift('A' - 'a')).union(upper.shift('a' - 'A'));
+        }
+
+        private CharSet shift(int delta) {
+            int[] shifted = new int[ranges.length];
+            for (int i = 0; i < ranges.length; i++) {
+                shifted[i] = ranges[i] + delta;
+            }
+            return new CharSet(shifted);
+        }
+    }
+
+    // ---------------------------------------------------------------- Glushkov NFA
+
+    private static final class Fragment {
+        static final Fragment EMPTY = new Fragment(new int[0], new int[0], true);
+
+        final int[] first;
+        final int[] last;
+        final boolean nullable;
+
+        Fragment(@NotNull int[] first, @NotNull int[] last, boolean nullable) {
+            this.first = first;
+            this.last = last;
+            this.nullable = nullable;
+        }
+    }
+
+    private static final class Automaton {
+        // 状态 (字符位置)
+        private final List<CharSet> sets = new ArrayList<>();
+        private final List<int[]> ancestors = new ArrayList<>();
+        // 边: target / creator，creator 为产生回边的量词实例，顺序连接的边为 -1
+        private final List<int[]> edgeTargets = new ArrayList<>();
+        private final List<int[]> edgeCreators = new ArrayList<>();
+        private final List<int[]> edgeCounts = new ArrayList<>();
+        // 量词实例: 同一个量词展开的每个副本是一个实例
+        private final List<RepeatNode> instanceNodes = new ArrayList<>();
+        private int[] stack = new int[16];
+        private int stackSize = 0;
+
+        private int[][] targets;
+        private int[][] creators;
+        private boolean[][] inter;
+        private int[] initial;
+        // 读完该状态的字符后整体匹配可以结束
+        private boolean[] accepting;
+
+        int size() {
+            return sets.size();
+        }
+
+        void build(@NotNull Node root) {
+            Fragment fragment = build(root, 0);
+            initial = fragment.first;
+            int n = sets.size();
+            accepting = new boolean[n];
+            for (int p : fragment.last) {
+                accepting[p] = true;
+            }
+            targets = new int[n][];
+            creators = new int[n][];
+            for (int i = 0; i < n; i++) {
+                targets[i] = Arrays.copyOf(edgeTargets.get(i), edgeCounts.get(i)[0]);
+                creators[i] = Arrays.copyOf(edgeCreators.get(i), edgeCounts.get(i)[0]);
+            }
+            inter = new boolean[n][n];
+            for (int i = 0; i < n; i++) {
+                for (int j = i; j < n; j++) {
+                    inter[i][j] = inter[j][i] = sets.get(i).intersects(sets.get(j));
+                }
+            }
+        }
+
+        private Fragment build(@NotNull Node node, int depth) {
+            if (depth > MAX_DEPTH) {
+                throw new ParseException();
+            }
+            if (node instanceof CharNode) {
+                int p = newPosition(((CharNode) node).set);
+                return new Fragment(new int[]{p}, new int[]{p}, false);
+            }
+            if (node instanceof EmptyNode) {
+                return Fragment.EMPTY;
+            }
+            if (node instanceof SeqNode) {
+                Fragment result = Fragment.EMPTY;
+                for (Node item : ((SeqNode) node).items) {
+                    result = seq(result, build(item, depth + 1));
+                }
+                return result;
+            }
+            if (node instanceof AltNode) {
+                int[] first = new int[0];
+                int[] last = new int[0];
+                boolean nullable = false;
+                for (Node branch : ((AltNode) node).branches) {
+                    Fragment f = build(branch, depth + 1);
+                    first = concat(first, f.first);
+                    last = concat(last, f.last);
+                    nullable |= f.nullable;
+                }
+                return new Fragment(first, last, nullable);
+            }
+            if (node instanceof AtomicNode) {
+                Node body = ((AtomicNode) node).body;
+                int p = newPosition(union(body));
+                return new Fragment(new int[]{p}, new int[]{p}, isNullable(body));
+            }
+            return buildRepeat((RepeatNode) node, depth);
+        }
+
+        /**
+         * X{n,m} 展开为 n 个必选副本与 m - n 个嵌套的可选副本，X{n,} 展开为 n - 1 个副本加 X+
+         * 展开后状态数超过上限时只保留一个副本
+         */
+        private Fragment buildRepeat(@NotNull RepeatNode node, int depth) {
+            if (node.max == 0) {
+                return Fragment.EMPTY;
+            }
+            boolean unbounded = node.max == INF;
+            int copies = unbounded ? Math.max(node.min, 1) : node.max;
+            boolean expand = copies > 1 && sets.size() + (long) copies * weight(node.body) <= MAX_POSITIONS;
+
+            if (unbounded) {
+                Fragment prefix = Fragment.EMPTY;
+                if (expand) {
+                    for (int i = 1; i < node.min; i++) {
+                        prefix = seq(prefix, buildCopy(node, depth));
+                    }
+                }
+                int instance = instanceNodes.size();
+                Fragment loop = buildCopy(node, depth);
+                connect(loop.last, loop.first, instance);
+                return seq(prefix, new Fragment(loop.first, loop.last, loop.nullable || node.min == 0));
+            }
+
+            if (!expand) {
+                Fragment f = buildCopy(node, depth);
+                return node.min == 0 ? new Fragment(f.first, f.last, true) : f;
+            }
+            Fragment result = Fragment.EMPTY;
+            for (int i = 0; i < node.min; i++) {
+                result = seq(result, buildCopy(node, depth));
+            }
+            Fragment optional = Fragment.EMPTY;
+            for (int i = node.min; i < node.max; i++) {
+                Fragment f = seq(buildCopy(node, depth), optional);
+                optional = new Fragment(f.first, f.last, true);
+            }
+            return seq(result, optional);
+        }
+
+        private Fragment buildCopy(@NotNull RepeatNode node, int depth) {
+            int instance = instanceNodes.size();
+            instanceNodes.add(node);
+            if (stackSize == stack.length) {
+                stack = Arrays.copyOf(stack, stackSize * 2);
+            }
+            stack[stackSize++] = instance;
+            Fragment f = build(node.body, depth + 1);
+            stackSize--;
+            return f;
+        }
+
+        private Fragment seq(@NotNull Fragment a, @NotNull Fragment b) {
+            connect(a.last, b.first, -1);
+            return new Fragment(
+                    a.nullable ? concat(a.first, b.first) : a.first,
+                    b.nullable ? concat(a.last, b.last) : b.last,
+                    a.nullable && b.nullable);
+        }
+
+        private int newPosition(@NotNull CharSet set) {
+            if (sets.size() >= MAX_POSITIONS) {
+                throw new ParseException();
+            }
+            sets.add(set);
+            ancestors.add(Arrays.copyOf(stack, stackSize));
+            edgeTargets.add(new int[4]);
+            edgeCreators.add(new int[4]);
+            edgeCounts.add(new int[1]);
+            return sets.size() - 1;
+        }
+
+        private void connect(@NotNull int[] from, @NotNull int[] to, int creator) {
+            for (int x : from) {
+                for (int y : to) {
+                    addEdge(x, y, creator);
+                }
+            }
+        }
+
+        private void addEdge(int from, int to, int creator) {
+            int[] ts = edgeTargets.get(from);
+            int[] cs = edgeCreators.get(from);
+            int[] count = edgeCounts.get(from);
+            for (int i = 0; i < count[0]; i++) {
+                if (ts[i] == to && cs[i] == creator) {
+                    return ;
+                }
+            }
+            if (count[0] == ts.length) {
+                ts = Arrays.copyOf(ts, ts.length * 2);
+                cs = Arrays.copyOf(cs, cs.length * 2);
+                edgeTargets.set(from, ts);
+                edgeCreators.set(from, cs);
+            }
+            ts[count[0]] = to;
+            cs[count[0]] = creator;
+            count[0]++;
+        }
+
+        // ------------------------------------------------------------ EDA
+
+        /**
+         * 在 NFA x NFA 上计算强连通分量 (从每个 (q, q) 出发)，寻找带分歧的环
+         */
+        @Nullable
+        Result findExponential() {
+            int n = sets.size();
+            int[] scc = new Tarjan(n * n) {
+                @Override
+                int degree(int state) {
+                    return targets[state / n].length * targets[state % n].length;
+                }
+
+                @Override
+                int successor(int state, int k) {
+                    int a = state / n;
+                    int b = state % n;
+                    int x = targets[a][k / targets[b].length];
+                    int y = targets[b][k % targets[b].length];
+                    return inter[x][y] ? x * n + y : -1;
+                }
+            }.run(diagonalRoots(n));
+
+            for (int q = 0; q < n; q++) {
+                int component = scc[q * n + q];
+                if (component < 0) {
+                    continue;
+                }
+                // (q, q) -> (x, x) 经由两条不同的边，且仍在同一分量内
+                int[] ts = targets[q];
+                for (int i = 0; i < ts.length; i++) {
+                    for (int j = i + 1; j < ts.length; j++) {
+                        int x = ts[i];
+                        if (x == ts[j] && scc[x * n + x] == component) {
+                            String back = productPath(x * n + x, q * n + q, scc, component);
+                            String pump = back == null ? null : new String(Character.toChars(sets.get(x).sample())) + back;
+                            return exponential(outer(creators[q][i], creators[q][j]), q, pump);
+                        }
+                    }
+                }
+            }
+
+            for (int state = 0; state < n * n; state++) {
+                int a = state / n;
+                int b = state % n;
+                int q = scc[state] >= 0 ? diagonalOf(scc, scc[state], n) : -1;
+                if (a != b && q >= 0) {
+                    String there = productPath(q * n + q, state, scc, scc[state]);
+                    String back = productPath(state, q * n + q, scc, scc[state]);
+                    String pump = there == null || back == null ? null : there + back;
+                    return exponential(widestCreator(scc, scc[state], n), q, pump);
+                }
+            }
+            return null;
+        }
+
+        private int[] diagonalRoots(int n) {
+            int[] roots = new int[n];
+            for (int q = 0; q < n; q++) {
+                roots[q] = q * n + q;
+            }
+            return roots;
+        }
+
+        /**
+         * @return 分量内的某个 (q, q) 的 q，不存在时返回 -1
+         */
+        private int diagonalOf(@NotNull int[] scc, int component, int n) {
+            for (int q = 0; q < n; q++) {
+                if (scc[q * n + q] == component) {
+                    return q;
+                }
+            }
+            return -1;
+        }
+
+        /**
+         * NFA x NFA 上分量内部 from -> to 的最短路径所读入的字符串
+         * @return String | null 不可达
+         */
+        @Nullable
+        private String productPath(int from, int to, @NotNull int[] scc, int component) {
+            if (from == to) {
+                return "";
+            }
+            int n = sets.size();
+            int[] parent = new int[n * n];
+            Arrays.fill(parent, -1);
+            parent[from] = from;
+            int[] queue = new int[n * n];
+            int head = 0;
+            int tail = 0;
+            queue[tail++] = from;
+            while (head < tail) {
+                int state = queue[head++];
+                int a = state / n;
+                int b = state % n;
+                for (int x : targets[a]) {
+                    for (int y : targets[b]) {
+                        int next = x * n + y;
+                        if (!inter[x][y] || scc[next] != component || parent[next] >= 0) {
+                            continue;
+                        }
+                        parent[next] = state;
+                        if (next == to) {
+                            StringBuilder sb = new StringBuilder();
+                            for (int v = to; v != from; v = parent[v]) {
+                                sb.insert(0, Character.toChars(sets.get(v / n).intersect(sets.get(v % n)).sample()));
+                            }
+                            return sb.toString();
+                        }
+                        queue[tail++] = next;
+                    }
+                }
+            }
+            return null;
+        }
+
+        /**
+         * 分量内部转移所经过的回边中，范围最大的量词实例
+         */
+        private int widestCreator(@NotNull int[] scc, int component, int n) {
+            int best = -1;
+            for (int state = 0; state < n * n; state++) {
+                if (scc[state] != component) {
+                    continue;
+                }
+                int a = state / n;
+                int b = state % n;
+                for (int i = 0; i < targets[a].length; i++) {
+                    for (int j = 0; j < targets[b].length; j++) {
+                        int x = targets[a][i];
+                        int y = targets[b][j];
+                        if (!inter[x][y] || scc[x * n + y] != component) {
+                            continue;
+                        }
+                        best = wider(best, creators[a][i]);
+                        best = wider(best, creators[b][j]);
+                    }
+                }
+            }
+            return best;
+        }
+
+        private int wider(int a, int b) {
+            if (a < 0) {
+                return b;
+            }
+            if (b < 0) {
+                return a;
+            }
+            RepeatNode na = instanceNodes.get(a);
+            RepeatNode nb = instanceNodes.get(b);
+            return nb.end - nb.start > na.end - na.start ? b : a;
+        }
+
+        private int outer(int a, int b) {
+            return wider(a, b);
+        }
+
+        private Result exponential(int instance, int q, @Nullable String pump) {
+            if (instance < 0) {
+                return null;
+            }
+            RepeatNode node = instanceNodes.get(instance);
+            return new Result(Kind.EXPONENTIAL, node.start, node.end, attack(q, pump));
+        }
+
+        // ------------------------------------------------------------ IDA
+
+        /**
+         * 对每一对处于不同环上的状态 p -> q，在 NFA^3 上从 (p, p, q) 搜索 (p, q, q)
+         * @param find boolean 按 find() 语义，接受状态之后不会失败
+         */
+        @Nullable
+        Result findPolynomial(boolean find) {
+            int n = sets.size();
+            int[] component = new Tarjan(n) {
+                @Override
+                int degree(int state) {
+                    return targets[state].length;
+                }
+
+                @Override
+                int successor(int state, int k) {
+                    return targets[state][k];
+                }
+            }.run(allRoots(n));
+
+            boolean[] loopy = new boolean[n];
+            int[] componentSize = new int[n];
+            for (int p = 0; p < n; p++) {
+                componentSize[component[p]]++;
+            }
+            for (int p = 0; p < n; p++) {
+                loopy[p] = componentSize[component[p]] > 1;
+                for (int t : targets[p]) {
+                    loopy[p] |= t == p;
+                }
+            }
+
+            boolean[] cannotFail = cannotFail(find);
+            int[] budget = {MAX_IDA_STEPS};
+            for (int p = 0; p < n; p++) {
+                if (!loopy[p]) {
+                    continue;
+                }
+                boolean[] reachable = reachableFrom(p);
+                for (int q = 0; q < n; q++) {
+                    if (q == p || !loopy[q] || !reachable[q] || component[q] == component[p] || cannotFail[q]) {
+                        continue;
+                    }
+                    String pump = searchTriple(p, q, budget);
+                    if (budget[0] < 0) {
+                        return null;
+                    }
+                    if (pump != null) {
+                        return polynomial(p, q, pump);
+                    }
+                }
+            }
+            return null;
+        }
+
+        /**
+         * 到达后对任意后续输入 (行终止符除外) 都能匹配成功的状态，从这些状态出发的歧义不会引起回溯:
+         * (1) 接受状态，且在自身上循环、字符集覆盖 . (如末尾的 .*)
+         * (2) 接受状态，且后继中此类状态的字符集合起来覆盖 . (如 .*\d+.* 中的 \d)
+         * (3) find() 语义下的所有接受状态
+         */
+        private boolean[] cannotFail(boolean find) {
+            int n = sets.size();
+            CharSet line = CharSet.LINE_TERMINATOR.complement();
+            boolean[] result = new boolean[n];
+            for (int p = 0; p < n; p++) {
+                result[p] = find && accepting[p];
+            }
+            for (int p = 0; p < n; p++) {
+                if (accepting[p] && line.intersect(sets.get(p).complement()).isEmpty()) {
+                    for (int t : targets[p]) {
+                        result[p] |= t == p;
+                    }
+                }
+            }
+            boolean changed = true;
+            while (changed) {
+                changed = false;
+                for (int p = 0; p < n; p++) {
+                    if (result[p] || !accepting[p]) {
+                        continue;
+                    }
+                    CharSet covered = CharSet.EMPTY;
+                    for (int t : targets[p]) {
+                        if (result[t]) {
+                            covered = covered.union(sets.get(t));
+                        }
+                    }
+                    if (line.intersect(covered.complement()).isEmpty()) {
+                        result[p] = true;
+                        changed = true;
+                    }
+                }
+            }
+            return result;
+        }
+
+        private int[] allRoots(int n) {
+            int[] roots = new int[n];
+            for (int i = 0; i < n; i++) {
+                roots[i] = i;
+            }
+            return roots;
+        }
+
+        private boolean[] reachableFrom(int p) {
+            boolean[] seen = new boolean[sets.size()];
+            int[] queue = new int[sets.size()];
+            int head = 0;
+            int tail = 0;
+            for (int t : targets[p]) {
+                if (!seen[t]) {
+                    seen[t] = true;
+                    queue[tail++] = t;
+                }
+            }
+            while (head < tail) {
+                int x = queue[head++];
+                for (int t : targets[x]) {
+                    if (!seen[t]) {
+                        seen[t] = true;
+                        queue[tail++] = t;
+                    }
+                }
+            }
+            return seen;
+        }
+
+        /**
+         * @return String | null 找到时返回读入的字符串 w，未找到或超出搜索步数上限 (budget 小于 0) 时返回 null
+         */
+        @Nullable
+        private String searchTriple(int p, int q, @NotNull int[] budget) {
+            int n = sets.size();
+            int goal = (p * n + q) * n + q;
+            IntHashSet visited = new IntHashSet();
+            int[] queue = new int[64];
+            int[] parent = new int[64];
+            int head = 0;
+            int tail = 0;
+            queue[tail] = (p * n + p) * n + q;
+            parent[tail++] = -1;
+
+            while (head < tail) {
+                int index = head++;
+                int state = queue[index];
+                int a = state / (n * n);
+                int b = state / n % n;
+                int c = state % n;
+                for (int x : targets[a]) {
+                    for (int y : targets[b]) {
+                        if (!inter[x][y]) {
+                            continue;
+                        }
+                        for (int z : targets[c]) {
+                            if (--budget[0] < 0) {
+                                return null;
+                            }
+                            if (!inter[x][z] || !inter[y][z] || tripleSet(x, y, z).isEmpty()) {
+                                continue;
+                            }
+                            int next = (x * n + y) * n + z;
+                            if (next == goal) {
+                                StringBuilder sb = new StringBuilder();
+                                sb.appendCodePoint(tripleSet(x, y, z).sample());
+                                for (int i = index; parent[i] >= 0; i = parent[i]) {
+                                    int v = queue[i];
+                                    sb.insert(0, Character.toChars(tripleSet(v / (n * n), v / n % n, v % n).sample()));
+                                }
+                                return sb.toString();
+                            }
+                            if (visited.add(next)) {
+                                if (tail == queue.length) {
+                                    queue = Arrays.copyOf(queue, queue.length * 2);
+                                    parent = Arrays.copyOf(parent, parent.length * 2);
+                                }
+                                queue[tail] = next;
+                                parent[tail++] = index;
+                            }
+                        }
+                    }
+                }
+            }
+            return null;
+        }
+
+        private CharSet tripleSet(int x, int y, int z) {
+            return sets.get(x).intersect(sets.get(y)).intersect(sets.get(z));
+        }
+
+        /**
+         * 报告范围: 从 p 所在的最内层循环量词到 q 所在的最内层循环量词；
+         * 二者是同一量词的不同展开副本时 (如 (.*a){12})，报告展开它们的外层量词
+         */
+        private Result polynomial(int p, int q, @NotNull String pump) {
+            int loopP = innermostLoop(p);
+            int loopQ = innermostLoop(q);
+            if (loopP < 0 || loopQ < 0) {
+                return null;
+            }
+            RepeatNode nodeP = instanceNodes.get(loopP);
+            RepeatNode nodeQ = instanceNodes.get(loopQ);
+            if (nodeP == nodeQ) {
+                int separating = separatingRepeat(p, q);
+                if (separating >= 0) {
+                    RepeatNode node = instanceNodes.get(separating);
+                    return new Result(Kind.POLYNOMIAL, node.start, node.end, attack(p, pump));
+                }
+            }
+            return new Result(Kind.POLYNOMIAL, Math.min(nodeP.start, nodeQ.start), Math.max(nodeP.end, nodeQ.end), attack(p, pump));
+        }
+
+        /**
+         * prefix: 从初始状态到达 q 的最短路径；suffix: 任何状态都不接受的字符，使匹配最终失败
+         */
+        @Nullable
+        private Attack attack(int q, @Nullable String pump) {
+            if (pump == null || pump.isEmpty()) {
+                return null;
+            }
+            String prefix = prefixOf(q);
+            if (prefix == null) {
+                return null;
+            }
+            CharSet all = CharSet.EMPTY;
+            for (CharSet set : sets) {
+                all = all.union(set);
+            }
+            int reject = all.complement().sample();
+            return new Attack(prefix, pump, reject < 0 ? "" : new String(Character.toChars(reject)));
+        }
+
+        @Nullable
+        private String prefixOf(int q) {
+            int n = sets.size();
+            int[] parent = new int[n];
+            Arrays.fill(parent, -2);
+            int[] queue = new int[n];
+            int head = 0;
+            int tail = 0;
+            for (int p : initial) {
+                if (parent[p] == -2) {
+                    parent[p] = -1;
+                    queue[tail++] = p;
+                }
+            }
+            while (head < tail && parent[q] == -2) {
+                int x = queue[head++];
+                for (int t : targets[x]) {
+                    if (parent[t] == -2) {
+                        parent[t] = x;
+                        queue[tail++] = t;
+                    }
+                }
+            }
+            if (parent[q] == -2) {
+                return null;
+            }
+            StringBuilder sb = new StringBuilder();
+            for (int v = q; v >= 0; v = parent[v]) {
+                sb.insert(0, Character.toChars(sets.get(v).sample()));
+            }
+            return sb.toString();
+        }
+
+        private int innermostLoop(int p) {
+            int[] chain = ancestors.get(p);
+            for (int i = chain.length - 1; i >= 0; i--) {
+                if (instanceNodes.get(chain[i]).max == INF) {
+                    return chain[i];
+                }
+            }
+            return -1;
+        }
+
+        /**
+         * p 与 q 的量词祖先链中，第一个语法树节点相同而展开副本不同的量词，即把二者分开的那个量词
+         */
+        private int separatingRepeat(int p, int q) {
+            int[] a = ancestors.get(p);
+            int[] b = ancestors.get(q);
+            for (int i = 0; i < a.length && i < b.length && instanceNodes.get(a[i]) == instanceNodes.get(b[i]); i++) {
+                if (a[i] != b[i]) {
+                    return a[i];
+                }
+            }
+            return -1;
+        }
+
+        // ------------------------------------------------------------ utils
+
+        private int weight(@NotNull Node node) {
+            if (node instanceof CharNode || node instanceof AtomicNode) {
+                return 1;
+            }
+            if (node instanceof SeqNode || node instanceof AltNode) {
+                Node[] children = node instanceof SeqNode ? ((SeqNode) node).items : ((AltNode) node).branches;
+                long sum = 0;
+                for (Node child : children) {
+                    sum += weight(child);
+                }
+                return (int) Math.min(sum, MAX_POSITIONS + 1);
+            }
+            if (node instanceof RepeatNode) {
+                RepeatNode repeat = (RepeatNode) node;
+                int copies = repeat.max == INF ? Math.max(repeat.min, 1) : repeat.max;
+                return (int) Math.min((long) copies * weight(repeat.body), MAX_POSITIONS + 1);
+            }
+            return 0;
+        }
+
+        private CharSet union(@NotNull Node node) {
+            if (node instanceof CharNode) {
+                return ((CharNode) node).set;
+            }
+            CharSet result = CharSet.EMPTY;
+            for (Node child : children(node)) {
+                result = result.union(union(child));
+            }
+            return result;
+        }
+
+        private boolean isNullable(@NotNull Node node) {
+            if (node instanceof CharNode) {
+                return false;
+            }
+            if (node instanceof EmptyNode) {
+                return true;
+            }
+            if (node instanceof SeqNode) {
+                for (Node item : ((SeqNode) node).items) {
+                    if (!isNullable(item)) {
+                        return false;
+                    }
+                }
+                return true;
+            }
+            if (node instanceof AltNode) {
+                for (Node branch : ((AltNode) node).branches) {
+                    if (isNullable(branch)) {
+                        return true;
+                    }
+                }
+                return false;
+            }
+            if (node instanceof RepeatNode) {
+                return ((RepeatNode) node).min == 0 || isNullable(((RepeatNode) node).body);
+            }
+            return isNullable(((AtomicNode) node).body);
+        }
+
+        private Node[] children(@NotNull Node node) {
+            if (node instanceof SeqNode) {
+                return ((SeqNode) node).items;
+            }
+            if (node instanceof AltNode) {
+                return ((AltNode) node).branches;
+            }
+            if (node instanceof RepeatNode) {
+                return new Node[]{((RepeatNode) node).body};
+            }
+            if (node instanceof AtomicNode) {
+                return new Node[]{((AtomicNode) node).body};
+            }
+            return new Node[0];
+        }
+
+        private static int[] concat(@NotNull int[] a, @NotNull int[] b) {
+            if (a.length == 0) {
+                return b;
+            }
+            if (b.length == 0) {
+                return a;
+            }
+            int[] result = Arrays.copyOf(a, a.length + b.length);
+            System.arraycopy(b, 0, result, a.length, b.length);
+            return result;
+        }
+    }
+
+    /**
+     * 迭代版 Tarjan 强连通分量，图由 degree / successor 隐式给出 (successor 返回 -1 表示该边不存在)
+     * 只访问从 roots 可达的状态，未访问的状态分量号为 -1
+     */
+    private abstract static class Tarjan {
+        private final int[] index;
+        private final int[] low;
+        private final int[] component;
+        private final boolean[] onStack;
+        private final int[] stack;
+        private final int[] callState;
+        private final int[] callEdge;
+        private int counter = 0;
+        private int components = 0;
+
+        Tarjan(int size) {
+            index = new int[size];
+            low = new int[size];
+            component = new int[size];
+            onStack = new boolean[size];
+            stack = new int[size];
+            callState = new int[size];
+            callEdge = new int[size];
+            Arrays.fill(index, -1);
+            Arrays.fill(component, -1);
+        }
+
+        abstract int degree(int state);
+
+        abstract int successor(int state, int k);
+
+        int[] run(@NotNull int[] roots) {
+            int stackSize = 0;
+            for (int root : roots) {
+                if (index[root] >= 0) {
+                    continue;
+                }
+                int depth = 0;
+                callState[0] = root;
+                callEdge[0] = 0;
+                index[root] = low[root] = counter++;
+                stack[stackSize++] = root;
+                onStack[root] = true;
+
+                while (depth >= 0) {
+                    int v = callState[depth];
+                    if (callEdge[depth] < degree(v)) {
+                        int w = successor(v, callEdge[depth]++);
+                        if (w < 0) {
+                            continue;
+                        }
+                        if (index[w] < 0) {
+                            depth++;
+                            callState[depth] = w;
+                            callEdge[depth] = 0;
+                            index[w] = low[w] = counter++;
+                            stack[stackSize++] = w;
+                            onStack[w] = true;
+                        } else if (onStack[w]) {
+                            low[v] = Math.min(low[v], index[w]);
+                        }
+                        continue;
+                    }
+
+                    if (low[v] == index[v]) {
+                        int w;
+                        do {
+                            w = stack[--stackSize];
+                            onStack[w] = false;
+                            component[w] = components;
+                        } while (w != v);
+                        components++;
+                    }
+                    depth--;
+                    if (depth >= 0) {
+                        int parent = callState[depth];
+                        low[parent] = Math.min(low[parent], low[v]);
+                    }
+                }
+            }
+            return component;
+        }
+    }
+}
@@ -0,0 +1,297 @@
+/*
+ * Copyright 2020 momosecurity.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.immomo.momosec.utils;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.regex.Pattern;
+import java.util.regex.PatternSyntaxException;
+
+/**
+ * RegexDos 动态验证
+ *
+ * 用 RegexDosAnalyzer 给出的攻击串 prefix + pump * n + suffix，逐步增大 n，
+ * 以 java.util.regex 实际执行 matches() (suffix 使整体匹配失败，迫使引擎穷尽回溯)，记录每一轮读取字符的次数与耗时，据此判断回溯是否确实随 n 指数 / 多项式增长。
+ *
+ * 匹配在调用方提供的线程池中执行；输入包装为计数的 CharSequence，每次读取字符都检查步数上限、截止时间与线程中断，
+ * 超出时抛出异常中止匹配，因此单个正则的验证不会超过 budgetMillis。
+ * 增长判断基于读取字符的次数 (与机器负载无关)，耗时只用于展示。
+ *
+ * 注意 JDK 9 起 java.util.regex 对贪婪循环做了记忆化，(a+)+ 一类写法在新版本上往往只表现为多项式增长，
+ * 因此结论以实测的增长类型为准，可能与静态分析的类型不同。
+ */
+public class RegexDosConfirmer {
+
+    // 单次匹配最多读取的字符数，超过即认为回溯失控
+    static final long MAX_STEPS = 50_000_000L;
+    // 攻击串最大长度
+    static final int MAX_INPUT_LENGTH = 100_000;
+
+    private static final int MIN_REPEAT = 4;
+    private static final int MAX_REPEAT = 16384;
+
+    // 指数增长: 每多一次 pump，步数至少乘以该系数
+    private static final double EXPONENTIAL_BASE = 1.3;
+    // 多项式增长: 步数相对 n 的幂次下限
+    private static final double POLYNOMIAL_DEGREE = 1.5;
+    // 步数过少时增长比例受常数项影响，不参与判断
+    private static final long MIN_STEPS = 10_000;
+
+    public static class Sample {
+        private final int repeat;
+        private final long steps;
+        private final long nanos;
+        private final boolean aborted;
+
+        Sample(int repeat, long steps, long nanos, boolean aborted) {
+            this.repeat = repeat;
+            this.steps = steps;
+            this.nanos = nanos;
+            this.aborted = aborted;
+        }
+
+        public int getRepeat() {
+            return repeat;
+        }
+
+        public long getSteps() {
+            return steps;
+        }
+
+        public long getNanos() {
+            return nanos;
+        }
+
+        /**
+         * @return boolean 因步数上限 / 截止时间中止
+         */
+        public boolean isAborted() {
+            return aborted;
+        }
+
+        @Override
+        public String toString() {
+            return "n=" + repeat + " " + (aborted ? ">" : "") + String.format("%.1fms", nanos / 1_000_000.0);
+        }
+    }
+
+    public static class Confirmation {
+        private final RegexDosAnalyzer.Kind observed;
+        private final List<Sample> samples;
+
+        Confirmation(@Nullable RegexDosAnalyzer.Kind observed, @NotNull List<Sample> samples) {
+            this.observed = observed;
+            this.samples = samples;
+        }
+
+        /**
+         * @return Kind | null 实测的增长类型，未观察到超线性增长时为 null
+         */
+        @Nullable
+        public RegexDosAnalyzer.Kind getObserved() {
+            return observed;
+        }
+
+        public boolean isConfirmed() {
+            return observed != null;
+        }
+
+        /**
+         * @return List 增长曲线，按 n 从小到大
+         */
+        @NotNull
+        public List<Sample> getSamples() {
+            return samples;
+        }
+
+        /**
+         * @return String 增长曲线的最后几个点，如 "n=16 3.2ms, n=18 12.9ms, n=20 >2000.0ms"
+         */
+        @NotNull
+        public String getCurve() {
+            StringBuilder sb = new StringBuilder();
+            for (int i = Math.max(0, samples.size() - 3); i < samples.size(); i++) {
+                if (sb.length() > 0) {
+                    sb.append(", ");
+                }
+                sb.append(samples.get(i));
+            }
+            return sb.toString();
+        }
+    }
+
+    @NotNull
+    public static Confirmation unconfirmed() {
+        return new Confirmation(null, new ArrayList<>());
+    }
+
+    /**
+     * 在 executor 中验证
+     * @param regex String
+     * @param result RegexDosAnalyzer.Result 静态分析结果，不含攻击串时重新分析
+     * @param budgetMillis long 时间上限
+     * @param executor Executor
+     * @return CompletableFuture
+     */
+    @NotNull
+    public static CompletableFuture<Confirmation> confirmAsync(@NotNull String regex, @NotNull RegexDosAnalyzer.Result result,
+                                                               long budgetMillis, @NotNull Executor executor) {
+        return CompletableFuture.supplyAsync(() -> confirm(regex, result, budgetMillis), executor);
+    }
+
+    /**
+     * 在当前线程验证，最多执行 budgetMillis
+     */
+    @NotNull
+    public static Confirmation confirm(@NotNull String regex, @NotNull RegexDosAnalyzer.Result result, long budgetMillis) {
+        RegexDosAnalyzer.Attack attack = result.getAttack();
+        if (attack == null) {
+            RegexDosAnalyzer.Result analyzed = RegexDosAnalyzer.analyze(regex);
+            attack = analyzed != null && analyzed.getKind() == result.getKind() ? analyzed.getAttack() : null;
+        }
+        Pattern pattern;
+        try {
+            pattern = Pattern.compile(regex);
+        } catch (PatternSyntaxException e) {
+            pattern = null;
+        }
+        if (attack == null || pattern == null) {
+            return unconfirmed();
+        }
+
+        List<Sample> samples = new ArrayList<>();
+        long deadline = System.nanoTime() + budgetMillis * 1_000_000L;
+        for (int repeat = MIN_REPEAT; repeat <= MAX_REPEAT; repeat *= 2) {
+            String input = attack.build(repeat);
+            if (input.length() > MAX_INPUT_LENGTH) {
+                break;
+            }
+            Sample sample = run(pattern, input, repeat, deadline);
+            if (sample == null) {
+                break;
+            }
+            samples.add(sample);
+            if (sample.isAborted()) {
+                break;
+            }
+        }
+        return new Confirmation(classify(samples, result.getKind()), samples);
+    }
+
+    /**
+     * @return Sample | null 线程被中断，或 java.util.regex 递归过深
+     */
+    @Nullable
+    private static Sample run(@NotNull Pattern pattern, @NotNull String input, int repeat, long deadline) {
+        StepCountingSequence sequence = new StepCountingSequence(input, deadline);
+        long start = System.nanoTime();
+        boolean aborted = false;
+        try {
+            pattern.matcher(sequence).matches();
+        } catch (Abort e) {
+            if (Thread.currentThread().isInterrupted()) {
+                return null;
+            }
+            aborted = true;
+        } catch (StackOverflowError e) {
+            return null;
+        }
+        return new Sample(repeat, sequence.steps, System.nanoTime() - start, aborted);
+    }
+
+    /**
+     * 按最后两次 (n 翻倍) 的步数比例判断增长类型
+     * @param expected RegexDosAnalyzer.Kind 首次即超出预算、无法计算比例时采用静态分析的类型
+     * @return Kind | null
+     */
+    @Nullable
+    static RegexDosAnalyzer.Kind classify(@NotNull List<Sample> samples, @NotNull RegexDosAnalyzer.Kind expected) {
+        int size = samples.size();
+        if (size == 0) {
+            return null;
+        }
+        Sample last = samples.get(size - 1);
+        if (size == 1) {
+            return last.isAborted() && last.getSteps() >= MAX_STEPS ? expected : null;
+        }
+        Sample prev = samples.get(size - 2);
+        if (last.getSteps() < MIN_STEPS || prev.getSteps() == 0) {
+            return null;
+        }
+        // 中止时 last.getSteps() 只是下限，比例同样是下限
+        double ratio = (double) last.getSteps() / prev.getSteps();
+        if (Math.pow(ratio, 1.0 / (last.getRepeat() - prev.getRepeat())) >= EXPONENTIAL_BASE) {
+            return RegexDosAnalyzer.Kind.EXPONENTIAL;
+        }
+        if (Math.log(ratio) / Math.log((double) last.getRepeat() / prev.getRepeat()) >= POLYNOMIAL_DEGREE) {
+            return RegexDosAnalyzer.Kind.POLYNOMIAL;
+        }
+        // 只有耗尽步数的中止才算确认，超过截止时间可能只是机器繁忙
+        return last.isAborted() && last.getSteps() >= MAX_STEPS ? RegexDosAnalyzer.Kind.POLYNOMIAL : null;
+    }
+
+    private static class Abort extends RuntimeException {
+        Abort() {
+            super(null, null, false, false);
+        }
+    }
+
+    /**
+     * 记录读取次数的 CharSequence，超出步数 / 截止时间或线程被中断时抛出 Abort
+     */
+    private static class StepCountingSequence implements CharSequence {
+        private final String s;
+        private final long deadline;
+        private long steps = 0;
+
+        StepCountingSequence(@NotNull String s, long deadline) {
+            this.s = s;
+            this.deadline = deadline;
+        }
+
+        @Override
+        public int length() {
+            return s.length();
+        }
+
+        @Override
+        public char charAt(int index) {
+            if ((++steps & 0x3FF) == 0) {
+                if (steps >= MAX_STEPS || System.nanoTime() - deadline > 0 || Thread.currentThread().isInterrupted()) {
+                    throw new Abort();
+                }
+            }
+            return s.charAt(index);
+        }
+
+        @NotNull
+        @Override
+        public CharSequence subSequence(int start, int end) {
+            return s.subSequence(start, end);
+        }
+
+        @NotNull
+        @Override
+        public String toString() {
+            return s;
+        }
+    }
+}
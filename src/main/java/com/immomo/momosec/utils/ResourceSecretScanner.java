@@ -0,0 +1,684 @@
+/*
+ * Copyright 2020 momosecurity.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.immomo.momosec.utils;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.function.Predicate;
+
+/**
+ * 资源文件 (properties / yaml / .env / xml) 中的硬编码凭证扫描
+ *
+ * 不构建 PSI，直接在文件文本上切分 key / value:
+ * key 命中凭证关键字，且 value 为 ASCII、复杂度足够高时报告，与 Java 代码中的 HardcodedCredentials 判断一致，
+ * 关键字由调用方传入 (见 HardcodedResourceCredentials.getScanner)。
+ * yaml 以缩进还原完整 key 路径 (如 spring.datasource.password)，与 properties 的写法等价；
+ * xml 检查元素名、属性名，以及 &lt;property name="password" value="..."/&gt; 形式的 name / value 对。
+ * ${...}、#{...}、ENC(...) 形式的占位 / 加密值不报告。
+ *
+ * 批量扫描时文件一次性读入后整体解码，不产生逐行字符串，只有命中关键字的项才会截取 key / value。
+ * 构建完成后只读，可在多线程间共享。
+ */
+public class ResourceSecretScanner {
+
+    public enum Format {
+        PROPERTIES,
+        YAML,
+        ENV,
+        XML
+    }
+
+    // 过大的文件通常是生成的数据文件，不做扫描
+    private static final long MAX_FILE_SIZE = 8L * 1024 * 1024;
+
+    private static final Predicate<String> SECRET_VALUE = v -> isASCII(v) && EntropyEstimator.getInstance().isHighEntropy(v);
+
+    private final KeywordMatcher keywords;
+    private final Predicate<String> secretValue;
+
+    /**
+     * @param keywords KeywordMatcher 凭证类 key 的关键字
+     * @param secretValue Predicate 判断 value 是否像凭证
+     */
+    public ResourceSecretScanner(@NotNull KeywordMatcher keywords, @NotNull Predicate<String> secretValue) {
+        this.keywords = keywords;
+        this.secretValue = secretValue;
+    }
+
+    /**
+     * @param keywords KeywordMatcher 凭证类 key 的关键字
+     * @return ResourceSecretScanner value 按默认的 ASCII + 复杂度规则判断
+     */
+    @NotNull
+    public static ResourceSecretScanner of(@NotNull KeywordMatcher keywords) {
+        return new ResourceSecretScanner(keywords, SECRET_VALUE);
+    }
+
+    @NotNull
+    public KeywordMatcher getKeywords() {
+        return keywords;
+    }
+
+    /**
+     * @param fileName String
+     * @return Format | null 不是支持的资源文件时返回 null
+     */
+    @Nullable
+    public static Format getFormat(@NotNull String fileName) {
+        String name = fileName.toLowerCase(Locale.ROOT);
+        if (name.endsWith(".properties")) {
+            return Format.PROPERTIES;
+        }
+        if (name.endsWith(".yml") || name.endsWith(".yaml")) {
+            return Format.YAML;
+        }
+        if (name.equals(".env") || name.startsWith(".env.") || name.endsWith(".env")) {
+            return Format.ENV;
+        }
+        if (name.endsWith(".xml")) {
+            return Format.XML;
+        }
+        return null;
+    }
+
+    /**
+     * 一条疑似硬编码凭证
+     */
+    public static class Finding {
+        private final String key;
+        private final String value;
+        private final int valueStart;
+        private final int valueEnd;
+        private final int line;
+
+        Finding(@NotNull String key, @NotNull String value, int valueStart, int valueEnd, int line) {
+            this.key = key;
+            this.value = value;
+            this.valueStart = valueStart;
+            this.valueEnd = valueEnd;
+            this.line = line;
+        }
+
+        /**
+         * @return 完整 key，yaml 为 . 连接的路径，xml 为元素名 / 属性名 / name 属性的值
+         */
+        @NotNull
+        public String getKey() {
+            return key;
+        }
+
+        @NotNull
+        public String getValue() {
+            return value;
+        }
+
+        public int getValueStart() {
+            return valueStart;
+        }
+
+        public int getValueEnd() {
+            return valueEnd;
+        }
+
+        /**
+         * @return value 起始位置所在行号，从 1 开始
+         */
+        public int getLine() {
+            return line;
+        }
+    }
+
+    /**
+     * 读取文件并扫描，文件按 UTF-8 解码，无法解码的字节被替换
+     * 不使用内存映射: 映射在 GC 前不会释放，Windows 下扫描期间会一直锁住文件
+     * @param path Path
+     * @param format Format
+     * @return List<Finding> 按位置排序
+     * @throws IOException 读取失败
+     */
+    @NotNull
+    public List<Finding> scan(@NotNull Path path, @NotNull Format format) throws IOException {
+        long size = Files.size(path);
+        if (size == 0 || size > MAX_FILE_SIZE) {
+            return Collections.emptyList();
+        }
+        CharSequence text = StandardCharsets.UTF_8.newDecoder()
+                .onMalformedInput(CodingErrorAction.REPLACE)
+                .onUnmappableCharacter(CodingErrorAction.REPLACE)
+                .decode(ByteBuffer.wrap(Files.readAllBytes(path)));
+        return scan(text, format);
+    }
+
+    /**
+     * @param text CharSequence 文件内容
+     * @param format Format
+     * @return List<Finding> 按位置排序
+     */
+    @NotNull
+    public List<Finding> scan(@NotNull CharSequence text, @NotNull Format format) {
+        Collector collector = new Collector(text);
+        switch (format) {
+            case PROPERTIES:
+                scanProperties(text, collector);
+                break;
+            case YAML:
+                scanYaml(text, collector);
+                break;
+            case ENV:
+                scanEnv(text, collector);
+                break;
+            case XML:
+                scanXml(text, collector);
+                break;
+        }
+        return collector.findings;
+    }
+
+    /**
+     * 收集命中项，并随位置递增地计算行号
+     */
+    private class Collector {
+        private final CharSequence text;
+        private final List<Finding> findings = new ArrayList<>();
+        private int lineOffset = 0;
+        private int line = 1;
+
+        Collector(@NotNull CharSequence text) {
+            this.text = text;
+        }
+
+        void report(@NotNull String key, int valueStart, int valueEnd) {
+            if (valueStart >= valueEnd) {
+                return ;
+            }
+            String value = text.subSequence(valueStart, valueEnd).toString();
+            if (isPlaceholder(value) || !secretValue.test(value)) {
+                return ;
+            }
+            if (valueStart < lineOffset) {
+                lineOffset = 0;
+                line = 1;
+            }
+            for (; lineOffset < valueStart; lineOffset++) {
+                if (text.charAt(lineOffset) == '\n') {
+                    line++;
+                }
+            }
+            findings.add(new Finding(key, value, valueStart, valueEnd, line));
+        }
+    }
+
+    // ---------------------------------------------------------------- properties
+
+    private void scanProperties(@NotNull CharSequence text, @NotNull Collector collector) {
+        int n = text.length();
+        int pos = 0;
+        while (pos < n) {
+            int lineEnd = lineEnd(text, pos);
+            // 以奇数个反斜杠结尾的行与下一行相连，这样的多行值不做检查
+            boolean continued = false;
+            while (lineEnd < n && endsWithEscape(text, pos, lineEnd)) {
+                continued = true;
+                lineEnd = lineEnd(text, nextLine(text, lineEnd));
+            }
+
+            int i = skipBlank(text, pos, lineEnd);
+            if (!continued && i < lineEnd && text.charAt(i) != '#' && text.charAt(i) != '!') {
+                int keyStart = i;
+                while (i < lineEnd) {
+                    char c = text.charAt(i);
+                    if (c == '\\') {
+                        i += 2;
+                        continue;
+                    }
+                    if (c == '=' || c == ':' || isBlank(c)) {
+                        break;
+                    }
+                    i++;
+                }
+                int keyEnd = Math.min(i, lineEnd);
+                i = skipBlank(text, keyEnd, lineEnd);
+                if (i < lineEnd && (text.charAt(i) == '=' || text.charAt(i) == ':')) {
+                    i = skipBlank(text, i + 1, lineEnd);
+                }
+                if (keyEnd > keyStart && keywords.find(text, keyStart, keyEnd)) {
+                    collector.report(text.subSequence(keyStart, keyEnd).toString(), i, trimEnd(text, i, lineEnd));
+                }
+            }
+            pos = nextLine(text, lineEnd);
+        }
+    }
+
+    private static boolean endsWithEscape(@NotNull CharSequence text, int start, int end) {
+        int count = 0;
+        for (int i = end - 1; i >= start && text.charAt(i) == '\\'; i--) {
+            count++;
+        }
+        return count % 2 == 1;
+    }
+
+    // ---------------------------------------------------------------- .env
+
+    private void scanEnv(@NotNull CharSequence text, @NotNull Collector collector) {
+        int n = text.length();
+        int pos = 0;
+        while (pos < n) {
+            int lineEnd = lineEnd(text, pos);
+            int i = skipBlank(text, pos, lineEnd);
+            if (startsWith(text, i, lineEnd, "export ")) {
+                i = skipBlank(text, i + "export ".length(), lineEnd);
+            }
+            int keyStart = i;
+            while (i < lineEnd && isEnvKeyChar(text.charAt(i))) {
+                i++;
+            }
+            int keyEnd = i;
+            i = skipBlank(text, i, lineEnd);
+            if (keyEnd > keyStart && i < lineEnd && text.charAt(i) == '=' && keywords.find(text, keyStart, keyEnd)) {
+                int[] value = scalarValue(text, skipBlank(text, i + 1, lineEnd), lineEnd);
+                if (value != null) {
+                    collector.report(text.subSequence(keyStart, keyEnd).toString(), value[0], value[1]);
+                }
+            }
+            pos = nextLine(text, lineEnd);
+        }
+    }
+
+    private static boolean isEnvKeyChar(char c) {
+        return c == '_' || c == '.' || c == '-' || (c >= '0' && c <= '9') || (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z');
+    }
+
+    // ---------------------------------------------------------------- yaml
+
+    private void scanYaml(@NotNull CharSequence text, @NotNull Collector collector) {
+        // 当前 key 路径: 每层的缩进、key 范围、该层及其祖先是否命中关键字
+        List<int[]> path = new ArrayList<>();
+        int blockIndent = -1;
+        int n = text.length();
+        int pos = 0;
+        for (; pos < n; pos = nextLine(text, lineEnd(text, pos))) {
+            int lineEnd = lineEnd(text, pos);
+            int i = skipBlank(text, pos, lineEnd);
+            if (i == lineEnd) {
+                continue;
+            }
+            int indent = i - pos;
+            // 块标量 (| 或 >) 的内容行
+            if (blockIndent >= 0) {
+                if (indent > blockIndent) {
+                    continue;
+                }
+                blockIndent = -1;
+            }
+            char c = text.charAt(i);
+            if (c == '#' || c == '%') {
+                continue;
+            }
+            if (indent == 0 && (startsWith(text, i, lineEnd, "---") || startsWith(text, i, lineEnd, "..."))) {
+                path.clear();
+                continue;
+            }
+            // 列表项 "- key: value"，key 的缩进以 "- " 之后为准
+            while (c == '-' && (i + 1 == lineEnd || text.charAt(i + 1) == ' ')) {
+                i = skipBlank(text, i + 1, lineEnd);
+                indent = i - pos;
+                if (i == lineEnd) {
+                    break;
+                }
+                c = text.charAt(i);
+            }
+            if (i == lineEnd) {
+                continue;
+            }
+
+            int keyStart;
+            int keyEnd;
+            int colon;
+            if (c == '"' || c == '\'') {
+                int close = indexOf(text, c, i + 1, lineEnd);
+                if (close < 0) {
+                    continue;
+                }
+                keyStart = i + 1;
+                keyEnd = close;
+                colon = skipBlank(text, close + 1, lineEnd);
+                if (colon >= lineEnd || text.charAt(colon) != ':') {
+                    continue;
+                }
+            } else {
+                colon = mappingColon(text, i, lineEnd);
+                if (colon < 0) {
+                    continue;
+                }
+                keyStart = i;
+                keyEnd = trimEnd(text, i, colon);
+            }
+            if (keyEnd <= keyStart) {
+                continue;
+            }
+
+            while (!path.isEmpty() && path.get(path.size() - 1)[0] >= indent) {
+                path.remove(path.size() - 1);
+            }
+            boolean matched = keywords.find(text, keyStart, keyEnd) || (!path.isEmpty() && path.get(path.size() - 1)[3] == 1);
+
+            int valueStart = skipBlank(text, colon + 1, lineEnd);
+            if (valueStart == lineEnd || text.charAt(valueStart) == '#') {
+                path.add(new int[]{indent, keyStart, keyEnd, matched ? 1 : 0});
+                continue;
+            }
+            char v = text.charAt(valueStart);
+            if (v == '|' || v == '>') {
+                blockIndent = indent;
+                continue;
+            }
+            // 流式集合、锚点、别名、标签不做检查
+            if (v == '{' || v == '[' || v == '&' || v == '*' || v == '!') {
+                continue;
+            }
+            if (matched) {
+                int[] value = scalarValue(text, valueStart, lineEnd);
+                if (value != null) {
+                    collector.report(yamlKey(text, path, keyStart, keyEnd), value[0], value[1]);
+                }
+            }
+        }
+    }
+
+    /**
+     * 普通 key 的结束冒号: 其后为空白或行尾；遇到注释则不是映射
+     */
+    private static int mappingColon(@NotNull CharSequence text, int start, int end) {
+        for (int i = start; i < end; i++) {
+            char c = text.charAt(i);
+            if (c == ':' && (i + 1 == end || isBlank(text.charAt(i + 1)))) {
+                return i;
+            }
+            if (c == '#' && i > start && isBlank(text.charAt(i - 1))) {
+                return -1;
+            }
+        }
+        return -1;
+    }
+
+    @NotNull
+    private static String yamlKey(@NotNull CharSequence text, @NotNull List<int[]> path, int keyStart, int keyEnd) {
+        StringBuilder key = new StringBuilder();
+        for (int[] level : path) {
+            key.append(text, level[1], level[2]).append('.');
+        }
+        return key.append(text, keyStart, keyEnd).toString();
+    }
+
+    /**
+     * 行内标量的值范围: 引号内的内容，或去掉行尾注释与空白后的内容
+     * @return int[]{start, end} | null 引号未闭合时返回 null
+     */
+    @Nullable
+    private static int[] scalarValue(@NotNull CharSequence text, int start, int end) {
+        if (start >= end) {
+            return null;
+        }
+        char c = text.charAt(start);
+        if (c == '"' || c == '\'') {
+            int close = indexOf(text, c, start + 1, end);
+            return close < 0 ? null : new int[]{start + 1, close};
+        }
+        int valueEnd = end;
+        for (int i = start + 1; i < end; i++) {
+            if (text.charAt(i) == '#' && isBlank(text.charAt(i - 1))) {
+                valueEnd = i;
+                break;
+            }
+        }
+        return new int[]{start, trimEnd(text, start, valueEnd)};
+    }
+
+    // ---------------------------------------------------------------- xml
+
+    private void scanXml(@NotNull CharSequence text, @NotNull Collector collector) {
+        int n = text.length();
+        // 当前标签的属性: 名称起止、值起止
+        List<int[]> attributes = new ArrayList<>();
+        int i = 0;
+        while ((i = indexOf(text, '<', i, n)) >= 0) {
+            if (startsWith(text, i, n, "<!--")) {
+                i = skipPast(text, i + 4, "-->");
+                continue;
+            }
+            if (startsWith(text, i, n, "<![CDATA[")) {
+                i = skipPast(text, i + 9, "]]>");
+                continue;
+            }
+            if (i + 1 < n && (text.charAt(i + 1) == '?' || text.charAt(i + 1) == '!' || text.charAt(i + 1) == '/')) {
+                i = skipPast(text, i + 1, ">");
+                continue;
+            }
+
+            int nameStart = i + 1;
+            int j = nameStart;
+            while (j < n && !isBlank(text.charAt(j)) && text.charAt(j) != '/' && text.charAt(j) != '>') {
+                j++;
+            }
+            int nameEnd = j;
+            attributes.clear();
+            j = parseAttributes(text, j, attributes);
+            if (j >= n) {
+                return ;
+            }
+            boolean selfClosing = text.charAt(j - 1) == '/';
+            int tagEnd = j + 1;
+
+            // <property name="password" value="..."/>、<entry key="password">...</entry>
+            int[] nameAttribute = null;
+            int[] valueAttribute = null;
+            for (int[] attribute : attributes) {
+                if (regionEquals(text, attribute[0], attribute[1], "name") || regionEquals(text, attribute[0], attribute[1], "key")) {
+                    if (keywords.find(text, attribute[2], attribute[3])) {
+                        nameAttribute = attribute;
+                    }
+                } else if (regionEquals(text, attribute[0], attribute[1], "value")) {
+                    valueAttribute = attribute;
+                } else if (keywords.find(text, attribute[0], attribute[1])) {
+                    collector.report(text.subSequence(attribute[0], attribute[1]).toString(), attribute[2], attribute[3]);
+                }
+            }
+            String bodyKey = null;
+            if (nameAttribute != null) {
+                String key = text.subSequence(nameAttribute[2], nameAttribute[3]).toString();
+                if (valueAttribute != null) {
+                    collector.report(key, valueAttribute[2], valueAttribute[3]);
+                } else {
+                    bodyKey = key;
+                }
+            } else if (nameEnd > nameStart && keywords.find(text, nameStart, nameEnd)) {
+                bodyKey = text.subSequence(nameStart, nameEnd).toString();
+            }
+
+            // 仅检查不含子元素的文本内容: <password>...</password>
+            if (bodyKey != null && !selfClosing) {
+                int bodyEnd = indexOf(text, '<', tagEnd, n);
+                int closeNameEnd = bodyEnd + 2 + nameEnd - nameStart;
+                if (bodyEnd >= 0 && startsWith(text, bodyEnd, n, "</")
+                        && regionMatches(text, bodyEnd + 2, text, nameStart, nameEnd - nameStart)
+                        && closeNameEnd < n && (text.charAt(closeNameEnd) == '>' || isWhitespace(text.charAt(closeNameEnd)))) {
+                    int bodyStart = skipWhitespace(text, tagEnd, bodyEnd);
+                    collector.report(bodyKey, bodyStart, trimEndWhitespace(text, bodyStart, bodyEnd));
+                }
+            }
+            i = tagEnd;
+        }
+    }
+
+    /**
+     * 解析标签内的属性，直到 '>'
+     * @return '>' 的位置，标签未闭合时返回 text.length()
+     */
+    private static int parseAttributes(@NotNull CharSequence text, int i, @NotNull List<int[]> attributes) {
+        int n = text.length();
+        while (i < n) {
+            i = skipWhitespace(text, i, n);
+            if (i >= n || text.charAt(i) == '>') {
+                return i;
+            }
+            if (text.charAt(i) == '/') {
+                i++;
+                continue;
+            }
+            int nameStart = i;
+            while (i < n && !isWhitespace(text.charAt(i)) && text.charAt(i) != '=' && text.charAt(i) != '>' && text.charAt(i) != '/') {
+                i++;
+            }
+            int nameEnd = i;
+            i = skipWhitespace(text, i, n);
+            if (i >= n || text.charAt(i) != '=') {
+                continue;
+            }
+            i = skipWhitespace(text, i + 1, n);
+            if (i >= n) {
+                return n;
+            }
+            char quote = text.charAt(i);
+            if (quote != '"' && quote != '\'') {
+                continue;
+            }
+            int close = indexOf(text, quote, i + 1, n);
+            if (close < 0) {
+                return n;
+            }
+            attributes.add(new int[]{nameStart, nameEnd, i + 1, close});
+            i = close + 1;
+        }
+        return n;
+    }
+
+    private static int skipPast(@NotNull CharSequence text, int from, @NotNull String terminator) {
+        int n = text.length();
+        for (int i = from; i < n; i++) {
+            if (startsWith(text, i, n, terminator)) {
+                return i + terminator.length();
+            }
+        }
+        return n;
+    }
+
+    // ---------------------------------------------------------------- common
+
+    private static boolean isPlaceholder(@NotNull String value) {
+        return value.contains("${") || value.contains("#{") || value.startsWith("ENC(");
+    }
+
+    private static boolean isASCII(@NotNull String text) {
+        for (int i = 0, l = text.length(); i < l; i++) {
+            if (text.charAt(i) > 128) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean isBlank(char c) {
+        // 文件开头可能带有 BOM
+        return c == ' ' || c == '\t' || c == '\f' || c == '\uFEFF';
+    }
+
+    private static boolean isWhitespace(char c) {
+        return isBlank(c) || c == '\n' || c == '\r';
+    }
+
+    private static int lineEnd(@NotNull CharSequence text, int pos) {
+        int n = text.length();
+        while (pos < n && text.charAt(pos) != '\n' && text.charAt(pos) != '\r') {
+            pos++;
+        }
+        return pos;
+    }
+
+    private static int nextLine(@NotNull CharSequence text, int lineEnd) {
+        if (lineEnd < text.length() && text.charAt(lineEnd) == '\r' && lineEnd + 1 < text.length() && text.charAt(lineEnd + 1) == '\n') {
+            return lineEnd + 2;
+        }
+        return lineEnd + 1;
+    }
+
+    private static int skipBlank(@NotNull CharSequence text, int pos, int end) {
+        while (pos < end && isBlank(text.charAt(pos))) {
+            pos++;
+        }
+        return pos;
+    }
+
+    private static int skipWhitespace(@NotNull CharSequence text, int pos, int end) {
+        while (pos < end && isWhitespace(text.charAt(pos))) {
+            pos++;
+        }
+        return pos;
+    }
+
+    private static int trimEnd(@NotNull CharSequence text, int start, int end) {
+        while (end > start && isBlank(text.charAt(end - 1))) {
+            end--;
+        }
+        return end;
+    }
+
+    private static int trimEndWhitespace(@NotNull CharSequence text, int start, int end) {
+        while (end > start && isWhitespace(text.charAt(end - 1))) {
+            end--;
+        }
+        return end;
+    }
+
+    private static int indexOf(@NotNull CharSequence text, char c, int from, int end) {
+        for (int i = from; i < end; i++) {
+            if (text.charAt(i) == c) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private static boolean startsWith(@NotNull CharSequence text, int pos, int end, @NotNull String prefix) {
+        return pos + prefix.length() <= end && regionMatches(text, pos, prefix, 0, prefix.length());
+    }
+
+    private static boolean regionEquals(@NotNull CharSequence text, int start, int end, @NotNull String s) {
+        return end - start == s.length() && regionMatches(text, start, s, 0, s.length());
+    }
+
+    private static boolean regionMatches(@NotNull CharSequence text, int offset, @NotNull CharSequence other, int otherOffset, int length) {
+        if (offset < 0 || offset + length > text.length()) {
+            return false;
+        }
+        for (int k = 0; k < length; k++) {
+            if (text.charAt(offset + k) != other.charAt(otherOffset + k)) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
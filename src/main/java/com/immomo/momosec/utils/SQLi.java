@@ -18,17 +18,33 @@ package com.immomo.momosec.utils;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
-import java.util.Arrays;
 import java.util.List;
+import java.util.Locale;
+import java.util.regex.Matcher;
 import java.util.regex.Pattern;
-import java.util.stream.Collectors;
 
 public class SQLi {
 
+    private static final int VERDICT_CAPACITY = 2048;
+    // 过长的语句不缓存，避免缓存占用过多内存
+    private static final int MAX_CACHED_LENGTH = 4096;
+
+    private static final String[] SQL_VERBS = {"select", "delete", "update", "insert"};
+    private static final String WHERE = "where";
+    // hasVulOnSQLJoinStr 遇到即做出判断的关键词
+    private static final String[] DECISIVE_KEYWORDS = {"where", "set", "values", "from", "into", "join", "select", "update"};
+
+    // 相同的 SQL 模板会在大量 DAO 方法中重复出现，按规范化后的文本缓存结论
+    private static final LruCache<String, Boolean> sqlVerdicts =
+            new LruCache<>(VERDICT_CAPACITY, CacheStats.counter("sqli.is-sql"));
+    private static final LruCache<String, Boolean> placeholderVerdicts =
+            new LruCache<>(VERDICT_CAPACITY, CacheStats.counter("sqli.placeholder"));
+
     public static final Pattern whereInEndPattern          = Pattern.compile("(where|and|or)\\s+\\S+?\\s+in\\s*\\(?\\s*$", Pattern.CASE_INSENSITIVE);
     public static final Pattern likeEndPatterh             = Pattern.compile("\\S+?\\s+like\\s+('|\")%?$", Pattern.CASE_INSENSITIVE);
 
     public static final Pattern placeholderPattern         = Pattern.compile("%(\\d\\$\\d{0,5})?s", Pattern.CASE_INSENSITIVE);
+    public static final Pattern sqlPattern                 = Pattern.compile("^\\s*(select|delete|update|insert)\\s+.*?(from|into|set)\\s+.*?where.*", Pattern.CASE_INSENSITIVE);
     public static final Pattern dollarVarPattern           = Pattern.compile("\\$\\{(\\S+?)\\}");
 
 
@@ -60,55 +76,274 @@ public class SQLi {
      * @return boolean
      */
     public static boolean hasVulOnSQLJoinStr(@NotNull String prefix, @Nullable String var, @Nullable String suffix) {
-//        拆分语句为单个关键词
-        List<String> fragments = Arrays.stream(prefix.split("[\\s|(]+"))
-                .map(String::trim)
-                .filter(item -> !item.isEmpty())
-                .collect(Collectors.toList());
-        int seg_size = fragments.size();
-        if (seg_size == 0 ||
-            fragments.get(seg_size - 1).trim().endsWith("=") ||
-            fragments.get(seg_size - 1).trim().endsWith(">=") ||
-            fragments.get(seg_size - 1).trim().endsWith("<=")
-        ) {
-            return true;
-        }
+        return hasVulOnSQLJoinStr(prefix, prefix.length(), suffix);
+    }
+
+    /**
+     * 以 prefix[0, prefixEnd) 作为拼接点之前的字符串，避免截取子串
+     */
+    private static boolean hasVulOnSQLJoinStr(@NotNull String prefix, int prefixEnd, @Nullable String suffix) {
+//        从末尾向前逐个取出关键词 (以空白、| 、( 分隔)，只扫描到能做出判断的位置，不拆分整个语句
+        boolean isLastFragment = true;
+        int end = prefixEnd;
+        while (true) {
+            while (end > 0 && isSeparator(prefix.charAt(end - 1))) {
+                end--;
+            }
+            if (end == 0) {
+                return true;
+            }
+            int start = end;
+            while (start > 0 && !isSeparator(prefix.charAt(start - 1))) {
+                start--;
+            }
+
+            int fragStart = start;
+            int fragEnd = end;
+            end = start;
+            while (fragStart < fragEnd && prefix.charAt(fragStart) <= ' ') {
+                fragStart++;
+            }
+            while (fragEnd > fragStart && prefix.charAt(fragEnd - 1) <= ' ') {
+                fragEnd--;
+            }
+            if (fragStart == fragEnd) {
+                continue;
+            }
+
+//            最后一个关键词以 =、>=、<= 结尾
+            if (isLastFragment) {
+                if (prefix.charAt(fragEnd - 1) == '=') {
+                    return true;
+                }
+                isLastFragment = false;
+            }
 
-        for(int i = seg_size - 1; i >= 0; i--) {
-            String frag = fragments.get(i);
-            if (frag.equals("limit") ||
-                frag.equals("by") ||
-                frag.equals("having")
+            if (isKeyword(prefix, fragStart, fragEnd, "limit") ||
+                isKeyword(prefix, fragStart, fragEnd, "by") ||
+                isKeyword(prefix, fragStart, fragEnd, "having")
             ) {
                 continue;
             }
 
 //            如果以where、set结尾，判断输入关键词后是否紧跟=、>、<
-            if (frag.equals("where") || frag.equals("set")) {
-                if (suffix != null && (
-                    suffix.trim().startsWith("=") ||
-                    suffix.trim().startsWith(">") ||
-                    suffix.trim().startsWith("<")
-                )) {
-                    return false;
+            if (isKeyword(prefix, fragStart, fragEnd, "where") || isKeyword(prefix, fragStart, fragEnd, "set")) {
+                if (suffix != null) {
+                    char first = firstNonBlankChar(suffix);
+                    if (first == '=' || first == '>' || first == '<') {
+                        return false;
+                    }
                 }
                 return true;
             }
 
 //            如果输入关键字前为values则存在风险
-            if (frag.equals("values")) {
+            if (isKeyword(prefix, fragStart, fragEnd, "values")) {
+                return true;
+            }
+
+            if (isKeyword(prefix, fragStart, fragEnd, "from") ||
+                isKeyword(prefix, fragStart, fragEnd, "into") ||
+                isKeyword(prefix, fragStart, fragEnd, "join") ||
+                isKeyword(prefix, fragStart, fragEnd, "select") ||
+                isKeyword(prefix, fragStart, fragEnd, "update")
+            ) {
+                return false;
+            }
+        }
+    }
+
+    /**
+     * 拼接点之前对 hasVulOnSQLJoinStr 的判断有影响的尾部起始位置
+     *
+     * hasVulOnSQLJoinStr 从末尾向前扫描关键词，最远扫描到小写的 where / set / values / from / into / join / select / update，
+     * 因此 prefix[start, prefixEnd) 与完整前缀的判断结果一致 (忽略大小写的实现同样不会越过这些关键词)。
+     * 另外至少保留最后两个关键词，供按关键词组合判断的规则 (如 order by) 使用。
+     * @param prefix String
+     * @param prefixEnd int 拼接点位置
+     * @return int 尾部起始位置，前缀中没有上述关键词时返回 0
+     */
+    public static int joinContextStart(@NotNull String prefix, int prefixEnd) {
+        boolean decided = false;
+        int fragments = 0;
+        int end = prefixEnd;
+        while (true) {
+            while (end > 0 && isSeparator(prefix.charAt(end - 1))) {
+                end--;
+            }
+            if (end == 0) {
+                return 0;
+            }
+            int start = end;
+            while (start > 0 && !isSeparator(prefix.charAt(start - 1))) {
+                start--;
+            }
+
+            int fragStart = start;
+            int fragEnd = end;
+            end = start;
+            while (fragStart < fragEnd && prefix.charAt(fragStart) <= ' ') {
+                fragStart++;
+            }
+            while (fragEnd > fragStart && prefix.charAt(fragEnd - 1) <= ' ') {
+                fragEnd--;
+            }
+            if (fragStart == fragEnd) {
+                continue;
+            }
+
+            fragments++;
+            if (fragments == 1 && prefix.charAt(fragEnd - 1) == '=') {
+                decided = true;
+            }
+            for (String keyword : DECISIVE_KEYWORDS) {
+                if (isKeyword(prefix, fragStart, fragEnd, keyword)) {
+                    decided = true;
+                    break;
+                }
+            }
+            if (decided && fragments >= 2) {
+                return start;
+            }
+        }
+    }
+
+    /**
+     * 判断字符串是否为 SQL 语句，与 sqlPattern.matcher(str).find() 一致
+     *
+     * sqlPattern 要求语句以动词开头且含有 where，先以此做一次廉价过滤，
+     * 通过过滤的字符串去掉开头空白并转为小写后作为缓存键 (sqlPattern 不区分大小写，结论不变)
+     * @param str String
+     * @return boolean
+     */
+    public static boolean isSql(@NotNull String str) {
+        int start = skipWhitespace(str, 0);
+        if (!startsWithSqlVerb(str, start) || indexOfIgnoreCase(str, WHERE, start) < 0) {
+            return false;
+        }
+        if (str.length() - start > MAX_CACHED_LENGTH) {
+            return sqlPattern.matcher(str).find();
+        }
+        String key = str.substring(start).toLowerCase(Locale.ROOT);
+        return sqlVerdicts.computeIfAbsent(key, k -> sqlPattern.matcher(k).find());
+    }
+
+    /**
+     * 按占位符 (%s、%1$s 等) 拆分后，判断各占位符之前的字符串是否有拼接SQL注入风险
+     * 结论按 content 缓存
+     * @param content String
+     * @return boolean
+     */
+    public static boolean hasVulOnPlaceholder(@NotNull String content) {
+        if (content.indexOf('%') < 0) {
+            return false;
+        }
+        if (content.length() > MAX_CACHED_LENGTH) {
+            return hasVulOnJoinPoints(content, placeholderPattern);
+        }
+        return placeholderVerdicts.computeIfAbsent(content, k -> hasVulOnJoinPoints(k, placeholderPattern));
+    }
+
+    /**
+     * 按 pattern 拆分 content 后，判断各拆分点之前的字符串是否有拼接SQL注入风险
+     * @param content String
+     * @param pattern Pattern
+     * @return boolean
+     */
+    public static boolean hasVulOnJoinPoints(@NotNull String content, @NotNull Pattern pattern) {
+        Matcher m = pattern.matcher(content);
+        int offset = 0;
+        while (m.find(offset)) {
+            if (hasVulOnSQLJoinStr(content, m.start(), null)) {
                 return true;
             }
+            offset = m.end();
+        }
+        return false;
+    }
+
+    /**
+     * 与正则 \\s 一致: [ \\t\\n\\x0B\\f\\r]
+     */
+    private static boolean isWhitespace(char c) {
+        switch (c) {
+            case ' ': case '\t': case '\n': case '\u000B': case '\f': case '\r':
+                return true;
+            default:
+                return false;
+        }
+    }
+
+    private static int skipWhitespace(@NotNull String str, int from) {
+        while (from < str.length() && isWhitespace(str.charAt(from))) {
+            from++;
+        }
+        return from;
+    }
 
-            if (frag.equals("from") ||
-                frag.equals("into") ||
-                frag.equals("join") ||
-                frag.equals("select") ||
-                frag.equals("update")
+    /**
+     * str 在 start 处是否为 select / delete / update / insert 之一，且其后紧跟空白
+     */
+    private static boolean startsWithSqlVerb(@NotNull String str, int start) {
+        for (String verb : SQL_VERBS) {
+            int end = start + verb.length();
+            if (end < str.length() &&
+                str.regionMatches(true, start, verb, 0, verb.length()) &&
+                isWhitespace(str.charAt(end))
             ) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * @param keyword String 小写关键词
+     * @return int 从 from 开始不区分大小写查找 keyword 的位置，不存在时返回 -1
+     */
+    private static int indexOfIgnoreCase(@NotNull String str, @NotNull String keyword, int from) {
+        char first = keyword.charAt(0);
+        char firstUpper = Character.toUpperCase(first);
+        for (int i = from, last = str.length() - keyword.length(); i <= last; i++) {
+            char c = str.charAt(i);
+            if ((c == first || c == firstUpper) && str.regionMatches(true, i, keyword, 0, keyword.length())) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * 关键词分隔符，与正则 [\\s|(] 一致
+     */
+    private static boolean isSeparator(char c) {
+        switch (c) {
+            case ' ': case '\t': case '\n': case '\u000B': case '\f': case '\r':
+            case '|': case '(':
+                return true;
+            default:
                 return false;
+        }
+    }
+
+    /**
+     * prefix[start, end) 是否等于关键词 (关键词为小写)
+     */
+    private static boolean isKeyword(@NotNull String prefix, int start, int end, @NotNull String keyword) {
+        return end - start == keyword.length() && prefix.regionMatches(start, keyword, 0, keyword.length());
+    }
+
+    /**
+     * 与 String.trim() 一致，跳过开头 <= ' ' 的字符
+     * @return char 第一个非空白字符，不存在时返回 0
+     */
+    private static char firstNonBlankChar(@NotNull String s) {
+        for (int i = 0; i < s.length(); i++) {
+            char c = s.charAt(i);
+            if (c > ' ') {
+                return c;
             }
         }
-        return true;
+        return 0;
     }
 }
@@ -1,5 +1,6 @@
 package com.zcy.zsec.codeinspect.lang.java.rule;
 
+import com.immomo.momosec.lang.MomoRuleDispatcher;
 import com.intellij.codeInspection.ProblemHighlightType;
 import com.intellij.codeInspection.ProblemsHolder;
 import com.intellij.psi.*;
@@ -7,6 +8,7 @@ import com.zcy.zsec.codeinspect.lang.InspectionBundle;
 import com.zcy.zsec.codeinspect.lang.ZSecBaseLocalInspectionTool;
 import com.zcy.zsec.codeinspect.lang.java.util.ZSecExpressionUtils;
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 
 /**
  * 弱加密检测，主要针对Cipher检测
@@ -34,25 +36,28 @@ public class CipherWeaknessInspector extends ZSecBaseLocalInspectionTool {
     public static final String MESSAGE = InspectionBundle.message("outdated.encryption.inspector.msg");
     public static final String AES_ECB_MESSAGE = InspectionBundle.message("outdated.encryption.inspector.aesecb.msg");
 
+    private static final String[] TRIGGER_TOKENS = {"getInstance"};
+
+    @Nullable
+    @Override
+    protected String[] getTriggerTokens() {
+        return TRIGGER_TOKENS;
+    }
+
     @Override
-    public @NotNull PsiElementVisitor buildVisitor(@NotNull ProblemsHolder holder, boolean isOnTheFly) {
-        return new JavaElementVisitor() {
-            @Override
-            public void visitMethodCallExpression(PsiMethodCallExpression expression) {
-                if (ZSecExpressionUtils.hasFullQualifiedName(expression, "javax.crypto.Cipher", "getInstance")) {
-                    PsiExpressionList argList = expression.getArgumentList();
-                    PsiExpression[] args = argList.getExpressions();
-                    if (args.length > 0 && args[0] instanceof PsiLiteralExpression) {
-                        String trans = ZSecExpressionUtils.getLiteralInnerText(args[0]);
-                        if (null != trans && trans.startsWith("DES")) {
-                            holder.registerProblem(expression, MESSAGE, ProblemHighlightType.GENERIC_ERROR_OR_WARNING);
-                        }
-                        else if (null != trans && trans.startsWith("AES/ECB"))
-                            holder.registerProblem(expression, AES_ECB_MESSAGE, ProblemHighlightType.WARNING);
-                    }
+    protected void registerHandlers(@NotNull MomoRuleDispatcher.HandlerTable table, @NotNull ProblemsHolder holder, boolean isOnTheFly) {
+        table.onCall("javax.crypto.Cipher", "getInstance", expression -> {
+            PsiExpressionList argList = expression.getArgumentList();
+            PsiExpression[] args = argList.getExpressions();
+            if (args.length > 0 && args[0] instanceof PsiLiteralExpression) {
+                String trans = ZSecExpressionUtils.getLiteralInnerText(args[0]);
+                if (null != trans && trans.startsWith("DES")) {
+                    holder.registerProblem(expression, MESSAGE, ProblemHighlightType.GENERIC_ERROR_OR_WARNING);
                 }
+                else if (null != trans && trans.startsWith("AES/ECB"))
+                    holder.registerProblem(expression, AES_ECB_MESSAGE, ProblemHighlightType.WARNING);
             }
-        };
+        });
     }
 
 }
@@ -1,15 +1,14 @@
 package com.zcy.zsec.codeinspect.lang.java.rule;
 
+import com.immomo.momosec.lang.MomoRuleDispatcher;
+import com.immomo.momosec.lang.java.utils.MoTaintSummary;
 import com.intellij.codeInspection.ProblemHighlightType;
 import com.intellij.codeInspection.ProblemsHolder;
-import com.intellij.psi.JavaElementVisitor;
-import com.intellij.psi.PsiElementVisitor;
-import com.intellij.psi.PsiMethodCallExpression;
-import com.intellij.psi.PsiNewExpression;
+import com.intellij.psi.*;
 import com.zcy.zsec.codeinspect.lang.InspectionBundle;
 import com.zcy.zsec.codeinspect.lang.ZSecBaseLocalInspectionTool;
-import com.zcy.zsec.codeinspect.lang.java.util.ZSecExpressionUtils;
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 
 /**
  * 命令执行检测提示插件
@@ -18,28 +17,63 @@ import org.jetbrains.annotations.NotNull;
  * 2. java.lang.ProcessBuilder.start
  * 3. javax.script.ScriptEngineManager  eval
  *
+ * 命令 / 脚本参数为常量 (含经过辅助方法传递的常量，见 MoTaintSummary) 时不提示
  */
 public class CommendInjectExecInspector extends ZSecBaseLocalInspectionTool {
     public static final String MESSAGE = InspectionBundle.message("commend.injection.exec.msg");
 
+    private static final String[] TRIGGER_TOKENS = {"getRuntime", "exec", "eval", "ProcessBuilder"};
+
+    @Nullable
     @Override
-    public @NotNull PsiElementVisitor buildVisitor(@NotNull ProblemsHolder holder, boolean isOnTheFly) {
-        return new JavaElementVisitor() {
-            @Override
-            public void visitMethodCallExpression(PsiMethodCallExpression expression) {
-                if (
-                        ZSecExpressionUtils.hasFullQualifiedName(expression, "java.lang.Runtime", "getRuntime")
-                        || ZSecExpressionUtils.hasFullQualifiedName(expression, "java.lang.Runtime", "exec")
-                        || ZSecExpressionUtils.hasFullQualifiedName(expression, "javax.script.ScriptEngine", "eval")
-                )
-                    holder.registerProblem(expression, MESSAGE, ProblemHighlightType.GENERIC_ERROR_OR_WARNING);
-            }
+    protected String[] getTriggerTokens() {
+        return TRIGGER_TOKENS;
+    }
 
-            @Override
-            public void visitNewExpression(PsiNewExpression expression) {
-                if (ZSecExpressionUtils.hasFullQualifiedName(expression, "java.lang.ProcessBuilder"))
-                    holder.registerProblem(expression, MESSAGE, ProblemHighlightType.GENERIC_ERROR_OR_WARNING);
+    @Override
+    protected void registerHandlers(@NotNull MomoRuleDispatcher.HandlerTable table, @NotNull ProblemsHolder holder, boolean isOnTheFly) {
+        MomoRuleDispatcher.Handler<PsiCallExpression> handler = expression -> {
+            if (!hasConstantCommand(expression)) {
+                holder.registerProblem(expression, MESSAGE, ProblemHighlightType.GENERIC_ERROR_OR_WARNING);
             }
         };
+        MomoRuleDispatcher.Handler<PsiMethodCallExpression> getRuntimeHandler = expression -> {
+            // Runtime.getRuntime().exec(...) 由 exec 按参数判断
+            PsiElement parent = expression.getParent();
+            if (!(parent instanceof PsiReferenceExpression) ||
+                !"exec".equals(((PsiReferenceExpression) parent).getReferenceName()) ||
+                !(parent.getParent() instanceof PsiMethodCallExpression)
+            ) {
+                holder.registerProblem(expression, MESSAGE, ProblemHighlightType.GENERIC_ERROR_OR_WARNING);
+            }
+        };
+        table.onCall("java.lang.Runtime", "getRuntime", getRuntimeHandler)
+             .onCall("java.lang.Runtime", "exec", handler)
+             .onCall("javax.script.ScriptEngine", "eval", handler)
+             .onNew("java.lang.ProcessBuilder", handler);
+    }
+
+    /**
+     * exec / eval 的第一个参数，或 new ProcessBuilder(...) 的全部参数均为常量
+     * new ProcessBuilder() 的命令在之后设置，不视为常量
+     */
+    private static boolean hasConstantCommand(@NotNull PsiCallExpression expression) {
+        PsiExpressionList argumentList = expression.getArgumentList();
+        if (argumentList == null) {
+            return false;
+        }
+        PsiExpression[] args = argumentList.getExpressions();
+        if (args.length == 0) {
+            return false;
+        }
+        if (expression instanceof PsiMethodCallExpression) {
+            return MoTaintSummary.isConstant(args[0]);
+        }
+        for (PsiExpression arg : args) {
+            if (!MoTaintSummary.isConstant(arg)) {
+                return false;
+            }
+        }
+        return true;
     }
 }
@@ -3,16 +3,26 @@
  */
 package com.zcy.zsec.codeinspect.lang.java.rule;
 
+import com.immomo.momosec.lang.MomoRuleDispatcher;
+import com.immomo.momosec.utils.EntropyEstimator;
+import com.immomo.momosec.utils.KeywordMatcher;
 import com.intellij.codeInspection.ProblemHighlightType;
 import com.intellij.codeInspection.ProblemsHolder;
 import com.intellij.psi.*;
+import com.intellij.ui.DocumentAdapter;
+import com.intellij.ui.components.JBScrollPane;
 import com.intellij.util.ObjectUtils;
 import com.zcy.zsec.codeinspect.lang.InspectionBundle;
 import com.zcy.zsec.codeinspect.lang.ZSecBaseLocalInspectionTool;
 import com.zcy.zsec.codeinspect.lang.java.util.ZSecExpressionUtils;
-import me.gosimple.nbvcxz.Nbvcxz;
 import org.jetbrains.annotations.NotNull;
 
+import javax.swing.*;
+import javax.swing.event.DocumentEvent;
+import java.awt.BorderLayout;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
 import java.util.regex.Pattern;
 
 /**
@@ -24,22 +34,52 @@ import java.util.regex.Pattern;
 public class HardcodedCredentials extends ZSecBaseLocalInspectionTool {
     public static final String MESSAGE = InspectionBundle.message("hardcoded.credentials.msg");
 //    private static final Pattern pattern = Pattern.compile("passwd|pass|password|pwd|secret|token", Pattern.CASE_INSENSITIVE);
-    private static final Pattern pattern = Pattern.compile("passwd|pass|password|pwd|secret|token|pw|apiKey|bearer|cred", Pattern.CASE_INSENSITIVE);
     private static final Pattern connPwdPattern = Pattern.compile("password=(.*?)($|&)", Pattern.CASE_INSENSITIVE);
     private static final Pattern setMethodCallPattern = Pattern.compile(".\\.set.", Pattern.CASE_INSENSITIVE); //数据对象set方法匹配
-    private static final double entropyThreshold = 50.0;
-    private static final int truncate = 16;
 
+//    用户追加的变量名关键字 (如厂商特有的 accessKey / sk)，以逗号或空白分隔
+    public String customKeywords = "";
+
+    // 内置关键字，资源文件中的硬编码凭证 (HardcodedResourceCredentials) 共用同一份
+    public static final List<String> KEYWORDS = Collections.unmodifiableList(
+            Arrays.asList("passwd", "pass", "password", "pwd", "secret", "token", "pw", "apiKey", "bearer", "cred"));
+
+    private final KeywordMatcher.Configurable keywordMatcher = new KeywordMatcher.Configurable(KEYWORDS.toArray(new String[0]));
 
     @Override
-    public @NotNull PsiElementVisitor buildVisitor(@NotNull ProblemsHolder holder, boolean isOnTheFly) {
-        return new JavaElementVisitor() {
+    public JComponent createOptionsPanel() {
+        JTextArea textArea = new JTextArea(customKeywords, 4, 60);
+        textArea.getDocument().addDocumentListener(new DocumentAdapter() {
+            @Override
+            protected void textChanged(@NotNull DocumentEvent e) {
+                customKeywords = textArea.getText();
+            }
+        });
+        JPanel panel = new JPanel(new BorderLayout());
+        panel.add(new JLabel(InspectionBundle.message("hardcoded.credentials.option.keywords")), BorderLayout.NORTH);
+        panel.add(new JBScrollPane(textArea), BorderLayout.CENTER);
+        return panel;
+    }
+
+    /**
+     * @return KeywordMatcher 内置关键字与用户追加的关键字，配置不变时复用同一个匹配器
+     */
+    @NotNull
+    public KeywordMatcher getKeywords() {
+        return keywordMatcher.get(customKeywords);
+    }
+
+
+    @Override
+    protected void registerHandlers(@NotNull MomoRuleDispatcher.HandlerTable table, @NotNull ProblemsHolder holder, boolean isOnTheFly) {
+        KeywordMatcher keywords = getKeywords();
+        JavaElementVisitor visitor = new JavaElementVisitor() {
 
             @Override
             public void visitLocalVariable(PsiLocalVariable variable) {
                 String varname = variable.getName();
 //                判断变量名是否涉及凭证信息
-                if (varname != null && pattern.matcher(varname).find()) {
+                if (varname != null && keywords.find(varname)) {
                     PsiExpression initializer = variable.getInitializer();
 //                    判断初始化方法/方式是否是字符表达式
                     if (initializer instanceof PsiLiteralExpression) {
@@ -59,7 +99,7 @@ public class HardcodedCredentials extends ZSecBaseLocalInspectionTool {
                 if (lexp instanceof PsiReferenceExpression) {
                     String varname = ((PsiReferenceExpression) lexp).getQualifiedName();
 //                    判断变量名是否涉及凭证信息
-                    if (pattern.matcher(varname).find()) {
+                    if (keywords.find(varname)) {
                         PsiExpression rexp = expression.getRExpression();
 //                        判断右侧表达式是否是字符型表达式
                         if (rexp instanceof PsiLiteralExpression) {
@@ -81,7 +121,7 @@ public class HardcodedCredentials extends ZSecBaseLocalInspectionTool {
             public void visitField(PsiField field) {
                 String varname = field.getName();
 //                判断Field name是否涉及凭证信息
-                if (varname != null && pattern.matcher(varname).find()) {
+                if (varname != null && keywords.find(varname)) {
                     PsiExpression initializer = field.getInitializer();
 //                    判断初始化方法/方式是否是字符表达式
                     if (initializer instanceof PsiLiteralExpression) {
@@ -111,7 +151,7 @@ public class HardcodedCredentials extends ZSecBaseLocalInspectionTool {
                         PsiExpression[] args = expression.getArgumentList().getExpressions();
                         if (args.length == 2 && args[1] instanceof PsiLiteralExpression) {
                             String key = ZSecExpressionUtils.getText(args[0], true);
-                            if (key != null && pattern.matcher(key).find()) {
+                            if (key != null && keywords.find(key)) {
                                 String value = ZSecExpressionUtils.getLiteralInnerText(args[1]);
                                 if (value != null && isHighEntropyString(value) && isASCII(value)) {
                                     holder.registerProblem(expression, MESSAGE, ProblemHighlightType.GENERIC_ERROR_OR_WARNING);
@@ -138,10 +178,14 @@ public class HardcodedCredentials extends ZSecBaseLocalInspectionTool {
                 }
 //                自定义数据类型进行set操作
                 else if (setMethodCallPattern.matcher(expression.getMethodExpression().getText()).find()){
-                    setMethodCallCheck(expression, holder);
+                    setMethodCallCheck(expression, holder, keywords);
                 }
             }
         };
+        table.on(PsiLocalVariable.class, visitor::visitLocalVariable)
+             .on(PsiAssignmentExpression.class, visitor::visitAssignmentExpression)
+             .on(PsiField.class, visitor::visitField)
+             .on(PsiMethodCallExpression.class, visitor::visitMethodCallExpression);
     }
 
 
@@ -150,11 +194,8 @@ public class HardcodedCredentials extends ZSecBaseLocalInspectionTool {
      * @param v String
      * @return boolean
      */
-    private static boolean isHighEntropyString(String v) {
-        if (truncate < v.length()) {
-            v = v.substring(0, truncate);
-        }
-        return new Nbvcxz().estimate(v).getEntropy() > entropyThreshold;
+    static boolean isHighEntropyString(String v) {
+        return EntropyEstimator.getInstance().isHighEntropy(v);
     }
 
     /**
@@ -194,9 +235,10 @@ public class HardcodedCredentials extends ZSecBaseLocalInspectionTool {
      * 对数据类set操作进行校验
      * @param expression PsiMethodCallExpression
      * @param holder ProblemsHolder
+     * @param keywords KeywordMatcher
      */
-    private void setMethodCallCheck(PsiMethodCallExpression expression, @NotNull ProblemsHolder holder) {
-        if (pattern.matcher(expression.getMethodExpression().getLastChild().getText()).find()) {
+    private void setMethodCallCheck(PsiMethodCallExpression expression, @NotNull ProblemsHolder holder, @NotNull KeywordMatcher keywords) {
+        if (keywords.find(expression.getMethodExpression().getLastChild().getText())) {
             PsiExpression psiExpression = expression.getArgumentList().getExpressions()[0];
             String innerText = ZSecExpressionUtils.getLiteralInnerText(psiExpression);
             if (innerText != null && isHighEntropyString(innerText) && isASCII(innerText)) {
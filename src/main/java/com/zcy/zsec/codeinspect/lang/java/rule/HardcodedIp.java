@@ -1,79 +1,96 @@
 package com.zcy.zsec.codeinspect.lang.java.rule;
 
+import com.immomo.momosec.lang.MomoRuleDispatcher;
+import com.immomo.momosec.utils.IpLiteral;
 import com.intellij.codeInspection.ProblemHighlightType;
 import com.intellij.codeInspection.ProblemsHolder;
 import com.intellij.psi.JavaElementVisitor;
 import com.intellij.psi.JavaTokenType;
-import com.intellij.psi.PsiElementVisitor;
 import com.intellij.psi.PsiLiteralExpression;
 import com.intellij.psi.tree.IElementType;
+import com.intellij.ui.DocumentAdapter;
+import com.intellij.ui.components.JBScrollPane;
 import com.zcy.zsec.codeinspect.lang.ZSecBaseLocalInspectionTool;
 import com.zcy.zsec.codeinspect.lang.InspectionBundle;
 import org.jetbrains.annotations.NotNull;
 
+import javax.swing.*;
+import javax.swing.event.DocumentEvent;
+import java.awt.BorderLayout;
+
 
 /**
- * 1025: IP地址硬编码；未修改
+ * 1025: IP地址硬编码；改用 IpLiteral 识别 IPv4 / IPv6 / CIDR，回环、文档示例等地址不报告
  *
  * ref: https://rules.sonarsource.com/java/type/Security%20Hotspot/RSPEC-1313
  */
 public class HardcodedIp extends ZSecBaseLocalInspectionTool {
     public static final String MESSAGE = InspectionBundle.message("hardcoded.ip.msg");
 
+    // 用户追加的地址段，每行 "网段 类别"，格式见 IpLiteral.parseRanges
+    public String customRanges = "";
+
+    private volatile CustomRanges ranges = new CustomRanges("", IpLiteral.getDefaultTable());
+
     @Override
-    public @NotNull PsiElementVisitor buildVisitor(@NotNull ProblemsHolder holder, boolean isOnTheFly) {
-        return new JavaElementVisitor() {
+    public JComponent createOptionsPanel() {
+        JTextArea textArea = new JTextArea(customRanges, 6, 60);
+        textArea.getDocument().addDocumentListener(new DocumentAdapter() {
+            @Override
+            protected void textChanged(@NotNull DocumentEvent e) {
+                customRanges = textArea.getText();
+            }
+        });
+        JPanel panel = new JPanel(new BorderLayout());
+        panel.add(new JLabel(InspectionBundle.message("hardcoded.ip.option.ranges")), BorderLayout.NORTH);
+        panel.add(new JBScrollPane(textArea), BorderLayout.CENTER);
+        return panel;
+    }
+
+    @Override
+    protected void registerHandlers(@NotNull MomoRuleDispatcher.HandlerTable table, @NotNull ProblemsHolder holder, boolean isOnTheFly) {
+        IpLiteral.RangeTable ranges = getRanges();
+        JavaElementVisitor visitor = new JavaElementVisitor() {
             @Override
             public void visitLiteralExpression(PsiLiteralExpression expression) {
                 IElementType type = expression.getFirstChild().getNode().getElementType();
                 if (type == JavaTokenType.STRING_LITERAL) {
                     Object v = expression.getValue();
-                    if (v != null && isSensitiveIp(v.toString())) {
+                    if (v != null && isSensitiveIp(v.toString(), ranges)) {
                         holder.registerProblem(expression, MESSAGE, ProblemHighlightType.GENERIC_ERROR_OR_WARNING);
                     }
                 }
             }
         };
+        table.on(PsiLiteralExpression.class, visitor::visitLiteralExpression);
     }
 
-    private static boolean isSensitiveIp(String ip) {
-        //判断是否是7-15位之间（0.0.0.0-255.255.255.255.255）
-        if (ip.length()<7||ip.length()>15) {
-            return false;
-        }
-
-        //判断是否能以小数点分成四段
-        String[] ipArray = ip.split("\\.");
-        if (ipArray.length != 4) {
-            return false;
-        }
-
-        for (int i = 0; i < ipArray.length; i++) {
-            //判断每段是否都是数字
-            try {
-                int number = Integer.parseInt(ipArray[i]);
-                //判断每段数字是否都在0-255之间
-                if (number < 0 || number > 255) {
-                    return false;
-                }
-
-                // 忽略 127.0.0.1/8
-                if (i == 0 && number == 127) {
-                    return false;
-                }
-            } catch (Exception e) {
-                return false;
-            }
+    /**
+     * @return IpLiteral.RangeTable 默认地址段与用户追加的地址段，用户配置变化时重新解析
+     */
+    @NotNull
+    private IpLiteral.RangeTable getRanges() {
+        String source = customRanges != null ? customRanges : "";
+        CustomRanges custom = ranges;
+        if (!custom.source.equals(source)) {
+            custom = new CustomRanges(source, IpLiteral.parseRanges(source));
+            ranges = custom;
         }
+        return custom.table;
+    }
 
+    private static class CustomRanges {
+        private final String source;
+        private final IpLiteral.RangeTable table;
 
-        if ("255.255.255.255".equals(ip) ||  // 忽略 255.255.255.255
-            "0.0.0.0".equals(ip) ||  // 忽略 0.0.0.0
-            ip.startsWith("2.5.")  // // 忽略 2.5.x.x (OID)
-        ) {
-            return false;
+        CustomRanges(String source, IpLiteral.RangeTable table) {
+            this.source = source;
+            this.table = table;
         }
+    }
 
-        return true;
+    static boolean isSensitiveIp(String ip, IpLiteral.RangeTable ranges) {
+        IpLiteral.Category category = IpLiteral.classify(ip, ranges);
+        return category != null && IpLiteral.isSensitive(category);
     }
 }
@@ -1,5 +1,6 @@
 package com.zcy.zsec.codeinspect.lang.java.rule;
 
+import com.immomo.momosec.lang.MomoRuleDispatcher;
 import com.intellij.codeInsight.FileModificationService;
 import com.intellij.codeInsight.daemon.impl.actions.AddImportAction;
 import com.intellij.codeInspection.LocalQuickFix;
@@ -15,10 +16,10 @@ import com.intellij.psi.*;
 import com.intellij.psi.search.PsiShortNamesCache;
 import com.intellij.util.ObjectUtils;
 import com.zcy.zsec.codeinspect.lang.ZSecBaseLocalInspectionTool;
-import com.zcy.zsec.codeinspect.lang.java.util.ZSecExpressionUtils;
 import com.zcy.zsec.codeinspect.lang.InspectionBundle;
 import org.jetbrains.annotations.Nls;
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 
 /**
  * 来自于momo安全检测插件
@@ -37,21 +38,24 @@ public class ReplacePseudorandomGenerator extends ZSecBaseLocalInspectionTool {
     private final ReplacePseudorandomGeneratorQuickFix replacePseudorandomGeneratorQuickFix =
             new ReplacePseudorandomGeneratorQuickFix();
 
+    private static final String[] TRIGGER_TOKENS = {"Random"};
+
+    @Nullable
     @Override
-    public @NotNull PsiElementVisitor buildVisitor(@NotNull ProblemsHolder holder, boolean isOnTheFly) {
-        return new JavaElementVisitor() {
-            @Override
-            public void visitNewExpression(PsiNewExpression expression) {
-                if (ZSecExpressionUtils.hasFullQualifiedName(expression, "java.util.Random")
-                    || ZSecExpressionUtils.hasFullQualifiedName(expression, "scala.util.Random")
-                ) holder.registerProblem(
-                        expression,
-                        MESSAGE,
-                        ProblemHighlightType.GENERIC_ERROR_OR_WARNING,
-                        replacePseudorandomGeneratorQuickFix
-                );
-            }
-        };
+    protected String[] getTriggerTokens() {
+        return TRIGGER_TOKENS;
+    }
+
+    @Override
+    protected void registerHandlers(@NotNull MomoRuleDispatcher.HandlerTable table, @NotNull ProblemsHolder holder, boolean isOnTheFly) {
+        MomoRuleDispatcher.Handler<PsiNewExpression> handler = expression -> holder.registerProblem(
+                expression,
+                MESSAGE,
+                ProblemHighlightType.GENERIC_ERROR_OR_WARNING,
+                replacePseudorandomGeneratorQuickFix
+        );
+        table.onNew("java.util.Random", handler)
+             .onNew("scala.util.Random", handler);
     }
 
     public static class ReplacePseudorandomGeneratorQuickFix implements LocalQuickFix {
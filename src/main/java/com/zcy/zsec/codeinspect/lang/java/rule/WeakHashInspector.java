@@ -1,13 +1,14 @@
 package com.zcy.zsec.codeinspect.lang.java.rule;
 
+import com.immomo.momosec.lang.MomoRuleDispatcher;
 import com.intellij.codeInspection.ProblemHighlightType;
 import com.intellij.codeInspection.ProblemsHolder;
 import com.intellij.psi.*;
-import com.siyeh.ig.psiutils.MethodCallUtils;
 import com.zcy.zsec.codeinspect.lang.InspectionBundle;
 import com.zcy.zsec.codeinspect.lang.ZSecBaseLocalInspectionTool;
 import com.zcy.zsec.codeinspect.lang.java.util.ZSecExpressionUtils;
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 
 import java.util.HashSet;
 import java.util.Set;
@@ -37,73 +38,48 @@ public class WeakHashInspector extends ZSecBaseLocalInspectionTool {
         add("SHA_1");
     }};
 
-    @Override
-    public @NotNull PsiElementVisitor buildVisitor(@NotNull ProblemsHolder holder, boolean isOnTheFly) {
-        return new JavaElementVisitor() {
-            @Override
-            public void visitMethodCallExpression(PsiMethodCallExpression expression) {
-                String methodCallName = MethodCallUtils.getMethodName(expression);
-
-                PsiMethod method = expression.resolveMethod();
-                if (method == null) { return ; }
+    private static final String[] DigestUtilsWeakMethods = {
+        "getMd5Digest", "getMd2Digest", "md2", "md2Hex", "md5", "md5Hex",
+        "sha", "shaHex", "getShaDigest", "sha1", "sha1Hex", "getSha1Digest"
+    };
 
-                PsiClass containingClass = method.getContainingClass();
-                if (containingClass == null) { return ; }
+    private static final String[] TRIGGER_TOKENS = {"getInstance", "getDigest", "DigestUtils"};
 
-                String methodQualifiedName = containingClass.getQualifiedName();
+    @Nullable
+    @Override
+    protected String[] getTriggerTokens() {
+        return TRIGGER_TOKENS;
+    }
 
-                if ("java.security.MessageDigest".equals(methodQualifiedName) && "getInstance".equals(methodCallName)) {
-                    checkZeroArgs(expression);
-                } else if ("org.apache.commons.codec.digest.DigestUtils".equals(methodQualifiedName)) {
-                    if ("getDigest".equals(methodCallName)) {
-                        checkZeroArgs(expression);
-                    } else if (
-                            "getMd5Digest".equals(methodCallName) ||
-                            "getMd2Digest".equals(methodCallName) ||
-                            "md2".equals(methodCallName) ||
-                            "md2Hex".equals(methodCallName) ||
-                            "md5".equals(methodCallName) ||
-                            "md5Hex".equals(methodCallName) ||
-                            "sha".equals(methodCallName) ||
-                            "shaHex".equals(methodCallName) ||
-                            "getShaDigest".equals(methodCallName) ||
-                            "sha1".equals(methodCallName) ||
-                            "sha1Hex".equals(methodCallName) ||
-                            "getSha1Digest".equals(methodCallName)
-                    ) {
-                        registerProblem(expression);
-                    }
-                }
-            }
+    @Override
+    protected void registerHandlers(@NotNull MomoRuleDispatcher.HandlerTable table, @NotNull ProblemsHolder holder, boolean isOnTheFly) {
+        table.onCall("java.security.MessageDigest", "getInstance", expression -> checkZeroArgs(holder, expression))
+             .onCall("org.apache.commons.codec.digest.DigestUtils", "getDigest", expression -> checkZeroArgs(holder, expression))
+             .onNew("org.apache.commons.codec.digest.DigestUtils", expression -> checkZeroArgs(holder, expression));
+        for (String methodName : DigestUtilsWeakMethods) {
+            table.onCall("org.apache.commons.codec.digest.DigestUtils", methodName, expression -> registerProblem(holder, expression));
+        }
+    }
 
-            @Override
-            public void visitNewExpression(PsiNewExpression expression) {
-                if (ZSecExpressionUtils.hasFullQualifiedName(expression, "org.apache.commons.codec.digest.DigestUtils")) {
-                    checkZeroArgs(expression);
-                }
+    private static void checkZeroArgs(@NotNull ProblemsHolder holder, PsiCallExpression expression) {
+        PsiExpressionList argList = expression.getArgumentList();
+        if (argList == null) { return ; }
+        PsiExpression[] args = argList.getExpressions();
+        if (args.length > 0 && args[0] instanceof PsiLiteralExpression) {
+            String mdName = ZSecExpressionUtils.getLiteralInnerText(args[0]);
+            if (null != mdName && WeakHashNames.contains(mdName.toUpperCase())) {
+                registerProblem(holder, expression);
             }
-
-            private void checkZeroArgs(PsiCallExpression expression) {
-                PsiExpressionList argList = expression.getArgumentList();
-                if (argList == null) { return ; }
-                PsiExpression[] args = argList.getExpressions();
-                if (args.length > 0 && args[0] instanceof PsiLiteralExpression) {
-                    String mdName = ZSecExpressionUtils.getLiteralInnerText(args[0]);
-                    if (null != mdName && WeakHashNames.contains(mdName.toUpperCase())) {
-                        registerProblem(expression);
-                    }
-                }
-                else if (args.length > 0 && args[0] instanceof PsiReferenceExpression) {
-                    String mdName = ((PsiReferenceExpression)args[0]).getReferenceNameElement().getText();
-                    if (null != mdName && WeakHashNames.contains(mdName.toUpperCase())) {
-                        registerProblem(expression);
-                    }
-                }
+        }
+        else if (args.length > 0 && args[0] instanceof PsiReferenceExpression) {
+            String mdName = ((PsiReferenceExpression)args[0]).getReferenceNameElement().getText();
+            if (null != mdName && WeakHashNames.contains(mdName.toUpperCase())) {
+                registerProblem(holder, expression);
             }
+        }
+    }
 
-            private void registerProblem(PsiExpression expression) {
-                holder.registerProblem(expression, MESSAGE, ProblemHighlightType.GENERIC_ERROR_OR_WARNING);
-            }
-        };
+    private static void registerProblem(@NotNull ProblemsHolder holder, PsiExpression expression) {
+        holder.registerProblem(expression, MESSAGE, ProblemHighlightType.GENERIC_ERROR_OR_WARNING);
     }
 }
@@ -1,5 +1,8 @@
 package com.zcy.zsec.codeinspect.lang.java.rule;
 
+import com.immomo.momosec.lang.MomoRuleDispatcher;
+import com.immomo.momosec.lang.java.utils.MoXmlConfigSummary;
+import com.immomo.momosec.lang.java.utils.MoXmlFactorySpec;
 import com.intellij.codeInsight.daemon.impl.quickfix.ImportClassFix;
 import com.intellij.codeInsight.intention.QuickFixFactory;
 import com.intellij.codeInspection.LocalQuickFix;
@@ -12,19 +15,23 @@ import com.intellij.openapi.editor.Editor;
 import com.intellij.openapi.editor.EditorFactory;
 import com.intellij.openapi.project.Project;
 import com.intellij.psi.*;
-import com.siyeh.ig.psiutils.ExpressionUtils;
-import com.siyeh.ig.psiutils.MethodCallUtils;
-import com.zcy.zsec.codeinspect.lang.ZSecBaseFixElementWalkingVisitor;
+import com.intellij.ui.DocumentAdapter;
+import com.intellij.ui.components.JBScrollPane;
 import com.zcy.zsec.codeinspect.lang.ZSecBaseLocalInspectionTool;
 import com.zcy.zsec.codeinspect.lang.InspectionBundle;
 import com.zcy.zsec.codeinspect.lang.java.util.ZSecExpressionUtils;
 import org.jetbrains.annotations.Nls;
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 
+import javax.swing.*;
+import javax.swing.event.DocumentEvent;
+import java.awt.BorderLayout;
 import java.util.ArrayList;
-import java.util.HashMap;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
-import java.util.Map;
+import java.util.stream.Collectors;
 
 /**
  * 1010: XXE漏洞
@@ -48,95 +55,160 @@ public class XxeInspector extends ZSecBaseLocalInspectionTool {
     public static final String MESSAGE = InspectionBundle.message("xxe.inspector.msg");
     private static final String QUICK_FIX_NAME = InspectionBundle.message("xxe.inspector.fix");
 
+    private static final String DISALLOW_DOCTYPE_DECL = "\"http://apache.org/xml/features/disallow-doctype-decl\"";
+    private static final String ACCESS_EXTERNAL_DTD = "XMLConstants.ACCESS_EXTERNAL_DTD";
+    private static final String ACCESS_EXTERNAL_STYLESHEET = "XMLConstants.ACCESS_EXTERNAL_STYLESHEET";
+
+    /**
+     * 内置工厂的加固规格: 创建方式 -> 需要完成的配置 -> 修复语句 (见 MoXmlFactorySpec)
+     */
     public enum XmlFactory {
-        DOCUMENT_BUILDER_FACTORY,
-        SAX_PARSER_FACTORY,
-        SAX_TRANSFORMER_FACTORY,
-        SAX_BUILDER,
-        SAX_READER,
-        XML_READER_FACTORY,
-        SCHEMA_FACTORY,
-        XML_INPUT_FACTORY,
-        TRANSFORMER_FACTORY,
-        VALIDATOR_OF_SCHEMA,
+        DOCUMENT_BUILDER_FACTORY(MoXmlFactorySpec.ofCall("javax.xml.parsers.DocumentBuilderFactory", "newInstance", false,
+                "setFeature", DISALLOW_DOCTYPE_DECL, "true")),
+        SAX_PARSER_FACTORY(MoXmlFactorySpec.ofCall("javax.xml.parsers.SAXParserFactory", "newInstance", false,
+                "setFeature", DISALLOW_DOCTYPE_DECL, "true")),
+        SAX_TRANSFORMER_FACTORY(MoXmlFactorySpec.ofCall("javax.xml.transform.sax.SAXTransformerFactory", "newInstance", true,
+                "setAttribute", ACCESS_EXTERNAL_DTD, "\"\"", ACCESS_EXTERNAL_STYLESHEET, "\"\"")),
+        SAX_BUILDER(MoXmlFactorySpec.ofNew("org.jdom.input.SAXBuilder",
+                "setFeature", DISALLOW_DOCTYPE_DECL, "true")),
+        SAX_READER(MoXmlFactorySpec.ofNew("org.dom4j.io.SAXReader",
+                "setFeature", DISALLOW_DOCTYPE_DECL, "true")),
+        XML_READER_FACTORY(MoXmlFactorySpec.ofCall("org.xml.sax.helpers.XMLReaderFactory", "createXMLReader", false,
+                "setFeature", DISALLOW_DOCTYPE_DECL, "true")),
+        SCHEMA_FACTORY(MoXmlFactorySpec.ofCall("javax.xml.validation.SchemaFactory", "newInstance", false,
+                "setProperty", ACCESS_EXTERNAL_DTD, "\"\"", ACCESS_EXTERNAL_STYLESHEET, "\"\"")),
+        XML_INPUT_FACTORY(MoXmlFactorySpec.ofCall("javax.xml.stream.XMLInputFactory", "newFactory", false,
+                "setProperty", ACCESS_EXTERNAL_DTD, "\"\"", ACCESS_EXTERNAL_STYLESHEET, "\"\"")),
+        TRANSFORMER_FACTORY(MoXmlFactorySpec.ofCall("javax.xml.transform.TransformerFactory", "newInstance", true,
+                "setAttribute", ACCESS_EXTERNAL_DTD, "\"\"", ACCESS_EXTERNAL_STYLESHEET, "\"\"")),
+        VALIDATOR_OF_SCHEMA(MoXmlFactorySpec.ofCall("javax.xml.validation.Schema", "newValidator", false,
+                "setProperty", ACCESS_EXTERNAL_DTD, "\"\"", ACCESS_EXTERNAL_STYLESHEET, "\"\""));
+
+        private final MoXmlFactorySpec spec;
+
+        XmlFactory(MoXmlFactorySpec spec) {
+            this.spec = spec;
+        }
+
+        public MoXmlFactorySpec getSpec() {
+            return spec;
+        }
     }
 
+    private static final List<MoXmlFactorySpec> BUILTIN_SPECS = Collections.unmodifiableList(
+            Arrays.stream(XmlFactory.values()).map(XmlFactory::getSpec).collect(Collectors.toList()));
+
+    // 用户追加的工厂，格式见 MoXmlFactorySpec
+    public String customFactories = "";
+
+    private volatile CustomSpecs customSpecs = new CustomSpecs("", BUILTIN_SPECS);
+
     @Override
-    public @NotNull PsiElementVisitor buildVisitor(@NotNull ProblemsHolder holder, boolean isOnTheFly) {
-        return new JavaElementVisitor() {
+    public JComponent createOptionsPanel() {
+        JTextArea textArea = new JTextArea(customFactories, 6, 60);
+        textArea.getDocument().addDocumentListener(new DocumentAdapter() {
             @Override
-            public void visitMethodCallExpression(PsiMethodCallExpression expression) {
-                if (ZSecExpressionUtils.hasFullQualifiedName(expression, "javax.xml.parsers.DocumentBuilderFactory", "newInstance")) {
-                    commonExpressionCheck(expression, "setFeature", XmlFactory.DOCUMENT_BUILDER_FACTORY, false);
-                } else if (ZSecExpressionUtils.hasFullQualifiedName(expression, "javax.xml.parsers.SAXParserFactory", "newInstance")) {
-                    commonExpressionCheck(expression, "setFeature", XmlFactory.SAX_PARSER_FACTORY, false);
-                } else if (ZSecExpressionUtils.hasFullQualifiedName(expression, "javax.xml.transform.sax.SAXTransformerFactory", "newInstance")) {
-                    commonExpressionCheck(expression, "setAttribute", XmlFactory.SAX_TRANSFORMER_FACTORY, true);
-                } else if (ZSecExpressionUtils.hasFullQualifiedName(expression, "org.xml.sax.helpers.XMLReaderFactory", "createXMLReader")) {
-                    commonExpressionCheck(expression, "setFeature", XmlFactory.XML_READER_FACTORY, false);
-                } else if (ZSecExpressionUtils.hasFullQualifiedName(expression, "javax.xml.validation.SchemaFactory", "newInstance")) {
-                    commonExpressionCheck(expression, "setProperty", XmlFactory.SCHEMA_FACTORY, false);
-                } else if (ZSecExpressionUtils.hasFullQualifiedName(expression, "javax.xml.stream.XMLInputFactory", "newFactory")) {
-                    commonExpressionCheck(expression, "setProperty", XmlFactory.XML_INPUT_FACTORY, false);
-                } else if (ZSecExpressionUtils.hasFullQualifiedName(expression, "javax.xml.transform.TransformerFactory", "newInstance")) {
-                    commonExpressionCheck(expression, "setAttribute", XmlFactory.TRANSFORMER_FACTORY, true);
-                } else if (ZSecExpressionUtils.hasFullQualifiedName(expression, "javax.xml.validation.Schema", "newValidator")) {
-                    commonExpressionCheck(expression, "setProperty", XmlFactory.VALIDATOR_OF_SCHEMA, false);
-                }
+            protected void textChanged(@NotNull DocumentEvent e) {
+                customFactories = textArea.getText();
             }
+        });
+        JPanel panel = new JPanel(new BorderLayout());
+        panel.add(new JLabel(InspectionBundle.message("xxe.inspector.option.custom")), BorderLayout.NORTH);
+        panel.add(new JBScrollPane(textArea), BorderLayout.CENTER);
+        return panel;
+    }
 
-            @Override
-            public void visitNewExpression(PsiNewExpression expression) {
-                if (ZSecExpressionUtils.hasFullQualifiedName(expression, "org.jdom.input.SAXBuilder")) {
-                    commonExpressionCheck(expression, "setFeature", XmlFactory.SAX_BUILDER, false);
-                } else if (ZSecExpressionUtils.hasFullQualifiedName(expression, "org.dom4j.io.SAXReader")) {
-                    commonExpressionCheck(expression, "setFeature", XmlFactory.SAX_READER, false);
-                }
-            }
+    @Nullable
+    @Override
+    protected String[] getTriggerTokens() {
+        return getCustomSpecs().triggerTokens;
+    }
 
-            /**
-             * 根据不同情况对检测逻辑进行分流
-             * @param expression PsiCallExpression
-             * @param methodName String
-             * @param xmlFactory XmlFactory
-             * @param withTypeCast boolean 是否强转
-             */
-            private void commonExpressionCheck(PsiCallExpression expression, String methodName, XmlFactory xmlFactory, boolean withTypeCast) {
-//                赋值表达式
-//                判断父元素类型是否为赋值表达式
-//                或 类型转换符为true，expression父元素对象为强转表达式，expression父元素的父元素是赋值表达式
-                if (expression.getParent() instanceof PsiAssignmentExpression ||
-                    (withTypeCast &&
-                     expression.getParent() instanceof PsiTypeCastExpression &&
-                     expression.getParent().getParent() instanceof PsiAssignmentExpression)
-                ) {
-                    assignmentExpressionCheck(holder, expression, methodName, xmlFactory);
-                }
-//                本地变量
-//                判断父元素类型是否是本地变量
-//                或 类型转换符为true，expression父元素为强转表达式，expression父元素的父元素是本地变量
-                else if (expression.getParent() instanceof PsiLocalVariable ||
-                    (withTypeCast &&
-                     expression.getParent() instanceof PsiTypeCastExpression &&
-                     expression.getParent().getParent() instanceof PsiLocalVariable)
-                ) {
-                    localVariableCheck(holder, expression, methodName, xmlFactory);
-                }
-//                Field
-//                判断expression父元素是否是Field
-//                或 类型转换符为true，expression父元素为强转表达式，expression父元素的父元素是Field
-                else if (expression.getParent() instanceof PsiField ||
-                    (withTypeCast &&
-                     expression.getParent() instanceof PsiTypeCastExpression &&
-                     expression.getParent().getParent() instanceof PsiField)
-                ) {
-                    classFieldCheck(holder, expression, methodName, xmlFactory);
-                }
+    @Override
+    protected void registerHandlers(@NotNull MomoRuleDispatcher.HandlerTable table, @NotNull ProblemsHolder holder, boolean isOnTheFly) {
+        for (MoXmlFactorySpec spec : getSpecs()) {
+            if (spec.getMethodName() != null) {
+                table.onCall(spec.getQualifiedName(), spec.getMethodName(),
+                             expression -> commonExpressionCheck(holder, expression, spec));
+            } else {
+                table.onNew(spec.getQualifiedName(),
+                            expression -> commonExpressionCheck(holder, expression, spec));
             }
-        };
+        }
+    }
+
+    /**
+     * @return List<MoXmlFactorySpec> 内置工厂与用户追加的工厂，用户配置变化时重新解析
+     */
+    private List<MoXmlFactorySpec> getSpecs() {
+        return getCustomSpecs().specs;
     }
 
-    private void assignmentExpressionCheck(@NotNull ProblemsHolder holder, PsiCallExpression expression, String shouldUsedMethodName, XmlFactory xmlFactory) {
+    private CustomSpecs getCustomSpecs() {
+        String source = customFactories != null ? customFactories : "";
+        CustomSpecs custom = customSpecs;
+        if (!custom.source.equals(source)) {
+            List<MoXmlFactorySpec> specs = new ArrayList<>(BUILTIN_SPECS);
+            specs.addAll(MoXmlFactorySpec.parseAll(source));
+            custom = new CustomSpecs(source, Collections.unmodifiableList(specs));
+            customSpecs = custom;
+        }
+        return custom;
+    }
+
+    private static class CustomSpecs {
+        private final String source;
+        private final List<MoXmlFactorySpec> specs;
+        private final String[] triggerTokens;
+
+        CustomSpecs(String source, List<MoXmlFactorySpec> specs) {
+            this.source = source;
+            this.specs = specs;
+            this.triggerTokens = specs.stream().map(MoXmlFactorySpec::getTriggerToken).distinct().toArray(String[]::new);
+        }
+    }
+
+    /**
+     * 根据不同情况对检测逻辑进行分流
+     * @param holder ProblemsHolder
+     * @param expression PsiCallExpression
+     * @param spec MoXmlFactorySpec
+     */
+    private void commonExpressionCheck(@NotNull ProblemsHolder holder, PsiCallExpression expression, MoXmlFactorySpec spec) {
+        boolean withTypeCast = spec.isWithTypeCast();
+//            赋值表达式
+//            判断父元素类型是否为赋值表达式
+//            或 类型转换符为true，expression父元素对象为强转表达式，expression父元素的父元素是赋值表达式
+        if (expression.getParent() instanceof PsiAssignmentExpression ||
+            (withTypeCast &&
+             expression.getParent() instanceof PsiTypeCastExpression &&
+             expression.getParent().getParent() instanceof PsiAssignmentExpression)
+        ) {
+            assignmentExpressionCheck(holder, expression, spec);
+        }
+//            本地变量
+//            判断父元素类型是否是本地变量
+//            或 类型转换符为true，expression父元素为强转表达式，expression父元素的父元素是本地变量
+        else if (expression.getParent() instanceof PsiLocalVariable ||
+            (withTypeCast &&
+             expression.getParent() instanceof PsiTypeCastExpression &&
+             expression.getParent().getParent() instanceof PsiLocalVariable)
+        ) {
+            localVariableCheck(holder, expression, spec);
+        }
+//            Field
+//            判断expression父元素是否是Field
+//            或 类型转换符为true，expression父元素为强转表达式，expression父元素的父元素是Field
+        else if (expression.getParent() instanceof PsiField ||
+            (withTypeCast &&
+             expression.getParent() instanceof PsiTypeCastExpression &&
+             expression.getParent().getParent() instanceof PsiField)
+        ) {
+            classFieldCheck(holder, expression, spec);
+        }
+    }
+
+    private void assignmentExpressionCheck(@NotNull ProblemsHolder holder, PsiCallExpression expression, MoXmlFactorySpec spec) {
         PsiElement parent = expression.getParent();
         if (parent instanceof PsiTypeCastExpression) {
             parent = parent.getParent();
@@ -145,9 +217,8 @@ public class XxeInspector extends ZSecBaseLocalInspectionTool {
         PsiAssignmentExpression assignmentExpression = (PsiAssignmentExpression)parent;
 //        获取解析对象
         PsiElement resolvedElem = ((PsiReferenceExpression) assignmentExpression.getLExpression()).resolve();
-        DisableEntityElementVisitor visitor = new DisableEntityElementVisitor(shouldUsedMethodName, xmlFactory, resolvedElem);
 
-        if (checkVariableUseFix(assignmentExpression, resolvedElem, visitor)) {
+        if (MoXmlConfigSummary.isConfigured(assignmentExpression, resolvedElem, spec.getRequiredSettings())) {
             return ;
         }
 
@@ -155,19 +226,18 @@ public class XxeInspector extends ZSecBaseLocalInspectionTool {
                 expression,
                 MESSAGE,
                 ProblemHighlightType.GENERIC_ERROR_OR_WARNING,
-                new XxeInspectionQuickFix(xmlFactory, VulnElemType.ASSIGNMENT_EXPRESSION)
+                new XxeInspectionQuickFix(spec, VulnElemType.ASSIGNMENT_EXPRESSION)
         );
     }
 
-    private void localVariableCheck(@NotNull ProblemsHolder holder, PsiCallExpression expression, String shouldUsedMethodName, XmlFactory xmlFactory) {
+    private void localVariableCheck(@NotNull ProblemsHolder holder, PsiCallExpression expression, MoXmlFactorySpec spec) {
         PsiElement parent = expression.getParent();
         if (parent instanceof PsiTypeCastExpression) {
             parent = parent.getParent();
         }
 
         PsiLocalVariable localVariable = (PsiLocalVariable)parent;
-        DisableEntityElementVisitor visitor = new DisableEntityElementVisitor(shouldUsedMethodName, xmlFactory, localVariable);
-        if (checkVariableUseFix(localVariable, null, visitor)) {
+        if (MoXmlConfigSummary.isConfigured(localVariable, localVariable, spec.getRequiredSettings())) {
             return ;
         }
 
@@ -175,19 +245,18 @@ public class XxeInspector extends ZSecBaseLocalInspectionTool {
                 expression,
                 MESSAGE,
                 ProblemHighlightType.GENERIC_ERROR_OR_WARNING,
-                new XxeInspectionQuickFix(xmlFactory, VulnElemType.LOCAL_VARIABLE)
+                new XxeInspectionQuickFix(spec, VulnElemType.LOCAL_VARIABLE)
         );
     }
 
-    private void classFieldCheck(@NotNull ProblemsHolder holder, PsiCallExpression expression, String shouldUsedMethodName, XmlFactory xmlFactory) {
+    private void classFieldCheck(@NotNull ProblemsHolder holder, PsiCallExpression expression, MoXmlFactorySpec spec) {
         PsiElement parent  = expression.getParent();
         if (parent instanceof PsiTypeCastExpression) {
             parent = parent.getParent();
         }
 
         PsiField field = (PsiField) parent;
-        DisableEntityElementVisitor visitor = new DisableEntityElementVisitor(shouldUsedMethodName, xmlFactory, field);
-        if (checkVariableUseFix(null, field, visitor)) {
+        if (MoXmlConfigSummary.isConfigured(null, field, spec.getRequiredSettings())) {
             return ;
         }
 
@@ -195,123 +264,21 @@ public class XxeInspector extends ZSecBaseLocalInspectionTool {
                 expression,
                 MESSAGE,
                 ProblemHighlightType.GENERIC_ERROR_OR_WARNING,
-                new XxeInspectionQuickFix(xmlFactory, VulnElemType.CLASS_FIELD)
+                new XxeInspectionQuickFix(spec, VulnElemType.CLASS_FIELD)
         );
     }
 
-    private static class DisableEntityElementVisitor extends ZSecBaseFixElementWalkingVisitor {
-
-        private final String shouldUsedMethodName;
-        private final XmlFactory xmlFactory;
-        private final PsiElement refVar;
-        private Map<String, Boolean> needSatisfiedRules;
-
-        /**
-         *
-         * @param shouldUsedMethodName String
-         * @param xmlFactory XmlFactory
-         * @param refVar PsiElement
-         */
-        public DisableEntityElementVisitor(String shouldUsedMethodName, XmlFactory xmlFactory, PsiElement refVar) {
-            this.shouldUsedMethodName = shouldUsedMethodName;
-            this.xmlFactory = xmlFactory;
-            this.refVar = refVar;
-
-//            根据情况确定避免规则
-            if (xmlFactory.equals(XmlFactory.DOCUMENT_BUILDER_FACTORY) ||
-                xmlFactory.equals(XmlFactory.SAX_PARSER_FACTORY) ||
-                xmlFactory.equals(XmlFactory.SAX_BUILDER) ||
-                xmlFactory.equals(XmlFactory.SAX_READER) ||
-                xmlFactory.equals(XmlFactory.XML_READER_FACTORY)
-            ) {
-                this.needSatisfiedRules = new HashMap<String, Boolean>() {{
-                   put("http://apache.org/xml/features/disallow-doctype-decl", false);
-                }};
-            } else if (xmlFactory.equals(XmlFactory.SAX_TRANSFORMER_FACTORY) ||
-                xmlFactory.equals(XmlFactory.SCHEMA_FACTORY) ||
-                xmlFactory.equals(XmlFactory.XML_INPUT_FACTORY) ||
-                xmlFactory.equals(XmlFactory.TRANSFORMER_FACTORY) ||
-                xmlFactory.equals(XmlFactory.VALIDATOR_OF_SCHEMA)
-            ) {
-                this.needSatisfiedRules = new HashMap<String, Boolean>() {{
-                   put("XMLConstants.ACCESS_EXTERNAL_DTD", false);
-                   put("XMLConstants.ACCESS_EXTERNAL_STYLESHEET", false);
-               }};
-            }
-        }
-
-//        遍历当前作用域中所有的methodcall
-        @Override
-        public void visitElement(PsiElement element) {
-            if (element instanceof PsiMethodCallExpression) {
-                PsiMethodCallExpression methodCallExpression = (PsiMethodCallExpression)element;
-                // 判断本轮是否是shouldUsedMethodName中标记的方法
-                if (shouldUsedMethodName.equals(MethodCallUtils.getMethodName(methodCallExpression))) {
-                    PsiExpressionList args = methodCallExpression.getArgumentList();
-                    // 辨别是否是双入参
-                    if (!(args.getExpressionCount() == 2)) { return ; }
-                    // 根据 xmlFactory 类型判断参数值
-                    if (xmlFactory.equals(XmlFactory.DOCUMENT_BUILDER_FACTORY) ||
-                        xmlFactory.equals(XmlFactory.SAX_PARSER_FACTORY) ||
-                        xmlFactory.equals(XmlFactory.SAX_BUILDER) ||
-                        xmlFactory.equals(XmlFactory.SAX_READER) ||
-                        xmlFactory.equals(XmlFactory.XML_READER_FACTORY)
-                    ) {
-                        if (ExpressionUtils.isLiteral(args.getExpressions()[0], "http://apache.org/xml/features/disallow-doctype-decl") &&
-                            ExpressionUtils.isLiteral(args.getExpressions()[1], Boolean.TRUE)
-                        ) {
-                            this.needSatisfiedRules.replace("http://apache.org/xml/features/disallow-doctype-decl", true);
-                        } else {
-                            return ;
-                        }
-                    } else if (xmlFactory.equals(XmlFactory.SAX_TRANSFORMER_FACTORY) ||
-                        xmlFactory.equals(XmlFactory.SCHEMA_FACTORY) ||
-                        xmlFactory.equals(XmlFactory.XML_INPUT_FACTORY) ||
-                        xmlFactory.equals(XmlFactory.TRANSFORMER_FACTORY) ||
-                        xmlFactory.equals(XmlFactory.VALIDATOR_OF_SCHEMA)
-                    ) {
-                        // 判断参数是否是引用类型
-                        if (!(args.getExpressions()[0] instanceof PsiReferenceExpression)) { return ; }
-                        // 确认needSatisfiedRules中第一个参数是否符合
-                        if (args.getExpressions()[0].textMatches("XMLConstants.ACCESS_EXTERNAL_DTD") &&
-                            ExpressionUtils.isEmptyStringLiteral(args.getExpressions()[1])
-                        ) {
-                            this.needSatisfiedRules.replace("XMLConstants.ACCESS_EXTERNAL_DTD", true);
-                        // 确认needSatisfiedRules中第二个参数是否符合
-                        } else if (args.getExpressions()[0].textMatches("XMLConstants.ACCESS_EXTERNAL_STYLESHEET") &&
-                            ExpressionUtils.isEmptyStringLiteral(args.getExpressions()[1])
-                        ) {
-                            this.needSatisfiedRules.replace("XMLConstants.ACCESS_EXTERNAL_STYLESHEET", true);
-                        } else {
-                            return ;
-                        }
-                    } else { return ; }
-
-                    PsiExpression refQualifier = methodCallExpression.getMethodExpression().getQualifierExpression();
-//                    校验refVar与methodCallExpression是否相同，所有需要设置的属性是都都已设置
-                    if (refQualifier != null &&
-                        refQualifier.getReference() != null &&
-                        refVar.isEquivalentTo(refQualifier.getReference().resolve()) &&
-                        this.needSatisfiedRules.values().stream().allMatch(Boolean::booleanValue)
-                    ) {
-                        this.setFix(true);
-                        this.stopWalking();
-                        return;
-                    }
-                }
-                return ; // 停止继续 walking 当前的 methodcall
-            }
-            super.visitElement(element);//继续遍历
-        }
-    }
-
     public static class XxeInspectionQuickFix implements LocalQuickFix {
 
-        private final XmlFactory xmlFactory;
+        private final MoXmlFactorySpec spec;
         private final VulnElemType vulnElemType;
 
         public XxeInspectionQuickFix(XmlFactory xmlFactory, VulnElemType vulnElemType) {
-            this.xmlFactory = xmlFactory;
+            this(xmlFactory.getSpec(), vulnElemType);
+        }
+
+        public XxeInspectionQuickFix(MoXmlFactorySpec spec, VulnElemType vulnElemType) {
+            this.spec = spec;
             this.vulnElemType = vulnElemType;
         }
 
@@ -345,28 +312,7 @@ public class XxeInspector extends ZSecBaseLocalInspectionTool {
             PsiElementFactory factory = JavaPsiFacade.getElementFactory(project);
 
             // 生成待插入的语句内容
-            List<String> blockTextes = new ArrayList<>();
-            if (xmlFactory.equals(XmlFactory.DOCUMENT_BUILDER_FACTORY) ||
-                xmlFactory.equals(XmlFactory.SAX_PARSER_FACTORY) ||
-                xmlFactory.equals(XmlFactory.SAX_BUILDER) ||
-                xmlFactory.equals(XmlFactory.SAX_READER) ||
-                xmlFactory.equals(XmlFactory.XML_READER_FACTORY)
-            ) {
-                blockTextes.add(varName + ".setFeature(\"http://apache.org/xml/features/disallow-doctype-decl\", true);");
-            } else if (
-                xmlFactory.equals(XmlFactory.SAX_TRANSFORMER_FACTORY) ||
-                xmlFactory.equals(XmlFactory.TRANSFORMER_FACTORY)
-            ) {
-                blockTextes.add(varName+".setAttribute(XMLConstants.ACCESS_EXTERNAL_DTD, \"\");");
-                blockTextes.add(varName+".setAttribute(XMLConstants.ACCESS_EXTERNAL_STYLESHEET, \"\");");
-            } else if (
-                xmlFactory.equals(XmlFactory.SCHEMA_FACTORY) ||
-                xmlFactory.equals(XmlFactory.XML_INPUT_FACTORY) ||
-                xmlFactory.equals(XmlFactory.VALIDATOR_OF_SCHEMA)
-            ) {
-                blockTextes.add(varName+".setProperty(XMLConstants.ACCESS_EXTERNAL_DTD, \"\");");
-                blockTextes.add(varName+".setProperty(XMLConstants.ACCESS_EXTERNAL_STYLESHEET, \"\");");
-            }
+            List<String> blockTextes = spec.getFixStatements(varName);
             if (blockTextes.size() == 0) { return ; }
 
             if (VulnElemType.LOCAL_VARIABLE.equals(vulnElemType) ||
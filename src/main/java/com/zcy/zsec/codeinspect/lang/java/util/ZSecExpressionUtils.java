@@ -1,8 +1,8 @@
 package com.zcy.zsec.codeinspect.lang.java.util;
 
+import com.immomo.momosec.lang.java.utils.MoResolveCache;
+import com.immomo.momosec.lang.java.utils.MoStringValue;
 import com.intellij.psi.*;
-import com.intellij.psi.util.PsiUtil;
-import com.intellij.psi.util.TypeConversionUtil;
 import com.siyeh.ig.psiutils.ExpressionUtils;
 import com.siyeh.ig.psiutils.MethodCallUtils;
 import org.jetbrains.annotations.Nullable;
@@ -38,7 +38,7 @@ public class ZSecExpressionUtils {
             return false;
         }
 
-        PsiMethod method = methodCall.resolveMethod();
+        PsiMethod method = MoResolveCache.resolveMethod(methodCall);
         if (method == null) { return false; }
 
         PsiClass containingClass = method.getContainingClass();
@@ -66,6 +66,7 @@ public class ZSecExpressionUtils {
      * (2) 基础类型 / 枚举类型
      * (3) field 字段
      * @param expression PsiExpression
+     * 折叠规则与缓存见 MoStringValue
      * @param force boolean 强制转换为表达式字面值
      * @return String
      */
@@ -75,49 +76,8 @@ public class ZSecExpressionUtils {
             return null;
         }
 
-        String value = getLiteralInnerText(expression);
-
-        if (value == null && (
-                TypeConversionUtil.isPrimitiveAndNotNull(expression.getType()) ||
-                        PsiUtil.isConstantExpression(expression) &&
-                                !(expression instanceof PsiPolyadicExpression)
-        )) {
-            value = expression.getText();
-        }
-
-        if (value == null && expression instanceof PsiReferenceExpression) {
-            PsiElement resolve = ((PsiReferenceExpression) expression).resolve();
-            if (resolve instanceof PsiField) {
-                // 对于 field 可不区分force，field值不是Text时，直接用field变量名
-                PsiExpression initializer = ((PsiField) resolve).getInitializer();
-                if (initializer != null) {
-                    value = getText(initializer, false);
-                }
-                if (value == null) {
-                    value = ((PsiField) resolve).getName();
-                }
-            }
-        }
-
-        if (value == null && expression instanceof PsiPolyadicExpression) {
-            StringBuilder sb = new StringBuilder();
-            for(PsiExpression operand : ((PsiPolyadicExpression) expression).getOperands()) {
-                String text = getText(operand, force);
-                if (text == null) {
-                    sb.setLength(0);
-                    break;
-                }
-                sb.append(text);
-            }
-            if (sb.length() != 0) {
-                value = sb.toString();
-            }
-        }
-
-        if (force && value == null) {
-            value = expression.getText();
-        }
-        return value;
+        MoStringValue value = MoStringValue.of(expression);
+        return value.isExact() ? value.getExact() : force ? value.getFolded() : null;
     }
 
     /**
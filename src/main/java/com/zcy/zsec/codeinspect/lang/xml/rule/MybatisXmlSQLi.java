@@ -1,5 +1,7 @@
 package com.zcy.zsec.codeinspect.lang.xml.rule;
 
+import com.immomo.momosec.index.MybatisMapperIndex;
+import com.immomo.momosec.index.SinkTokenIndex;
 import com.intellij.codeInspection.LocalQuickFix;
 import com.intellij.codeInspection.ProblemDescriptor;
 import com.intellij.codeInspection.ProblemHighlightType;
@@ -8,7 +10,6 @@ import com.intellij.lang.ASTFactory;
 import com.intellij.openapi.project.Project;
 import com.intellij.psi.*;
 import com.intellij.psi.xml.*;
-import com.intellij.xml.util.XmlUtil;
 import com.zcy.zsec.codeinspect.lang.InspectionBundle;
 import com.zcy.zsec.codeinspect.lang.ZSecBaseLocalInspectionTool;
 import com.zcy.zsec.util.SQLi;
@@ -16,6 +17,7 @@ import com.zcy.zsec.util.Str;
 import org.apache.commons.lang3.StringUtils;
 import org.jetbrains.annotations.Nls;
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 
 import java.util.Arrays;
 import java.util.HashSet;
@@ -46,34 +48,30 @@ public class MybatisXmlSQLi extends ZSecBaseLocalInspectionTool {
 
     private final MybatisXmlSQLiQuickFix mybatisXmlSQLiQuickFix = new MybatisXmlSQLiQuickFix();
 
+    private static final String[] TRIGGER_TOKENS = {SinkTokenIndex.DOLLAR_BRACE};
+
+    @Nullable
+    @Override
+    protected String[] getTriggerTokens() {
+        return TRIGGER_TOKENS;
+    }
+
     @NotNull
     @Override
     public PsiElementVisitor buildVisitor(@NotNull ProblemsHolder holder, boolean isOnTheFly) {
+//        判断是否是mybatis配置文件，拼接点及其上下文由索引给出
+        MybatisMapperIndex.Mapper mapper = MybatisMapperIndex.getMapper(holder.getFile());
+        if (mapper == null) {
+            return PsiElementVisitor.EMPTY_VISITOR;
+        }
         return new XmlElementVisitor() {
-//            XML 文字内容触发器；标签内的文字内容
+//            XML 文字内容触发器；标签内的文字内容，最外层以及sql、mapper标签不进行检测
             @Override
             public void visitXmlText(XmlText text) {
-//                最外层以及sql、mapper标签不进行检测
-                if (text.getParentTag() != null &&
-                        ("sql".equals(text.getParentTag().getName()) || "mapper".equals(text.getParentTag().getName()) )
-                ) return;
-
-                XmlDocument document = XmlUtil.getContainingFile(text).getDocument();
-                if (document == null) return;
-
-                String dtd = XmlUtil.getDtdUri(document);
-//                判断是否是mybatis配置文件
-                if (dtd == null || !(dtd.contains("mybatis.org") && dtd.contains("mapper.dtd"))) return;
-
-                String _text = text.getValue();
-                if (_text.isEmpty() || !_text.contains("${")) return;
-
-                Matcher matcher = dollarVarPattern.matcher(_text);
-                int offset = 0;
-                while (matcher.find(offset)) {
-                    String prefix = _text.substring(0, matcher.start());
-                    String var    = matcher.group(1);
-                    String suffix = _text.substring(matcher.end());
+                for (MybatisMapperIndex.Site site : mapper.getSites(text)) {
+                    String prefix = site.getPrefix();
+                    String var    = site.getVar();
+                    String suffix = site.getSuffix();
 
                     if (!ignorePosition(prefix, var, suffix) && orderByPosition(prefix, var, suffix)) {
                         holder.registerProblem(text, MESSAGE, ProblemHighlightType.GENERIC_ERROR_OR_WARNING);
@@ -86,7 +84,6 @@ public class MybatisXmlSQLi extends ZSecBaseLocalInspectionTool {
 //                        holder.registerProblem(text, MESSAGE, ProblemHighlightType.GENERIC_ERROR_OR_WARNING);
                         break;
                     }
-                    offset = matcher.end();
                 }
             }
         };
@@ -109,6 +106,9 @@ public class MybatisXmlSQLi extends ZSecBaseLocalInspectionTool {
                 .map(String::trim)
                 .filter(item -> !item.isEmpty())
                 .collect(Collectors.toList());
+        if (fragments.size() < 2) {
+            return false;
+        }
         String checkStr = fragments.get(fragments.size()-2) + fragments.get(fragments.size()-1);
         return orderByVarName.contains(checkStr.toLowerCase());
     }
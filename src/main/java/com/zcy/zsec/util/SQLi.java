@@ -21,10 +21,8 @@ package com.zcy.zsec.util;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
-import java.util.Arrays;
 import java.util.List;
 import java.util.regex.Pattern;
-import java.util.stream.Collectors;
 
 public class SQLi {
 
@@ -55,7 +53,7 @@ public class SQLi {
         return false;
     }
 
-//   只进行了小写判断，判断逻辑存在一定的缺陷
+//   关键词按小写比较，判断逻辑存在一定的缺陷
     /**
      * 判断SQL拼接点的字符串是否有SQL注入风险
      * @param prefix String
@@ -64,55 +62,120 @@ public class SQLi {
      * @return boolean
      */
     public static boolean hasVulOnSQLJoinStr(@NotNull String prefix, @Nullable String var, @Nullable String suffix) {
-//        拆分语句为单个关键词
-        List<String> fragments = Arrays.stream(prefix.toLowerCase().split("[\\s|(]+"))
-                .map(String::trim)
-                .filter(item -> !item.isEmpty())
-                .collect(Collectors.toList());
-        int seg_size = fragments.size();
-        if (seg_size == 0 ||
-            fragments.get(seg_size - 1).trim().endsWith("=") ||
-            fragments.get(seg_size - 1).trim().endsWith(">=") ||
-            fragments.get(seg_size - 1).trim().endsWith("<=")
-        ) {
-            return true;
-        }
+//        从末尾向前逐个取出关键词 (以空白、| 、( 分隔)，只扫描到能做出判断的位置，不拆分整个语句
+        boolean isLastFragment = true;
+        int end = prefix.length();
+        while (true) {
+            while (end > 0 && isSeparator(prefix.charAt(end - 1))) {
+                end--;
+            }
+            if (end == 0) {
+                return true;
+            }
+            int start = end;
+            while (start > 0 && !isSeparator(prefix.charAt(start - 1))) {
+                start--;
+            }
+
+            int fragStart = start;
+            int fragEnd = end;
+            end = start;
+            while (fragStart < fragEnd && prefix.charAt(fragStart) <= ' ') {
+                fragStart++;
+            }
+            while (fragEnd > fragStart && prefix.charAt(fragEnd - 1) <= ' ') {
+                fragEnd--;
+            }
+            if (fragStart == fragEnd) {
+                continue;
+            }
 
-        for(int i = seg_size - 1; i >= 0; i--) {
-            String frag = fragments.get(i);
-            if (frag.equals("limit") ||
-                frag.equals("by") ||
-                frag.equals("having")
+//            最后一个关键词以 =、>=、<= 结尾
+            if (isLastFragment) {
+                if (prefix.charAt(fragEnd - 1) == '=') {
+                    return true;
+                }
+                isLastFragment = false;
+            }
+
+            if (isKeyword(prefix, fragStart, fragEnd, "limit") ||
+                isKeyword(prefix, fragStart, fragEnd, "by") ||
+                isKeyword(prefix, fragStart, fragEnd, "having")
             ) {
                 continue;
             }
 
 //            如果以where、set结尾，判断输入关键词后是否紧跟=、>、<
-            if (frag.equals("where") || frag.equals("set")) {
-                if (suffix != null && (
-                    suffix.trim().startsWith("=") ||
-                    suffix.trim().startsWith(">") ||
-                    suffix.trim().startsWith("<")
-                )) {
-                    return false;
+            if (isKeyword(prefix, fragStart, fragEnd, "where") || isKeyword(prefix, fragStart, fragEnd, "set")) {
+                if (suffix != null) {
+                    char first = firstNonBlankChar(suffix);
+                    if (first == '=' || first == '>' || first == '<') {
+                        return false;
+                    }
                 }
                 return true;
             }
 
 //            如果输入关键字前为values则存在风险
-            if (frag.equals("values")) {
+            if (isKeyword(prefix, fragStart, fragEnd, "values")) {
                 return true;
             }
 
-            if (frag.equals("from") ||
-                frag.equals("into") ||
-                frag.equals("join") ||
-                frag.equals("select") ||
-                frag.equals("update")
+            if (isKeyword(prefix, fragStart, fragEnd, "from") ||
+                isKeyword(prefix, fragStart, fragEnd, "into") ||
+                isKeyword(prefix, fragStart, fragEnd, "join") ||
+                isKeyword(prefix, fragStart, fragEnd, "select") ||
+                isKeyword(prefix, fragStart, fragEnd, "update")
             ) {
                 return false;
             }
         }
+    }
+
+    /**
+     * 关键词分隔符，与正则 [\\s|(] 一致
+     */
+    private static boolean isSeparator(char c) {
+        switch (c) {
+            case ' ': case '\t': case '\n': case '\u000B': case '\f': case '\r':
+            case '|': case '(':
+                return true;
+            default:
+                return false;
+        }
+    }
+
+    /**
+     * prefix[start, end) 转小写后是否等于关键词 (关键词为小写)，逐字符比较，不生成小写副本
+     * 关键词均为 ASCII，只需折叠 A-Z；非 ASCII 字符转小写后不会等于这些关键词中的字符
+     */
+    private static boolean isKeyword(@NotNull String prefix, int start, int end, @NotNull String keyword) {
+        if (end - start != keyword.length()) {
+            return false;
+        }
+        for (int i = 0; i < keyword.length(); i++) {
+            char c = prefix.charAt(start + i);
+            if (c >= 'A' && c <= 'Z') {
+                c = (char) (c + ('a' - 'A'));
+            }
+            if (c != keyword.charAt(i)) {
+                return false;
+            }
+        }
         return true;
     }
+
+    /**
+     * 与 String.trim() 一致，跳过开头 <= ' ' 的字符
+     * @return char 第一个非空白字符，不存在时返回 0
+     */
+    private static char firstNonBlankChar(@NotNull String s) {
+        for (int i = 0; i < s.length(); i++) {
+            char c = s.charAt(i);
+            if (c > ' ') {
+                return c;
+            }
+        }
+        return 0;
+    }
 }
@@ -0,0 +1,69 @@
+/*
+ * Copyright 2020 momosecurity.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.immomo.momosec;
+
+import com.immomo.momosec.utils.RegexDosAnalyzer;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class RegexDosVerdictServiceTest {
+
+    @Test
+    public void testStateRoundTrip() {
+        RegexDosVerdictService service = new RegexDosVerdictService();
+        Assert.assertNull(service.analyze("^1[3-9]\\d{9}$"));
+        RegexDosAnalyzer.Result result = service.analyze("^([a-z]+)+$");
+        Assert.assertNotNull(result);
+        service.analyze("bad\u0000regex");
+
+        RegexDosVerdictService restored = new RegexDosVerdictService();
+        restored.loadState(service.getState());
+        Assert.assertEquals(2, restored.size());
+
+        RegexDosAnalyzer.Result cached = restored.analyze("^([a-z]+)+$");
+        Assert.assertNotNull(cached);
+        Assert.assertEquals(result.getKind(), cached.getKind());
+        Assert.assertEquals(result.getStart(), cached.getStart());
+        Assert.assertEquals(result.getEnd(), cached.getEnd());
+        Assert.assertNull(restored.analyze("^1[3-9]\\d{9}$"));
+    }
+
+    @Test
+    public void testFindRoundTrip() {
+        RegexDosVerdictService service = new RegexDosVerdictService();
+        Assert.assertNotNull(service.analyze("\\s*,\\s*,?\\s*"));
+        Assert.assertNull(service.analyze("\\s*,\\s*,?\\s*", true));
+
+        RegexDosVerdictService restored = new RegexDosVerdictService();
+        restored.loadState(service.getState());
+        Assert.assertEquals(2, restored.size());
+        Assert.assertNotNull(restored.analyze("\\s*,\\s*,?\\s*"));
+        Assert.assertNull(restored.analyze("\\s*,\\s*,?\\s*", true));
+        Assert.assertEquals(2, restored.size());
+    }
+
+    @Test
+    public void testDropStaleVersion() {
+        RegexDosVerdictService service = new RegexDosVerdictService();
+        service.analyze("^([a-z]+)+$");
+        RegexDosVerdictService.VerdictState state = service.getState();
+        state.version = RegexDosVerdictService.VERSION + 1;
+
+        RegexDosVerdictService restored = new RegexDosVerdictService();
+        restored.loadState(state);
+        Assert.assertEquals(0, restored.size());
+    }
+}
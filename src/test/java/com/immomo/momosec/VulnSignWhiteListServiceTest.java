@@ -0,0 +1,59 @@
+/*
+ * Copyright 2020 momosecurity.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.immomo.momosec;
+
+import com.immomo.momosec.utils.IntHashSet;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+public class VulnSignWhiteListServiceTest {
+
+    @Test
+    public void testParse() {
+        IntHashSet signs = parse(
+                "# triaged false positives\n" +
+                "123456\n" +
+                "  -987654321  # with comment\r\n" +
+                "\n" +
+                "0xFFFFFFFF\n" +
+                "-2147483648\n" +
+                "not a sign\n" +
+                "12ab\n" +
+                "4294967296\n" +
+                "0"
+        );
+        Assert.assertEquals(5, signs.size());
+        Assert.assertTrue(signs.contains(123456));
+        Assert.assertTrue(signs.contains(-987654321));
+        Assert.assertTrue(signs.contains(-1));
+        Assert.assertTrue(signs.contains(Integer.MIN_VALUE));
+        Assert.assertTrue(signs.contains(0));
+        Assert.assertFalse(signs.contains(12));
+    }
+
+    @Test
+    public void testParseEmpty() {
+        Assert.assertTrue(parse("").isEmpty());
+        Assert.assertTrue(parse("# nothing\n\n").isEmpty());
+    }
+
+    private static IntHashSet parse(String content) {
+        return VulnSignWhiteListService.parse(ByteBuffer.wrap(content.getBytes(StandardCharsets.UTF_8)));
+    }
+}
@@ -23,4 +23,10 @@ public class HardcodedCredentialsTest extends MomoJavaCodeInsightFixtureTestCase
     public void testIfFindAllVulns() {
         doTest(new HardcodedCredentials(), prefix + "Vuln.java");
     }
+
+    public void testCustomKeywords() {
+        HardcodedCredentials inspection = new HardcodedCredentials();
+        inspection.customKeywords = "accessKey, sk";
+        doTest(inspection, prefix + "VulnCustomKeywords.java");
+    }
 }
@@ -23,4 +23,10 @@ public class HardcodedIpTest extends MomoJavaCodeInsightFixtureTestCase {
     public void testIfFindAllVulns() {
         doTest(new HardcodedIp(), prefix + "Vuln.java");
     }
+
+    public void testCustomRanges() {
+        HardcodedIp inspection = new HardcodedIp();
+        inspection.customRanges = "100.100.0.0/16 documentation\n172.16.0.0/12 loopback";
+        doTest(inspection, prefix + "VulnCustomRanges.java");
+    }
 }
@@ -54,6 +54,15 @@ public class XxeInspectorTest extends MomoJavaCodeInsightFixtureTestCase {
         doTest(new XxeInspector(), dirPrefix + "MultiFixStatementVuln.java");
     }
 
+    public void testCustomFactoryVulns() {
+        myFixture.copyFileToProject(dirPrefix + "stub/WstxInputFactory.java");
+
+        XxeInspector inspector = new XxeInspector();
+        inspector.customFactories = "# Woodstox\n" +
+                "com.ctc.wstx.stax.WstxInputFactory setProperty WstxInputFactory.SUPPORT_DTD=false\n";
+        doTest(inspector, dirPrefix + "CustomFactoryVulns.java");
+    }
+
     public void testDocumentBuilderFactoryLocalVuln() {
         testQuickFixEntityInLocalVariable(
                 "DocumentBuilderFactory dbf = DocumentBuilderFactory.newInstance();",
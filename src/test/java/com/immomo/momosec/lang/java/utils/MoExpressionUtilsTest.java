@@ -125,6 +125,12 @@ public class MoExpressionUtilsTest extends MomoJavaCodeInsightFixtureTestCase {
         actual = getLastPolyadicString(testFile, "polyadicWithStringBuilder");
         Assert.assertEquals("select * from T where id in <not Literal>", actual);
 
+        actual = getLastPolyadicString(testFile, "polyadicWithConstStringBuilder");
+        Assert.assertEquals("select * from T where id in sb", actual);
+
+        actual = getLastPolyadicString(testFile, "polyadicBeforeVarAssign");
+        Assert.assertEquals("select * from T where", actual);
+
         actual = getLastPolyadicString(testFile, "ignore");
         Assert.assertEquals("select * from T where", actual);
     }
@@ -147,9 +153,14 @@ public class MoExpressionUtilsTest extends MomoJavaCodeInsightFixtureTestCase {
         assert method != null;
         assert method.getBody() != null;
         PsiStatement[] statements = method.getBody().getStatements();
-        assert statements[statements.length-1] instanceof PsiDeclarationStatement;
-
-        PsiDeclarationStatement sqlDeclaration = (PsiDeclarationStatement)statements[statements.length-1];
+        // 取最后一个声明语句，其后的语句用于检查位于引用点之后的定义点
+        PsiDeclarationStatement sqlDeclaration = null;
+        for (int i = statements.length - 1; i >= 0 && sqlDeclaration == null; i--) {
+            if (statements[i] instanceof PsiDeclarationStatement) {
+                sqlDeclaration = (PsiDeclarationStatement)statements[i];
+            }
+        }
+        assert sqlDeclaration != null;
         assert sqlDeclaration.getDeclaredElements()[0] instanceof PsiLocalVariable;
         PsiLocalVariable sqlLocalVariable = (PsiLocalVariable)sqlDeclaration.getDeclaredElements()[0];
 
@@ -0,0 +1,91 @@
+/*
+ * Copyright 2020 momosecurity.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.immomo.momosec.lang.java.utils;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+public class MoXmlFactorySpecTest {
+
+    @Test
+    public void testBuiltinSpec() {
+        MoXmlFactorySpec spec = MoXmlFactorySpec.ofCall("javax.xml.transform.TransformerFactory", "newInstance", true,
+                "setAttribute", "XMLConstants.ACCESS_EXTERNAL_DTD", "\"\"", "XMLConstants.ACCESS_EXTERNAL_STYLESHEET", "\"\"");
+        Assert.assertEquals("newInstance", spec.getTriggerToken());
+        Assert.assertTrue(spec.isWithTypeCast());
+        Assert.assertEquals(Arrays.asList(
+                new MoXmlConfigSummary.Setting("setAttribute", "XMLConstants.ACCESS_EXTERNAL_DTD", "\"\""),
+                new MoXmlConfigSummary.Setting("setAttribute", "XMLConstants.ACCESS_EXTERNAL_STYLESHEET", "\"\"")
+        ), spec.getRequiredSettings());
+        Assert.assertEquals(Arrays.asList(
+                "tf.setAttribute(XMLConstants.ACCESS_EXTERNAL_DTD, \"\");",
+                "tf.setAttribute(XMLConstants.ACCESS_EXTERNAL_STYLESHEET, \"\");"
+        ), spec.getFixStatements("tf"));
+
+        MoXmlFactorySpec reader = MoXmlFactorySpec.ofNew("org.dom4j.io.SAXReader",
+                "setFeature", "\"http://apache.org/xml/features/disallow-doctype-decl\"", "true");
+        Assert.assertNull(reader.getMethodName());
+        Assert.assertEquals("SAXReader", reader.getTriggerToken());
+        Assert.assertEquals(Collections.singletonList("reader.setFeature(\"http://apache.org/xml/features/disallow-doctype-decl\", true);"),
+                reader.getFixStatements("reader"));
+    }
+
+    @Test
+    public void testParse() {
+        List<MoXmlFactorySpec> specs = MoXmlFactorySpec.parseAll(
+                "# comment\n" +
+                "\n" +
+                "  com.ctc.wstx.stax.WstxInputFactory   setProperty XMLInputFactory.SUPPORT_DTD=false  \n" +
+                "net.sf.saxon.TransformerFactoryImpl#newInstance setAttribute XMLConstants.ACCESS_EXTERNAL_DTD=\"\" XMLConstants.ACCESS_EXTERNAL_STYLESHEET=\"\"\r\n");
+        Assert.assertEquals(2, specs.size());
+
+        MoXmlFactorySpec woodstox = specs.get(0);
+        Assert.assertEquals("com.ctc.wstx.stax.WstxInputFactory", woodstox.getQualifiedName());
+        Assert.assertNull(woodstox.getMethodName());
+        Assert.assertEquals("WstxInputFactory", woodstox.getTriggerToken());
+        Assert.assertEquals(Collections.singletonList(new MoXmlConfigSummary.Setting("setProperty", "XMLInputFactory.SUPPORT_DTD", "false")),
+                woodstox.getRequiredSettings());
+
+        MoXmlFactorySpec saxon = specs.get(1);
+        Assert.assertEquals("net.sf.saxon.TransformerFactoryImpl", saxon.getQualifiedName());
+        Assert.assertEquals("newInstance", saxon.getMethodName());
+        Assert.assertEquals(2, saxon.getRequiredSettings().size());
+        Assert.assertEquals("\"\"", saxon.getRequiredSettings().get(1).getValue());
+    }
+
+    @Test
+    public void testParseMalformed() {
+        String[] lines = {
+                "",
+                "# com.a.B setFeature x=true",
+                "com.a.B setFeature",
+                "com.a.B setFeature x",
+                "com.a.B setFeature =true",
+                "com.a.B setFeature x=",
+                "com.a.B# setFeature x=true",
+                "#newInstance setFeature x=true",
+        };
+        for (String line : lines) {
+            Assert.assertNull(line, MoXmlFactorySpec.parse(line));
+        }
+        Assert.assertTrue(MoXmlFactorySpec.parseAll(null).isEmpty());
+        Assert.assertTrue(MoXmlFactorySpec.parseAll(String.join("\n", lines)).isEmpty());
+    }
+}
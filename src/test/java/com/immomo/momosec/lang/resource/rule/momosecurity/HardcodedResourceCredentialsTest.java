@@ -0,0 +1,42 @@
+/*
+ * Copyright 2020 momosecurity.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.immomo.momosec.lang.resource.rule.momosecurity;
+
+import com.immomo.momosec.lang.xml.MomoXmlCodeInsightFixtureTestCase;
+import com.zcy.zsec.codeinspect.lang.java.rule.HardcodedCredentials;
+
+public class HardcodedResourceCredentialsTest extends MomoXmlCodeInsightFixtureTestCase {
+    String prefix = "rule/momosecurity/HardcodedResourceCredentials/";
+
+    public void testXml() {
+        doTest(new HardcodedResourceCredentials(), prefix + "applicationContext.xml");
+    }
+
+    public void testProperties() {
+        doTest(new HardcodedResourceCredentials(), prefix + "application.properties");
+    }
+
+    public void testYaml() {
+        doTest(new HardcodedResourceCredentials(), prefix + "application.yml");
+    }
+
+    public void testCustomKeywords() {
+        HardcodedCredentials credentials = new HardcodedCredentials();
+        credentials.customKeywords = "accessKey";
+        myFixture.enableInspections(credentials);
+        doTest(new HardcodedResourceCredentials(), prefix + "custom.properties");
+    }
+}
@@ -0,0 +1,104 @@
+/*
+ * Copyright 2020 momosecurity.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.immomo.momosec.scan;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.List;
+import java.util.Map;
+
+public class DiffHunkParserTest {
+
+    private static final String DIFF =
+            "diff --git a/src/A.java b/src/A.java\n" +
+            "index 1111111..2222222 100644\n" +
+            "--- a/src/A.java\n" +
+            "+++ b/src/A.java\n" +
+            "@@ -3 +3 @@ class A {\n" +
+            "-    int a = 1;\n" +
+            "+    int a = 2;\n" +
+            "@@ -10,0 +11,3 @@ class A {\n" +
+            "+++ not a header\n" +
+            "+    void b() {}\n" +
+            "+\n" +
+            "@@ -20,2 +23,0 @@ class A {\n" +
+            "-    void c() {}\n" +
+            "-\n" +
+            "diff --git a/src/B.xml b/src/B.xml\n" +
+            "deleted file mode 100644\n" +
+            "--- a/src/B.xml\n" +
+            "+++ /dev/null\n" +
+            "@@ -1,2 +0,0 @@\n" +
+            "-<a/>\n" +
+            "-<b/>\n";
+
+    @Test
+    public void main() {
+        Map<String, List<int[]>> changes = DiffHunkParser.parse(DIFF);
+        Assert.assertEquals(1, changes.size());
+
+        List<int[]> ranges = changes.get("src/A.java");
+        Assert.assertNotNull(ranges);
+        Assert.assertEquals(3, ranges.size());
+        Assert.assertArrayEquals(new int[]{3, 3}, ranges.get(0));
+        Assert.assertArrayEquals(new int[]{11, 13}, ranges.get(1));
+        Assert.assertArrayEquals(new int[]{23, 24}, ranges.get(2));
+
+        Assert.assertTrue(DiffHunkParser.intersects(ranges, 3, 3));
+        Assert.assertTrue(DiffHunkParser.intersects(ranges, 1, 11));
+        Assert.assertTrue(DiffHunkParser.intersects(ranges, 24, 30));
+        Assert.assertFalse(DiffHunkParser.intersects(ranges, 4, 10));
+        Assert.assertFalse(DiffHunkParser.intersects(ranges, 25, 30));
+    }
+
+    @Test
+    public void testQuotedPath() {
+        String diff =
+                "diff --git \"a/src/\\346\\265\\213.java\" \"b/src/\\346\\265\\213.java\"\n" +
+                "--- \"a/src/\\346\\265\\213.java\"\n" +
+                "+++ \"b/src/\\346\\265\\213.java\"\n" +
+                "@@ -1 +1 @@\n" +
+                "-a\n" +
+                "+b\n" +
+                "diff --git \"a/src/a\\\"b\\\\c.xml\" \"b/src/a\\\"b\\\\c.xml\"\n" +
+                "--- \"a/src/a\\\"b\\\\c.xml\"\n" +
+                "+++ \"b/src/a\\\"b\\\\c.xml\"\n" +
+                "@@ -2 +2 @@\n" +
+                "-a\n" +
+                "+b\n" +
+                "diff --git a/src/a b.java b/src/a b.java\n" +
+                "--- a/src/a b.java\t\n" +
+                "+++ b/src/a b.java\t\n" +
+                "@@ -3 +3 @@\n" +
+                "-a\n" +
+                "+b\n";
+        Map<String, List<int[]>> changes = DiffHunkParser.parse(diff);
+        Assert.assertEquals(3, changes.size());
+        Assert.assertArrayEquals(new int[]{1, 1}, changes.get("src/\u6d4b.java").get(0));
+        Assert.assertArrayEquals(new int[]{2, 2}, changes.get("src/a\"b\\c.xml").get(0));
+        Assert.assertArrayEquals(new int[]{3, 3}, changes.get("src/a b.java").get(0));
+    }
+
+    @Test
+    public void testUnquote() {
+        Assert.assertEquals("src/A.java", DiffHunkParser.unquote("src/A.java"));
+        Assert.assertEquals("b/\u6d4b\u8bd5.java", DiffHunkParser.unquote("\"b/\\346\\265\\213\\350\\257\\225.java\""));
+        Assert.assertEquals("a\tb", DiffHunkParser.unquote("\"a\\tb\""));
+        // core.quotepath=false 时非 ASCII 字符原样输出，仅引号等被转义
+        Assert.assertEquals("b/\ud83d\ude00 \"x\".java", DiffHunkParser.unquote("\"b/\ud83d\ude00 \\\"x\\\".java\""));
+    }
+}
@@ -0,0 +1,57 @@
+/*
+ * Copyright 2020 momosecurity.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.immomo.momosec.utils;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class EntropyEstimatorTest {
+
+    @Test
+    public void testCardinality() {
+        Assert.assertEquals(26, EntropyEstimator.cardinality("abc"));
+        Assert.assertEquals(36, EntropyEstimator.cardinality("abc123"));
+        Assert.assertEquals(62, EntropyEstimator.cardinality("aB3"));
+        Assert.assertEquals(95, EntropyEstimator.cardinality("aB3!"));
+        Assert.assertEquals(126, EntropyEstimator.cardinality("a中"));
+    }
+
+    @Test
+    public void testShannon() {
+        Assert.assertEquals(0.0, EntropyEstimator.shannon("aaaa"), 1e-9);
+        Assert.assertEquals(1.0, EntropyEstimator.shannon("abab"), 1e-9);
+        Assert.assertEquals(2.0, EntropyEstimator.shannon("abcd"), 1e-9);
+    }
+
+    @Test
+    public void testPreFilterRejectsLowEntropy() {
+        double threshold = EntropyEstimator.DEFAULT_THRESHOLD;
+        Assert.assertFalse(EntropyEstimator.mayExceed("", threshold));
+        // 10 个小写字母的暴力枚举熵约 47 bit，不可能超过阈值
+        Assert.assertFalse(EntropyEstimator.mayExceed("qwertyuiop", threshold));
+        Assert.assertFalse(EntropyEstimator.mayExceed("123456789012345", threshold));
+        Assert.assertFalse(EntropyEstimator.mayExceed("aaaaaaaaaaaaaaaa", threshold));
+        Assert.assertFalse(EntropyEstimator.mayExceed("abababababababab", threshold));
+    }
+
+    @Test
+    public void testPreFilterKeepsCandidates() {
+        double threshold = EntropyEstimator.DEFAULT_THRESHOLD;
+        Assert.assertTrue(EntropyEstimator.mayExceed("Xk9#mP2$vL7q", threshold));
+        Assert.assertTrue(EntropyEstimator.mayExceed("a8f5f167f44f4964", threshold));
+        Assert.assertTrue(EntropyEstimator.mayExceed("hello_world_2020", threshold));
+    }
+}
@@ -0,0 +1,63 @@
+/*
+ * Copyright 2020 momosecurity.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.immomo.momosec.utils;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.HashSet;
+import java.util.Random;
+import java.util.Set;
+
+public class IntHashSetTest {
+
+    @Test
+    public void testAddAndContains() {
+        IntHashSet set = new IntHashSet();
+        Assert.assertTrue(set.isEmpty());
+        Assert.assertTrue(set.add(0));
+        Assert.assertFalse(set.add(0));
+        Assert.assertTrue(set.add(-1));
+        Assert.assertTrue(set.add(Integer.MIN_VALUE));
+        Assert.assertTrue(set.add(Integer.MAX_VALUE));
+        Assert.assertEquals(4, set.size());
+
+        Assert.assertTrue(set.contains(0));
+        Assert.assertTrue(set.contains(-1));
+        Assert.assertTrue(set.contains(Integer.MIN_VALUE));
+        Assert.assertTrue(set.contains(Integer.MAX_VALUE));
+        Assert.assertFalse(set.contains(1));
+    }
+
+    @Test
+    public void testGrowMatchesHashSet() {
+        Random random = new Random(42);
+        IntHashSet set = new IntHashSet();
+        Set<Integer> expected = new HashSet<>();
+        for (int i = 0; i < 100_000; i++) {
+            int value = random.nextInt();
+            Assert.assertEquals(expected.add(value), set.add(value));
+        }
+        Assert.assertEquals(expected.size(), set.size());
+        for (int value : expected) {
+            Assert.assertTrue(set.contains(value));
+        }
+        for (int i = 0; i < 1000; i++) {
+            int value = random.nextInt();
+            Assert.assertEquals(expected.contains(value), set.contains(value));
+        }
+    }
+}
@@ -0,0 +1,146 @@
+/*
+ * Copyright 2020 momosecurity.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.immomo.momosec.utils;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import static com.immomo.momosec.utils.IpLiteral.Category.*;
+
+public class IpLiteralTest {
+
+    @Test
+    public void testIPv4() {
+        Assert.assertEquals(PUBLIC, IpLiteral.classify("8.8.8.8"));
+        Assert.assertEquals(PRIVATE, IpLiteral.classify("192.168.12.42"));
+        Assert.assertEquals(PRIVATE, IpLiteral.classify("10.1.2.3"));
+        Assert.assertEquals(PRIVATE, IpLiteral.classify("172.31.255.255"));
+        Assert.assertEquals(PUBLIC, IpLiteral.classify("172.32.0.1"));
+        Assert.assertEquals(LOOPBACK, IpLiteral.classify("127.0.0.1"));
+        Assert.assertEquals(LINK_LOCAL, IpLiteral.classify("169.254.169.254"));
+        Assert.assertEquals(DOCUMENTATION, IpLiteral.classify("192.0.2.10"));
+        Assert.assertEquals(UNSPECIFIED, IpLiteral.classify("0.0.0.0"));
+        Assert.assertEquals(PUBLIC, IpLiteral.classify("0.0.0.1"));
+        Assert.assertEquals(BROADCAST, IpLiteral.classify("255.255.255.255"));
+        Assert.assertEquals(OID, IpLiteral.classify("2.5.4.3"));
+        Assert.assertEquals(PRIVATE, IpLiteral.classify("010.001.002.003"));
+    }
+
+    @Test
+    public void testIsSensitive() {
+        Assert.assertTrue(IpLiteral.isSensitive(PUBLIC));
+        Assert.assertTrue(IpLiteral.isSensitive(PRIVATE));
+        Assert.assertTrue(IpLiteral.isSensitive(LINK_LOCAL));
+        Assert.assertFalse(IpLiteral.isSensitive(LOOPBACK));
+        Assert.assertFalse(IpLiteral.isSensitive(UNSPECIFIED));
+        Assert.assertFalse(IpLiteral.isSensitive(BROADCAST));
+        Assert.assertFalse(IpLiteral.isSensitive(DOCUMENTATION));
+        Assert.assertFalse(IpLiteral.isSensitive(OID));
+    }
+
+    @Test
+    public void testNotIPv4() {
+        String[] values = {"", "1", "1.2.3", "1.2.3.4.5", "256.1.1.1", "1.2.3.4.", ".1.2.3.4", "1..2.3", "1.2.3.1234",
+                "+1.2.3.4", "1.2.3.-4", "a.b.c.d", "hello", "1.2.3.4 ", "v1.2.3.4", "2020"};
+        for (String value : values) {
+            Assert.assertNull(value, IpLiteral.classify(value));
+        }
+    }
+
+    @Test
+    public void testIPv6() {
+        Assert.assertEquals(PUBLIC, IpLiteral.classify("2400:da00::6666"));
+        Assert.assertEquals(PUBLIC, IpLiteral.classify("2001:4860:4860:0:0:0:0:8888"));
+        Assert.assertEquals(LOOPBACK, IpLiteral.classify("::1"));
+        Assert.assertEquals(LOOPBACK, IpLiteral.classify("0:0:0:0:0:0:0:1"));
+        Assert.assertEquals(UNSPECIFIED, IpLiteral.classify("::"));
+        Assert.assertEquals(LINK_LOCAL, IpLiteral.classify("fe80::1ff:fe23:4567:890a"));
+        Assert.assertEquals(LINK_LOCAL, IpLiteral.classify("FEBF::1"));
+        Assert.assertEquals(PUBLIC, IpLiteral.classify("fec0::1"));
+        Assert.assertEquals(PRIVATE, IpLiteral.classify("fd12:3456:789a:1::1"));
+        Assert.assertEquals(DOCUMENTATION, IpLiteral.classify("2001:db8::ff00:42:8329"));
+        Assert.assertEquals(PUBLIC, IpLiteral.classify("2001:db9::1"));
+        Assert.assertEquals(PUBLIC, IpLiteral.classify("1::"));
+        Assert.assertEquals(PUBLIC, IpLiteral.classify("64:ff9b::192.0.2.33"));
+        // IPv4 映射地址按 IPv4 归类
+        Assert.assertEquals(PRIVATE, IpLiteral.classify("::ffff:192.168.1.1"));
+        Assert.assertEquals(LOOPBACK, IpLiteral.classify("::ffff:127.0.0.1"));
+    }
+
+    @Test
+    public void testNotIPv6() {
+        String[] values = {":", ":::", "1:2", "12:30", "1:2:3:4:5:6:7", "1:2:3:4:5:6:7:8:9", "1::2::3", ":1::2", "1::2:",
+                "12345::1", "g::1", "1:2:3:4:5:6:7::8:9", "::ffff:1.2.3", "::1.2.3.4:5", "std::vector", "a:b:c:d:e:f:0:1/129",
+                // 只含字母的 :: 写法是单词或作用域，不是地址
+                "add::", "dead::beef", "Bad::", "c::", "ab::cd", "a:b:c:d:e:f:a:b", "cafe::/16"};
+        for (String value : values) {
+            Assert.assertNull(value, IpLiteral.classify(value));
+        }
+    }
+
+    @Test
+    public void testCidr() {
+        Assert.assertEquals(PRIVATE, IpLiteral.classify("10.0.0.0/8"));
+        Assert.assertEquals(PUBLIC, IpLiteral.classify("1.2.3.0/24"));
+        Assert.assertEquals(UNSPECIFIED, IpLiteral.classify("0.0.0.0/0"));
+        Assert.assertEquals(DOCUMENTATION, IpLiteral.classify("2001:db8::/32"));
+        Assert.assertNull(IpLiteral.classify("10.0.0.0/33"));
+        Assert.assertNull(IpLiteral.classify("10.0.0.0/"));
+        Assert.assertNull(IpLiteral.classify("10.0.0.0/a"));
+        Assert.assertNull(IpLiteral.classify("/8"));
+    }
+
+    @Test
+    public void testCustomTable() {
+        IpLiteral.RangeTable table = new IpLiteral.RangeTable()
+                .add("10.0.0.0/8", PRIVATE)
+                .add("10.1.0.0/16", DOCUMENTATION)
+                .add("2001:db8::1", LOOPBACK);
+        Assert.assertEquals(PRIVATE, IpLiteral.classify("10.2.0.1", table));
+        Assert.assertEquals(DOCUMENTATION, IpLiteral.classify("10.1.0.1", table));
+        Assert.assertEquals(LOOPBACK, IpLiteral.classify("2001:db8:0::1", table));
+        Assert.assertEquals(PUBLIC, IpLiteral.classify("2001:db8::2", table));
+        Assert.assertEquals(PUBLIC, IpLiteral.classify("192.168.1.1", table));
+        try {
+            new IpLiteral.RangeTable().add("10.0.0.0/40", PRIVATE);
+            Assert.fail();
+        } catch (IllegalArgumentException ignored) {
+        }
+    }
+
+    @Test
+    public void testParseRanges() {
+        Assert.assertSame(IpLiteral.getDefaultTable(), IpLiteral.parseRanges(null));
+        Assert.assertSame(IpLiteral.getDefaultTable(), IpLiteral.parseRanges("  "));
+
+        IpLiteral.RangeTable table = IpLiteral.parseRanges("100.100.0.0/16 documentation\n"
+                + "10.0.0.0/8 public\r\n"
+                + "fd00::/8, loopback\n"
+                + "10.0.0.0/40 private\n"
+                + "8.8.8.8 unknown\n"
+                + "1.1.1.1");
+        Assert.assertEquals(DOCUMENTATION, IpLiteral.classify("100.100.1.1", table));
+        Assert.assertEquals(PRIVATE, IpLiteral.classify("100.64.0.1", table));
+        // 与默认表前缀长度相同时以用户配置为准
+        Assert.assertEquals(PUBLIC, IpLiteral.classify("10.1.2.3", table));
+        Assert.assertEquals(LOOPBACK, IpLiteral.classify("fd12::1", table));
+        Assert.assertEquals(PRIVATE, IpLiteral.classify("fc00::1", table));
+        Assert.assertEquals(PUBLIC, IpLiteral.classify("8.8.8.8", table));
+        Assert.assertEquals(LOOPBACK, IpLiteral.classify("127.0.0.1", table));
+        // 默认表不受影响
+        Assert.assertEquals(PRIVATE, IpLiteral.classify("10.1.2.3"));
+    }
+}
@@ -0,0 +1,114 @@
+/*
+ * Copyright 2020 momosecurity.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.immomo.momosec.utils;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Random;
+import java.util.regex.Pattern;
+
+public class KeywordMatcherTest {
+
+    @Test
+    public void testFind() {
+        KeywordMatcher matcher = KeywordMatcher.of("passwd", "pass", "password", "pwd", "secret", "token");
+        Assert.assertTrue(matcher.find("dbPassword"));
+        Assert.assertTrue(matcher.find("ACCESS_TOKEN"));
+        Assert.assertTrue(matcher.find("clientSecretKey"));
+        Assert.assertTrue(matcher.find("x.pwd"));
+        Assert.assertFalse(matcher.find("username"));
+        Assert.assertFalse(matcher.find("tok_en"));
+        Assert.assertFalse(matcher.find("密码"));
+        Assert.assertFalse(matcher.find(""));
+        Assert.assertFalse(matcher.find(null));
+    }
+
+    @Test
+    public void testFindFirst() {
+        KeywordMatcher matcher = KeywordMatcher.of("apiKey", "key", "bearer");
+        Assert.assertEquals("apiKey", matcher.findFirst("myApiKey"));
+        Assert.assertEquals("key", matcher.findFirst("keyApi"));
+        Assert.assertEquals("bearer", matcher.findFirst("BEARER_TOKEN"));
+        Assert.assertNull(matcher.findFirst("value"));
+    }
+
+    @Test
+    public void testFailureLinks() {
+        // "she" 的失败链接指向 "he"，"hers" 需要跨越多个失败链接
+        KeywordMatcher matcher = KeywordMatcher.of("he", "she", "his", "hers");
+        Assert.assertEquals("she", matcher.findFirst("ushers"));
+        Assert.assertEquals("he", matcher.findFirst("uhers"));
+        Assert.assertEquals("his", matcher.findFirst("ahis"));
+        Assert.assertTrue(KeywordMatcher.of("aab").find("aaab"));
+        Assert.assertTrue(KeywordMatcher.of("abcd", "bc").find("abce"));
+    }
+
+    @Test
+    public void testEmptyKeywords() {
+        KeywordMatcher matcher = new KeywordMatcher(Collections.singletonList(""));
+        Assert.assertTrue(matcher.getKeywords().isEmpty());
+        Assert.assertFalse(matcher.find("anything"));
+    }
+
+    @Test
+    public void testNonAsciiKeyword() {
+        try {
+            KeywordMatcher.of("密码");
+            Assert.fail();
+        } catch (IllegalArgumentException ignored) {
+        }
+    }
+
+    @Test
+    public void testParseKeywords() {
+        Assert.assertEquals(Arrays.asList("apiKey", "bearer", "vendor_sk"), KeywordMatcher.parseKeywords(" apiKey, bearer\nvendor_sk ,"));
+        Assert.assertEquals(Collections.singletonList("ak"), KeywordMatcher.parseKeywords("密码, ak"));
+        Assert.assertTrue(KeywordMatcher.parseKeywords(null).isEmpty());
+        Assert.assertTrue(KeywordMatcher.parseKeywords("  ").isEmpty());
+    }
+
+    @Test
+    public void testConfigurable() {
+        KeywordMatcher.Configurable configurable = new KeywordMatcher.Configurable("password", "token");
+        KeywordMatcher builtin = configurable.get(null);
+        Assert.assertSame(builtin, configurable.get(""));
+        Assert.assertTrue(builtin.find("dbPassword"));
+        Assert.assertFalse(builtin.find("aliyunAccessKeySecret"));
+
+        KeywordMatcher custom = configurable.get("accessKey, sk");
+        Assert.assertSame(custom, configurable.get("accessKey, sk"));
+        Assert.assertTrue(custom.find("aliyunAccessKeySecret"));
+        Assert.assertTrue(custom.find("ACCESS_TOKEN"));
+        Assert.assertEquals(Arrays.asList("password", "token"), configurable.getBuiltin());
+    }
+
+    @Test
+    public void testAgreesWithRegex() {
+        KeywordMatcher matcher = KeywordMatcher.of("AB", "bca", "aab", "bB");
+        Pattern pattern = Pattern.compile("ab|bca|aab|bb", Pattern.CASE_INSENSITIVE);
+        Random random = new Random(1);
+        for (int i = 0; i < 10000; i++) {
+            StringBuilder text = new StringBuilder();
+            for (int j = random.nextInt(8); j > 0; j--) {
+                text.append("aAbBcC".charAt(random.nextInt(6)));
+            }
+            Assert.assertEquals(text.toString(), pattern.matcher(text).find(), matcher.find(text));
+        }
+    }
+}
@@ -0,0 +1,70 @@
+/*
+ * Copyright 2020 momosecurity.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.immomo.momosec.utils;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+
+public class LruCacheTest {
+
+    @Test
+    public void testEvictLeastRecentlyUsed() {
+        LruCache<String, Integer> cache = new LruCache<>(2, null);
+        cache.put("a", 1);
+        cache.put("b", 2);
+        Assert.assertEquals(Integer.valueOf(1), cache.get("a"));
+        cache.put("c", 3);
+
+        Assert.assertEquals(2, cache.size());
+        Assert.assertNull(cache.get("b"));
+        Assert.assertEquals(Arrays.asList("a", "c"), new ArrayList<>(cache.snapshot().keySet()));
+    }
+
+    @Test
+    public void testCountsEvictions() {
+        CacheStats.Counter stats = CacheStats.counter("test.lru.evict");
+        stats.reset();
+        LruCache<String, Integer> cache = new LruCache<>(2, stats);
+        cache.put("a", 1);
+        cache.put("b", 2);
+        cache.put("a", 3);
+        Assert.assertEquals(0, stats.getEvictions());
+        cache.put("c", 4);
+        cache.put("d", 5);
+        Assert.assertEquals(2, stats.getEvictions());
+        Assert.assertEquals(2, cache.size());
+    }
+
+    @Test
+    public void testComputeIfAbsentCountsHits() {
+        CacheStats.Counter stats = CacheStats.counter("test.lru");
+        stats.reset();
+        LruCache<String, Integer> cache = new LruCache<>(8, stats);
+        int[] calls = {0};
+        for (int i = 0; i < 3; i++) {
+            Assert.assertEquals(Integer.valueOf(3), cache.computeIfAbsent("abc", k -> {
+                calls[0]++;
+                return k.length();
+            }));
+        }
+        Assert.assertEquals(1, calls[0]);
+        Assert.assertEquals(2, stats.getHits());
+        Assert.assertEquals(1, stats.getMisses());
+    }
+}
@@ -0,0 +1,94 @@
+/*
+ * Copyright 2020 momosecurity.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.immomo.momosec.utils;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class RegexDosAnalyzerTest {
+
+    @Test
+    public void testExponential() {
+        assertResult("^([a-z]+)+$", RegexDosAnalyzer.Kind.EXPONENTIAL, "([a-z]+)+");
+        assertResult("^(a|aa)+$", RegexDosAnalyzer.Kind.EXPONENTIAL, "(a|aa)+");
+        assertResult("^(a|a?)+$", RegexDosAnalyzer.Kind.EXPONENTIAL, "(a|a?)+");
+        assertResult("^(\\w+\\s?)*$", RegexDosAnalyzer.Kind.EXPONENTIAL, "(\\w+\\s?)*");
+        assertResult("(?i)(a|A)+", RegexDosAnalyzer.Kind.EXPONENTIAL, "(a|A)+");
+        assertResult("^(([a-z])+.)+[A-Z]([a-z])+$", RegexDosAnalyzer.Kind.EXPONENTIAL, "(([a-z])+.)+");
+    }
+
+    @Test
+    public void testPolynomial() {
+        assertResult("^\\d+\\.?\\d+$", RegexDosAnalyzer.Kind.POLYNOMIAL, "\\d+\\.?\\d+");
+        assertResult(".*.*=.*", RegexDosAnalyzer.Kind.POLYNOMIAL, ".*.*");
+        assertResult("(.*a){12}", RegexDosAnalyzer.Kind.POLYNOMIAL, "(.*a){12}");
+        assertResult("\\d+\\.?\\d+", RegexDosAnalyzer.Kind.POLYNOMIAL, "\\d+\\.?\\d+");
+        assertResult("a*a*", RegexDosAnalyzer.Kind.POLYNOMIAL, "a*a*");
+    }
+
+    @Test
+    public void testFind() {
+        // find() 到达接受状态即成功，末尾的歧义不会引起回溯
+        Assert.assertNull(RegexDosAnalyzer.analyze("\\d+\\.?\\d+", true));
+        Assert.assertNull(RegexDosAnalyzer.analyze("a*a*", true));
+        // 锚定结尾时与 matches() 相同
+        Assert.assertNotNull(RegexDosAnalyzer.analyze("\\d+\\.?\\d+$", true));
+        Assert.assertNotNull(RegexDosAnalyzer.analyze("\\d+\\.?\\d+\\z", true));
+        Assert.assertNotNull(RegexDosAnalyzer.analyze(".*.*=.*", true));
+        Assert.assertEquals(RegexDosAnalyzer.Kind.EXPONENTIAL, RegexDosAnalyzer.analyze("(a+)+b", true).getKind());
+    }
+
+    @Test
+    public void testSafe() {
+        String[] regexes = {
+                "^[a-zA-Z0-9_]+$",
+                "^1[3-9]\\d{9}$",
+                "^[\\w.+-]+@[\\w-]+\\.[\\w.-]+$",
+                "^((25[0-5]|2[0-4]\\d|[01]?\\d\\d?)\\.){3}(25[0-5]|2[0-4]\\d|[01]?\\d\\d?)$",
+                "^[A-Z][a-z]+(?:[A-Z][a-z]+)*$",
+                "\\s*,\\s*",
+                "(?:a|b)*c",
+                "(?>a+)+",
+                "(a++)+",
+                "^(?=.*\\d)(?=.*[a-z])(?=.*[A-Z]).{8,20}$",
+                // 歧义之后只剩 .* / $，匹配不会失败
+                ".*[A-Z].*",
+                "^.*\\d.*$",
+                "(.*)@(.*)",
+                ".*foo.*",
+                ".*\\d+.*",
+        };
+        for (String regex : regexes) {
+            Assert.assertNull(regex, RegexDosAnalyzer.analyze(regex));
+        }
+    }
+
+    @Test
+    public void testInvalid() {
+        Assert.assertNull(RegexDosAnalyzer.analyze("("));
+        Assert.assertNull(RegexDosAnalyzer.analyze("a{2,"));
+        Assert.assertNull(RegexDosAnalyzer.analyze("[z-a]"));
+        Assert.assertNull(RegexDosAnalyzer.analyze("\\"));
+    }
+
+    private static void assertResult(String regex, RegexDosAnalyzer.Kind kind, String culprit) {
+        RegexDosAnalyzer.Result result = RegexDosAnalyzer.analyze(regex);
+        Assert.assertNotNull(regex, result);
+        Assert.assertEquals(regex, kind, result.getKind());
+        Assert.assertEquals(regex, culprit, regex.substring(result.getStart(), result.getEnd()));
+        Assert.assertNotNull(regex, result.getAttack());
+    }
+}
@@ -0,0 +1,77 @@
+/*
+ * Copyright 2020 momosecurity.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.immomo.momosec.utils;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+public class RegexDosConfirmerTest {
+
+    @Test
+    public void testConfirmPolynomial() {
+        String regex = "^\\d+\\.?\\d+$";
+        RegexDosAnalyzer.Result result = RegexDosAnalyzer.analyze(regex);
+        Assert.assertNotNull(result);
+
+        RegexDosConfirmer.Confirmation confirmation = RegexDosConfirmer.confirm(regex, result, 10_000);
+        Assert.assertEquals(RegexDosAnalyzer.Kind.POLYNOMIAL, confirmation.getObserved());
+        Assert.assertFalse(confirmation.getSamples().isEmpty());
+        Assert.assertFalse(confirmation.getCurve().isEmpty());
+    }
+
+    @Test
+    public void testNoAttackString() {
+        // 静态结论与实际正则不符 (如缓存中的旧结论)，无法构造攻击串
+        RegexDosAnalyzer.Result result = new RegexDosAnalyzer.Result(RegexDosAnalyzer.Kind.EXPONENTIAL, 0, 1);
+        RegexDosConfirmer.Confirmation confirmation = RegexDosConfirmer.confirm("^[a-z]+$", result, 1000);
+        Assert.assertFalse(confirmation.isConfirmed());
+        Assert.assertTrue(confirmation.getSamples().isEmpty());
+    }
+
+    @Test
+    public void testClassify() {
+        RegexDosAnalyzer.Kind expected = RegexDosAnalyzer.Kind.EXPONENTIAL;
+        Assert.assertNull(RegexDosConfirmer.classify(Collections.emptyList(), expected));
+        // 线性
+        Assert.assertNull(RegexDosConfirmer.classify(Arrays.asList(
+                new RegexDosConfirmer.Sample(1024, 20_000, 0, false),
+                new RegexDosConfirmer.Sample(2048, 40_000, 0, false)), expected));
+        // 平方
+        Assert.assertEquals(RegexDosAnalyzer.Kind.POLYNOMIAL, RegexDosConfirmer.classify(Arrays.asList(
+                new RegexDosConfirmer.Sample(1024, 1_000_000, 0, false),
+                new RegexDosConfirmer.Sample(2048, 4_000_000, 0, false)), expected));
+        // 每多一次 pump 步数翻倍
+        Assert.assertEquals(RegexDosAnalyzer.Kind.EXPONENTIAL, RegexDosConfirmer.classify(Arrays.asList(
+                new RegexDosConfirmer.Sample(8, 50_000, 0, false),
+                new RegexDosConfirmer.Sample(16, 50_000 * 256, 0, false)), expected));
+        // 首次即耗尽步数
+        Assert.assertEquals(expected, RegexDosConfirmer.classify(Collections.singletonList(
+                new RegexDosConfirmer.Sample(4, RegexDosConfirmer.MAX_STEPS, 0, true)), expected));
+        // 线性增长后耗尽步数
+        Assert.assertEquals(RegexDosAnalyzer.Kind.POLYNOMIAL, RegexDosConfirmer.classify(Arrays.asList(
+                new RegexDosConfirmer.Sample(1024, 30_000_000, 0, false),
+                new RegexDosConfirmer.Sample(2048, RegexDosConfirmer.MAX_STEPS, 0, true)), expected));
+        // 线性增长时超过截止时间 (机器繁忙) 不算确认
+        Assert.assertNull(RegexDosConfirmer.classify(Arrays.asList(
+                new RegexDosConfirmer.Sample(1024, 200_000, 0, false),
+                new RegexDosConfirmer.Sample(2048, 300_000, 0, true)), expected));
+        Assert.assertNull(RegexDosConfirmer.classify(Collections.singletonList(
+                new RegexDosConfirmer.Sample(4, 1_000, 0, true)), expected));
+    }
+}
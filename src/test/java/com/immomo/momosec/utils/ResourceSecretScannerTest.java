@@ -0,0 +1,139 @@
+/*
+ * Copyright 2020 momosecurity.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.immomo.momosec.utils;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+public class ResourceSecretScannerTest {
+
+    // 以 "S3" 开头的值视为凭证，避免测试依赖熵估计
+    private final ResourceSecretScanner scanner =
+            new ResourceSecretScanner(KeywordMatcher.of("passwd", "pass", "password", "pwd", "secret", "token"), v -> v.startsWith("S3"));
+
+    @Test
+    public void testGetFormat() {
+        Assert.assertEquals(ResourceSecretScanner.Format.PROPERTIES, ResourceSecretScanner.getFormat("application.properties"));
+        Assert.assertEquals(ResourceSecretScanner.Format.YAML, ResourceSecretScanner.getFormat("application-dev.YML"));
+        Assert.assertEquals(ResourceSecretScanner.Format.YAML, ResourceSecretScanner.getFormat("bootstrap.yaml"));
+        Assert.assertEquals(ResourceSecretScanner.Format.ENV, ResourceSecretScanner.getFormat(".env"));
+        Assert.assertEquals(ResourceSecretScanner.Format.ENV, ResourceSecretScanner.getFormat(".env.local"));
+        Assert.assertEquals(ResourceSecretScanner.Format.XML, ResourceSecretScanner.getFormat("applicationContext.xml"));
+        Assert.assertNull(ResourceSecretScanner.getFormat("Main.java"));
+    }
+
+    @Test
+    public void testProperties() {
+        String text = "# password=S3comment\n"
+                + "spring.datasource.username=root\n"
+                + "spring.datasource.password = S3cr3tP4ss  \n"
+                + "app.token:S3tok\r\n"
+                + "app.secret=${APP_SECRET}\n"
+                + "db.pwd=S3a\\\n"
+                + "   continued\n"
+                + "mail.pass S3mail";
+        List<ResourceSecretScanner.Finding> findings = scanner.scan(text, ResourceSecretScanner.Format.PROPERTIES);
+        Assert.assertEquals(3, findings.size());
+        assertFinding(text, findings.get(0), "spring.datasource.password", "S3cr3tP4ss", 3);
+        assertFinding(text, findings.get(1), "app.token", "S3tok", 4);
+        assertFinding(text, findings.get(2), "mail.pass", "S3mail", 8);
+    }
+
+    @Test
+    public void testYaml() {
+        String text = "spring:\n"
+                + "  datasource:\n"
+                + "    username: root\n"
+                + "    password: S3cr3t # comment\n"
+                + "  redis:\n"
+                + "    host: S3host\n"
+                + "secrets:\n"
+                + "  github: \"S3gh\"\n"
+                + "  script: |\n"
+                + "    password: S3inblock\n"
+                + "clients:\n"
+                + "  - name: a\n"
+                + "    token: 'S3list'\n"
+                + "---\n"
+                + "host: S3doc\n";
+        List<ResourceSecretScanner.Finding> findings = scanner.scan(text, ResourceSecretScanner.Format.YAML);
+        Assert.assertEquals(3, findings.size());
+        assertFinding(text, findings.get(0), "spring.datasource.password", "S3cr3t", 4);
+        assertFinding(text, findings.get(1), "secrets.github", "S3gh", 8);
+        assertFinding(text, findings.get(2), "clients.token", "S3list", 13);
+    }
+
+    @Test
+    public void testEnv() {
+        String text = "export DB_PASSWORD=\"S3env\"\n"
+                + "API_TOKEN=S3tok # comment\n"
+                + "#SECRET=S3commented\n"
+                + "HOST=S3host\n";
+        List<ResourceSecretScanner.Finding> findings = scanner.scan(text, ResourceSecretScanner.Format.ENV);
+        Assert.assertEquals(2, findings.size());
+        assertFinding(text, findings.get(0), "DB_PASSWORD", "S3env", 1);
+        assertFinding(text, findings.get(1), "API_TOKEN", "S3tok", 2);
+    }
+
+    @Test
+    public void testXml() {
+        String text = "<?xml version=\"1.0\"?>\n"
+                + "<!-- <password>S3comment</password> -->\n"
+                + "<beans>\n"
+                + "  <bean id=\"ds\">\n"
+                + "    <property name=\"password\" value=\"S3prop\"/>\n"
+                + "    <property name=\"url\" value=\"S3url\"/>\n"
+                + "  </bean>\n"
+                + "  <entry key=\"appSecret\">S3entry</entry>\n"
+                + "  <datasource user=\"root\" password='S3attr'/>\n"
+                + "  <password>\n    S3body\n  </password>\n"
+                + "  <token><value>S3nested</value></token>\n"
+                + "</beans>\n";
+        List<ResourceSecretScanner.Finding> findings = scanner.scan(text, ResourceSecretScanner.Format.XML);
+        Assert.assertEquals(4, findings.size());
+        assertFinding(text, findings.get(0), "password", "S3prop", 5);
+        assertFinding(text, findings.get(1), "appSecret", "S3entry", 8);
+        assertFinding(text, findings.get(2), "password", "S3attr", 9);
+        assertFinding(text, findings.get(3), "password", "S3body", 11);
+    }
+
+    @Test
+    public void testReadFile() throws IOException {
+        Path file = Files.createTempFile("momosec", ".properties");
+        try {
+            Files.write(file, "\uFEFFname=中文\npassword=S3file\n".getBytes(StandardCharsets.UTF_8));
+            List<ResourceSecretScanner.Finding> findings = scanner.scan(file, ResourceSecretScanner.Format.PROPERTIES);
+            Assert.assertEquals(1, findings.size());
+            Assert.assertEquals("S3file", findings.get(0).getValue());
+            Assert.assertEquals(2, findings.get(0).getLine());
+        } finally {
+            Files.delete(file);
+        }
+    }
+
+    private static void assertFinding(String text, ResourceSecretScanner.Finding finding, String key, String value, int line) {
+        Assert.assertEquals(key, finding.getKey());
+        Assert.assertEquals(value, finding.getValue());
+        Assert.assertEquals(value, text.substring(finding.getValueStart(), finding.getValueEnd()));
+        Assert.assertEquals(line, finding.getLine());
+    }
+}
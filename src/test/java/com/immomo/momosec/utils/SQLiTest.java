@@ -54,6 +54,68 @@ public class SQLiTest {
 
     }
 
+    @Test
+    public void testIsSqlMatchesPattern() {
+        String[] samples = {
+                "select * from table where id = ",
+                "  SELECT * FROM table WHERE id = ",
+                "\n\tdelete from table where id = 1",
+                "update table set name = 1 where id = ",
+                "insert into table select * from t where 1 = 1",
+                "select * from table",
+                "select\n* from table\nwhere id = 1",
+                "selection from table where id = 1",
+                "-- select * from table where id = 1",
+                "where select * from table",
+                "select",
+                "",
+        };
+        for (String sample : samples) {
+            for (int i = 0; i < 2; i++) {   // 第二次命中缓存
+                Assert.assertEquals(sample, SQLi.sqlPattern.matcher(sample).find(), SQLi.isSql(sample));
+            }
+        }
+    }
+
+    @Test
+    public void testHasVulOnPlaceholder() {
+        Assert.assertTrue(SQLi.hasVulOnPlaceholder("select * from table where id = %s"));
+        Assert.assertTrue(SQLi.hasVulOnPlaceholder("select * from %s where id = %1$s"));
+        Assert.assertFalse(SQLi.hasVulOnPlaceholder("select * from %s where id = 1"));
+        Assert.assertFalse(SQLi.hasVulOnPlaceholder("select * from table where id = 1"));
+        Assert.assertTrue(SQLi.hasVulOnPlaceholder("select * from table where id = %s"));
+    }
+
+    @Test
+    public void testJoinContextStart() {
+        String[] prefixes = {
+                "select id,name from table where name = ",
+                "select id,name from table where id = 1 and ",
+                "select id,name from table WHERE id = 1 and ",
+                "select name,sum(score) from table group by sum(score) having sum(",
+                "insert into TABLE(id,name) values(",
+                "update TABLE set id=1, name=",
+                "select id,name from table order by ",
+                "\n  ORDER BY ",
+                "(",
+                "",
+        };
+        for (String prefix : prefixes) {
+            int start = SQLi.joinContextStart(prefix, prefix.length());
+            String context = prefix.substring(start);
+            for (String suffix : new String[]{null, " = 1", ")"}) {
+                Assert.assertEquals(prefix, check(prefix, "v", suffix), check(context, "v", suffix));
+            }
+        }
+
+        String prefix = "select id,name from table where id = 1 and ";
+        Assert.assertEquals("where id = 1 and ", prefix.substring(SQLi.joinContextStart(prefix, prefix.length())));
+        // 至少保留最后两个关键词
+        prefix = "select id,name from table order by ";
+        Assert.assertEquals("from table order by ", prefix.substring(SQLi.joinContextStart(prefix, prefix.length())));
+        Assert.assertEquals(0, SQLi.joinContextStart("\n  ORDER BY ", 12));
+    }
+
     private boolean check(String prefix, String var, String suffix){
         return SQLi.hasVulOnSQLJoinStr(prefix, var, suffix);
     }
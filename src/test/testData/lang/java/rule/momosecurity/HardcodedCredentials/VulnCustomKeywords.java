@@ -0,0 +1,9 @@
+public class VulnCustomKeywords {
+    <warning descr="MomoSec: 发现硬编码凭证">private String aliyunAccessKey = "f9IJosm2M2H7EqDBTAE2L2FE6";</warning>
+    private String accessKeyId = "LTAI";
+
+    public void foo() {
+        <warning descr="MomoSec: 发现硬编码凭证">String ossAccessKey = "f9IJosm2M2H7EqDBTAE2L2FE6";</warning>
+        String endpoint = "f9IJosm2M2H7EqDBTAE2L2FE6";
+    }
+}
@@ -5,5 +5,18 @@ public class Vuln {
         String ip2 = System.getenv("IP_ADDRESS");
 
         String iplocal = "127.0.0.1";
+
+        String ipv6 = <warning descr="MomoSec: 发现硬编码IP地址">"2400:da00::6666"</warning>;
+        String cidr = <warning descr="MomoSec: 发现硬编码IP地址">"10.0.0.0/8"</warning>;
+        String ipv6local = "::1";
+        String example = "192.0.2.1";
+        String oid = "2.5.4.3";
+        String version = "1.2.3";
+
+        String word = "add::";
+        String scope = "dead::beef";
+        String label = "Bad::";
+        String prefix = "c::";
+        String pair = "ab::cd";
     }
 }
@@ -0,0 +1,9 @@
+
+public class VulnCustomRanges {
+    public void foo() {
+        String ip = <warning descr="MomoSec: 发现硬编码IP地址">"192.168.12.42"</warning>;
+        String office = <warning descr="MomoSec: 发现硬编码IP地址">"10.0.0.1"</warning>;
+        String mirror = "100.100.1.1";
+        String sandbox = "172.16.0.1";
+    }
+}
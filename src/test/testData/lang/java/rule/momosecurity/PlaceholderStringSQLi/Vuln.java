@@ -21,4 +21,46 @@ public class Vuln {
         <error descr="MomoSec: 疑似占位符拼接SQL注入漏洞">String.format(sql, id1, id)</error>;
         error(String.format(sql, id1, id));
     }
+
+    private static final String TABLE = "table";
+
+    void bar2(String id) {
+        <error descr="MomoSec: 疑似占位符拼接SQL注入漏洞">String.format("select * from " + TABLE + " where id = %s", id)</error>;
+
+        String sql = "select * from table" + " where id = %s";
+        <error descr="MomoSec: 疑似占位符拼接SQL注入漏洞">String.format(sql, id)</error>;
+
+        String sql2 = "select * from " + id + " where id = %s";
+        String.format(sql2, id);
+
+        String.format("select * from table where id = %s", getDefaultId());
+        <error descr="MomoSec: 疑似占位符拼接SQL注入漏洞">String.format("select * from table where id = %s", trim(id))</error>;
+    }
+
+    private String getDefaultId() {
+        return "1";
+    }
+
+    private String trim(String s) {
+        return s.trim();
+    }
+
+    private static final String DEFAULT_ID = "1";
+
+    private String id;
+
+    static class Dto {
+        private String id;
+
+        String getId() {
+            return id;
+        }
+    }
+
+    void bar3(Dto dto) {
+        <error descr="MomoSec: 疑似占位符拼接SQL注入漏洞">String.format("select * from table where id = %s", dto.getId())</error>;
+        <error descr="MomoSec: 疑似占位符拼接SQL注入漏洞">String.format("select * from table where id = %s", id)</error>;
+        <error descr="MomoSec: 疑似占位符拼接SQL注入漏洞">String.format("select * from table where id = %s", this.id)</error>;
+        String.format("select * from table where id = %s", DEFAULT_ID);
+    }
 }
\ No newline at end of file
@@ -48,4 +48,78 @@ public class Vuln {
         this.log("select * from table_log where id = " + id);
 
     }
+
+    private String getStatus() {
+        return "1";
+    }
+
+    private static String quote(String s) {
+        return "'" + s + "'";
+    }
+
+    String unknown(String s) {
+        return s + System.getProperty("user.name");
+    }
+
+    void bar2(String id) {
+        String sql11 = "select * from table where status = " + getStatus();
+        String sql12 = "select * from table where id = " + quote("1");
+
+        String sql13 = <error descr="MomoSec: 疑似多项式拼接SQL注入漏洞">"select * from table where id = " + quote(id)</error>;
+        String sql14 = <error descr="MomoSec: 疑似多项式拼接SQL注入漏洞">"select * from table where id = " + unknown("1")</error>;
+
+        String status = quote(getStatus());
+        String sql15 = "select * from table where status = " + status;
+    }
+
+    private static final String DEFAULT_NAME = "admin";
+
+    private String name;
+
+    String getDefaultStatus() {
+        return "1";
+    }
+
+    private String getDefaultName() {
+        return DEFAULT_NAME;
+    }
+
+    private String getName() {
+        return name;
+    }
+
+    static class User {
+        private String name;
+
+        String getName() {
+            return name;
+        }
+    }
+
+    static final class Dto {
+        private String id;
+
+        String getId() {
+            return id;
+        }
+    }
+
+    void bar3(User user, Dto dto, String id) {
+        // 可被子类覆写的方法不套用摘要
+        String sql16 = <error descr="MomoSec: 疑似多项式拼接SQL注入漏洞">"select * from table where status = " + getDefaultStatus()</error>;
+
+        // 返回非常量 field 的 getter
+        String sql17 = <error descr="MomoSec: 疑似多项式拼接SQL注入漏洞">"select * from table where name = " + user.getName()</error>;
+        String sql18 = <error descr="MomoSec: 疑似多项式拼接SQL注入漏洞">"select * from table where id = " + dto.getId()</error>;
+        String sql19 = <error descr="MomoSec: 疑似多项式拼接SQL注入漏洞">"select * from table where name = " + getName()</error>;
+        String sql20 = "select * from table where name = " + getDefaultName();
+
+        StringBuilder sb = new StringBuilder();
+        sb.append("1").append(id);
+        String sql21 = <error descr="MomoSec: 疑似多项式拼接SQL注入漏洞">"select * from table where id = " + sb.toString()</error>;
+
+        StringBuilder sb2 = new StringBuilder();
+        sb2.append(id, 0, 8);
+        String sql22 = <error descr="MomoSec: 疑似多项式拼接SQL注入漏洞">"select * from table where id = " + sb2.toString()</error>;
+    }
 }
\ No newline at end of file
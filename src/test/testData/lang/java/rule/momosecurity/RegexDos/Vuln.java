@@ -4,6 +4,19 @@ public class Vuln {
 
     private final String exponentialRegex = "([a-z]+)*"; // warning
 
+    private static final String PREFIX = "^(";
+    private static final String BODY = "[a-z]+)+$";
+
+    static class Regexes {
+        static final String WORDS = "^(\\w+" + Vuln.SPACE + ")*$";
+
+        static String email() {
+            return String.format("^%s@%s$", "([a-z0-9]+\\.?)+", "[a-z]+");
+        }
+    }
+
+    private static final String SPACE = "\\s?";
+
     void bar(String id) {
         String phoneRegex = "13\\d{9}"; // no warning
 
@@ -14,5 +27,27 @@ public class Vuln {
 
         // Pattern.matches method test
         Pattern.matches(<error descr="MomoSec: 发现regexDos风险">exponentialRegex</error>, id);
+
+        // 字面量参数只高亮引起回溯的子表达式
+        Pattern.compile("^<error descr="MomoSec: 发现regexDos风险">(\\w+\\s?)*</error>$");
+        Pattern.compile("^<error descr="MomoSec: 发现regexDos风险 (多项式回溯)">\\d+\\.?\\d+</error>$");
+
+        // 常量求值: 拼接、跨类常量、静态方法中的 String.format
+        Pattern.compile(<error descr="MomoSec: 发现regexDos风险">PREFIX + BODY</error>);
+        Pattern.compile(<error descr="MomoSec: 发现regexDos风险">Regexes.WORDS</error>);
+        Pattern.matches(<error descr="MomoSec: 发现regexDos风险">Regexes.email()</error>, id);
+        Pattern.compile(PREFIX + id);
+
+        // String 上的正则方法
+        id.matches(<error descr="MomoSec: 发现regexDos风险">exponentialRegex</error>);
+        id.replaceAll(<error descr="MomoSec: 发现regexDos风险">Regexes.WORDS</error>, "");
+        id.split("\\s*,<error descr="MomoSec: 发现regexDos风险 (多项式回溯)">\\s*,?\\s*</error>;");
+        id.split(",");
+
+        // 其后的后缀不会匹配失败，不会发生多项式回溯
+        Pattern.compile(".*[A-Z].*");
+        id.matches("(.*)@(.*)");
+        // split 按 find() 语义，匹配到末尾的 \s* 即成功
+        id.split("\\s*,\\s*,?\\s*");
     }
 }
\ No newline at end of file
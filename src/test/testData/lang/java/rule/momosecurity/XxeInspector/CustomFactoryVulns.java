@@ -0,0 +1,17 @@
+import com.ctc.wstx.stax.WstxInputFactory;
+
+public class CustomFactoryVulns {
+    public void hasVuln() {
+        WstxInputFactory factory = <error descr="MomoSec: 疑似存在XXE漏洞">new WstxInputFactory()</error>;
+    }
+
+    public void notCompleteFix() {
+        WstxInputFactory factory = <error descr="MomoSec: 疑似存在XXE漏洞">new WstxInputFactory()</error>;
+        factory.setProperty(WstxInputFactory.SUPPORT_DTD, true);
+    }
+
+    public void noVuln() {
+        WstxInputFactory factory = new WstxInputFactory();
+        factory.setProperty(WstxInputFactory.SUPPORT_DTD, false);
+    }
+}
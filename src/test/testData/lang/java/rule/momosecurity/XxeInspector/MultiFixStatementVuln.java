@@ -18,4 +18,13 @@ public class MultiFixStatementVuln {
         tf3.setAttribute(XMLConstants.ACCESS_EXTERNAL_DTD, "");
         tf3.setAttribute(XMLConstants.ACCESS_EXTERNAL_STYLESHEET, "");
     }
+
+    public void fixedOnOtherVar() {
+        SAXTransformerFactory tf4 = (SAXTransformerFactory) SAXTransformerFactory.newInstance();
+        SAXTransformerFactory tf5 = (SAXTransformerFactory) <error descr="MomoSec: 疑似存在XXE漏洞">SAXTransformerFactory.newInstance()</error>;
+
+        tf4.setAttribute(XMLConstants.ACCESS_EXTERNAL_DTD, "");
+        tf4.setAttribute(XMLConstants.ACCESS_EXTERNAL_STYLESHEET, "");
+        tf5.setAttribute(XMLConstants.ACCESS_EXTERNAL_DTD, "");
+    }
 }
\ No newline at end of file
@@ -38,4 +38,13 @@ public class PositionVulns {
         // 禁用 外部实体
         dbf.setFeature("http://apache.org/xml/features/disallow-doctype-decl", true);
     }
+
+    public void multiLocalVars() {
+        DocumentBuilderFactory dbf1 = DocumentBuilderFactory.newInstance();
+        DocumentBuilderFactory dbf2 = <error descr="MomoSec: 疑似存在XXE漏洞">DocumentBuilderFactory.newInstance()</error>;
+        DocumentBuilderFactory dbf3 = DocumentBuilderFactory.newInstance();
+        dbf1.setFeature("http://apache.org/xml/features/disallow-doctype-decl", true);
+        dbf2.setFeature("http://apache.org/xml/features/disallow-doctype-decl", false);
+        dbf3.setFeature("http://apache.org/xml/features/disallow-doctype-decl", true);
+    }
 }
\ No newline at end of file
@@ -0,0 +1,10 @@
+package com.ctc.wstx.stax;
+
+public class WstxInputFactory {
+    public static final String SUPPORT_DTD = "javax.xml.stream.supportDTD";
+
+    public WstxInputFactory() {}
+
+    public void setProperty(String name, Object value) {
+    }
+}
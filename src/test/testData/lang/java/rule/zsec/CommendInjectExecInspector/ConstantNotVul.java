@@ -0,0 +1,40 @@
+import java.io.IOException;
+
+public class ConstantNotVul {
+
+    private static final String PING = "ping 127.0.0.1";
+
+    private static String getCmd() {
+        return "ls -l";
+    }
+
+    private String withPrefix(String s) {
+        return "ls " + s;
+    }
+
+    void foo() throws IOException {
+        Runtime.getRuntime().exec("ls");
+        Runtime.getRuntime().exec(PING);
+        Runtime.getRuntime().exec(getCmd());
+        Runtime.getRuntime().exec(withPrefix("/tmp"));
+        new ProcessBuilder("sh", "-c", "ls");
+
+        StringBuilder sb = new StringBuilder();
+        sb.append("ping ").append("127.0.0.1");
+        Runtime.getRuntime().exec(sb.toString());
+
+        String[] command = {"sh", "-c", "ls"};
+        command[2] = "pwd";
+        Runtime.getRuntime().exec(command);
+
+        // 纯函数类的调用不修改实参
+        StringBuilder sb2 = new StringBuilder("ls ");
+        sb2.append(sb);
+        Runtime.getRuntime().exec(sb2.toString());
+        Runtime.getRuntime().exec(String.valueOf(sb));
+
+        // 直接调用 exec 时 getRuntime 不单独提示
+        Runtime runtime = <warning descr="ZSec: Commend Injection Exec Found">Runtime.getRuntime()</warning>;
+        runtime.exec("ls");
+    }
+}
@@ -0,0 +1,75 @@
+import java.io.IOException;
+
+public class Vuln {
+
+    private String cmd;
+
+    String getCmd() {
+        return cmd;
+    }
+
+    static class Task {
+        private String command;
+
+        String getCommand() {
+            return command;
+        }
+    }
+
+    String getDefaultCmd() {
+        return "ls";
+    }
+
+    private static void fill(StringBuilder sb, String host) {
+        sb.append("ping ").append(host);
+    }
+
+    private static void fill(String[] command, String host) {
+        command[2] = host;
+    }
+
+    void foo(String host, Task task) throws IOException {
+        <warning descr="ZSec: Commend Injection Exec Found">Runtime.getRuntime().exec(host)</warning>;
+        <warning descr="ZSec: Commend Injection Exec Found">Runtime.getRuntime().exec("ping " + host)</warning>;
+
+        // field 与返回 field 的 getter
+        <warning descr="ZSec: Commend Injection Exec Found">Runtime.getRuntime().exec(this.cmd)</warning>;
+        <warning descr="ZSec: Commend Injection Exec Found">Runtime.getRuntime().exec(cmd)</warning>;
+        <warning descr="ZSec: Commend Injection Exec Found">Runtime.getRuntime().exec(getCmd())</warning>;
+        <warning descr="ZSec: Commend Injection Exec Found">Runtime.getRuntime().exec(task.getCommand())</warning>;
+        <warning descr="ZSec: Commend Injection Exec Found">new ProcessBuilder("sh", "-c", cmd)</warning>;
+
+        // 可被子类覆写的方法
+        <warning descr="ZSec: Commend Injection Exec Found">Runtime.getRuntime().exec(getDefaultCmd())</warning>;
+
+        // 链式 append / 多参数 append / 数组元素写入
+        StringBuilder sb = new StringBuilder();
+        sb.append("ping ").append(host);
+        <warning descr="ZSec: Commend Injection Exec Found">Runtime.getRuntime().exec(sb.toString())</warning>;
+
+        StringBuilder sb2 = new StringBuilder("ping ");
+        sb2.append(host, 0, host.length());
+        <warning descr="ZSec: Commend Injection Exec Found">Runtime.getRuntime().exec(sb2.toString())</warning>;
+
+        String[] command = {"sh", "-c", "ls"};
+        command[2] = host;
+        <warning descr="ZSec: Commend Injection Exec Found">Runtime.getRuntime().exec(command)</warning>;
+
+        // 作为实参传入其他方法后内容未知
+        StringBuilder sb3 = new StringBuilder();
+        fill(sb3, host);
+        <warning descr="ZSec: Commend Injection Exec Found">Runtime.getRuntime().exec(sb3.toString())</warning>;
+
+        String[] command2 = {"sh", "-c", "ls"};
+        fill(command2, host);
+        <warning descr="ZSec: Commend Injection Exec Found">Runtime.getRuntime().exec(command2)</warning>;
+
+        String[] command3 = {"sh", "-c", "ls"};
+        System.arraycopy(host.split(" "), 0, command3, 0, 3);
+        <warning descr="ZSec: Commend Injection Exec Found">Runtime.getRuntime().exec(command3)</warning>;
+
+        // 未直接调用 exec 的 getRuntime 仍然提示
+        Runtime runtime = <warning descr="ZSec: Commend Injection Exec Found">Runtime.getRuntime()</warning>;
+        <warning descr="ZSec: Commend Injection Exec Found">runtime.exec(host)</warning>;
+    }
+}
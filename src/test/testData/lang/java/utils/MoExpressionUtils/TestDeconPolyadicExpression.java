@@ -47,6 +47,21 @@ public class TestDerefExpression {
         String sql = "select * from T where id in " + sb;
     }
 
+    public void polyadicWithConstStringBuilder(String ids) {
+        StringBuilder sb = new StringBuilder();
+        sb.append("(");
+        sb.insert(0, "1");
+        sb.append(")");
+        String sql = "select * from T where id in " + sb;
+        sb.append(ids);
+    }
+
+    public void polyadicBeforeVarAssign(String id) {
+        String where = "1";
+        String sql = "select * from T " + where;
+        where = id;
+    }
+
     public void ignore() {
         String where = "1";
         where = where;